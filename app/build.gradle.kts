@@ -14,9 +14,17 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        buildConfigField("String", "API_BASE_URL", "\"https://api.um.warszawa.pl/\"")
     }
 
     buildTypes {
+        debug {
+            // Np. -PapiBaseUrl=http://10.0.2.2:8080/ dla serwera odtwarzającego nagrany strumień
+            val apiBaseUrl = project.findProperty("apiBaseUrl") as String?
+            if (apiBaseUrl != null) {
+                buildConfigField("String", "API_BASE_URL", "\"$apiBaseUrl\"")
+            }
+        }
         release {
             isMinifyEnabled = false
             proguardFiles(
@@ -24,6 +32,15 @@ android {
                 "proguard-rules.pro"
             )
         }
+        // Wersja release mierzona przez moduł :macrobenchmark; dane z serwera odtwarzającego
+        // (adb reverse tcp:8080 tcp:8080), chyba że podano -PapiBaseUrl
+        create("benchmark") {
+            initWith(getByName("release"))
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+            val apiBaseUrl = project.findProperty("apiBaseUrl") as String? ?: "http://127.0.0.1:8080/"
+            buildConfigField("String", "API_BASE_URL", "\"$apiBaseUrl\"")
+        }
     }
     compileOptions {
         sourceCompatibility = JavaVersion.VERSION_1_8
@@ -31,6 +48,7 @@ android {
     }
     buildFeatures {
         viewBinding = true
+        buildConfig = true
     }
 }
 
@@ -41,6 +59,7 @@ dependencies {
     implementation(libs.constraintlayout)
     implementation(libs.navigation.fragment)
     implementation(libs.navigation.ui)
+    implementation(libs.profileinstaller)
     testImplementation(libs.junit)
     testImplementation(libs.core)
     androidTestImplementation(libs.ext.junit)
@@ -49,6 +68,7 @@ dependencies {
     implementation ("com.google.android.gms:play-services-location:21.0.1")
     implementation ("com.squareup.retrofit2:retrofit:2.9.0")
     implementation ("com.squareup.retrofit2:converter-gson:2.9.0")
+    implementation ("com.squareup.okhttp3:okhttp:4.12.0")
     testImplementation("junit:junit:4.13.2")
     testImplementation("org.robolectric:robolectric:4.12.1")
     testImplementation("org.mockito:mockito-core:5.14.1")
@@ -62,6 +82,7 @@ dependencies {
     testImplementation("org.mockito:mockito-core:5.14.1")
     testImplementation("org.mockito:mockito-inline:5.1.1")
     testImplementation("androidx.arch.core:core-testing:2.2.0")
+    testImplementation("com.squareup.okhttp3:mockwebserver:4.12.0")
 
     // Google Play Services for Maps
     testImplementation("com.google.android.gms:play-services-maps:19.0.0")
@@ -9,14 +9,17 @@ package pl.creativesstudio;
 
 import android.Manifest;
 import android.content.pm.PackageManager;
-import android.graphics.*;
 import android.location.Location;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.view.View;
 import android.widget.ImageButton;
+import android.widget.TextView;
 import android.widget.Toast;
-import android.graphics.drawable.Drawable;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -32,21 +35,57 @@ import com.google.android.gms.maps.*;
 import com.google.android.gms.maps.model.*;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-
-import pl.creativesstudio.api.WarsawApiService;
-import pl.creativesstudio.models.ApiResponse;
+import java.util.Locale;
+
+import pl.creativesstudio.api.ApiClient;
+import pl.creativesstudio.api.FeedArchive;
+import pl.creativesstudio.api.FeedDownloader;
+import pl.creativesstudio.api.FeedRecorder;
+import pl.creativesstudio.data.AdaptiveRefreshScheduler;
+import pl.creativesstudio.data.FetchPlanner;
+import pl.creativesstudio.data.FleetFeeds;
+import pl.creativesstudio.data.RefreshScheduler;
+import pl.creativesstudio.data.SingleFlight;
+import pl.creativesstudio.data.PositionHistory;
+import pl.creativesstudio.data.SnapshotHolder;
+import pl.creativesstudio.data.SnapshotStore;
+import pl.creativesstudio.index.ClusterIndex;
+import pl.creativesstudio.index.LineIndex;
+import pl.creativesstudio.map.MarkerIconCache;
+import pl.creativesstudio.map.ClusterIconCache;
+import pl.creativesstudio.map.ClusterRenderer;
+import pl.creativesstudio.map.FleetTileProvider;
+import pl.creativesstudio.map.FrameBudgetScheduler;
+import pl.creativesstudio.map.MarkerAnimator;
+import pl.creativesstudio.map.MarkerPipeline;
+import pl.creativesstudio.map.MarkerReconciler;
+import pl.creativesstudio.map.PngTileEncoder;
+import pl.creativesstudio.metrics.Counter;
+import pl.creativesstudio.metrics.Gauge;
+import pl.creativesstudio.metrics.Histogram;
+import pl.creativesstudio.metrics.MetricsRegistry;
 import pl.creativesstudio.models.Bus;
-import retrofit2.Call;
-import retrofit2.Response;
-import retrofit2.Retrofit;
-import retrofit2.converter.gson.GsonConverterFactory;
-
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+import pl.creativesstudio.models.LineKey;
+import pl.creativesstudio.startup.InitGraph;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * @class MainActivity
@@ -64,6 +103,7 @@ public class MainActivity extends AppCompatActivity
         GoogleMap.OnMyLocationButtonClickListener,
         GoogleMap.OnMyLocationClickListener,
         GoogleMap.OnCameraIdleListener,
+        GoogleMap.OnCameraMoveStartedListener,
         ActivityCompat.OnRequestPermissionsResultCallback {
 
     /**
@@ -83,14 +123,15 @@ public class MainActivity extends AppCompatActivity
      */
     LatLngBounds visibleBounds;
     /**
-     * Service interface for interacting with the Warsaw API.
+     * Downloader of the feeds of the Warsaw API.
+     *
+     * Set by the startup task building the API client; read only after {@link #apiClientReady} has completed.
      */
-
-    private WarsawApiService apiService;
+    private FeedDownloader feedDownloader;
     /**
-     * Base URL for the Warsaw API.
+     * The API client, built in the background from {@link #onCreate(Bundle)} on.
      */
-    private static final String BASE_URL = "https://api.um.warszawa.pl/";
+    private CompletableFuture<ApiClient> apiClientReady;
     /**
      * API key for authenticating requests.
      */
@@ -99,6 +140,58 @@ public class MainActivity extends AppCompatActivity
      * Resource ID for the buses endpoint.
      */
     private static final String RESOURCE_ID = "f2e5503e-927d-4ad3-9500-4ab9e55deb59";
+    /**
+     * Intent extra of debug builds holding the base URL of the API, for example a local replay server.
+     */
+    static final String EXTRA_API_BASE_URL = "pl.creativesstudio.API_BASE_URL";
+    /**
+     * Intent extra of debug builds that turns on recording of the API responses.
+     */
+    static final String EXTRA_RECORD_FEED = "pl.creativesstudio.RECORD_FEED";
+    /**
+     * Name of the directory holding the recorded feed archives.
+     */
+    private static final String FEED_ARCHIVE_DIRECTORY = "feeds";
+    /**
+     * Number of lines, the ones with the most vehicles, whose icons are rendered at startup.
+     */
+    private static final int WARM_UP_ICON_LINES = 24;
+    /**
+     * Name of the directory holding the metric dumps.
+     */
+    private static final String METRICS_DIRECTORY = "metrics";
+    /**
+     * Refresh interval of the debug overlay, in milliseconds.
+     */
+    private static final long DEBUG_OVERLAY_INTERVAL = 1000;
+    /**
+     * Trace section of the API client setup in {@link #onCreate(Bundle)}.
+     */
+    private static final String TRACE_API_SETUP = "TrackMyBus.apiSetup";
+    /**
+     * Trace section of {@link #onMapReady(GoogleMap)}.
+     */
+    private static final String TRACE_ON_MAP_READY = "TrackMyBus.onMapReady";
+    /**
+     * Trace section of a fleet fetch, from the first request to the published snapshot.
+     */
+    private static final String TRACE_LOAD_BUS_DATA = "TrackMyBus.loadBusData";
+    /**
+     * Trace section of the download and decoding of one feed.
+     */
+    private static final String TRACE_DOWNLOAD = "TrackMyBus.download";
+    /**
+     * Trace section of the viewport filtering.
+     */
+    private static final String TRACE_FILTER_WITHIN_BOUNDS = "TrackMyBus.filterBusesWithinBounds";
+    /**
+     * Trace section of submitting the visible buses to the marker pipeline.
+     */
+    private static final String TRACE_DISPLAY_BUSES = "TrackMyBus.displayBusesOnMap";
+    /**
+     * Trace section of looking up, or rendering, a marker icon.
+     */
+    private static final String TRACE_CREATE_MARKER = "TrackMyBus.createCustomMarker";
     /**
      * Handler for scheduling tasks.
      */
@@ -112,6 +205,10 @@ public class MainActivity extends AppCompatActivity
      * Runnable for updating the map after camera idle.
      */
     private Runnable mapUpdateRunnable;
+    /**
+     * Time the camera last became idle, in {@link System#nanoTime()} units.
+     */
+    private long cameraIdleAtNanos;
     /**
      * Delay before updating the map.
      */
@@ -128,6 +225,10 @@ public class MainActivity extends AppCompatActivity
      * Default data refresh interval.
      */
     private static final long DATA_REFRESH_INTERVAL_DEFAULT = 10000;
+    /**
+     * Longest data refresh interval when responses do not change or requests fail.
+     */
+    private static final long DATA_REFRESH_INTERVAL_MAX = 60000;
     /**
      * Minimum interval between API calls.
      */
@@ -137,22 +238,46 @@ public class MainActivity extends AppCompatActivity
      */
     private static final float MIN_ZOOM_LEVEL = 14.0f;
     /**
-     * Map of active markers with bus IDs as keys.
+     * Minimum zoom level at which the fleet is drawn as dots on tiles instead of clusters.
+     */
+    private static final float DENSE_ZOOM_LEVEL = 11.0f;
+    /**
+     * Number of visible buses above which tiles are drawn instead of markers.
+     */
+    private static final int DENSE_MARKER_THRESHOLD = 400;
+    /**
+     * Maximum size of the rendered tile cache, in bytes.
+     */
+    private static final long TILE_CACHE_BYTES = 8L << 20;
+    /**
+     * Reconciler keeping the bus markers on the map in sync with the displayed buses.
      */
 
-    private Map<String, Marker> activeMarkers = new HashMap<>();
+    private MarkerReconciler markerReconciler;
     /**
-     * ID of the currently selected bus.
+     * Animator moving the bus markers smoothly between polls.
      */
-    private String selectedBusId = null;
+    private MarkerAnimator markerAnimator;
+    /**
+     * Renderer of the cluster bubbles shown below {@link #DENSE_ZOOM_LEVEL}.
+     */
+    private ClusterRenderer clusterRenderer;
     /**
-     * List of buses from the last data load.
+     * Renderer of the fleet tiles shown for dense views.
      */
-    private List<Bus> lastLoadedBuses = new ArrayList<>();
+    private final FleetTileProvider fleetTileProvider = new FleetTileProvider(new PngTileEncoder(), TILE_CACHE_BYTES);
     /**
-     * Timestamp of the last API call.
+     * Overlay showing the fleet tiles, created on first use.
      */
-    private long lastApiCallTime = 0;
+    private TileOverlay tileOverlay;
+    /**
+     * Cache of rendered marker icons, keyed by bus line; created in the background.
+     */
+    private CompletableFuture<MarkerIconCache> iconCacheReady;
+    /**
+     * Tag of the currently selected bus ({@link FleetSnapshot#getVehicleTag}).
+     */
+    private String selectedBusId = null;
     /**
      * Flag indicating if it's the initial data load.
      */
@@ -161,14 +286,139 @@ public class MainActivity extends AppCompatActivity
      * Executor service for handling background tasks.
      */
     private ExecutorService executorService;
+    /**
+     * Small pool downloading the bus and tram feeds concurrently.
+     */
+    private ExecutorService feedExecutor;
+    /**
+     * Worker preparing marker titles, icons and positions off the main thread.
+     */
+    private ExecutorService markerExecutor;
+    /**
+     * Pipeline applying the prepared markers to the map in batches.
+     */
+    private MarkerPipeline markerPipeline;
+    /**
+     * Latest data of the bus and tram feeds.
+     */
+    private final FleetFeeds fleetFeeds = new FleetFeeds();
+    /**
+     * Compressed history of the positions reported by every vehicle.
+     */
+    private final PositionHistory positionHistory = new PositionHistory(
+            PositionHistory.DEFAULT_BUDGET_BYTES, PositionHistory.DEFAULT_WINDOW_MILLIS);
+    /**
+     * Name of the file holding the last snapshot, within the files directory.
+     */
+    private static final String SNAPSHOT_FILE = "last_snapshot.bin";
+    /**
+     * Minimum interval between two writes of the snapshot to storage.
+     */
+    private static final long SNAPSHOT_SAVE_INTERVAL = 60000;
+    /**
+     * Store of the last snapshot, used for the next cold start.
+     */
+    private SnapshotStore snapshotStore;
+    /**
+     * Fetch time of the last stored snapshot; accessed on the executor only.
+     */
+    private long lastSavedAtMillis;
+    /**
+     * Whether the time to the first marker was already logged.
+     */
+    private boolean firstMarkerLogged;
+    /**
+     * Metrics of the hot paths, shared by the whole application.
+     */
+    private MetricsRegistry metrics;
+    /**
+     * Time spent decoding a response, in nanoseconds.
+     */
+    private Histogram parseTime;
+    /**
+     * Time spent building the indexes of a fetched snapshot, in nanoseconds.
+     */
+    private Histogram indexBuildTime;
+    /**
+     * Number of marker operations (adds, moves, restyles, removals) of a marker pass.
+     */
+    private Histogram markerOperations;
+    /**
+     * Time spent preparing a marker pass on the worker, in nanoseconds.
+     */
+    private Histogram markerPrepareTime;
+    /**
+     * Time spent applying a marker pass on the main thread, in nanoseconds.
+     */
+    private Histogram renderMainThreadTime;
+    /**
+     * Number of frames a marker pass was applied in.
+     */
+    private Histogram renderFrames;
+    /**
+     * Number of marker passes applied.
+     */
+    private Counter markerPasses;
+    /**
+     * Delays chosen by the refresh scheduler, in nanoseconds.
+     */
+    private Histogram refreshDelay;
+    /**
+     * Number of refresh scheduler decisions for every reason, indexed by the reason ordinal.
+     */
+    private Counter[] refreshReasons;
+    /**
+     * Share of marker icons served from the cache, from 0 to 1.
+     */
+    private Gauge iconHitRate;
+    /**
+     * Operation count of the marker reconciler after the previous pass.
+     */
+    private long lastOperationCount;
+    /**
+     * Overlay showing the metrics on top of the map.
+     */
+    private TextView debugOverlay;
+    /**
+     * Task refreshing the debug overlay while it is visible.
+     */
+    private final Runnable debugOverlayRunnable = new Runnable() {
+        @Override
+        public void run() {
+            debugOverlay.setText(metrics.summary());
+            handler.postDelayed(this, DEBUG_OVERLAY_INTERVAL);
+        }
+    };
     /**
      * Flag indicating if a bus line is currently selected.
      */
     private boolean lineSelected = false;
     /**
-     * Complete list of buses fetched from the API.
+     * Name of the selected bus line, or null if all buses are displayed.
+     */
+    private String selectedLine;
+    /**
+     * Planner choosing between full and line-filtered fetches.
+     */
+    final FetchPlanner fetchPlanner = new FetchPlanner();
+    /**
+     * Holder publishing the snapshot of the last successful data load to the UI thread.
+     */
+    final SnapshotHolder snapshotHolder = new SnapshotHolder();
+    /**
+     * Single-flight wrapper ensuring at most one fleet download is in flight.
+     */
+    private SingleFlight<Void> fleetFetch;
+    /**
+     * Scheduler deciding when the periodic refresh fetches data.
+     */
+    final RefreshScheduler refreshScheduler = new AdaptiveRefreshScheduler(
+            DATA_REFRESH_INTERVAL_HIGH_ZOOM, DATA_REFRESH_INTERVAL_LOW_ZOOM,
+            DATA_REFRESH_INTERVAL_MAX, MAP_UPDATE_DELAY, MIN_ZOOM_LEVEL);
+    /**
+     * Reusable buffer receiving the indices of the vehicles within the visible bounds.
      */
-    List<Bus> allBuses = new ArrayList<>();
+    private int[] visibleIndices = new int[0];
 
     /**
      * Initializes the user interface.
@@ -188,10 +438,21 @@ public class MainActivity extends AppCompatActivity
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
-
+        startInitialization(savedInstanceState == null);
 
         ImageButton buttonMenu = findViewById(R.id.button_menu);
         buttonMenu.setOnClickListener(v -> showBottomSheetWithLines());
+        // Długie przytrzymanie przycisku menu pokazuje i ukrywa nakładkę z metrykami
+        buttonMenu.setOnLongClickListener(v -> {
+            toggleDebugOverlay();
+            return true;
+        });
+
+        debugOverlay = findViewById(R.id.debug_overlay);
+        debugOverlay.setOnLongClickListener(v -> {
+            dumpMetrics();
+            return true;
+        });
 
         ImageButton buttonCurrentLocation = findViewById(R.id.button_current_location);
         buttonCurrentLocation.setOnClickListener(v -> {
@@ -224,14 +485,125 @@ public class MainActivity extends AppCompatActivity
         }
 
 
-        Retrofit retrofit = new Retrofit.Builder()
-                .baseUrl(BASE_URL)
-                .addConverterFactory(GsonConverterFactory.create())
-                .build();
-
-        apiService = retrofit.create(WarsawApiService.class);
+    }
+    /**
+     * Starts the initialization of the activity on background threads.
+     *
+     * The tasks run in parallel with the inflation of the map:
+     * <pre>
+     * apiClient
+     * snapshotRestore ──┐
+     * iconCache ────────┴──> iconWarmUp
+     * </pre>
+     * The first fetch, started when the map is ready, waits only for the API client, and the
+     * first marker pass only for the icon cache. The snapshot is restored with the dictionary
+     * of the application, so it does not wait for the network stack.
+     *
+     * @param firstLaunch True if the activity is not being recreated.
+     */
+    private void startInitialization(boolean firstLaunch) {
+        TrackMyBusApplication application = (TrackMyBusApplication) getApplication();
+        MetricsRegistry registry = application.getMetrics();
+        FleetDictionary dictionary = application.getDictionary();
+        initMetrics(registry);
+        snapshotStore = new SnapshotStore(new File(getFilesDir(), SNAPSHOT_FILE));
 
         executorService = Executors.newSingleThreadExecutor();
+        feedExecutor = Executors.newFixedThreadPool(FleetFeeds.types().length);
+        markerExecutor = Executors.newSingleThreadExecutor();
+        fleetFetch = new SingleFlight<>(executorService, () -> {
+            fetchFleet();
+            return null;
+        });
+
+        InitGraph graph = new InitGraph((name, durationNanos, error) -> {
+            if (error != null) {
+                Log.e("Startup", "Zadanie " + name + " nie powiodło się", error);
+            } else {
+                registry.histogram("startup." + name, Histogram.Unit.NANOSECONDS).record(durationNanos);
+                Log.d("Startup", "Zadanie " + name + ": " + durationNanos / 1000 + " µs");
+            }
+        });
+        // Na wątku zapisów, aby odtworzenie nie wyprzedziło ani nie nadpisało zapisu; zlecone przed
+        // pierwszym pobraniem, więc nie czeka w kolejce za pobieraniem blokowanym przez klienta API
+        CompletableFuture<FleetSnapshot> restored = graph.add("snapshotRestore", executorService,
+                () -> restoreSnapshot(dictionary));
+        // Pula pobierania i tak czeka na klienta API, więc buduje go sama
+        apiClientReady = graph.add("apiClient", feedExecutor, () -> {
+            Trace.beginSection(TRACE_API_SETUP);
+            try {
+                ApiClient client = createApiClient(firstLaunch);
+                feedDownloader = new FeedDownloader(client.getService(), RESOURCE_ID, API_KEY, parseTime);
+                return client;
+            } finally {
+                Trace.endSection();
+            }
+        });
+        // Na wątku przygotowania markerów, który jako pierwszy będzie potrzebował ikon
+        iconCacheReady = graph.add("iconCache", markerExecutor,
+                () -> new MarkerIconCache(this, MarkerIconCache.defaultMaxBytes()));
+        // Również na wątku markerów, aby rozgrzewanie nie zajmowało puli pobierania
+        graph.add("iconWarmUp", iconCacheReady, restored, markerExecutor, this::warmUpIcons);
+        graph.all().whenComplete((result, error) -> Log.i("ColdStart", "Inicjalizacja w tle zakończona po "
+                + (SystemClock.uptimeMillis() - Process.getStartUptimeMillis()) + " ms od startu procesu"));
+    }
+    /**
+     * Renders the icons of the lines with the most vehicles in the restored snapshot.
+     *
+     * Runs in the background before the map is ready, so the first marker pass finds the
+     * icons of the busiest lines in the cache.
+     *
+     * @param icons The icon cache.
+     * @param restored The restored snapshot, or null if there was none.
+     * @return The number of rendered icons.
+     */
+    private Integer warmUpIcons(MarkerIconCache icons, FleetSnapshot restored) {
+        if (restored == null) {
+            return 0;
+        }
+        LineIndex lineIndex = restored.getLineIndex();
+        List<String> lines = lineIndex.getSortedLines();
+        Integer[] slots = new Integer[lines.size()];
+        for (int slot = 0; slot < slots.length; slot++) {
+            slots[slot] = slot;
+        }
+        Arrays.sort(slots, (a, b) -> Integer.compare(lineIndex.getVehicleCount(b), lineIndex.getVehicleCount(a)));
+        int count = Math.min(WARM_UP_ICON_LINES, slots.length);
+        for (int k = 0; k < count; k++) {
+            icons.prefetch(lines.get(slots[k]));
+        }
+        return count;
+    }
+    /**
+     * Returns the API client, applying the debug options of the launching intent.
+     *
+     * Debug builds accept a base URL, for example of a local replay server, and can record
+     * the responses into an archive for later replay.
+     *
+     * @param firstLaunch True if the activity is not being recreated.
+     * @return The API client.
+     */
+    private ApiClient createApiClient(boolean firstLaunch) {
+        TrackMyBusApplication application = (TrackMyBusApplication) getApplication();
+        if (!BuildConfig.DEBUG) {
+            return application.getApiClient();
+        }
+
+        String baseUrl = getIntent().getStringExtra(EXTRA_API_BASE_URL);
+        ApiClient apiClient = baseUrl != null ? application.getApiClient(baseUrl) : application.getApiClient();
+        Log.d("ApiClient", "Adres API: " + apiClient.getBaseUrl());
+
+        FeedRecorder recorder = apiClient.getFeedRecorder();
+        if (firstLaunch && !recorder.isRecording() && getIntent().getBooleanExtra(EXTRA_RECORD_FEED, false)) {
+            File base = getExternalFilesDir(null);
+            File directory = new File(base != null ? base : getFilesDir(), FEED_ARCHIVE_DIRECTORY);
+            if (directory.isDirectory() || directory.mkdirs()) {
+                File file = new File(directory, "feed-" + System.currentTimeMillis() + ".tmbf");
+                recorder.start(new FeedArchive(file));
+                Log.d("ApiClient", "Nagrywanie odpowiedzi do " + file);
+            }
+        }
+        return apiClient;
     }
     /**
      * Displays a bottom sheet dialog with a list of bus lines.
@@ -247,32 +619,20 @@ public class MainActivity extends AppCompatActivity
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
 
-        List<String> busLines = new ArrayList<>();
+        FleetSnapshot fleetSnapshot = snapshotHolder.getSnapshot();
+        List<String> sortedLines = fleetSnapshot.getLineIndex().getSortedLines();
+        List<String> busLines = new ArrayList<>(sortedLines.size() + 1);
 
         busLines.add("POKAŻ WSZYSTKIE AUTOBUSY");
-
-
-        for (Bus bus : allBuses) {
-            if (!busLines.contains(bus.getLines())) {
-                busLines.add(bus.getLines());
-            }
-        }
-
-        :
-        List<String> linesToSort = busLines.subList(1, busLines.size());
-        linesToSort = sortBusLines(linesToSort);
-
-        for (int i = 1; i < busLines.size(); i++) {
-            busLines.set(i, linesToSort.get(i - 1));
-        }
+        busLines.addAll(sortedLines);
 
         BusLinesAdapter adapter = new BusLinesAdapter(busLines, line -> {
             bottomSheetDialog.dismiss();
             if (line.equals("POKAŻ WSZYSTKIE AUTOBUSY")) {
 
                 lineSelected = false;
-
-                lastLoadedBuses = new ArrayList<>(allBuses);
+                selectedLine = null;
+                fetchPlanner.selectAll();
 
                 Toast.makeText(MainActivity.this, "Wybrano: POKAŻ WSZYSTKIE AUTOBUSY", Toast.LENGTH_SHORT).show();
 
@@ -280,10 +640,15 @@ public class MainActivity extends AppCompatActivity
                     mMap.animateCamera(CameraUpdateFactory.newLatLngZoom(currentMapCenter, 15f));
                 }
 
-                displayBusesOnMap(lastLoadedBuses);
+                FleetSnapshot snapshot = snapshotHolder.getSnapshot();
+                displayBusesOnMap(snapshot, allIndices(snapshot), snapshot.size());
+                // Pozostałe linie mogły się zdezaktualizować podczas pobierania tylko wybranej linii
+                loadBusData(true);
             } else {
                 Toast.makeText(MainActivity.this, "Wybrano linię: " + line, Toast.LENGTH_SHORT).show();
                 lineSelected = true;
+                selectedLine = line;
+                fetchPlanner.selectLines(Collections.singletonList(line));
                 filterAndZoomToLine(line);
             }
         });
@@ -292,37 +657,16 @@ public class MainActivity extends AppCompatActivity
         bottomSheetDialog.show();
     }
     /**
-     * Sorts the list of bus lines using a custom comparator.
+     * Sorts the list of bus lines in display order.
+     *
+     * Each line is parsed once into a cached {@link LineKey}, so the sort compares
+     * pre-parsed keys instead of running regular expressions on every comparison.
      *
      * @param lines The list of bus lines to sort.
      * @return The sorted list of bus lines.
      */
     List<String> sortBusLines(List<String> lines) {
-
-        lines.sort((line1, line2) -> {
-            // Rozdziel numery i litery w liniach
-            String numberPart1 = line1.replaceAll("[^0-9]", ""); // Wyodrębnij część numeryczną
-            String numberPart2 = line2.replaceAll("[^0-9]", "");
-
-            String letterPart1 = line1.replaceAll("[0-9]", ""); // Wyodrębnij część literową
-            String letterPart2 = line2.replaceAll("[0-9]", "");
-
-
-            int letterComparison = letterPart1.compareTo(letterPart2);
-            if (letterComparison != 0) {
-                return letterComparison;
-            }
-
-
-            if (!numberPart1.isEmpty() && !numberPart2.isEmpty()) {
-                return Integer.compare(Integer.parseInt(numberPart1), Integer.parseInt(numberPart2));
-            }
-
-
-            return line1.compareTo(line2);
-        });
-
-        return lines;
+        return LineKey.sort(lines);
     }
     /**
      * Filters buses by the specified line and zooms the map to show them.
@@ -330,29 +674,27 @@ public class MainActivity extends AppCompatActivity
      * @param line The bus line to filter by.
      */
     void filterAndZoomToLine(String line) {
-        if (mMap == null || allBuses.isEmpty()) return;
+        FleetSnapshot snapshot = snapshotHolder.getSnapshot();
+        if (mMap == null || snapshot.isEmpty()) return;
 
-        List<Bus> filteredBuses = new ArrayList<>();
-        for (Bus bus : allBuses) {
-            if (bus.getLines().equals(line)) {
-                filteredBuses.add(bus);
-            }
-        }
+        LineIndex lineIndex = snapshot.getLineIndex();
+        int slot = lineIndex.findSlot(snapshot.getDictionary().find(line));
 
-        if (filteredBuses.isEmpty()) {
+        if (slot == LineIndex.NOT_FOUND) {
             Toast.makeText(this, "Brak autobusów dla linii: " + line, Toast.LENGTH_SHORT).show();
             return;
         }
 
+        displayLine(snapshot, line);
 
-        displayBusesOnMap(filteredBuses);
-
-        LatLngBounds.Builder boundsBuilder = new LatLngBounds.Builder();
-        for (Bus bus : filteredBuses) {
-            boundsBuilder.include(new LatLng(bus.getLat(), bus.getLon()));
+        if (lineIndex.hasBounds(slot)) {
+            LatLngBounds bounds = new LatLngBounds(
+                    new LatLng(lineIndex.getMinLatE6(slot) / FleetSnapshot.MICRODEGREES,
+                            lineIndex.getMinLonE6(slot) / FleetSnapshot.MICRODEGREES),
+                    new LatLng(lineIndex.getMaxLatE6(slot) / FleetSnapshot.MICRODEGREES,
+                            lineIndex.getMaxLonE6(slot) / FleetSnapshot.MICRODEGREES));
+            mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, 100));
         }
-        LatLngBounds bounds = boundsBuilder.build();
-        mMap.animateCamera(CameraUpdateFactory.newLatLngBounds(bounds, 100));
     }
 
     /**
@@ -366,67 +708,139 @@ public class MainActivity extends AppCompatActivity
 
     @Override
     public void onMapReady(@NonNull GoogleMap googleMap) {
-        mMap = googleMap;
-
-        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
-                == PackageManager.PERMISSION_GRANTED) {
-            mMap.setMyLocationEnabled(true);
-
-            FusedLocationProviderClient fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-            fusedLocationClient.getLastLocation()
-                    .addOnSuccessListener(this, location -> {
-                        if (location != null) {
-                            LatLng currentLocation = new LatLng(location.getLatitude(), location.getLongitude());
-                            currentMapCenter = currentLocation;
-                            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(currentLocation, 15));
-                        } else {
-                            LatLng defaultLocation = new LatLng(52.2881717, 21.0061544);
-                            currentMapCenter = defaultLocation;
-                            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(defaultLocation, 15));
-                        }
-                    });
-        } else {
-            ActivityCompat.requestPermissions(this,
-                    new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
-                    LOCATION_PERMISSION_REQUEST_CODE);
-
-            LatLng defaultLocation = new LatLng(52.2881717, 21.0061544);
-            currentMapCenter = defaultLocation;
-            mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(defaultLocation, 15));
-        }
-
-        mMap.getUiSettings().setAllGesturesEnabled(true);
-        mMap.getUiSettings().setZoomControlsEnabled(true);
-        mMap.getUiSettings().setCompassEnabled(true);
-        mMap.getUiSettings().setMyLocationButtonEnabled(true);
+        Trace.beginSection(TRACE_ON_MAP_READY);
+        try {
+            mMap = googleMap;
 
-        mMap.setOnCameraIdleListener(this);
-        mMap.setOnMyLocationButtonClickListener(this);
-        mMap.setOnMyLocationClickListener(this);
+            if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION)
+                    == PackageManager.PERMISSION_GRANTED) {
+                mMap.setMyLocationEnabled(true);
+
+                FusedLocationProviderClient fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+                fusedLocationClient.getLastLocation()
+                        .addOnSuccessListener(this, location -> {
+                            if (location != null) {
+                                LatLng currentLocation = new LatLng(location.getLatitude(), location.getLongitude());
+                                currentMapCenter = currentLocation;
+                                mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(currentLocation, 15));
+                            } else {
+                                LatLng defaultLocation = new LatLng(52.2881717, 21.0061544);
+                                currentMapCenter = defaultLocation;
+                                mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(defaultLocation, 15));
+                            }
+                        });
+            } else {
+                ActivityCompat.requestPermissions(this,
+                        new String[]{Manifest.permission.ACCESS_FINE_LOCATION},
+                        LOCATION_PERMISSION_REQUEST_CODE);
 
-        mMap.setOnMarkerClickListener(marker -> {
-            if (marker.getSnippet() != null) {
-                selectedBusId = marker.getSnippet();
+                LatLng defaultLocation = new LatLng(52.2881717, 21.0061544);
+                currentMapCenter = defaultLocation;
+                mMap.moveCamera(CameraUpdateFactory.newLatLngZoom(defaultLocation, 15));
             }
-            return false;
-        });
 
-        updateVisibleBounds();
-        loadBusData(true);
+            mMap.getUiSettings().setAllGesturesEnabled(true);
+            mMap.getUiSettings().setZoomControlsEnabled(true);
+            mMap.getUiSettings().setCompassEnabled(true);
+            mMap.getUiSettings().setMyLocationButtonEnabled(true);
 
-        runnable = new Runnable() {
-            @Override
-            public void run() {
-                float currentZoom = mMap.getCameraPosition().zoom;
-                if (currentZoom >= MIN_ZOOM_LEVEL) {
-                    loadBusData(true);
-                    handler.postDelayed(this, DATA_REFRESH_INTERVAL_HIGH_ZOOM);
-                } else {
-                    handler.postDelayed(this, DATA_REFRESH_INTERVAL_LOW_ZOOM);
+            mMap.setOnCameraIdleListener(this);
+            mMap.setOnCameraMoveStartedListener(this);
+            mMap.setOnMyLocationButtonClickListener(this);
+            mMap.setOnMyLocationClickListener(this);
+
+            mMap.setOnMarkerClickListener(marker -> {
+                if (marker.getTag() instanceof String) {
+                    selectedBusId = (String) marker.getTag();
                 }
+                return false;
+            });
+
+            updateVisibleBounds();
+            FleetSnapshot restored = snapshotHolder.getSnapshot();
+            if (!restored.isEmpty()) {
+                displayCurrentBuses(restored);
             }
-        };
-        handler.postDelayed(runnable, DATA_REFRESH_INTERVAL_HIGH_ZOOM);
+            loadBusData(true);
+
+            refreshScheduler.onCameraIdle(mMap.getCameraPosition().zoom);
+            runnable = new Runnable() {
+                @Override
+                public void run() {
+                    if (refreshScheduler.shouldFetch()) {
+                        loadBusData(true);
+                    }
+                    scheduleRefresh();
+                }
+            };
+            scheduleRefresh();
+        } finally {
+            Trace.endSection();
+        }
+    }
+    /**
+     * Schedules the next periodic refresh with the delay chosen by the refresh scheduler.
+     *
+     * Nothing is scheduled while the scheduler is paused.
+     */
+    private void scheduleRefresh() {
+        if (runnable == null) return;
+
+        handler.removeCallbacks(runnable);
+        long delay = refreshScheduler.nextDelayMillis();
+        if (delay != RefreshScheduler.PAUSED) {
+            handler.postDelayed(runnable, delay);
+        }
+        RefreshScheduler.Reason reason = refreshScheduler.getLastReason();
+        refreshReasons[reason.ordinal()].increment();
+        if (delay != RefreshScheduler.PAUSED) {
+            refreshDelay.record(delay * 1_000_000L);
+        }
+        Log.d("RefreshScheduler", "Następne odświeżenie za " + delay + " ms (" + reason + ")");
+    }
+    /**
+     * Called when the activity becomes visible.
+     *
+     * Resumes the periodic refresh and loads the data if it is out of date.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refreshScheduler.onForegroundChanged(true);
+        if (mMap != null) {
+            loadBusData(false);
+            scheduleRefresh();
+        }
+    }
+    /**
+     * Called when the activity is no longer visible.
+     *
+     * Pauses the periodic refresh so that no data is downloaded in the background.
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        refreshScheduler.onForegroundChanged(false);
+        if (runnable != null) {
+            handler.removeCallbacks(runnable);
+        }
+        if (markerAnimator != null) {
+            markerAnimator.finishAll();
+        }
+
+        SnapshotHolder.Version current = snapshotHolder.current();
+        if (executorService != null && !current.isStale() && !current.getSnapshot().isEmpty()) {
+            executorService.execute(() -> saveSnapshot(current));
+        }
+    }
+    /**
+     * Called when the camera starts moving.
+     *
+     * @param reason The reason of the camera movement.
+     */
+    @Override
+    public void onCameraMoveStarted(int reason) {
+        refreshScheduler.onCameraMoveStarted();
     }
     /**
      * Updates the visible bounds of the map based on the current camera position.
@@ -434,6 +848,13 @@ public class MainActivity extends AppCompatActivity
     private void updateVisibleBounds() {
         if (mMap != null) {
             visibleBounds = mMap.getProjection().getVisibleRegion().latLngBounds;
+            if (markerAnimator != null) {
+                markerAnimator.setViewport(
+                        FleetSnapshot.toE6(visibleBounds.southwest.latitude),
+                        FleetSnapshot.toE6(visibleBounds.southwest.longitude),
+                        FleetSnapshot.toE6(visibleBounds.northeast.latitude),
+                        FleetSnapshot.toE6(visibleBounds.northeast.longitude));
+            }
         }
     }
     /**
@@ -447,6 +868,8 @@ public class MainActivity extends AppCompatActivity
         if (mMap == null) return;
 
         currentMapCenter = mMap.getCameraPosition().target;
+        cameraIdleAtNanos = System.nanoTime();
+        refreshScheduler.onCameraIdle(mMap.getCameraPosition().zoom);
         updateVisibleBounds();
 
         if (mapUpdateRunnable != null) {
@@ -474,25 +897,18 @@ public class MainActivity extends AppCompatActivity
         float currentZoom = mMap.getCameraPosition().zoom;
         Log.d("ZoomLevel", "Aktualny poziom zoomu: " + currentZoom);
 
-        if (currentZoom < MIN_ZOOM_LEVEL) {
-            Log.d("ZoomLevel", "Zoom poniżej progu. Usuwanie markerów.");
-
-            for (Marker marker : activeMarkers.values()) {
-                marker.remove();
-            }
-            activeMarkers.clear();
-            return;
-        }
-
-        if (!lastLoadedBuses.isEmpty()) {
-            List<Bus> visibleBuses = filterBusesWithinBounds(lastLoadedBuses);
-            displayBusesOnMap(visibleBuses);
+        SnapshotHolder.Version current = snapshotHolder.current();
+        if (!current.getSnapshot().isEmpty()) {
+            displayVisibleBuses(current.getSnapshot());
+        } else if (markerPipeline != null) {
+            markerPipeline.clear();
         }
 
-
+        // Klastry i kafelki też są odświeżane, tyle że rzadziej niż markery
+        long interval = currentZoom < MIN_ZOOM_LEVEL ? DATA_REFRESH_INTERVAL_LOW_ZOOM : MIN_API_CALL_INTERVAL;
         long currentTime = System.currentTimeMillis();
-        if (currentTime - lastApiCallTime >= MIN_API_CALL_INTERVAL || isInitialLoad) {
-            loadBusData(false);
+        if (currentTime - current.getFetchedAtMillis() >= interval || isInitialLoad) {
+            loadBusData(false, cameraIdleAtNanos);
             isInitialLoad = false;
         }
     }
@@ -515,14 +931,197 @@ public class MainActivity extends AppCompatActivity
         return visibleBuses;
     }
 
+    /**
+     * Finds the vehicles of a snapshot within the visible map bounds.
+     *
+     * Uses the spatial index of the snapshot, so only the grid cells overlapping the
+     * visible bounds are visited and no object is created per vehicle.
+     *
+     * @param snapshot The snapshot to filter.
+     * @param out Array receiving the vehicle indices; must hold at least {@code snapshot.size()} entries.
+     * @return The number of indices written to {@code out}.
+     */
+    int filterIndicesWithinBounds(FleetSnapshot snapshot, int[] out) {
+        Trace.beginSection(TRACE_FILTER_WITHIN_BOUNDS);
+        try {
+            if (visibleBounds == null) {
+                return 0;
+            }
+            return snapshot.getSpatialIndex().query(
+                    FleetSnapshot.toE6(visibleBounds.southwest.latitude),
+                    FleetSnapshot.toE6(visibleBounds.southwest.longitude),
+                    FleetSnapshot.toE6(visibleBounds.northeast.latitude),
+                    FleetSnapshot.toE6(visibleBounds.northeast.longitude),
+                    out);
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Displays the vehicles of a snapshot that are within the visible map bounds.
+     *
+     * Below {@link #DENSE_ZOOM_LEVEL} the vehicles are shown as clusters. Below
+     * {@link #MIN_ZOOM_LEVEL}, or when more than {@link #DENSE_MARKER_THRESHOLD} vehicles
+     * are visible, they are drawn as dots on tiles; otherwise as markers.
+     *
+     * @param snapshot The snapshot to display.
+     */
+    private void displayVisibleBuses(FleetSnapshot snapshot) {
+        if (mMap == null) return;
+
+        float zoom = mMap.getCameraPosition().zoom;
+        if (zoom < DENSE_ZOOM_LEVEL) {
+            displayClusters(snapshot);
+            return;
+        }
+        if (visibleIndices.length < snapshot.size()) {
+            visibleIndices = new int[snapshot.size()];
+        }
+        int count = filterIndicesWithinBounds(snapshot, visibleIndices);
+        if (zoom < MIN_ZOOM_LEVEL || count > DENSE_MARKER_THRESHOLD) {
+            displayTiles(snapshot);
+        } else {
+            displayBusesOnMap(snapshot, visibleIndices, count);
+        }
+    }
+
+    /**
+     * Draws the vehicles of a snapshot as dots on a tile overlay.
+     *
+     * Replaces the bus markers and cluster bubbles. Only the tiles touched by vehicles
+     * that moved since the previous snapshot are redrawn.
+     *
+     * @param snapshot The snapshot to display.
+     */
+    private void displayTiles(FleetSnapshot snapshot) {
+        if (markerPipeline != null) {
+            markerPipeline.clear();
+        }
+        if (clusterRenderer != null) {
+            clusterRenderer.clear();
+        }
+        if (tileOverlay == null) {
+            fleetTileProvider.setSnapshot(snapshot);
+            tileOverlay = mMap.addTileOverlay(new TileOverlayOptions()
+                    .tileProvider(fleetTileProvider)
+                    .fadeIn(false));
+            if (tileOverlay == null) return;
+        } else if (fleetTileProvider.setSnapshot(snapshot) > 0) {
+            tileOverlay.clearTileCache();
+        }
+        tileOverlay.setVisible(true);
+        Log.d("Tiles", "Kafelki: " + fleetTileProvider.getRenderCount() + " narysowanych, "
+                + fleetTileProvider.getHitCount() + " z pamięci, "
+                + fleetTileProvider.getInvalidationCount() + " unieważnionych");
+    }
+
+    /**
+     * Hides the tile overlay, if shown.
+     */
+    private void hideTiles() {
+        if (tileOverlay != null && tileOverlay.isVisible()) {
+            tileOverlay.setVisible(false);
+        }
+    }
+
+    /**
+     * Displays the vehicles of one line of a snapshot.
+     *
+     * @param snapshot The snapshot to display.
+     * @param line The line to display; if the snapshot has no vehicle of it, no bus is displayed.
+     */
+    private void displayLine(FleetSnapshot snapshot, String line) {
+        LineIndex lineIndex = snapshot.getLineIndex();
+        int slot = lineIndex.findSlot(snapshot.getDictionary().find(line));
+        if (slot == LineIndex.NOT_FOUND) {
+            displayBusesOnMap(snapshot, new int[0], 0);
+            return;
+        }
+
+        int[] indices = new int[lineIndex.getVehicleCount(slot)];
+        int count = lineIndex.copyVehicles(slot, indices);
+        displayBusesOnMap(snapshot, indices, count);
+    }
+
+    /**
+     * Displays a snapshot according to the current selection.
+     *
+     * Shows the selected line if there is one, otherwise the buses within the visible bounds.
+     *
+     * @param snapshot The snapshot to display.
+     */
+    private void displayCurrentBuses(FleetSnapshot snapshot) {
+        if (lineSelected && selectedLine != null) {
+            displayLine(snapshot, selectedLine);
+        } else {
+            displayVisibleBuses(snapshot);
+        }
+    }
+    /**
+     * Displays the precomputed clusters of a snapshot for the current zoom in the visible area.
+     *
+     * Replaces the bus markers and tiles, which are not shown below {@link #DENSE_ZOOM_LEVEL}.
+     *
+     * @param snapshot The snapshot holding the buses.
+     */
+    private void displayClusters(FleetSnapshot snapshot) {
+        if (mMap == null || visibleBounds == null) return;
+
+        if (markerPipeline != null) {
+            markerPipeline.clear();
+        }
+        hideTiles();
+        if (clusterRenderer == null) {
+            ClusterIconCache iconCache = new ClusterIconCache(this);
+            clusterRenderer = new ClusterRenderer(mMap, iconCache::get);
+        }
+        long start = System.nanoTime();
+        ClusterIndex.Level level = snapshot.getClusterIndex().getLevel(mMap.getCameraPosition().zoom);
+        clusterRenderer.render(level,
+                FleetSnapshot.toE6(visibleBounds.southwest.latitude),
+                FleetSnapshot.toE6(visibleBounds.southwest.longitude),
+                FleetSnapshot.toE6(visibleBounds.northeast.latitude),
+                FleetSnapshot.toE6(visibleBounds.northeast.longitude));
+        Log.d("Clusters", "Zoom " + level.getZoom() + ": " + clusterRenderer.size() + " klastrów w "
+                + (System.nanoTime() - start) / 1000 + " µs");
+    }
+
+    /**
+     * Returns the indices of all vehicles of a snapshot.
+     *
+     * @param snapshot The snapshot.
+     * @return Indices 0 to size - 1.
+     */
+    private static int[] allIndices(FleetSnapshot snapshot) {
+        int[] indices = new int[snapshot.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+
     /**
      * Fetches bus data from the Warsaw API and updates the map view.
      *
      * @param forced If true, forces data loading regardless of the last API call time.
      */
     private void loadBusData(boolean forced) {
+        loadBusData(forced, System.nanoTime());
+    }
+    /**
+     * Fetches bus data from the Warsaw API and updates the map view.
+     *
+     * If a download is already in flight the request attaches to it; if a download
+     * requested after {@code requestedAtNanos} has already completed, the request is
+     * dropped.
+     *
+     * @param forced If true, forces data loading regardless of the last API call time.
+     * @param requestedAtNanos Time the caller decided it needs data, in {@link System#nanoTime()} units.
+     */
+    private void loadBusData(boolean forced, long requestedAtNanos) {
         long currentTime = System.currentTimeMillis();
-        if (!forced && currentTime - lastApiCallTime < MIN_API_CALL_INTERVAL) {
+        if (!forced && currentTime - snapshotHolder.current().getFetchedAtMillis() < MIN_API_CALL_INTERVAL) {
             return;
         }
 
@@ -530,87 +1129,217 @@ public class MainActivity extends AppCompatActivity
             return;
         }
 
-        double minLat = visibleBounds.southwest.latitude;
-        double maxLat = visibleBounds.northeast.latitude;
-        double minLon = visibleBounds.southwest.longitude;
-        double maxLon = visibleBounds.northeast.longitude;
-
-        executorService.execute(() -> {
+        SingleFlight.Outcome outcome = fleetFetch.request(requestedAtNanos, null);
+        if (outcome != SingleFlight.Outcome.STARTED) {
+            Log.d("LoadBusData", "Żądanie " + outcome + " (dołączone: " + fleetFetch.getCoalescedCount()
+                    + ", pominięte: " + fleetFetch.getDroppedCount() + ")");
+        }
+    }
+    /**
+     * Downloads the fleet according to the current fetch plan and publishes it.
+     *
+     * Runs on the executor through {@link #fleetFetch}, so at most one download is in
+     * flight. The bus and tram feeds (or the selected lines) are downloaded concurrently
+     * on {@link #feedExecutor}, so the fetch takes as long as the slowest request. A feed
+     * that fails keeps its last data, so the other feed is still updated.
+     *
+     * The sequence number is taken when the download starts, so a response that arrives
+     * after the response of a newer download is dropped instead of published. The first
+     * fetch waits for the API client, which is built at startup in the background.
+     */
+    private void fetchFleet() {
+        Trace.beginSection(TRACE_LOAD_BUS_DATA);
+        try {
+            // Pierwsze pobranie czeka na klienta API budowanego w tle od onCreate; kolejne zastają go gotowego
             try {
-                // Jeśli API wspiera pobieranie na podstawie granic, użyj poniższego wywołania
-                // Call<ApiResponse> call = apiService.getBusesWithinBounds(
-                //         RESOURCE_ID,
-                //         API_KEY,
-                //         minLat,
-                //         maxLat,
-                //         minLon,
-                //         maxLon
-                // );
-
-                // Jeśli API nie wspiera, użyj istniejącego wywołania
-                Call<ApiResponse> call = apiService.getBuses(
-                        RESOURCE_ID,
-                        API_KEY,
-                        1,
-                        null,
-                        null
-                );
-
-                Response<ApiResponse> response = call.execute();
-
-                if (response.isSuccessful() && response.body() != null) {
-                    List<Bus> result = response.body().getResult();
-
-                    allBuses = result;
-                    lastLoadedBuses = new ArrayList<>(result);
-
-                    if (result == null || result.isEmpty()) {
-                        // Brak danych: Wyświetl ostatnio pobrane dane
-                        runOnUiThread(() -> {
-                            if (!lastLoadedBuses.isEmpty()) {
-                                Toast.makeText(MainActivity.this, "Brak nowych danych. Wyświetlam ostatnio pobrane dane z czasu: "
-                                        + formatTimestamp(lastApiCallTime), Toast.LENGTH_LONG).show();
-                                displayBusesOnMap(lastLoadedBuses);
-                            } else {
-                                Toast.makeText(MainActivity.this, "Brak danych do wyświetlenia.", Toast.LENGTH_LONG).show();
-                            }
-                        });
-                    } else {
+                apiClientReady.join();
+            } catch (CompletionException e) {
+                Log.e("LoadBusData", "Brak klienta API", e.getCause());
+                return;
+            }
+            long currentTime = System.currentTimeMillis();
+            long sequence = snapshotHolder.nextSequence();
+            FetchPlanner.Plan plan = fetchPlanner.plan();
+
+            byte[] types;
+            String[] lines;
+            if (plan.getMode() == FetchPlanner.Mode.FILTERED) {
+                lines = plan.getLines().toArray(new String[0]);
+                types = new byte[lines.length];
+                for (int i = 0; i < lines.length; i++) {
+                    types[i] = fleetFeeds.typeOfLine(lines[i]);
+                }
+            } else {
+                types = FleetFeeds.types();
+                lines = new String[types.length];
+            }
 
-                        lastLoadedBuses = result;
-                        lastApiCallTime = currentTime;
+            // Limit czasu zapytania rośnie z interwałem, aby wolne łącze zdążyło pobrać dane przy dłuższym interwale
+            long timeoutMillis = ApiClient.callTimeoutMillis(refreshScheduler.getLastDelayMillis());
+            List<Future<FleetSnapshot>> downloads = new ArrayList<>(types.length);
+            for (int i = 0; i < types.length; i++) {
+                byte type = types[i];
+                String line = lines[i];
+                downloads.add(feedExecutor.submit(() -> download(type, line, timeoutMillis)));
+            }
 
-                        runOnUiThread(() -> {
-                            List<Bus> visibleBuses = filterBusesWithinBounds(lastLoadedBuses);
-                            displayBusesOnMap(visibleBuses);
-                        });
-                    }
+            int succeeded = 0;
+            boolean connectionFailed = false;
+            for (int i = 0; i < types.length; i++) {
+                FleetSnapshot update;
+                try {
+                    update = downloads.get(i).get();
+                } catch (ExecutionException e) {
+                    Log.w("LoadBusData", "Błąd pobierania danych typu " + types[i], e.getCause());
+                    connectionFailed = true;
+                    update = null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                if (update == null) {
+                    fleetFeeds.onFailed(types[i]);
+                } else if (lines[i] == null) {
+                    fleetFeeds.onDownloaded(types[i], update);
+                    succeeded++;
                 } else {
+                    fleetFeeds.onLineDownloaded(types[i], lines[i], update);
+                    succeeded++;
+                }
+            }
 
-                    runOnUiThread(() -> {
-                        if (!lastLoadedBuses.isEmpty()) {
-                            Toast.makeText(MainActivity.this, "Błąd API. Wyświetlam ostatnio pobrane dane z czasu: "
-                                    + formatTimestamp(lastApiCallTime), Toast.LENGTH_LONG).show();
-                            displayBusesOnMap(lastLoadedBuses);
-                        } else {
-                            Toast.makeText(MainActivity.this, "Błąd API i brak danych do wyświetlenia.", Toast.LENGTH_LONG).show();
-                        }
-                    });
+            if (succeeded == 0) {
+                refreshScheduler.onFetchFailed();
+                if (connectionFailed) {
+                    showPreviousData("Błąd połączenia. Wyświetlam ostatnio pobrane dane z czasu: ",
+                            "Błąd połączenia i brak danych do wyświetlenia.");
+                } else {
+                    showPreviousData("Błąd API. Wyświetlam ostatnio pobrane dane z czasu: ",
+                            "Błąd API i brak danych do wyświetlenia.");
                 }
-            } catch (Exception e) {
+                return;
+            }
 
-                runOnUiThread(() -> {
-                    if (!lastLoadedBuses.isEmpty()) {
-                        Toast.makeText(MainActivity.this, "Błąd połączenia. Wyświetlam ostatnio pobrane dane z czasu: "
-                                + formatTimestamp(lastApiCallTime), Toast.LENGTH_LONG).show();
-                        displayBusesOnMap(lastLoadedBuses);
-                    } else {
-                        Toast.makeText(MainActivity.this, "Błąd połączenia i brak danych do wyświetlenia.", Toast.LENGTH_LONG).show();
-                    }
-                });
+            FleetSnapshot result = fleetFeeds.merge();
+            if (result.isEmpty()) {
+                refreshScheduler.onFetchSucceeded(false);
+                // Brak danych: Wyświetl ostatnio pobrane dane
+                showPreviousData("Brak nowych danych. Wyświetlam ostatnio pobrane dane z czasu: ",
+                        "Brak danych do wyświetlenia.");
+                return;
+            }
+
+            long indexStart = System.nanoTime();
+            result.getSpatialIndex();
+            result.getLineIndex();
+            result.getClusterIndex();
+            indexBuildTime.record(System.nanoTime() - indexStart);
+            SnapshotHolder.Version previous = snapshotHolder.current();
+            boolean changed = !result.hasSameReports(previous.getSnapshot());
+            refreshScheduler.onFetchSucceeded(changed);
+            if (snapshotHolder.publish(result, sequence, currentTime)) {
+                int recorded = positionHistory.record(result);
+                Log.d("PositionHistory", "Dopisano " + recorded + " pozycji, łącznie " + positionHistory.getTotalSamples()
+                        + " w " + positionHistory.getUsedBytes() / 1024 + " KiB");
+                if (changed || previous.isStale()) {
+                    runOnUiThread(() -> displayCurrentBuses(snapshotHolder.getSnapshot()));
+                }
+                if (currentTime - lastSavedAtMillis >= SNAPSHOT_SAVE_INTERVAL) {
+                    saveSnapshot(snapshotHolder.current());
+                }
+            } else {
+                Log.d("LoadBusData", "Pominięto nieaktualną odpowiedź nr " + sequence);
+            }
+        } finally {
+            Trace.endSection();
+        }
+    }
+    /**
+     * Restores the snapshot stored by a previous session and displays it as stale.
+     *
+     * Runs as a startup task on the executor that also saves snapshots, independently of the API
+     * client, and decodes the stored lines with the dictionary of the application.
+     *
+     * @param dictionary Dictionary shared with the snapshots decoded from the API.
+     * @return The restored snapshot, or null if none was stored.
+     */
+    private FleetSnapshot restoreSnapshot(FleetDictionary dictionary) {
+        long start = SystemClock.elapsedRealtime();
+        SnapshotStore.Stored stored = snapshotStore.load(dictionary, System.currentTimeMillis());
+        if (stored == null || stored.getSnapshot().isEmpty()) {
+            return null;
+        }
+
+        FleetSnapshot snapshot = stored.getSnapshot();
+        snapshot.getSpatialIndex();
+        snapshot.getLineIndex();
+        snapshot.getClusterIndex();
+        Log.d("SnapshotStore", "Odtworzono " + snapshot.size() + " pojazdów z czasu "
+                + formatTimestamp(stored.getFetchedAtMillis()) + " w " + (SystemClock.elapsedRealtime() - start) + " ms");
+
+        // Pojazdy z zapisu zastępują dane kanałów, które nie zostały jeszcze pobrane
+        fleetFeeds.seed(snapshot);
+        if (snapshotHolder.publishRestored(snapshot, stored.getFetchedAtMillis())) {
+            runOnUiThread(() -> {
+                SnapshotHolder.Version current = snapshotHolder.current();
+                if (current.isStale()) {
+                    displayCurrentBuses(current.getSnapshot());
+                }
+            });
+        }
+        return snapshot;
+    }
+    /**
+     * Writes a published snapshot to storage for the next cold start.
+     *
+     * Runs on the executor.
+     *
+     * @param version The published version to store.
+     */
+    private void saveSnapshot(SnapshotHolder.Version version) {
+        try {
+            snapshotStore.save(version.getSnapshot(), version.getFetchedAtMillis());
+            lastSavedAtMillis = version.getFetchedAtMillis();
+        } catch (IOException e) {
+            Log.w("SnapshotStore", "Nie udało się zapisać danych", e);
+        }
+    }
+    /**
+     * Shows a message and the last published data after a fetch brought no new data.
+     *
+     * @param message Message shown before the time of the last published data.
+     * @param emptyMessage Message shown if no data was published yet.
+     */
+    private void showPreviousData(String message, String emptyMessage) {
+        runOnUiThread(() -> {
+            SnapshotHolder.Version previous = snapshotHolder.current();
+            if (!previous.getSnapshot().isEmpty()) {
+                Toast.makeText(MainActivity.this, message
+                        + formatTimestamp(previous.getFetchedAtMillis()), Toast.LENGTH_LONG).show();
+                displayCurrentBuses(previous.getSnapshot());
+            } else {
+                Toast.makeText(MainActivity.this, emptyMessage, Toast.LENGTH_LONG).show();
             }
         });
     }
+    /**
+     * Downloads the vehicles of one feed, optionally only of one line.
+     *
+     * @param type Vehicle type of the feed, {@link FleetSnapshot#TYPE_BUS} or {@link FleetSnapshot#TYPE_TRAM}.
+     * @param line The line to download, or null for the whole feed.
+     * @param timeoutMillis Time the whole call may take, in milliseconds.
+     * @return The downloaded snapshot, possibly empty, or null if the API responded with an error.
+     * @throws IOException If the request fails or times out.
+     */
+    private FleetSnapshot download(byte type, String line, long timeoutMillis) throws IOException {
+        Trace.beginSection(TRACE_DOWNLOAD);
+        try {
+            return feedDownloader.download(type, line, timeoutMillis);
+        } finally {
+            Trace.endSection();
+        }
+    }
     /**
      * Formats a timestamp into a readable date-time string.
      *
@@ -623,90 +1352,158 @@ public class MainActivity extends AppCompatActivity
         return sdf.format(date);
     }
     /**
-     * Displays the list of buses on the map by adding markers.
+     * Displays the given buses of a snapshot on the map.
      *
-     * @param buses The list of buses to display.
+     * Markers of buses that are already on the map are moved, markers are added only for
+     * new buses and removed only for buses that are no longer displayed.
+     *
+     * @param snapshot The snapshot holding the buses.
+     * @param indices Indices of the buses to display.
+     * @param count Number of valid entries in {@code indices}.
      */
-    private void displayBusesOnMap(List<Bus> buses) {
-        if (mMap == null) return;
-
-
-        mMap.clear();
-
-
-
-        activeMarkers.clear();
-        for (Bus bus : buses) {
-            double lat = bus.getLat();
-            double lon = bus.getLon();
-            String line = bus.getLines();
-            String busId = bus.getVehicleNumber();
-
-            if (lat != 0 && lon != 0) {
-                LatLng position = new LatLng(lat, lon);
-                BitmapDescriptor icon = createCustomMarker(line);
-                MarkerOptions markerOptions = new MarkerOptions()
-                        .position(position)
-                        .title("Linia: " + line + " | Nr pojazdu: " + busId)
-                        .snippet(busId)
-                        .icon(icon)
-                        .anchor(0.5f, 1f); // Ustawienie kotwicy, aby marker był poprawnie wyświetlany
-
-                Marker marker = mMap.addMarker(markerOptions);
-                if (marker != null) {
-                    activeMarkers.put(busId, marker);
-                    if (busId.equals(selectedBusId)) {
-                        marker.showInfoWindow();
-                    }
-                }
+    private void displayBusesOnMap(FleetSnapshot snapshot, int[] indices, int count) {
+        Trace.beginSection(TRACE_DISPLAY_BUSES);
+        try {
+            if (mMap == null) return;
+
+            if (markerReconciler == null) {
+                markerReconciler = new MarkerReconciler(mMap, this::createCustomMarker);
+                markerAnimator = new MarkerAnimator();
+                markerReconciler.setAnimator(markerAnimator);
+                markerPipeline = new MarkerPipeline(markerReconciler, markerExecutor, handler::post,
+                        new FrameBudgetScheduler(FrameBudgetScheduler.DEFAULT_BUDGET_NANOS), this::onMarkersCommitted);
+                updateVisibleBounds();
+            }
+            if (clusterRenderer != null) {
+                clusterRenderer.clear();
             }
+            hideTiles();
+            SnapshotHolder.Version current = snapshotHolder.current();
+            markerReconciler.setStale(current.isStale() && current.getSnapshot() == snapshot);
+            LatLng center = mMap.getCameraPosition().target;
+            markerPipeline.submit(snapshot, indices, count, selectedBusId,
+                    FleetSnapshot.toE6(center.latitude), FleetSnapshot.toE6(center.longitude));
+        } finally {
+            Trace.endSection();
+        }
+    }
+    /**
+     * Called on the main thread once a marker pass has been applied to the map.
+     *
+     * Reports the main-thread cost of the pass and, once, the time to the first marker.
+     *
+     * @param markers Number of markers in the pass.
+     * @param frames Number of frames the pass was applied in.
+     * @param prepareNanos Time spent preparing the pass on the worker, in nanoseconds.
+     * @param mainThreadNanos Time spent applying the pass on the main thread, in nanoseconds.
+     */
+    private void onMarkersCommitted(int markers, int frames, long prepareNanos, long mainThreadNanos) {
+        Log.d("MarkerPipeline", markers + " markerów: przygotowanie " + prepareNanos / 1000 + " µs, wątek główny "
+                + mainThreadNanos / 1000 + " µs w " + frames + " klatkach");
+        markerPasses.increment();
+        markerPrepareTime.record(prepareNanos);
+        renderMainThreadTime.record(mainThreadNanos);
+        renderFrames.record(frames);
+        long operations = markerReconciler.getOperationCount();
+        markerOperations.record(operations - lastOperationCount);
+        lastOperationCount = operations;
+        MarkerIconCache icons = iconCacheReady.getNow(null);
+        long iconRequests = icons != null ? (long) icons.getHitCount() + icons.getMissCount() : 0;
+        if (iconRequests > 0) {
+            iconHitRate.set(icons.getHitCount() / (double) iconRequests);
+        }
+
+        if (!firstMarkerLogged && markerReconciler.size() > 0) {
+            firstMarkerLogged = true;
+            Log.i("ColdStart", "Pierwszy marker po " + (SystemClock.uptimeMillis() - Process.getStartUptimeMillis())
+                    + " ms od startu procesu (" + (snapshotHolder.current().isStale() ? "zapisane dane" : "dane z sieci") + ")");
         }
     }
     /**
-     * Creates a custom marker icon with the bus line text.
+     * Returns the marker icon with the bus line text.
+     *
+     * Icons are rendered once per line and served from {@link #iconCacheReady} afterwards;
+     * the first call waits for the cache to be created.
+     * Called on the marker worker thread; the cache is thread-safe.
      *
      * @param line The bus line to display on the marker.
      * @return A BitmapDescriptor representing the custom marker icon.
      */
     private BitmapDescriptor createCustomMarker(String line) {
-        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        textPaint.setTextSize(50);
-        textPaint.setColor(Color.BLACK);
-        textPaint.setTextAlign(Paint.Align.CENTER);
-
-        Paint backgroundPaint = new Paint();
-        backgroundPaint.setColor(Color.WHITE);
-
-        Rect textBounds = new Rect();
-        textPaint.getTextBounds(line, 0, line.length(), textBounds);
-
-        int textWidth = textBounds.width() + 20;
-        int textHeight = textBounds.height() + 20;
-
-
-        int pinWidth = 124;
-        int pinHeight = 212;
-
-        int width = Math.max(textWidth, pinWidth);
-        int height = textHeight + pinHeight;
-
-        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
-        Canvas canvas = new Canvas(bitmap);
-
-
-        canvas.drawRect(0, 0, width, textHeight, backgroundPaint);
-
-
-        canvas.drawText(line, width / 2, textHeight - 10, textPaint);
-
-
-        Drawable drawable = ContextCompat.getDrawable(this, R.drawable.ic_marker_icon);
-        if (drawable != null) {
-            drawable.setBounds((width - pinWidth) / 2, textHeight, (width + pinWidth) / 2, height);
-            drawable.draw(canvas);
+        Trace.beginSection(TRACE_CREATE_MARKER);
+        try {
+            return iconCacheReady.join().get(line);
+        } finally {
+            Trace.endSection();
+        }
+    }
+    /**
+     * Looks up the metrics recorded by this activity.
+     *
+     * The metrics are looked up once, so that recording them costs no map lookups.
+     *
+     * @param registry The metrics registry of the application.
+     */
+    private void initMetrics(MetricsRegistry registry) {
+        metrics = registry;
+        parseTime = registry.histogram("decode.parse", Histogram.Unit.NANOSECONDS);
+        indexBuildTime = registry.histogram("index.build", Histogram.Unit.NANOSECONDS);
+        markerOperations = registry.histogram("markers.operations", Histogram.Unit.COUNT);
+        markerPrepareTime = registry.histogram("markers.prepare", Histogram.Unit.NANOSECONDS);
+        renderMainThreadTime = registry.histogram("render.main_thread", Histogram.Unit.NANOSECONDS);
+        renderFrames = registry.histogram("render.frames", Histogram.Unit.COUNT);
+        markerPasses = registry.counter("markers.passes");
+        iconHitRate = registry.gauge("icons.hit_rate");
+        refreshDelay = registry.histogram("refresh.delay", Histogram.Unit.NANOSECONDS);
+        RefreshScheduler.Reason[] reasons = RefreshScheduler.Reason.values();
+        refreshReasons = new Counter[reasons.length];
+        for (RefreshScheduler.Reason reason : reasons) {
+            refreshReasons[reason.ordinal()] = registry.counter(
+                    "refresh.reason." + reason.name().toLowerCase(Locale.ROOT));
+        }
+    }
+    /**
+     * Shows the debug overlay with the metrics, or hides it if it is visible.
+     *
+     * The overlay is refreshed every second while it is visible.
+     */
+    private void toggleDebugOverlay() {
+        handler.removeCallbacks(debugOverlayRunnable);
+        if (debugOverlay.getVisibility() == View.VISIBLE) {
+            debugOverlay.setVisibility(View.GONE);
+        } else {
+            debugOverlay.setVisibility(View.VISIBLE);
+            debugOverlayRunnable.run();
         }
-
-        return BitmapDescriptorFactory.fromBitmap(bitmap);
+    }
+    /**
+     * Writes all metrics to a file in the external files directory of the app.
+     *
+     * The file can be pulled from a field device with adb for offline analysis.
+     */
+    private void dumpMetrics() {
+        File base = getExternalFilesDir(null);
+        File directory = new File(base != null ? base : getFilesDir(), METRICS_DIRECTORY);
+        long now = System.currentTimeMillis();
+        File file = new File(directory, "metrics-" + now + ".txt");
+        executorService.execute(() -> {
+            String message;
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                message = "Nie udało się utworzyć katalogu " + directory;
+            } else {
+                try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                    out.write("# " + formatTimestamp(now) + " " + Build.MANUFACTURER + " " + Build.MODEL
+                            + " Android " + Build.VERSION.RELEASE + "\n");
+                    metrics.dump(out);
+                    message = "Zapisano metryki do " + file;
+                } catch (IOException e) {
+                    Log.w("Metrics", "Nie udało się zapisać metryk", e);
+                    message = "Nie udało się zapisać metryk";
+                }
+            }
+            String result = message;
+            runOnUiThread(() -> Toast.makeText(MainActivity.this, result, Toast.LENGTH_LONG).show());
+        });
     }
     /**
      * Called when the user's current location is clicked on the map.
@@ -765,6 +1562,7 @@ public class MainActivity extends AppCompatActivity
         super.onDestroy();
         if (handler != null) {
             handler.removeCallbacks(runnable);
+            handler.removeCallbacks(debugOverlayRunnable);
             if (mapUpdateRunnable != null) {
                 handler.removeCallbacks(mapUpdateRunnable);
             }
@@ -773,5 +1571,11 @@ public class MainActivity extends AppCompatActivity
         if (executorService != null && !executorService.isShutdown()) {
             executorService.shutdown();
         }
+        if (feedExecutor != null && !feedExecutor.isShutdown()) {
+            feedExecutor.shutdown();
+        }
+        if (markerExecutor != null && !markerExecutor.isShutdown()) {
+            markerExecutor.shutdown();
+        }
     }
 }
@@ -0,0 +1,134 @@
+package pl.creativesstudio;
+
+import android.app.Application;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+
+import okhttp3.Cache;
+import pl.creativesstudio.api.ApiClient;
+import pl.creativesstudio.api.CallTimingListener;
+import pl.creativesstudio.metrics.Counter;
+import pl.creativesstudio.metrics.Histogram;
+import pl.creativesstudio.metrics.MetricsRegistry;
+import pl.creativesstudio.models.FleetDictionary;
+
+/**
+ * @file TrackMyBusApplication.java
+ * @brief Application class holding application-wide services.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class TrackMyBusApplication extends Application {
+    /**
+     * Name of the HTTP cache directory within the cache directory of the application.
+     */
+    private static final String HTTP_CACHE_DIRECTORY = "http";
+
+    /**
+     * The shared API client, created on first use.
+     */
+    private ApiClient apiClient;
+    /**
+     * Metrics of the hot paths of the application.
+     */
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    /**
+     * Dictionary shared by the API client and the stored snapshots.
+     */
+    private final FleetDictionary dictionary = new FleetDictionary();
+
+    /**
+     * Returns the shared API client, creating it on first use.
+     *
+     * @return The API client, talking to the API of the build.
+     */
+    public synchronized ApiClient getApiClient() {
+        return getApiClient(BuildConfig.API_BASE_URL);
+    }
+
+    /**
+     * Returns the shared API client for a base URL.
+     *
+     * If the shared client talks to another URL, it is replaced; debug builds use this to
+     * point the app at a local replay server.
+     *
+     * @param baseUrl Base URL of the API.
+     * @return The API client.
+     */
+    public synchronized ApiClient getApiClient(String baseUrl) {
+        if (apiClient != null && !apiClient.getBaseUrl().equals(baseUrl)) {
+            Cache cache = apiClient.getHttpClient().cache();
+            try {
+                if (cache != null) {
+                    cache.close();
+                }
+            } catch (IOException e) {
+                Log.w("ApiClient", "Nie udało się zamknąć pamięci podręcznej HTTP", e);
+            }
+            apiClient = null;
+        }
+        if (apiClient == null) {
+            apiClient = new ApiClient(new File(getCacheDir(), HTTP_CACHE_DIRECTORY), baseUrl, dictionary);
+            apiClient.getTimingFactory().setSink(timingSink());
+        }
+        return apiClient;
+    }
+
+    /**
+     * Returns the dictionary shared by all snapshots of the application.
+     *
+     * Available without the API client, so a stored snapshot can be restored before the
+     * client is built.
+     *
+     * @return The dictionary.
+     */
+    public FleetDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the metrics of the hot paths of the application.
+     *
+     * @return The metrics registry.
+     */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Creates the receiver recording the timings of API calls into the metrics.
+     *
+     * DNS and connection times are recorded only for calls that looked up or opened a
+     * connection, so reused connections do not hide the cost of new ones.
+     *
+     * @return The receiver.
+     */
+    private CallTimingListener.Sink timingSink() {
+        Histogram latency = metrics.histogram("fetch.latency", Histogram.Unit.NANOSECONDS);
+        Histogram dns = metrics.histogram("fetch.dns", Histogram.Unit.NANOSECONDS);
+        Histogram connect = metrics.histogram("fetch.connect", Histogram.Unit.NANOSECONDS);
+        Histogram timeToFirstByte = metrics.histogram("fetch.ttfb", Histogram.Unit.NANOSECONDS);
+        Histogram body = metrics.histogram("fetch.body", Histogram.Unit.NANOSECONDS);
+        Histogram payload = metrics.histogram("fetch.payload_bytes", Histogram.Unit.BYTES);
+        Counter failures = metrics.counter("fetch.failures");
+        return timings -> {
+            if (timings.isFailed()) {
+                failures.increment();
+                return;
+            }
+            latency.record(timings.getTotalNanos());
+            if (timings.getDnsNanos() > 0) {
+                dns.record(timings.getDnsNanos());
+            }
+            if (timings.getConnectNanos() > 0) {
+                connect.record(timings.getConnectNanos());
+            }
+            timeToFirstByte.record(timings.getTimeToFirstByteNanos());
+            body.record(timings.getBodyNanos());
+            payload.record(timings.getBodyBytes());
+        };
+    }
+}
@@ -0,0 +1,200 @@
+package pl.creativesstudio.api;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import pl.creativesstudio.models.FleetDictionary;
+import retrofit2.Retrofit;
+import retrofit2.converter.gson.GsonConverterFactory;
+
+/**
+ * @file ApiClient.java
+ * @brief Application-wide HTTP client and Warsaw API service.
+ *
+ * One instance is kept by the application, so activities created again (for example after
+ * a rotation) reuse the same connection pool, HTTP cache and decoding dictionary instead of
+ * building a new client each time.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class ApiClient {
+    /**
+     * Base URL for the Warsaw API.
+     */
+    public static final String BASE_URL = "https://api.um.warszawa.pl/";
+    /**
+     * Default and shortest time of a whole call, in milliseconds.
+     *
+     * Kept below the shortest polling interval (5 s), so a hung call ends before the next
+     * poll instead of overlapping it.
+     */
+    static final long CALL_TIMEOUT_MILLIS = 4500;
+    /**
+     * Longest time of a whole call, in milliseconds, however long the polling interval.
+     */
+    static final long MAX_CALL_TIMEOUT_MILLIS = 30000;
+    /**
+     * Share of the polling interval, in percent, a call may take.
+     */
+    private static final long CALL_TIMEOUT_PERCENT = 90;
+    /**
+     * Maximum time to establish a connection, in milliseconds.
+     */
+    static final long CONNECT_TIMEOUT_MILLIS = 3000;
+    /**
+     * Maximum time between two reads of a response, in milliseconds.
+     */
+    static final long READ_TIMEOUT_MILLIS = 4000;
+    /**
+     * Maximum number of idle connections kept for reuse: both feeds and a few line requests.
+     */
+    static final int MAX_IDLE_CONNECTIONS = 4;
+    /**
+     * Time an idle connection is kept, in minutes; longer than the longest polling interval.
+     */
+    static final long KEEP_ALIVE_MINUTES = 2;
+    /**
+     * Maximum size of the on-disk HTTP cache, in bytes.
+     */
+    static final long CACHE_SIZE_BYTES = 10L * 1024 * 1024;
+
+    /**
+     * Base URL of the API the client talks to.
+     */
+    private final String baseUrl;
+    /**
+     * The shared HTTP client.
+     */
+    private final OkHttpClient httpClient;
+    /**
+     * The Warsaw API service.
+     */
+    private final WarsawApiService service;
+    /**
+     * Dictionary shared by all decoded snapshots.
+     */
+    private final FleetDictionary dictionary;
+    /**
+     * Interceptor negotiating and counting gzip compression.
+     */
+    private final GzipInterceptor gzipInterceptor = new GzipInterceptor();
+    /**
+     * Interceptor recording the responses into an archive on request.
+     */
+    private final FeedRecorder feedRecorder = new FeedRecorder();
+    /**
+     * Factory of the listeners timing busestrams_get calls.
+     */
+    private final CallTimingListener.Factory timingFactory = new CallTimingListener.Factory();
+
+    /**
+     * Constructs a new ApiClient.
+     *
+     * @param cacheDirectory Directory of the HTTP cache.
+     * @param baseUrl Base URL of the API.
+     * @param dictionary Dictionary shared by all decoded snapshots.
+     */
+    public ApiClient(File cacheDirectory, String baseUrl, FleetDictionary dictionary) {
+        this.baseUrl = baseUrl;
+        this.dictionary = dictionary;
+        httpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .callTimeout(CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .cache(new Cache(cacheDirectory, CACHE_SIZE_BYTES))
+                .addInterceptor(feedRecorder)
+                .addInterceptor(gzipInterceptor)
+                .eventListenerFactory(timingFactory)
+                .build();
+
+        Retrofit retrofit = new Retrofit.Builder()
+                .baseUrl(baseUrl)
+                .client(httpClient)
+                .addConverterFactory(BusesConverterFactory.create(dictionary))
+                .addConverterFactory(GsonConverterFactory.create())
+                .build();
+        service = retrofit.create(WarsawApiService.class);
+    }
+
+    /**
+     * Returns the time a whole call may take before a poll with the given interval.
+     *
+     * A call may take most of the interval, so a slow link that cannot download the feed
+     * within the shortest interval still gets it once the interval is stretched.
+     *
+     * @param intervalMillis The polling interval, in milliseconds; 0 or negative if unknown.
+     * @return The timeout, from {@link #CALL_TIMEOUT_MILLIS} to {@link #MAX_CALL_TIMEOUT_MILLIS}.
+     */
+    public static long callTimeoutMillis(long intervalMillis) {
+        long timeout = intervalMillis * CALL_TIMEOUT_PERCENT / 100;
+        return Math.max(CALL_TIMEOUT_MILLIS, Math.min(MAX_CALL_TIMEOUT_MILLIS, timeout));
+    }
+
+    /**
+     * Returns the base URL of the API the client talks to.
+     *
+     * @return The base URL.
+     */
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    /**
+     * Returns the Warsaw API service.
+     *
+     * @return The service.
+     */
+    public WarsawApiService getService() {
+        return service;
+    }
+
+    /**
+     * Returns the shared HTTP client.
+     *
+     * @return The client.
+     */
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Returns the dictionary shared by all decoded snapshots.
+     *
+     * @return The dictionary.
+     */
+    public FleetDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the interceptor counting gzip compression.
+     *
+     * @return The interceptor.
+     */
+    public GzipInterceptor getGzipInterceptor() {
+        return gzipInterceptor;
+    }
+
+    /**
+     * Returns the interceptor recording the responses.
+     *
+     * @return The recorder.
+     */
+    public FeedRecorder getFeedRecorder() {
+        return feedRecorder;
+    }
+
+    /**
+     * Returns the factory of the listeners timing busestrams_get calls.
+     *
+     * @return The factory.
+     */
+    public CallTimingListener.Factory getTimingFactory() {
+        return timingFactory;
+    }
+}
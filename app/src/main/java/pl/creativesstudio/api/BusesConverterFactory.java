@@ -0,0 +1,69 @@
+package pl.creativesstudio.api;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import okhttp3.ResponseBody;
+import pl.creativesstudio.models.ApiResponse;
+import pl.creativesstudio.models.FleetDictionary;
+import retrofit2.Converter;
+import retrofit2.Retrofit;
+
+/**
+ * @file BusesConverterFactory.java
+ * @brief Retrofit converter factory for busestrams_get responses.
+ *
+ * Handles {@link ApiResponse} bodies with {@link BusesJsonDecoder}; every other type is
+ * left to the converter factories registered after this one.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class BusesConverterFactory extends Converter.Factory {
+    /**
+     * Decoder shared by all converted responses.
+     */
+    private final BusesJsonDecoder decoder;
+
+    /**
+     * Constructs a new BusesConverterFactory.
+     *
+     * @param decoder Decoder shared by all converted responses.
+     */
+    private BusesConverterFactory(BusesJsonDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    /**
+     * Creates a converter factory with its own decoder.
+     *
+     * @return A new BusesConverterFactory.
+     */
+    public static BusesConverterFactory create() {
+        return new BusesConverterFactory(new BusesJsonDecoder());
+    }
+
+    /**
+     * Creates a converter factory decoding into snapshots that share the given dictionary.
+     *
+     * @param dictionary Dictionary used to map repeated strings to ids.
+     * @return A new BusesConverterFactory.
+     */
+    public static BusesConverterFactory create(FleetDictionary dictionary) {
+        return new BusesConverterFactory(new BusesJsonDecoder(dictionary));
+    }
+
+    @Override
+    public Converter<ResponseBody, ?> responseBodyConverter(Type type, Annotation[] annotations, Retrofit retrofit) {
+        if (type != ApiResponse.class) {
+            return null;
+        }
+        return body -> {
+            try {
+                return decoder.decode(body.charStream());
+            } finally {
+                body.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package pl.creativesstudio.api;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import pl.creativesstudio.models.ApiResponse;
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file BusesJsonDecoder.java
+ * @brief Streaming decoder for busestrams_get responses.
+ *
+ * Reads the response token by token instead of building it reflectively and writes the
+ * records straight into a {@link FleetSnapshot}. Fields it does not know are skipped and
+ * the line, brigade and vehicle number strings that repeat in every response are mapped
+ * to ids of a shared {@link FleetDictionary}.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class BusesJsonDecoder {
+    /**
+     * Dictionary shared by all responses decoded by this instance.
+     */
+    private final FleetDictionary dictionary;
+    /**
+     * Number of records in the previous response, used to size the next snapshot.
+     */
+    private volatile int lastRecordCount = 64;
+
+    /**
+     * Constructs a new BusesJsonDecoder with its own dictionary.
+     */
+    public BusesJsonDecoder() {
+        this(new FleetDictionary());
+    }
+
+    /**
+     * Constructs a new BusesJsonDecoder.
+     *
+     * @param dictionary Dictionary used to map repeated strings to ids.
+     */
+    public BusesJsonDecoder(FleetDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Returns the dictionary the decoded snapshots refer to.
+     *
+     * @return The dictionary.
+     */
+    public FleetDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Decodes a complete busestrams_get response.
+     *
+     * When the API reports an error it sends a message string instead of the result
+     * array; in that case the returned response has a null result.
+     *
+     * @param body Reader over the response body.
+     * @return The decoded response holding a {@link FleetSnapshot}, with the parse time recorded.
+     * @throws IOException If the body cannot be read or is not valid JSON.
+     */
+    public ApiResponse decode(Reader body) throws IOException {
+        long start = System.nanoTime();
+        ApiResponse response = new ApiResponse();
+
+        JsonReader reader = new JsonReader(body);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("result") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                response.setSnapshot(readSnapshot(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        response.setParseTimeNanos(System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * Reads the array of bus records into a snapshot.
+     *
+     * @param reader Reader positioned at the start of the array.
+     * @return The decoded snapshot.
+     * @throws IOException If the array cannot be read.
+     */
+    private FleetSnapshot readSnapshot(JsonReader reader) throws IOException {
+        FleetSnapshot.Builder builder = new FleetSnapshot.Builder(dictionary, lastRecordCount);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            readRecord(reader, builder);
+        }
+        reader.endArray();
+        lastRecordCount = builder.size();
+        return builder.build();
+    }
+
+    /**
+     * Reads a single bus record and appends it to the snapshot.
+     *
+     * @param reader Reader positioned at the start of the record.
+     * @param builder Snapshot the record is appended to.
+     * @throws IOException If the record cannot be read.
+     */
+    private void readRecord(JsonReader reader, FleetSnapshot.Builder builder) throws IOException {
+        int lineId = FleetDictionary.NO_ID;
+        int vehicleId = FleetDictionary.NO_ID;
+        int brigadeId = FleetDictionary.NO_ID;
+        double lat = 0;
+        double lon = 0;
+        long time = BusTime.UNKNOWN;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "Lines":
+                    lineId = dictionary.idOf(reader.nextString());
+                    break;
+                case "Lon":
+                    lon = reader.nextDouble();
+                    break;
+                case "Lat":
+                    lat = reader.nextDouble();
+                    break;
+                case "Time":
+                    time = BusTime.parse(reader.nextString());
+                    break;
+                case "VehicleNumber":
+                    vehicleId = dictionary.idOf(reader.nextString());
+                    break;
+                case "Brigade":
+                    brigadeId = dictionary.idOf(reader.nextString());
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        builder.add(lineId, FleetSnapshot.toE6(lat), FleetSnapshot.toE6(lon), time, vehicleId, brigadeId);
+    }
+}
@@ -0,0 +1,322 @@
+package pl.creativesstudio.api;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+/**
+ * @file CallTimingListener.java
+ * @brief Records the phases of every busestrams_get call.
+ *
+ * For each call the DNS lookup, connection setup (including TLS), time to first byte and
+ * body read time are measured. The body is decoded while it is read, so the body read time
+ * includes decoding. Calls to other endpoints are ignored.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class CallTimingListener extends EventListener {
+    /**
+     * Path segment identifying calls to measure.
+     */
+    static final String MEASURED_PATH = "busestrams_get";
+
+    /**
+     * @brief Receives the timings of completed calls.
+     */
+    public interface Sink {
+        /**
+         * Called when a measured call completes or fails.
+         *
+         * @param timings The timings of the call.
+         */
+        void onCallTimed(Timings timings);
+    }
+
+    /**
+     * @class Timings
+     * @brief Immutable phase durations of one call, in nanoseconds.
+     *
+     * A phase that did not happen, such as DNS on a reused connection, has the duration 0.
+     */
+    public static final class Timings {
+        /**
+         * Duration of the DNS lookup.
+         */
+        private final long dnsNanos;
+        /**
+         * Duration of the connection setup, including TLS.
+         */
+        private final long connectNanos;
+        /**
+         * Time from the start of the call to the first response header byte.
+         */
+        private final long timeToFirstByteNanos;
+        /**
+         * Duration of reading the response body.
+         */
+        private final long bodyNanos;
+        /**
+         * Duration of the whole call.
+         */
+        private final long totalNanos;
+        /**
+         * Number of body bytes read.
+         */
+        private final long bodyBytes;
+        /**
+         * Whether the call failed.
+         */
+        private final boolean failed;
+
+        /**
+         * Constructs a new Timings.
+         *
+         * @param dnsNanos Duration of the DNS lookup.
+         * @param connectNanos Duration of the connection setup, including TLS.
+         * @param timeToFirstByteNanos Time from the start of the call to the first response header byte.
+         * @param bodyNanos Duration of reading the response body.
+         * @param totalNanos Duration of the whole call.
+         * @param bodyBytes Number of body bytes read.
+         * @param failed Whether the call failed.
+         */
+        Timings(long dnsNanos, long connectNanos, long timeToFirstByteNanos, long bodyNanos,
+                long totalNanos, long bodyBytes, boolean failed) {
+            this.dnsNanos = dnsNanos;
+            this.connectNanos = connectNanos;
+            this.timeToFirstByteNanos = timeToFirstByteNanos;
+            this.bodyNanos = bodyNanos;
+            this.totalNanos = totalNanos;
+            this.bodyBytes = bodyBytes;
+            this.failed = failed;
+        }
+
+        /**
+         * Returns the duration of the DNS lookup.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long getDnsNanos() { return dnsNanos; }
+        /**
+         * Returns the duration of the connection setup, including TLS.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long getConnectNanos() { return connectNanos; }
+        /**
+         * Returns the time from the start of the call to the first response byte.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long getTimeToFirstByteNanos() { return timeToFirstByteNanos; }
+        /**
+         * Returns the duration of reading and decoding the body.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long getBodyNanos() { return bodyNanos; }
+        /**
+         * Returns the duration of the whole call.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long getTotalNanos() { return totalNanos; }
+        /**
+         * Returns the number of body bytes read.
+         *
+         * @return The byte count.
+         */
+        public long getBodyBytes() { return bodyBytes; }
+        /**
+         * Checks whether the call failed.
+         *
+         * @return True if the call failed.
+         */
+        public boolean isFailed() { return failed; }
+
+        @Override
+        public String toString() {
+            return "dns=" + dnsNanos / 1_000_000 + "ms connect=" + connectNanos / 1_000_000
+                    + "ms ttfb=" + timeToFirstByteNanos / 1_000_000 + "ms body=" + bodyNanos / 1_000_000
+                    + "ms total=" + totalNanos / 1_000_000 + "ms bytes=" + bodyBytes
+                    + (failed ? " failed" : "");
+        }
+    }
+
+    /**
+     * @class Factory
+     * @brief Creates a listener for every measured call and keeps the latest timings.
+     */
+    public static final class Factory implements EventListener.Factory {
+        /**
+         * Optional receiver of the timings of every call.
+         */
+        private volatile Sink sink;
+        /**
+         * Timings of the most recently completed measured call.
+         */
+        private volatile Timings last;
+
+        @Override
+        public EventListener create(Call call) {
+            if (!call.request().url().encodedPath().contains(MEASURED_PATH)) {
+                return EventListener.NONE;
+            }
+            return new CallTimingListener(this);
+        }
+
+        /**
+         * Sets the receiver of the timings of every call.
+         *
+         * @param sink The receiver, or null.
+         */
+        public void setSink(Sink sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Returns the timings of the most recently completed measured call.
+         *
+         * @return The timings, or null if no call completed yet.
+         */
+        public Timings getLast() {
+            return last;
+        }
+
+        /**
+         * Stores and forwards the timings of a completed call.
+         *
+         * @param timings The timings.
+         */
+        void record(Timings timings) {
+            last = timings;
+            Sink current = sink;
+            if (current != null) {
+                current.onCallTimed(timings);
+            }
+        }
+    }
+
+    /**
+     * Factory receiving the timings of this call.
+     */
+    private final Factory factory;
+    /**
+     * Start of the call.
+     */
+    private long callStart;
+    /**
+     * Start of the DNS lookup.
+     */
+    private long dnsStart;
+    /**
+     * Accumulated DNS lookup time.
+     */
+    private long dnsNanos;
+    /**
+     * Start of the connection setup.
+     */
+    private long connectStart;
+    /**
+     * Accumulated connection setup time.
+     */
+    private long connectNanos;
+    /**
+     * Time the first response header byte arrived, measured from the call start.
+     */
+    private long timeToFirstByte;
+    /**
+     * Start of the body read.
+     */
+    private long bodyStart;
+    /**
+     * Duration of the body read.
+     */
+    private long bodyNanos;
+    /**
+     * Number of body bytes read.
+     */
+    private long bodyBytes;
+
+    /**
+     * Constructs a new CallTimingListener.
+     *
+     * @param factory Factory receiving the timings of this call.
+     */
+    private CallTimingListener(Factory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public void callStart(Call call) {
+        callStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        dnsNanos += System.nanoTime() - dnsStart;
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        connectNanos += System.nanoTime() - connectStart;
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                              Protocol protocol, IOException ioe) {
+        connectNanos += System.nanoTime() - connectStart;
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        timeToFirstByte = System.nanoTime() - callStart;
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        bodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        bodyNanos = System.nanoTime() - bodyStart;
+        bodyBytes = byteCount;
+    }
+
+    @Override
+    public void callEnd(Call call) {
+        finish(false);
+    }
+
+    @Override
+    public void callFailed(Call call, IOException ioe) {
+        finish(true);
+    }
+
+    /**
+     * Hands the timings of the finished call to the factory.
+     *
+     * @param failed Whether the call failed.
+     */
+    private void finish(boolean failed) {
+        factory.record(new Timings(dnsNanos, connectNanos, timeToFirstByte, bodyNanos,
+                System.nanoTime() - callStart, bodyBytes, failed));
+    }
+}
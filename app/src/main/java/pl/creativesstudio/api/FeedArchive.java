@@ -0,0 +1,365 @@
+package pl.creativesstudio.api;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @file FeedArchive.java
+ * @brief Append-only file of raw busestrams_get responses with the time they were received.
+ *
+ * Written by {@link FeedRecorder} and served again by the replay server, so the polling,
+ * decoding and rendering can be exercised offline on real data. Every record holds the
+ * receive time, a key made of the request parameters that select the data (the API key is
+ * never stored) and the deflated body. A record cut short by a killed process ends the
+ * archive; the records before it stay readable, and the first append of a new session cuts
+ * the partial record off before writing after it.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class FeedArchive {
+    /**
+     * Magic number at the start of the file ("TMBF").
+     */
+    static final int MAGIC = 0x544D4246;
+    /**
+     * Version of the file format.
+     */
+    static final int FORMAT_VERSION = 1;
+    /**
+     * Upper bound of the body size accepted when reading, in bytes.
+     */
+    private static final int MAX_BODY_BYTES = 64 << 20;
+
+    /**
+     * @class Record
+     * @brief One recorded response.
+     */
+    public static final class Record {
+        /**
+         * Time the response was received, in epoch milliseconds.
+         */
+        private final long receivedAtMillis;
+        /**
+         * Key of the request, see {@link FeedArchive#key}.
+         */
+        private final String key;
+        /**
+         * Size of the body, in bytes.
+         */
+        private final int bodyLength;
+        /**
+         * The deflated body.
+         */
+        private final byte[] compressed;
+
+        /**
+         * Constructs a new Record.
+         *
+         * @param receivedAtMillis Time the response was received, in epoch milliseconds.
+         * @param key Key of the request.
+         * @param bodyLength Size of the body, in bytes.
+         * @param compressed The deflated body.
+         */
+        Record(long receivedAtMillis, String key, int bodyLength, byte[] compressed) {
+            this.receivedAtMillis = receivedAtMillis;
+            this.key = key;
+            this.bodyLength = bodyLength;
+            this.compressed = compressed;
+        }
+
+        /**
+         * Returns the time the response was received.
+         *
+         * @return Epoch milliseconds.
+         */
+        public long getReceivedAtMillis() { return receivedAtMillis; }
+        /**
+         * Returns the key of the request.
+         *
+         * @return The key.
+         */
+        public String getKey() { return key; }
+        /**
+         * Returns the size of the body.
+         *
+         * @return The size, in bytes.
+         */
+        public int getBodyLength() { return bodyLength; }
+        /**
+         * Returns the size of the body as stored.
+         *
+         * @return The size, in bytes.
+         */
+        public int getCompressedLength() { return compressed.length; }
+
+        /**
+         * Inflates the body.
+         *
+         * Bodies are kept deflated in memory, so a long archive can be loaded whole.
+         *
+         * @return The response body.
+         * @throws IOException If the stored body is corrupted.
+         */
+        public byte[] getBody() throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                byte[] body = new byte[bodyLength];
+                int length = 0;
+                while (length < bodyLength && !inflater.finished()) {
+                    int read = inflater.inflate(body, length, bodyLength - length);
+                    if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += read;
+                }
+                if (length != bodyLength) {
+                    throw new IOException("Truncated record body");
+                }
+                return body;
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted record body", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * The archive file.
+     */
+    private final File file;
+    /**
+     * Whether a partial record at the end of the file has been cut off; checked once, before
+     * the first append.
+     */
+    private boolean repaired;
+
+    /**
+     * Constructs a new FeedArchive.
+     *
+     * @param file The archive file; created on the first append.
+     */
+    public FeedArchive(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the archive file.
+     *
+     * @return The file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Builds the key of a request from the parameters that select the data.
+     *
+     * @param type Value of the {@code type} parameter.
+     * @param line Value of the {@code line} parameter, or null for the whole feed.
+     * @return The key, for example {@code type=1} or {@code type=2&line=17}.
+     */
+    public static String key(String type, String line) {
+        return line == null ? "type=" + type : "type=" + type + "&line=" + line;
+    }
+
+    /**
+     * Appends a response to the archive.
+     *
+     * @param receivedAtMillis Time the response was received, in epoch milliseconds.
+     * @param key Key of the request, see {@link #key}.
+     * @param body The response body.
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void append(long receivedAtMillis, String key, byte[] body) throws IOException {
+        if (!repaired) {
+            repair();
+            repaired = true;
+        }
+        byte[] compressed = deflate(body);
+        boolean empty = file.length() == 0;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            if (empty) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+            }
+            out.writeLong(receivedAtMillis);
+            out.writeUTF(key);
+            out.writeInt(body.length);
+            out.writeInt(compressed.length);
+            out.write(compressed);
+        }
+    }
+
+    /**
+     * Reads all complete records of the archive.
+     *
+     * @return The records, in the order they were appended.
+     * @throws IOException If the file cannot be read or is not an archive of this version.
+     */
+    public synchronized List<Record> readAll() throws IOException {
+        List<Record> records = new ArrayList<>();
+        read(records);
+        return records;
+    }
+
+    /**
+     * Cuts a partial record, or a partial header, off the end of the file.
+     *
+     * Without this, a session appending to an archive left cut short by a killed process
+     * would write its records after the partial one, where no reader ever reaches them.
+     *
+     * @throws IOException If the file cannot be read, is not an archive of this version or
+     *                     cannot be truncated.
+     */
+    private void repair() throws IOException {
+        long length = file.length();
+        if (length == 0) {
+            return;
+        }
+        long complete = read(null);
+        if (complete < length) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(complete);
+            }
+        }
+    }
+
+    /**
+     * Reads the complete records of the archive.
+     *
+     * @param records List receiving the records, or null to only find where they end.
+     * @return The offset just after the last complete record, or 0 if even the header is cut.
+     * @throws IOException If the file cannot be read or is not an archive of this version.
+     */
+    private long read(List<Record> records) throws IOException {
+        try (CountingInputStream counting = new CountingInputStream(new BufferedInputStream(new FileInputStream(file)));
+             DataInputStream in = new DataInputStream(counting)) {
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                    throw new IOException("Not a feed archive: " + file);
+                }
+            } catch (EOFException e) {
+                // Nagłówek został ucięty, zanim trafił do niego jakikolwiek rekord
+                return 0;
+            }
+            long complete = counting.getCount();
+            while (true) {
+                try {
+                    long receivedAtMillis = in.readLong();
+                    String key = in.readUTF();
+                    int bodyLength = in.readInt();
+                    int compressedLength = in.readInt();
+                    if (bodyLength < 0 || bodyLength > MAX_BODY_BYTES
+                            || compressedLength < 0 || compressedLength > MAX_BODY_BYTES) {
+                        throw new IOException("Corrupted record in " + file);
+                    }
+                    byte[] compressed = new byte[compressedLength];
+                    in.readFully(compressed);
+                    if (records != null) {
+                        records.add(new Record(receivedAtMillis, key, bodyLength, compressed));
+                    }
+                } catch (EOFException e) {
+                    // Koniec pliku lub ucięty ostatni rekord, np. przy zamknięciu procesu w trakcie zapisu
+                    return complete;
+                }
+                complete = counting.getCount();
+            }
+        }
+    }
+
+    /**
+     * @class CountingInputStream
+     * @brief Stream counting the bytes read through it.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        /**
+         * Number of bytes read so far.
+         */
+        private long count;
+
+        /**
+         * Constructs a new CountingInputStream.
+         *
+         * @param in The stream to read from.
+         */
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        /**
+         * Returns the number of bytes read so far.
+         *
+         * @return The count.
+         */
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    /**
+     * Compresses a body.
+     *
+     * @param body The body.
+     * @return The deflated body.
+     */
+    private static byte[] deflate(byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 8 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package pl.creativesstudio.api;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import pl.creativesstudio.metrics.Histogram;
+import pl.creativesstudio.models.ApiResponse;
+import pl.creativesstudio.models.FleetSnapshot;
+import retrofit2.Call;
+import retrofit2.Response;
+
+/**
+ * @file FeedDownloader.java
+ * @brief Downloads one busestrams_get feed and tells API errors apart from empty feeds.
+ *
+ * The Warsaw API reports errors with HTTP 200 and a message string in place of the result
+ * array. Such a response yields no snapshot and is returned as a failure, so the caller
+ * keeps the last data of the feed instead of replacing it with nothing.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class FeedDownloader {
+    /**
+     * The Warsaw API service.
+     */
+    private final WarsawApiService service;
+    /**
+     * ID of the busestrams_get resource.
+     */
+    private final String resourceId;
+    /**
+     * Key of the API.
+     */
+    private final String apiKey;
+    /**
+     * Histogram receiving the decoding time of every response, in nanoseconds.
+     */
+    private final Histogram parseTime;
+
+    /**
+     * Constructs a new FeedDownloader.
+     *
+     * @param service The Warsaw API service.
+     * @param resourceId ID of the busestrams_get resource.
+     * @param apiKey Key of the API.
+     * @param parseTime Histogram receiving the decoding time of every response, in nanoseconds.
+     */
+    public FeedDownloader(WarsawApiService service, String resourceId, String apiKey, Histogram parseTime) {
+        this.service = service;
+        this.resourceId = resourceId;
+        this.apiKey = apiKey;
+        this.parseTime = parseTime;
+    }
+
+    /**
+     * Downloads the vehicles of one feed, optionally only of one line.
+     *
+     * @param type Vehicle type of the feed, {@link FleetSnapshot#TYPE_BUS} or {@link FleetSnapshot#TYPE_TRAM}.
+     * @param line The line to download, or null for the whole feed.
+     * @param timeoutMillis Time the whole call may take, in milliseconds; see {@link ApiClient#callTimeoutMillis}.
+     * @return The downloaded snapshot, possibly empty, or null if the API responded with an error.
+     * @throws IOException If the request fails or times out.
+     */
+    public FleetSnapshot download(byte type, String line, long timeoutMillis) throws IOException {
+        Call<ApiResponse> call = service.getBuses(resourceId, apiKey, type, line, null);
+        call.timeout().timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        Response<ApiResponse> response = call.execute();
+        ApiResponse body = response.body();
+        if (!response.isSuccessful() || body == null) {
+            return null;
+        }
+        parseTime.record(body.getParseTimeNanos());
+        // Komunikat błędu zamiast tablicy "result" nie daje migawki
+        return body.getSnapshot();
+    }
+}
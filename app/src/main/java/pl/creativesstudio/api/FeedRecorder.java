@@ -0,0 +1,106 @@
+package pl.creativesstudio.api;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * @file FeedRecorder.java
+ * @brief Copies busestrams_get responses into a {@link FeedArchive} while recording is on.
+ *
+ * Registered ahead of the {@link GzipInterceptor}, so it sees the decompressed body. While
+ * recording is off it only passes the call on. A failed write stops neither the call nor
+ * the recording; it is counted instead.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class FeedRecorder implements Interceptor {
+    /**
+     * Path segment of the recorded endpoint.
+     */
+    static final String FEED_PATH_SEGMENT = "busestrams_get";
+    /**
+     * Largest body that is recorded, in bytes.
+     */
+    static final long MAX_RECORDED_BYTES = 16L << 20;
+
+    /**
+     * Archive receiving the responses, or null while recording is off.
+     */
+    private volatile FeedArchive archive;
+    /**
+     * Number of recorded responses.
+     */
+    private final AtomicLong recorded = new AtomicLong();
+    /**
+     * Number of responses that could not be written.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Starts recording into an archive.
+     *
+     * @param archive The archive receiving the responses.
+     */
+    public void start(FeedArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Stops recording.
+     */
+    public void stop() {
+        archive = null;
+    }
+
+    /**
+     * Checks whether responses are being recorded.
+     *
+     * @return True while recording is on.
+     */
+    public boolean isRecording() {
+        return archive != null;
+    }
+
+    /**
+     * Returns the number of recorded responses.
+     *
+     * @return The count.
+     */
+    public long getRecordedCount() {
+        return recorded.get();
+    }
+
+    /**
+     * Returns the number of responses that could not be written.
+     *
+     * @return The count.
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Response response = chain.proceed(chain.request());
+        FeedArchive target = archive;
+        HttpUrl url = chain.request().url();
+        if (target == null || !response.isSuccessful() || !url.pathSegments().contains(FEED_PATH_SEGMENT)) {
+            return response;
+        }
+
+        try {
+            byte[] body = response.peekBody(MAX_RECORDED_BYTES).bytes();
+            target.append(System.currentTimeMillis(),
+                    FeedArchive.key(url.queryParameter("type"), url.queryParameter("line")), body);
+            recorded.incrementAndGet();
+        } catch (IOException e) {
+            failures.incrementAndGet();
+        }
+        return response;
+    }
+}
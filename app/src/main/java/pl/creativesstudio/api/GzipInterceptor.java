@@ -0,0 +1,137 @@
+package pl.creativesstudio.api;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.GzipSource;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * @file GzipInterceptor.java
+ * @brief Requests gzip-compressed responses and decompresses them while counting bytes.
+ *
+ * OkHttp would negotiate gzip on its own, but then neither the compressed nor the
+ * decompressed size of a response is visible. This interceptor asks for gzip explicitly,
+ * decompresses the body as it is read and counts the bytes on both sides, so the saving
+ * can be measured. Registered as an application interceptor, it lets the HTTP cache store
+ * the compressed body.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class GzipInterceptor implements Interceptor {
+    /**
+     * Bytes received over the network for gzip-encoded responses.
+     */
+    private final AtomicLong compressedBytes = new AtomicLong();
+    /**
+     * Bytes handed to the decoder after decompression.
+     */
+    private final AtomicLong decompressedBytes = new AtomicLong();
+    /**
+     * Number of gzip-encoded responses.
+     */
+    private final AtomicLong gzipResponses = new AtomicLong();
+    /**
+     * Number of responses the server did not compress.
+     */
+    private final AtomicLong identityResponses = new AtomicLong();
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (request.header("Accept-Encoding") == null) {
+            request = request.newBuilder().header("Accept-Encoding", "gzip").build();
+        }
+
+        Response response = chain.proceed(request);
+        ResponseBody body = response.body();
+        if (body == null || !"gzip".equalsIgnoreCase(response.header("Content-Encoding"))) {
+            identityResponses.incrementAndGet();
+            return response;
+        }
+
+        gzipResponses.incrementAndGet();
+        Source compressed = new CountingSource(body.source(), compressedBytes);
+        Source decompressed = new CountingSource(new GzipSource(compressed), decompressedBytes);
+        return response.newBuilder()
+                .removeHeader("Content-Encoding")
+                .removeHeader("Content-Length")
+                .body(ResponseBody.Companion.create(Okio.buffer(decompressed), body.contentType(), -1L))
+                .build();
+    }
+
+    /**
+     * Returns the number of bytes received for gzip-encoded responses.
+     *
+     * @return The compressed byte count.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes the gzip-encoded responses decompressed to.
+     *
+     * @return The decompressed byte count.
+     */
+    public long getDecompressedBytes() {
+        return decompressedBytes.get();
+    }
+
+    /**
+     * Returns the number of gzip-encoded responses.
+     *
+     * @return The response count.
+     */
+    public long getGzipResponses() {
+        return gzipResponses.get();
+    }
+
+    /**
+     * Returns the number of responses the server did not compress.
+     *
+     * @return The response count.
+     */
+    public long getIdentityResponses() {
+        return identityResponses.get();
+    }
+
+    /**
+     * @class CountingSource
+     * @brief Source adding the number of bytes read to a counter.
+     */
+    private static final class CountingSource extends ForwardingSource {
+        /**
+         * Counter receiving the number of bytes read.
+         */
+        private final AtomicLong counter;
+
+        /**
+         * Constructs a new CountingSource.
+         *
+         * @param delegate The source to read from.
+         * @param counter Counter receiving the number of bytes read.
+         */
+        CountingSource(Source delegate, AtomicLong counter) {
+            super(delegate);
+            this.counter = counter;
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read > 0) {
+                counter.addAndGet(read);
+            }
+            return read;
+        }
+    }
+}
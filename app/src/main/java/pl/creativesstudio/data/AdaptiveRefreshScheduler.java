@@ -0,0 +1,224 @@
+package pl.creativesstudio.data;
+
+/**
+ * @file AdaptiveRefreshScheduler.java
+ * @brief Refresh scheduler adapting the polling interval to what the user is looking at.
+ *
+ * The interval starts from the zoom level: short when individual vehicles are shown, long
+ * below the marker zoom level, where clusters or tiles are shown and refreshed less often.
+ * It is then stretched while consecutive responses bring nothing new and while recent
+ * requests fail, and no ticks are scheduled while the activity is in the background.
+ * Ticks arriving while the camera moves do not fetch; the camera-idle path loads the data
+ * for the new viewport anyway.
+ *
+ * Every decision is counted by reason so that the effect of the policy can be observed.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class AdaptiveRefreshScheduler implements RefreshScheduler {
+    /**
+     * Number of most recent requests the error rate is computed from.
+     */
+    static final int ERROR_WINDOW = 8;
+    /**
+     * Maximum number of doublings applied for unchanged responses.
+     */
+    private static final int MAX_UNCHANGED_DOUBLINGS = 2;
+
+    /**
+     * Interval when vehicles are shown individually, in milliseconds.
+     */
+    private final long highZoomIntervalMillis;
+    /**
+     * Interval below the marker zoom level, in milliseconds.
+     */
+    private final long lowZoomIntervalMillis;
+    /**
+     * Upper bound of any stretched interval, in milliseconds.
+     */
+    private final long maxIntervalMillis;
+    /**
+     * Delay used to re-check while the camera is moving, in milliseconds.
+     */
+    private final long movingRecheckMillis;
+    /**
+     * Zoom level from which vehicles are shown individually.
+     */
+    private final float markerZoom;
+
+    /**
+     * Whether the activity is visible.
+     */
+    private boolean foreground = true;
+    /**
+     * Whether the camera is moving.
+     */
+    private boolean cameraMoving;
+    /**
+     * Last reported zoom level.
+     */
+    private float zoom;
+    /**
+     * Number of consecutive successful responses without changes.
+     */
+    private int unchangedStreak;
+    /**
+     * Outcomes of the most recent requests, one bit each; a set bit is a failure.
+     */
+    private int outcomeBits;
+    /**
+     * Number of outcomes recorded in {@link #outcomeBits}, at most {@link #ERROR_WINDOW}.
+     */
+    private int outcomeCount;
+
+    /**
+     * Number of decisions taken for every reason.
+     */
+    private final long[] decisionCounts = new long[Reason.values().length];
+    /**
+     * Reason of the last decision.
+     */
+    private Reason lastReason = Reason.NORMAL;
+    /**
+     * Last delay returned by {@link #nextDelayMillis()}.
+     */
+    private long lastDelayMillis;
+
+    /**
+     * Constructs a new AdaptiveRefreshScheduler.
+     *
+     * @param highZoomIntervalMillis Interval when vehicles are shown individually, in milliseconds.
+     * @param lowZoomIntervalMillis Interval below the marker zoom level, in milliseconds.
+     * @param maxIntervalMillis Upper bound of any stretched interval, in milliseconds.
+     * @param movingRecheckMillis Delay used to re-check while the camera is moving, in milliseconds.
+     * @param markerZoom Zoom level from which vehicles are shown individually.
+     */
+    public AdaptiveRefreshScheduler(long highZoomIntervalMillis, long lowZoomIntervalMillis,
+                                    long maxIntervalMillis, long movingRecheckMillis, float markerZoom) {
+        this.highZoomIntervalMillis = highZoomIntervalMillis;
+        this.lowZoomIntervalMillis = lowZoomIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.movingRecheckMillis = movingRecheckMillis;
+        this.markerZoom = markerZoom;
+        this.zoom = markerZoom;
+    }
+
+    @Override
+    public synchronized void onForegroundChanged(boolean foreground) {
+        this.foreground = foreground;
+    }
+
+    @Override
+    public synchronized void onCameraMoveStarted() {
+        cameraMoving = true;
+    }
+
+    @Override
+    public synchronized void onCameraIdle(float zoom) {
+        cameraMoving = false;
+        this.zoom = zoom;
+    }
+
+    @Override
+    public synchronized void onFetchSucceeded(boolean changed) {
+        unchangedStreak = changed ? 0 : unchangedStreak + 1;
+        recordOutcome(false);
+    }
+
+    @Override
+    public synchronized void onFetchFailed() {
+        recordOutcome(true);
+    }
+
+    /**
+     * Adds the outcome of a request to the error window.
+     *
+     * @param failed True if the request failed.
+     */
+    private void recordOutcome(boolean failed) {
+        outcomeBits = ((outcomeBits << 1) | (failed ? 1 : 0)) & ((1 << ERROR_WINDOW) - 1);
+        outcomeCount = Math.min(outcomeCount + 1, ERROR_WINDOW);
+    }
+
+    @Override
+    public synchronized boolean shouldFetch() {
+        return foreground && !cameraMoving;
+    }
+
+    @Override
+    public synchronized long nextDelayMillis() {
+        Reason reason;
+        long delay;
+        if (!foreground) {
+            reason = Reason.BACKGROUND;
+            delay = PAUSED;
+        } else if (cameraMoving) {
+            reason = Reason.MOVING;
+            delay = movingRecheckMillis;
+        } else if (zoom < markerZoom) {
+            reason = Reason.LOW_ZOOM;
+            delay = lowZoomIntervalMillis;
+        } else {
+            reason = Reason.NORMAL;
+            delay = highZoomIntervalMillis;
+
+            int doublings = Math.min(unchangedStreak, MAX_UNCHANGED_DOUBLINGS);
+            if (doublings > 0) {
+                reason = Reason.UNCHANGED;
+                delay <<= doublings;
+            }
+
+            // Przy częstych błędach wydłużamy interwał proporcjonalnie do ich udziału (do 4x)
+            double errorRate = getErrorRate();
+            if (errorRate > 0) {
+                reason = Reason.ERRORS;
+                delay = (long) (delay * (1 + 3 * errorRate));
+            }
+            delay = Math.min(delay, maxIntervalMillis);
+        }
+
+        decisionCounts[reason.ordinal()]++;
+        lastReason = reason;
+        lastDelayMillis = delay;
+        return delay;
+    }
+
+    /**
+     * Returns the share of failed requests among the most recent ones.
+     *
+     * @return The error rate, from 0 to 1.
+     */
+    public synchronized double getErrorRate() {
+        return outcomeCount == 0 ? 0 : (double) Integer.bitCount(outcomeBits) / outcomeCount;
+    }
+
+    /**
+     * Returns the number of consecutive successful responses without changes.
+     *
+     * @return The unchanged streak.
+     */
+    public synchronized int getUnchangedStreak() {
+        return unchangedStreak;
+    }
+
+    /**
+     * Returns the number of decisions taken for a reason.
+     *
+     * @param reason The reason.
+     * @return The decision count.
+     */
+    public synchronized long getDecisionCount(Reason reason) {
+        return decisionCounts[reason.ordinal()];
+    }
+
+    @Override
+    public synchronized Reason getLastReason() {
+        return lastReason;
+    }
+
+    @Override
+    public synchronized long getLastDelayMillis() {
+        return lastDelayMillis;
+    }
+}
@@ -0,0 +1,115 @@
+package pl.creativesstudio.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * @file FetchPlanner.java
+ * @brief Decides whether the next fetch downloads the whole fleet or only selected lines.
+ *
+ * The Warsaw API can filter vehicles by line on the server. While the user follows one or
+ * a few lines, downloading only those lines is one to two orders of magnitude smaller
+ * than downloading the whole city; with more lines selected, or none, the whole fleet is
+ * downloaded.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FetchPlanner {
+    /**
+     * Largest number of selected lines still fetched with filtered requests.
+     */
+    public static final int MAX_FILTERED_LINES = 3;
+
+    /**
+     * @brief Kind of fetch.
+     */
+    public enum Mode {
+        /** Download the whole fleet. */
+        FULL,
+        /** Download only the selected lines, one filtered request per line. */
+        FILTERED
+    }
+
+    /**
+     * @class Plan
+     * @brief Immutable description of one fetch.
+     */
+    public static final class Plan {
+        /**
+         * Plan downloading the whole fleet.
+         */
+        public static final Plan FULL = new Plan(Mode.FULL, Collections.<String>emptyList());
+
+        /**
+         * Kind of fetch.
+         */
+        private final Mode mode;
+        /**
+         * Lines to download in {@link Mode#FILTERED} mode.
+         */
+        private final List<String> lines;
+
+        /**
+         * Constructs a new Plan.
+         *
+         * @param mode Kind of fetch.
+         * @param lines Lines to download in {@link Mode#FILTERED} mode.
+         */
+        private Plan(Mode mode, List<String> lines) {
+            this.mode = mode;
+            this.lines = lines;
+        }
+
+        /**
+         * Returns the kind of fetch.
+         *
+         * @return The mode.
+         */
+        public Mode getMode() { return mode; }
+        /**
+         * Returns the lines to download.
+         *
+         * @return An unmodifiable list; empty in {@link Mode#FULL} mode.
+         */
+        public List<String> getLines() { return lines; }
+    }
+
+    /**
+     * Plan for the current selection.
+     */
+    private Plan plan = Plan.FULL;
+
+    /**
+     * Selects the lines the user follows.
+     *
+     * @param lines The selected lines; empty to follow the whole fleet.
+     */
+    public synchronized void selectLines(Collection<String> lines) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(lines));
+        if (distinct.isEmpty() || distinct.size() > MAX_FILTERED_LINES) {
+            plan = Plan.FULL;
+        } else {
+            plan = new Plan(Mode.FILTERED, Collections.unmodifiableList(distinct));
+        }
+    }
+
+    /**
+     * Selects the whole fleet.
+     */
+    public synchronized void selectAll() {
+        plan = Plan.FULL;
+    }
+
+    /**
+     * Returns the plan for the next fetch.
+     *
+     * @return The plan.
+     */
+    public synchronized Plan plan() {
+        return plan;
+    }
+}
@@ -0,0 +1,173 @@
+package pl.creativesstudio.data;
+
+import java.util.Collections;
+
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file FleetFeeds.java
+ * @brief Keeps the latest data of the bus and the tram feed and merges them.
+ *
+ * The feeds are downloaded independently. A failed download leaves the last data of its
+ * feed in place, so a failing tram feed does not hold back bus updates and the other way
+ * round.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class FleetFeeds {
+    /**
+     * Vehicle types of the feeds, in the order they are merged.
+     */
+    private static final byte[] TYPES = {FleetSnapshot.TYPE_BUS, FleetSnapshot.TYPE_TRAM};
+
+    /**
+     * Latest snapshot of every feed, indexed like {@link #TYPES}.
+     */
+    private final FleetSnapshot[] latest = new FleetSnapshot[TYPES.length];
+    /**
+     * Number of consecutive failed downloads of every feed.
+     */
+    private final int[] consecutiveFailures = new int[TYPES.length];
+    /**
+     * Whether every feed has been downloaded at least once.
+     */
+    private final boolean[] downloaded = new boolean[TYPES.length];
+
+    /**
+     * Constructs a new FleetFeeds holding no data.
+     */
+    public FleetFeeds() {
+        for (int feed = 0; feed < TYPES.length; feed++) {
+            latest[feed] = FleetSnapshot.EMPTY;
+        }
+    }
+
+    /**
+     * Returns the vehicle types of all feeds.
+     *
+     * @return A new array of vehicle types.
+     */
+    public static byte[] types() {
+        return TYPES.clone();
+    }
+
+    /**
+     * Fills the feeds that have not been downloaded yet with a restored snapshot.
+     *
+     * The vehicles are split between the feeds by their type, so a feed whose first
+     * download fails keeps showing its restored vehicles instead of dropping them.
+     *
+     * @param restored The restored snapshot, with vehicles of any type.
+     */
+    public synchronized void seed(FleetSnapshot restored) {
+        for (int feed = 0; feed < TYPES.length; feed++) {
+            if (downloaded[feed]) {
+                continue;
+            }
+            FleetSnapshot.Builder builder = new FleetSnapshot.Builder(restored.getDictionary());
+            for (int i = 0; i < restored.size(); i++) {
+                if (restored.getVehicleType(i) == TYPES[feed]) {
+                    builder.add(restored.getLineId(i), restored.getLatE6(i), restored.getLonE6(i),
+                            restored.getTimeMillis(i), restored.getVehicleId(i), restored.getBrigadeId(i), TYPES[feed]);
+                }
+            }
+            latest[feed] = builder.size() > 0 ? builder.build() : FleetSnapshot.EMPTY;
+        }
+    }
+
+    /**
+     * Replaces the data of a feed with a full download.
+     *
+     * @param type Vehicle type of the feed.
+     * @param snapshot The downloaded snapshot.
+     */
+    public synchronized void onDownloaded(byte type, FleetSnapshot snapshot) {
+        int feed = feedOf(type);
+        latest[feed] = snapshot.withVehicleType(type);
+        consecutiveFailures[feed] = 0;
+        downloaded[feed] = true;
+    }
+
+    /**
+     * Replaces the vehicles of one line of a feed with a filtered download.
+     *
+     * @param type Vehicle type of the feed.
+     * @param line The downloaded line.
+     * @param snapshot The downloaded snapshot.
+     */
+    public synchronized void onLineDownloaded(byte type, String line, FleetSnapshot snapshot) {
+        int feed = feedOf(type);
+        latest[feed] = latest[feed].withLinesReplaced(snapshot.withVehicleType(type), Collections.singletonList(line));
+        consecutiveFailures[feed] = 0;
+        downloaded[feed] = true;
+    }
+
+    /**
+     * Records a failed download; the last data of the feed is kept.
+     *
+     * @param type Vehicle type of the feed.
+     */
+    public synchronized void onFailed(byte type) {
+        consecutiveFailures[feedOf(type)]++;
+    }
+
+    /**
+     * Merges the latest data of all feeds.
+     *
+     * @return The merged snapshot.
+     */
+    public synchronized FleetSnapshot merge() {
+        return FleetSnapshot.concat(latest);
+    }
+
+    /**
+     * Returns the vehicle type of a line.
+     *
+     * @param line The line.
+     * @return The type of the feed whose latest data has vehicles of the line, or
+     *         {@link FleetSnapshot#TYPE_BUS} if no feed has.
+     */
+    public synchronized byte typeOfLine(String line) {
+        for (int feed = 0; feed < TYPES.length; feed++) {
+            FleetSnapshot snapshot = latest[feed];
+            int lineId = snapshot.getDictionary().find(line);
+            if (lineId == FleetDictionary.NO_ID) {
+                continue;
+            }
+            for (int i = 0; i < snapshot.size(); i++) {
+                if (snapshot.getLineId(i) == lineId) {
+                    return TYPES[feed];
+                }
+            }
+        }
+        return FleetSnapshot.TYPE_BUS;
+    }
+
+    /**
+     * Returns the number of consecutive failed downloads of a feed.
+     *
+     * @param type Vehicle type of the feed.
+     * @return The failure count; 0 after a successful download.
+     */
+    public synchronized int getConsecutiveFailures(byte type) {
+        return consecutiveFailures[feedOf(type)];
+    }
+
+    /**
+     * Returns the index of a feed.
+     *
+     * @param type Vehicle type of the feed.
+     * @return The index into the feed arrays.
+     * @throws IllegalArgumentException If the type is unknown.
+     */
+    private static int feedOf(byte type) {
+        for (int feed = 0; feed < TYPES.length; feed++) {
+            if (TYPES[feed] == type) {
+                return feed;
+            }
+        }
+        throw new IllegalArgumentException("Unknown vehicle type: " + type);
+    }
+}
@@ -0,0 +1,575 @@
+package pl.creativesstudio.data;
+
+import java.util.Arrays;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file PositionHistory.java
+ * @brief Compressed in-memory history of the reported positions of every vehicle.
+ *
+ * Samples are bit-packed Gorilla-style: report times (in seconds) as a delta of deltas,
+ * coordinates as the XOR with the previous value, storing only its meaningful bits. The
+ * bits live in fixed-size blocks of one preallocated {@code long[]} pool; every vehicle
+ * owns a chain of blocks, each starting with an uncompressed sample so that it can be
+ * decoded and evicted on its own. There are no per-sample objects.
+ *
+ * Blocks are evicted in allocation order, once the newest report is more than the window
+ * past their last sample or when the pool runs out. Allocation order is close to time
+ * order, so the window is kept approximately: a vehicle reporting rarely can keep some
+ * older samples a little longer.
+ *
+ * A typical sample takes 5 to 8 bytes, so the default budget of 8 MiB holds about an hour
+ * of ten-second reports of the whole city.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class PositionHistory {
+    /**
+     * Default size of the block pool, in bytes.
+     */
+    public static final int DEFAULT_BUDGET_BYTES = 8 << 20;
+    /**
+     * Default time span of the kept history, in milliseconds.
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 60 * 60 * 1000L;
+
+    /**
+     * Number of 64-bit words in a block.
+     */
+    static final int BLOCK_WORDS = 16;
+    /**
+     * Number of bits in a block.
+     */
+    private static final int BLOCK_BITS = BLOCK_WORDS * 64;
+    /**
+     * Size of the uncompressed sample starting every block, in bits.
+     */
+    private static final int HEADER_BITS = 96;
+    /**
+     * Largest possible size of a compressed sample, in bits.
+     */
+    private static final int MAX_SAMPLE_BITS = 36 + 2 * 44;
+    /**
+     * Marks a missing block or an unknown XOR window.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * Bit storage of all blocks.
+     */
+    private final long[] pool;
+    /**
+     * Number of blocks in the pool.
+     */
+    private final int blockCount;
+    /**
+     * Time span of the kept history, in seconds.
+     */
+    private final long windowSeconds;
+
+    /**
+     * Next block of the same vehicle, or {@link #NONE}; indexed by block.
+     */
+    private final int[] nextInChain;
+    /**
+     * Vehicle owning every block; indexed by block.
+     */
+    private final int[] blockOwner;
+    /**
+     * Number of samples in every block; indexed by block.
+     */
+    private final int[] blockSamples;
+    /**
+     * Report time of the last sample of every block, in seconds; indexed by block.
+     */
+    private final long[] blockLastSeconds;
+    /**
+     * Blocks in allocation order, as a ring starting at {@link #oldest}.
+     */
+    private final int[] allocationOrder;
+    /**
+     * Position of the oldest allocated block in {@link #allocationOrder}.
+     */
+    private int oldest;
+    /**
+     * Number of allocated blocks.
+     */
+    private int allocated;
+    /**
+     * Blocks never allocated so far, handed out from the start of the pool.
+     */
+    private int untouched;
+    /**
+     * Free blocks released by eviction.
+     */
+    private final int[] freeBlocks;
+    /**
+     * Number of entries in {@link #freeBlocks}.
+     */
+    private int freeCount;
+
+    /**
+     * First block of every vehicle, or {@link #NONE}; indexed by vehicle key.
+     */
+    private int[] head = new int[0];
+    /**
+     * Block every vehicle writes to, or {@link #NONE}; indexed by vehicle key.
+     */
+    private int[] tail = new int[0];
+    /**
+     * Next free bit of the tail block of every vehicle; indexed by vehicle key.
+     */
+    private int[] tailBits = new int[0];
+    /**
+     * Number of samples kept for every vehicle; indexed by vehicle key.
+     */
+    private int[] samples = new int[0];
+    /**
+     * Report time of the last sample of every vehicle, in seconds; indexed by vehicle key.
+     */
+    private long[] lastSeconds = new long[0];
+    /**
+     * Difference between the last two report times of every vehicle; indexed by vehicle key.
+     */
+    private long[] lastDelta = new long[0];
+    /**
+     * Last latitude of every vehicle, in microdegrees; indexed by vehicle key.
+     */
+    private int[] lastLat = new int[0];
+    /**
+     * Last longitude of every vehicle, in microdegrees; indexed by vehicle key.
+     */
+    private int[] lastLon = new int[0];
+    /**
+     * XOR window (leading zeros, meaningful bits) of the latitudes; indexed by vehicle key.
+     */
+    private int[][] latWindow = new int[0][];
+    /**
+     * XOR window (leading zeros, meaningful bits) of the longitudes; indexed by vehicle key.
+     */
+    private int[][] lonWindow = new int[0][];
+
+    /**
+     * Report time of the newest sample, in seconds.
+     */
+    private long newestSeconds;
+    /**
+     * Total number of kept samples.
+     */
+    private long totalSamples;
+    /**
+     * Number of blocks evicted because the pool was full.
+     */
+    private long budgetEvictions;
+    /**
+     * Number of blocks evicted because they left the window.
+     */
+    private long windowEvictions;
+
+    /**
+     * Constructs a new PositionHistory.
+     *
+     * @param budgetBytes Size of the block pool, in bytes; at least two blocks.
+     * @param windowMillis Time span of the kept history, in milliseconds.
+     */
+    public PositionHistory(int budgetBytes, long windowMillis) {
+        blockCount = budgetBytes / (BLOCK_WORDS * 8);
+        if (blockCount < 2) {
+            throw new IllegalArgumentException("Budget too small: " + budgetBytes);
+        }
+        pool = new long[blockCount * BLOCK_WORDS];
+        windowSeconds = windowMillis / 1000;
+        nextInChain = new int[blockCount];
+        blockOwner = new int[blockCount];
+        blockSamples = new int[blockCount];
+        blockLastSeconds = new long[blockCount];
+        allocationOrder = new int[blockCount];
+        freeBlocks = new int[blockCount];
+    }
+
+    /**
+     * Appends the reports of a snapshot.
+     *
+     * Vehicles without a report time or a position, and reports not newer than the last
+     * sample of their vehicle, are skipped.
+     *
+     * @param snapshot The snapshot to record.
+     * @return The number of appended samples.
+     */
+    public synchronized int record(FleetSnapshot snapshot) {
+        int appended = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            int vehicleKey = snapshot.getVehicleKey(i);
+            long time = snapshot.getTimeMillis(i);
+            int lat = snapshot.getLatE6(i);
+            int lon = snapshot.getLonE6(i);
+            if (vehicleKey != FleetDictionary.NO_ID && time != BusTime.UNKNOWN && lat != 0 && lon != 0
+                    && append(vehicleKey, time, lat, lon)) {
+                appended++;
+            }
+        }
+        return appended;
+    }
+
+    /**
+     * Appends one report of a vehicle.
+     *
+     * @param vehicleKey Vehicle key ({@link FleetSnapshot#getVehicleKey}).
+     * @param timeMillis Report time, in epoch milliseconds; stored with second precision.
+     * @param latE6 Latitude, in microdegrees.
+     * @param lonE6 Longitude, in microdegrees.
+     * @return False if the report is not newer than the last sample of the vehicle.
+     */
+    public synchronized boolean append(int vehicleKey, long timeMillis, int latE6, int lonE6) {
+        long seconds = timeMillis / 1000;
+        ensureVehicle(vehicleKey);
+        if (tail[vehicleKey] != NONE && seconds <= lastSeconds[vehicleKey]) {
+            return false;
+        }
+
+        newestSeconds = Math.max(newestSeconds, seconds);
+        evictOutsideWindow();
+
+        int block = tail[vehicleKey];
+        if (block == NONE || tailBits[vehicleKey] + MAX_SAMPLE_BITS > BLOCK_BITS) {
+            block = allocate(vehicleKey);
+            int bits = block * BLOCK_BITS;
+            bits = writeBits(bits, seconds, 32);
+            bits = writeBits(bits, latE6, 32);
+            bits = writeBits(bits, lonE6, 32);
+            tailBits[vehicleKey] = bits - block * BLOCK_BITS;
+            lastDelta[vehicleKey] = 0;
+            latWindow[vehicleKey][0] = NONE;
+            lonWindow[vehicleKey][0] = NONE;
+        } else {
+            int bits = block * BLOCK_BITS + tailBits[vehicleKey];
+            long delta = seconds - lastSeconds[vehicleKey];
+            bits = writeDeltaOfDelta(bits, delta - lastDelta[vehicleKey]);
+            bits = writeXor(bits, lastLat[vehicleKey] ^ latE6, latWindow[vehicleKey]);
+            bits = writeXor(bits, lastLon[vehicleKey] ^ lonE6, lonWindow[vehicleKey]);
+            tailBits[vehicleKey] = bits - block * BLOCK_BITS;
+            lastDelta[vehicleKey] = delta;
+        }
+
+        lastSeconds[vehicleKey] = seconds;
+        lastLat[vehicleKey] = latE6;
+        lastLon[vehicleKey] = lonE6;
+        blockSamples[block]++;
+        blockLastSeconds[block] = seconds;
+        samples[vehicleKey]++;
+        totalSamples++;
+        return true;
+    }
+
+    /**
+     * Returns the number of samples kept for a vehicle.
+     *
+     * @param vehicleKey Vehicle key ({@link FleetSnapshot#getVehicleKey}).
+     * @return The sample count.
+     */
+    public synchronized int getSampleCount(int vehicleKey) {
+        return vehicleKey >= 0 && vehicleKey < samples.length ? samples[vehicleKey] : 0;
+    }
+
+    /**
+     * Decodes the samples of a vehicle, oldest first.
+     *
+     * @param vehicleKey Vehicle key ({@link FleetSnapshot#getVehicleKey}).
+     * @param timesMillis Array receiving the report times, in epoch milliseconds.
+     * @param latE6 Array receiving the latitudes, in microdegrees.
+     * @param lonE6 Array receiving the longitudes, in microdegrees.
+     * @return The number of decoded samples; at most the length of the arrays.
+     */
+    public synchronized int read(int vehicleKey, long[] timesMillis, int[] latE6, int[] lonE6) {
+        int capacity = Math.min(timesMillis.length, Math.min(latE6.length, lonE6.length));
+        int count = 0;
+        int[] cursor = new int[1];
+        int[] latState = new int[2];
+        int[] lonState = new int[2];
+        for (int block = vehicleKey >= 0 && vehicleKey < head.length ? head[vehicleKey] : NONE;
+             block != NONE && count < capacity; block = nextInChain[block]) {
+            cursor[0] = block * BLOCK_BITS;
+            long seconds = readBits(cursor, 32) & 0xFFFFFFFFL;
+            int lat = (int) readBits(cursor, 32);
+            int lon = (int) readBits(cursor, 32);
+            long delta = 0;
+            latState[0] = NONE;
+            lonState[0] = NONE;
+            for (int sample = 0; sample < blockSamples[block] && count < capacity; sample++) {
+                if (sample > 0) {
+                    delta += readDeltaOfDelta(cursor);
+                    seconds += delta;
+                    lat ^= readXor(cursor, latState);
+                    lon ^= readXor(cursor, lonState);
+                }
+                timesMillis[count] = seconds * 1000;
+                latE6[count] = lat;
+                lonE6[count] = lon;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total number of kept samples.
+     *
+     * @return The sample count.
+     */
+    public synchronized long getTotalSamples() {
+        return totalSamples;
+    }
+
+    /**
+     * Returns the size of the blocks in use.
+     *
+     * @return The used size, in bytes.
+     */
+    public synchronized long getUsedBytes() {
+        return (long) allocated * BLOCK_WORDS * 8;
+    }
+
+    /**
+     * Returns the size of the block pool.
+     *
+     * @return The budget, in bytes.
+     */
+    public long getBudgetBytes() {
+        return (long) pool.length * 8;
+    }
+
+    /**
+     * Returns the number of blocks evicted because the pool was full.
+     *
+     * @return The eviction count.
+     */
+    public synchronized long getBudgetEvictions() {
+        return budgetEvictions;
+    }
+
+    /**
+     * Returns the number of blocks evicted because they left the window.
+     *
+     * @return The eviction count.
+     */
+    public synchronized long getWindowEvictions() {
+        return windowEvictions;
+    }
+
+    /**
+     * Grows the per-vehicle arrays to hold a vehicle key.
+     *
+     * @param vehicleKey Vehicle key ({@link FleetSnapshot#getVehicleKey}).
+     */
+    private void ensureVehicle(int vehicleKey) {
+        if (vehicleKey < head.length) {
+            return;
+        }
+        int size = Math.max(vehicleKey + 1, head.length * 2);
+        int from = head.length;
+        head = Arrays.copyOf(head, size);
+        tail = Arrays.copyOf(tail, size);
+        Arrays.fill(head, from, size, NONE);
+        Arrays.fill(tail, from, size, NONE);
+        tailBits = Arrays.copyOf(tailBits, size);
+        samples = Arrays.copyOf(samples, size);
+        lastSeconds = Arrays.copyOf(lastSeconds, size);
+        lastDelta = Arrays.copyOf(lastDelta, size);
+        lastLat = Arrays.copyOf(lastLat, size);
+        lastLon = Arrays.copyOf(lastLon, size);
+        latWindow = Arrays.copyOf(latWindow, size);
+        lonWindow = Arrays.copyOf(lonWindow, size);
+        for (int i = from; i < size; i++) {
+            latWindow[i] = new int[2];
+            lonWindow[i] = new int[2];
+        }
+    }
+
+    /**
+     * Takes a free block, evicting the oldest one if the pool is full, and chains it to a vehicle.
+     *
+     * @param vehicleKey Vehicle key ({@link FleetSnapshot#getVehicleKey}).
+     * @return The new tail block of the vehicle.
+     */
+    private int allocate(int vehicleKey) {
+        if (allocated == blockCount) {
+            evictOldest();
+            budgetEvictions++;
+        }
+        int block = freeCount > 0 ? freeBlocks[--freeCount] : untouched++;
+        Arrays.fill(pool, block * BLOCK_WORDS, (block + 1) * BLOCK_WORDS, 0L);
+        nextInChain[block] = NONE;
+        blockOwner[block] = vehicleKey;
+        blockSamples[block] = 0;
+        allocationOrder[(oldest + allocated) % blockCount] = block;
+        allocated++;
+
+        if (tail[vehicleKey] == NONE) {
+            head[vehicleKey] = block;
+        } else {
+            nextInChain[tail[vehicleKey]] = block;
+        }
+        tail[vehicleKey] = block;
+        return block;
+    }
+
+    /**
+     * Evicts the oldest blocks while their last sample is outside the window.
+     */
+    private void evictOutsideWindow() {
+        long cutoff = newestSeconds - windowSeconds;
+        while (allocated > 0 && blockLastSeconds[allocationOrder[oldest]] < cutoff
+                && blockSamples[allocationOrder[oldest]] > 0) {
+            evictOldest();
+            windowEvictions++;
+        }
+    }
+
+    /**
+     * Evicts the oldest allocated block, which is always the first block of its vehicle.
+     */
+    private void evictOldest() {
+        int block = allocationOrder[oldest];
+        oldest = (oldest + 1) % blockCount;
+        allocated--;
+        freeBlocks[freeCount++] = block;
+
+        int vehicleKey = blockOwner[block];
+        samples[vehicleKey] -= blockSamples[block];
+        totalSamples -= blockSamples[block];
+        head[vehicleKey] = nextInChain[block];
+        if (head[vehicleKey] == NONE) {
+            tail[vehicleKey] = NONE;
+        }
+    }
+
+    /**
+     * Writes a delta of deltas of report times with a variable-length prefix.
+     *
+     * @param bits Absolute bit position to write at.
+     * @param value The delta of deltas, in seconds.
+     * @return The bit position after the written value.
+     */
+    private int writeDeltaOfDelta(int bits, long value) {
+        if (value == 0) {
+            return writeBits(bits, 0b0, 1);
+        } else if (value >= -63 && value <= 64) {
+            return writeBits(writeBits(bits, 0b10, 2), value + 63, 7);
+        } else if (value >= -255 && value <= 256) {
+            return writeBits(writeBits(bits, 0b110, 3), value + 255, 9);
+        } else if (value >= -2047 && value <= 2048) {
+            return writeBits(writeBits(bits, 0b1110, 4), value + 2047, 12);
+        }
+        return writeBits(writeBits(bits, 0b1111, 4), value, 32);
+    }
+
+    /**
+     * Reads a delta of deltas written by {@link #writeDeltaOfDelta}.
+     *
+     * @param cursor Absolute bit position, advanced past the value.
+     * @return The delta of deltas, in seconds.
+     */
+    private long readDeltaOfDelta(int[] cursor) {
+        if (readBits(cursor, 1) == 0) {
+            return 0;
+        } else if (readBits(cursor, 1) == 0) {
+            return readBits(cursor, 7) - 63;
+        } else if (readBits(cursor, 1) == 0) {
+            return readBits(cursor, 9) - 255;
+        } else if (readBits(cursor, 1) == 0) {
+            return readBits(cursor, 12) - 2047;
+        }
+        return (int) readBits(cursor, 32);
+    }
+
+    /**
+     * Writes the XOR of two coordinates, reusing the previous window of meaningful bits when it fits.
+     *
+     * @param bits Absolute bit position to write at.
+     * @param xor The XOR of the previous and the current coordinate.
+     * @param window Leading zeros and meaningful bits of the previous XOR; updated.
+     * @return The bit position after the written value.
+     */
+    private int writeXor(int bits, int xor, int[] window) {
+        if (xor == 0) {
+            return writeBits(bits, 0b0, 1);
+        }
+        int leading = Integer.numberOfLeadingZeros(xor);
+        int trailing = Integer.numberOfTrailingZeros(xor);
+        if (window[0] != NONE && leading >= window[0] && trailing >= 32 - window[0] - window[1]) {
+            bits = writeBits(bits, 0b10, 2);
+            return writeBits(bits, xor >>> (32 - window[0] - window[1]), window[1]);
+        }
+        int meaningful = 32 - leading - trailing;
+        window[0] = leading;
+        window[1] = meaningful;
+        bits = writeBits(bits, 0b11, 2);
+        bits = writeBits(bits, leading, 5);
+        bits = writeBits(bits, meaningful - 1, 5);
+        return writeBits(bits, xor >>> trailing, meaningful);
+    }
+
+    /**
+     * Reads a coordinate XOR written by {@link #writeXor}.
+     *
+     * @param cursor Absolute bit position, advanced past the value.
+     * @param window Leading zeros and meaningful bits of the previous XOR; updated.
+     * @return The XOR of the previous and the current coordinate.
+     */
+    private int readXor(int[] cursor, int[] window) {
+        if (readBits(cursor, 1) == 0) {
+            return 0;
+        }
+        if (readBits(cursor, 1) == 1) {
+            window[0] = (int) readBits(cursor, 5);
+            window[1] = (int) readBits(cursor, 5) + 1;
+        }
+        return (int) readBits(cursor, window[1]) << (32 - window[0] - window[1]);
+    }
+
+    /**
+     * Writes the lowest bits of a value, most significant first.
+     *
+     * @param bits Absolute bit position to write at.
+     * @param value The value to write.
+     * @param count Number of bits to write, from 1 to 32.
+     * @return The bit position after the written value.
+     */
+    private int writeBits(int bits, long value, int count) {
+        long masked = value & (-1L >>> (64 - count));
+        int word = bits >>> 6;
+        int offset = bits & 63;
+        int free = 64 - offset;
+        if (count <= free) {
+            pool[word] |= masked << (free - count);
+        } else {
+            pool[word] |= masked >>> (count - free);
+            pool[word + 1] |= masked << (64 - count + free);
+        }
+        return bits + count;
+    }
+
+    /**
+     * Reads bits written by {@link #writeBits}.
+     *
+     * @param cursor Absolute bit position, advanced past the value.
+     * @param count Number of bits to read, from 1 to 32.
+     * @return The value, not sign extended.
+     */
+    private long readBits(int[] cursor, int count) {
+        int bits = cursor[0];
+        cursor[0] = bits + count;
+        int word = bits >>> 6;
+        int offset = bits & 63;
+        int free = 64 - offset;
+        long mask = -1L >>> (64 - count);
+        if (count <= free) {
+            return (pool[word] >>> (free - count)) & mask;
+        }
+        return ((pool[word] << (count - free)) | (pool[word + 1] >>> (64 - count + free))) & mask;
+    }
+}
@@ -0,0 +1,96 @@
+package pl.creativesstudio.data;
+
+/**
+ * @file RefreshScheduler.java
+ * @brief Decides when the fleet data is refreshed.
+ *
+ * The activity reports what happens on the map, in the lifecycle and to the requests; the
+ * scheduler answers whether a periodic tick should fetch and how long to wait for the next
+ * tick, and explains its last answer so that the policy can be observed.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public interface RefreshScheduler {
+    /**
+     * Delay returned while periodic refreshing is paused.
+     */
+    long PAUSED = -1;
+
+    /**
+     * @brief Reason behind a scheduling decision.
+     */
+    enum Reason {
+        /** Regular interval for the current zoom level. */
+        NORMAL,
+        /** Zoom level below the marker zoom level. */
+        LOW_ZOOM,
+        /** Interval stretched because recent responses did not change. */
+        UNCHANGED,
+        /** Interval stretched because of recent errors. */
+        ERRORS,
+        /** Tick skipped because the camera is moving. */
+        MOVING,
+        /** Refreshing paused because the activity is in the background. */
+        BACKGROUND
+    }
+
+    /**
+     * Reports that the activity became visible or stopped being visible.
+     *
+     * @param foreground True once the activity is started, false once it is stopped.
+     */
+    void onForegroundChanged(boolean foreground);
+
+    /**
+     * Reports that the camera started moving.
+     */
+    void onCameraMoveStarted();
+
+    /**
+     * Reports that the camera stopped moving.
+     *
+     * @param zoom Zoom level of the camera.
+     */
+    void onCameraIdle(float zoom);
+
+    /**
+     * Reports a successful fetch.
+     *
+     * @param changed True if the response differed from the previously published data.
+     */
+    void onFetchSucceeded(boolean changed);
+
+    /**
+     * Reports a failed fetch.
+     */
+    void onFetchFailed();
+
+    /**
+     * Decides whether the current periodic tick should fetch data.
+     *
+     * @return True if the tick should fetch.
+     */
+    boolean shouldFetch();
+
+    /**
+     * Returns the delay until the next periodic tick.
+     *
+     * @return The delay in milliseconds, or {@link #PAUSED} if no tick should be scheduled.
+     */
+    long nextDelayMillis();
+
+    /**
+     * Returns the reason of the last delay returned by {@link #nextDelayMillis()}.
+     *
+     * @return The reason.
+     */
+    Reason getLastReason();
+
+    /**
+     * Returns the last delay returned by {@link #nextDelayMillis()}.
+     *
+     * @return The delay in milliseconds, or {@link #PAUSED}.
+     */
+    long getLastDelayMillis();
+}
@@ -0,0 +1,252 @@
+package pl.creativesstudio.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @file SingleFlight.java
+ * @brief Runs at most one instance of a task at a time and shares its result.
+ *
+ * A request made while the task is running attaches to the running task instead of
+ * starting another one. A request made before a task started and completed (for example
+ * one that waited in a delayed callback) is dropped, because a result newer than the
+ * request is already available.
+ *
+ * @param <T> Type of the task result.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class SingleFlight<T> {
+    /**
+     * @brief The task shared by all requests.
+     *
+     * @param <T> Type of the task result.
+     */
+    public interface Task<T> {
+        /**
+         * Runs the task on the executor.
+         *
+         * @return The result.
+         * @throws Exception If the task fails.
+         */
+        T run() throws Exception;
+    }
+
+    /**
+     * @brief Receives the result of the task a request was attached to.
+     *
+     * Callbacks are called on the executor thread.
+     *
+     * @param <T> Type of the task result.
+     */
+    public interface Callback<T> {
+        /**
+         * Called with the result of the task.
+         *
+         * @param result The result.
+         */
+        void onSuccess(T result);
+
+        /**
+         * Called when the task failed.
+         *
+         * @param error The failure.
+         */
+        void onFailure(Exception error);
+    }
+
+    /**
+     * @brief Outcome of a request.
+     */
+    public enum Outcome {
+        /** A new run of the task was started. */
+        STARTED,
+        /** The request was attached to the running task. */
+        COALESCED,
+        /** The request was dropped because a newer result is already available. */
+        DROPPED,
+        /** The executor rejected the run, for example after it was shut down; no callback is called. */
+        REJECTED
+    }
+
+    /**
+     * Executor running the task.
+     */
+    private final Executor executor;
+    /**
+     * The shared task.
+     */
+    private final Task<T> task;
+
+    /**
+     * Callbacks attached to the running task, or null if the task is not running.
+     */
+    private List<Callback<T>> waiters;
+    /**
+     * Time the running task was requested, in {@link System#nanoTime()} units.
+     */
+    private long inFlightRequestedAtNanos;
+    /**
+     * Whether any run of the task has completed.
+     */
+    private boolean completed;
+    /**
+     * Request time of the last completed task, in {@link System#nanoTime()} units.
+     */
+    private long lastCompletedRequestedAtNanos;
+
+    /**
+     * Number of started runs of the task.
+     */
+    private long startedCount;
+    /**
+     * Number of requests attached to a running task.
+     */
+    private long coalescedCount;
+    /**
+     * Number of requests dropped because a newer result was available.
+     */
+    private long droppedCount;
+
+    /**
+     * Constructs a new SingleFlight.
+     *
+     * @param executor Executor running the task.
+     * @param task The shared task.
+     */
+    public SingleFlight(Executor executor, Task<T> task) {
+        this.executor = executor;
+        this.task = task;
+    }
+
+    /**
+     * Requests a result now.
+     *
+     * @param callback Callback receiving the result, or null.
+     * @return What happened to the request.
+     */
+    public Outcome request(Callback<T> callback) {
+        return request(System.nanoTime(), callback);
+    }
+
+    /**
+     * Requests a result that is not older than the given time.
+     *
+     * @param requestedAtNanos Time the caller decided it needs data, in {@link System#nanoTime()} units.
+     * @param callback Callback receiving the result, or null.
+     * @return What happened to the request; never throws if the executor rejects the run.
+     */
+    public synchronized Outcome request(long requestedAtNanos, Callback<T> callback) {
+        if (completed && requestedAtNanos - lastCompletedRequestedAtNanos < 0) {
+            droppedCount++;
+            return Outcome.DROPPED;
+        }
+        if (waiters != null) {
+            if (callback != null) {
+                waiters.add(callback);
+            }
+            coalescedCount++;
+            return Outcome.COALESCED;
+        }
+
+        waiters = new ArrayList<>(2);
+        if (callback != null) {
+            waiters.add(callback);
+        }
+        inFlightRequestedAtNanos = requestedAtNanos;
+        try {
+            executor.execute(this::runTask);
+        } catch (RejectedExecutionException e) {
+            // Bez zadania w kolejce nikt nie zakończyłby lotu, więc kolejne żądania nie mogą do niego dołączyć
+            waiters = null;
+            return Outcome.REJECTED;
+        }
+        startedCount++;
+        return Outcome.STARTED;
+    }
+
+    /**
+     * Runs the task and hands its result to every attached callback.
+     *
+     * The flight is completed even if the task throws an {@link Error}: the attached
+     * callbacks receive it wrapped in an {@link ExecutionException}, and the error is
+     * rethrown to the executor.
+     */
+    private void runTask() {
+        T result = null;
+        Exception error = null;
+        try {
+            result = task.run();
+        } catch (Exception e) {
+            error = e;
+        } catch (Error e) {
+            error = new ExecutionException(e);
+            throw e;
+        } finally {
+            complete(result, error);
+        }
+    }
+
+    /**
+     * Ends the flight and hands its outcome to every attached callback.
+     *
+     * @param result The result of the task, if it succeeded.
+     * @param error The failure, or null if the task succeeded.
+     */
+    private void complete(T result, Exception error) {
+        List<Callback<T>> attached;
+        synchronized (this) {
+            attached = waiters;
+            waiters = null;
+            completed = true;
+            lastCompletedRequestedAtNanos = inFlightRequestedAtNanos;
+        }
+        for (Callback<T> callback : attached) {
+            if (error == null) {
+                callback.onSuccess(result);
+            } else {
+                callback.onFailure(error);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the task is running or queued on the executor.
+     *
+     * @return True if a run is in flight.
+     */
+    public synchronized boolean isInFlight() {
+        return waiters != null;
+    }
+
+    /**
+     * Returns the number of started runs of the task.
+     *
+     * @return The started count.
+     */
+    public synchronized long getStartedCount() {
+        return startedCount;
+    }
+
+    /**
+     * Returns the number of requests attached to a running task.
+     *
+     * @return The coalesced count.
+     */
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * Returns the number of requests dropped because a newer result was available.
+     *
+     * @return The dropped count.
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,158 @@
+package pl.creativesstudio.data;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file SnapshotHolder.java
+ * @brief Publishes fleet snapshots from the fetch thread to the UI thread.
+ *
+ * Every request takes a sequence number before it starts. When its result arrives it is
+ * published through a single atomic reference, together with that number, only if no
+ * result of a newer request has been published in the meantime. Readers get the current
+ * version with one volatile read: no locks, no defensive copies, and a late response
+ * can never replace a newer one.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class SnapshotHolder {
+    /**
+     * @class Version
+     * @brief An immutable published snapshot together with its sequence number.
+     */
+    public static final class Version {
+        /**
+         * The published snapshot.
+         */
+        private final FleetSnapshot snapshot;
+        /**
+         * Sequence number of the request that produced the snapshot.
+         */
+        private final long sequence;
+        /**
+         * Time the snapshot was fetched, in epoch milliseconds.
+         */
+        private final long fetchedAtMillis;
+        /**
+         * Whether the snapshot was restored from storage rather than fetched in this session.
+         */
+        private final boolean stale;
+
+        /**
+         * Constructs a new Version.
+         *
+         * @param snapshot The published snapshot.
+         * @param sequence Sequence number of the request that produced the snapshot.
+         * @param fetchedAtMillis Time the snapshot was fetched, in epoch milliseconds.
+         * @param stale Whether the snapshot was restored from storage.
+         */
+        Version(FleetSnapshot snapshot, long sequence, long fetchedAtMillis, boolean stale) {
+            this.snapshot = snapshot;
+            this.sequence = sequence;
+            this.fetchedAtMillis = fetchedAtMillis;
+            this.stale = stale;
+        }
+
+        /**
+         * Returns the published snapshot.
+         *
+         * @return The snapshot.
+         */
+        public FleetSnapshot getSnapshot() { return snapshot; }
+        /**
+         * Returns the sequence number of the request that produced the snapshot.
+         *
+         * @return The sequence number; 0 before anything was published.
+         */
+        public long getSequence() { return sequence; }
+        /**
+         * Returns the time the snapshot was fetched.
+         *
+         * @return Epoch milliseconds; 0 before anything was published.
+         */
+        public long getFetchedAtMillis() { return fetchedAtMillis; }
+        /**
+         * Checks whether the snapshot was restored from storage rather than fetched in this session.
+         *
+         * @return True for a restored snapshot.
+         */
+        public boolean isStale() { return stale; }
+    }
+
+    /**
+     * Last sequence number handed out to a request.
+     */
+    private final AtomicLong lastSequence = new AtomicLong();
+    /**
+     * The currently published version.
+     */
+    private final AtomicReference<Version> current =
+            new AtomicReference<>(new Version(FleetSnapshot.EMPTY, 0, 0, false));
+
+    /**
+     * Hands out the sequence number for a request that is about to start.
+     *
+     * @return A number greater than every number handed out before.
+     */
+    public long nextSequence() {
+        return lastSequence.incrementAndGet();
+    }
+
+    /**
+     * Publishes the result of a request unless a newer result is already published.
+     *
+     * @param snapshot The snapshot to publish.
+     * @param sequence Sequence number taken by the request with {@link #nextSequence()}.
+     * @param fetchedAtMillis Time the snapshot was fetched, in epoch milliseconds.
+     * @return True if the snapshot was published, false if it was stale.
+     */
+    public boolean publish(FleetSnapshot snapshot, long sequence, long fetchedAtMillis) {
+        Version next = new Version(snapshot, sequence, fetchedAtMillis, false);
+        while (true) {
+            Version published = current.get();
+            if (published.sequence >= sequence) {
+                return false;
+            }
+            if (current.compareAndSet(published, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Publishes a snapshot restored from storage, marked as stale.
+     *
+     * The restored snapshot is only published while nothing else has been, so it never
+     * replaces data fetched in this session.
+     *
+     * @param snapshot The restored snapshot.
+     * @param fetchedAtMillis Time the snapshot was originally fetched, in epoch milliseconds.
+     * @return True if the snapshot was published.
+     */
+    public boolean publishRestored(FleetSnapshot snapshot, long fetchedAtMillis) {
+        Version published = current.get();
+        return published.sequence == 0 && !published.stale
+                && current.compareAndSet(published, new Version(snapshot, 0, fetchedAtMillis, true));
+    }
+
+    /**
+     * Returns the currently published version.
+     *
+     * @return The current version.
+     */
+    public Version current() {
+        return current.get();
+    }
+
+    /**
+     * Returns the currently published snapshot.
+     *
+     * @return The current snapshot; empty before anything was published.
+     */
+    public FleetSnapshot getSnapshot() {
+        return current.get().snapshot;
+    }
+}
@@ -0,0 +1,329 @@
+package pl.creativesstudio.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file SnapshotStore.java
+ * @brief Keeps the last fleet snapshot in a compact binary file.
+ *
+ * The snapshot is restored at startup and drawn (marked as stale) before the first network
+ * response arrives. The file holds a header (magic, format version, fetch time), the
+ * strings used by the snapshot, its columns and a CRC32 checksum. Files of another
+ * version, truncated or corrupted files are ignored.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class SnapshotStore {
+    /**
+     * Magic number at the start of the file ("TMBS").
+     */
+    static final int MAGIC = 0x544D4253;
+    /**
+     * Version of the file format.
+     */
+    static final int FORMAT_VERSION = 1;
+    /**
+     * Upper bound of the vehicle and string counts accepted when reading.
+     */
+    private static final int MAX_COUNT = 1 << 20;
+    /**
+     * Maximum age of a stored snapshot that is still shown at startup: 30 minutes.
+     */
+    public static final long MAX_AGE_MILLIS = 30 * 60 * 1000L;
+
+    /**
+     * @class Stored
+     * @brief A restored snapshot together with the time it was fetched.
+     */
+    public static final class Stored {
+        /**
+         * The restored snapshot.
+         */
+        private final FleetSnapshot snapshot;
+        /**
+         * Time the snapshot was fetched, in epoch milliseconds.
+         */
+        private final long fetchedAtMillis;
+
+        /**
+         * Constructs a new Stored.
+         *
+         * @param snapshot The restored snapshot.
+         * @param fetchedAtMillis Time the snapshot was fetched, in epoch milliseconds.
+         */
+        Stored(FleetSnapshot snapshot, long fetchedAtMillis) {
+            this.snapshot = snapshot;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        /**
+         * Returns the restored snapshot.
+         *
+         * @return The snapshot.
+         */
+        public FleetSnapshot getSnapshot() { return snapshot; }
+        /**
+         * Returns the time the snapshot was fetched.
+         *
+         * @return Epoch milliseconds.
+         */
+        public long getFetchedAtMillis() { return fetchedAtMillis; }
+    }
+
+    /**
+     * File holding the snapshot.
+     */
+    private final File file;
+
+    /**
+     * Constructs a new SnapshotStore.
+     *
+     * @param file File holding the snapshot.
+     */
+    public SnapshotStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Writes a snapshot, replacing the stored one atomically.
+     *
+     * @param snapshot The snapshot to store.
+     * @param fetchedAtMillis Time the snapshot was fetched, in epoch milliseconds.
+     * @throws IOException If the file cannot be written.
+     */
+    public synchronized void save(FleetSnapshot snapshot, long fetchedAtMillis) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            write(snapshot, fetchedAtMillis, out);
+        }
+        if (!temporary.renameTo(file)) {
+            temporary.delete();
+            throw new IOException("Cannot replace " + file);
+        }
+    }
+
+    /**
+     * Reads the stored snapshot.
+     *
+     * A snapshot older than {@link #MAX_AGE_MILLIS} no longer shows where the vehicles are,
+     * so it is deleted instead of being restored.
+     *
+     * @param dictionary Dictionary the restored snapshot uses, normally the one of the API decoder.
+     * @param nowMillis Current time, in epoch milliseconds.
+     * @return The stored snapshot, or null if there is none, it is too old or it cannot be used.
+     */
+    public synchronized Stored load(FleetDictionary dictionary, long nowMillis) {
+        try (InputStream in = new FileInputStream(file)) {
+            Stored stored = read(in, dictionary);
+            if (stored != null && nowMillis - stored.getFetchedAtMillis() > MAX_AGE_MILLIS) {
+                file.delete();
+                return null;
+            }
+            return stored;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Writes a snapshot in the file format.
+     *
+     * @param snapshot The snapshot to write.
+     * @param fetchedAtMillis Time the snapshot was fetched, in epoch milliseconds.
+     * @param stream The stream to write to; not closed.
+     * @throws IOException If writing fails.
+     */
+    static void write(FleetSnapshot snapshot, long fetchedAtMillis, OutputStream stream) throws IOException {
+        int size = snapshot.size();
+
+        // Zapisujemy tylko napisy używane przez migawkę, z nowymi, gęstymi identyfikatorami
+        int maxId = FleetDictionary.NO_ID;
+        for (int i = 0; i < size; i++) {
+            maxId = Math.max(maxId, Math.max(snapshot.getLineId(i),
+                    Math.max(snapshot.getVehicleId(i), snapshot.getBrigadeId(i))));
+        }
+        int[] localIds = new int[maxId + 1];
+        Arrays.fill(localIds, FleetDictionary.NO_ID);
+        String[] strings = new String[maxId + 1];
+        int stringCount = 0;
+        for (int i = 0; i < size; i++) {
+            stringCount = assign(snapshot, snapshot.getLineId(i), localIds, strings, stringCount);
+            stringCount = assign(snapshot, snapshot.getVehicleId(i), localIds, strings, stringCount);
+            stringCount = assign(snapshot, snapshot.getBrigadeId(i), localIds, strings, stringCount);
+        }
+
+        CRC32 crc = new CRC32();
+        DataOutputStream out = new DataOutputStream(
+                new CheckedOutputStream(new BufferedOutputStream(stream), crc));
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(fetchedAtMillis);
+
+        out.writeInt(stringCount);
+        for (int i = 0; i < stringCount; i++) {
+            out.writeUTF(strings[i]);
+        }
+
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) out.writeInt(snapshot.getLatE6(i));
+        for (int i = 0; i < size; i++) out.writeInt(snapshot.getLonE6(i));
+        for (int i = 0; i < size; i++) out.writeLong(snapshot.getTimeMillis(i));
+        for (int i = 0; i < size; i++) out.writeInt(local(localIds, snapshot.getLineId(i)));
+        for (int i = 0; i < size; i++) out.writeInt(local(localIds, snapshot.getVehicleId(i)));
+        for (int i = 0; i < size; i++) out.writeInt(local(localIds, snapshot.getBrigadeId(i)));
+        for (int i = 0; i < size; i++) out.writeByte(snapshot.getVehicleType(i));
+
+        out.flush();
+        new DataOutputStream(stream).writeLong(crc.getValue());
+        stream.flush();
+    }
+
+    /**
+     * Reads a snapshot in the file format.
+     *
+     * @param stream The stream to read from; not closed.
+     * @param dictionary Dictionary the restored snapshot uses.
+     * @return The snapshot, or null if the stream holds another format version.
+     * @throws IOException If reading fails or the stream is corrupted.
+     */
+    static Stored read(InputStream stream, FleetDictionary dictionary) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(stream);
+        CRC32 crc = new CRC32();
+        DataInputStream in = new DataInputStream(new CheckedInputStream(buffered, crc));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a snapshot file");
+        }
+        if (in.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        long fetchedAtMillis = in.readLong();
+
+        int stringCount = checkCount(in.readInt());
+        int[] ids = new int[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            ids[i] = dictionary.idOf(in.readUTF());
+        }
+
+        int size = checkCount(in.readInt());
+        int[] latE6 = readInts(in, size);
+        int[] lonE6 = readInts(in, size);
+        long[] timeMillis = new long[size];
+        for (int i = 0; i < size; i++) timeMillis[i] = in.readLong();
+        int[] lineIds = readInts(in, size);
+        int[] vehicleIds = readInts(in, size);
+        int[] brigadeIds = readInts(in, size);
+        byte[] types = new byte[size];
+        in.readFully(types);
+
+        long expected = crc.getValue();
+        if (new DataInputStream(buffered).readLong() != expected) {
+            throw new IOException("Checksum mismatch");
+        }
+
+        FleetSnapshot.Builder builder = new FleetSnapshot.Builder(dictionary, size);
+        for (int i = 0; i < size; i++) {
+            builder.add(global(ids, lineIds[i]), latE6[i], lonE6[i], timeMillis[i],
+                    global(ids, vehicleIds[i]), global(ids, brigadeIds[i]), types[i]);
+        }
+        return new Stored(builder.build(), fetchedAtMillis);
+    }
+
+    /**
+     * Assigns a local id to a dictionary id seen for the first time.
+     *
+     * @param snapshot The snapshot resolving the dictionary id.
+     * @param id The dictionary id, or {@link FleetDictionary#NO_ID}.
+     * @param localIds Local id of every dictionary id, or {@link FleetDictionary#NO_ID}.
+     * @param strings Strings in local id order.
+     * @param count Number of local ids assigned so far.
+     * @return The new number of local ids.
+     */
+    private static int assign(FleetSnapshot snapshot, int id, int[] localIds, String[] strings, int count) {
+        if (id == FleetDictionary.NO_ID || localIds[id] != FleetDictionary.NO_ID) {
+            return count;
+        }
+        localIds[id] = count;
+        strings[count] = snapshot.getString(id);
+        return count + 1;
+    }
+
+    /**
+     * Maps a dictionary id to its local id.
+     *
+     * @param localIds Local id of every dictionary id.
+     * @param id The dictionary id, or {@link FleetDictionary#NO_ID}.
+     * @return The local id, or {@link FleetDictionary#NO_ID}.
+     */
+    private static int local(int[] localIds, int id) {
+        return id == FleetDictionary.NO_ID ? FleetDictionary.NO_ID : localIds[id];
+    }
+
+    /**
+     * Maps a local id back to a dictionary id.
+     *
+     * @param ids Dictionary id of every local id.
+     * @param localId The local id, or {@link FleetDictionary#NO_ID}.
+     * @return The dictionary id, or {@link FleetDictionary#NO_ID}.
+     * @throws IOException If the local id is out of range.
+     */
+    private static int global(int[] ids, int localId) throws IOException {
+        if (localId == FleetDictionary.NO_ID) {
+            return FleetDictionary.NO_ID;
+        }
+        if (localId < 0 || localId >= ids.length) {
+            throw new IOException("Invalid string id: " + localId);
+        }
+        return ids[localId];
+    }
+
+    /**
+     * Reads a column of ints.
+     *
+     * @param in The stream to read from.
+     * @param size Number of values.
+     * @return The values.
+     * @throws IOException If reading fails.
+     */
+    private static int[] readInts(DataInputStream in, int size) throws IOException {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = in.readInt();
+        }
+        return values;
+    }
+
+    /**
+     * Validates a count read from the file.
+     *
+     * @param count The count.
+     * @return The count.
+     * @throws IOException If the count is negative or implausibly large.
+     */
+    private static int checkCount(int count) throws IOException {
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+}
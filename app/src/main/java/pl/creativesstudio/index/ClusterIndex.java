@@ -0,0 +1,303 @@
+package pl.creativesstudio.index;
+
+import java.util.Arrays;
+
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file ClusterIndex.java
+ * @brief Per-snapshot grid clusters of vehicles for the zoom levels below the marker zoom.
+ *
+ * Vehicles are grouped into square cells of about {@link #CELL_PIXELS} screen pixels in
+ * Web Mercator. The finest level is built from the positions with one sort; every coarser
+ * level merges 2x2 cells of the level above it, so the whole hierarchy costs little more
+ * than the finest level. Built once per snapshot on the fetch thread, changing the zoom
+ * only picks another precomputed level.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class ClusterIndex {
+    /**
+     * Coarsest clustered zoom level.
+     */
+    public static final int MIN_ZOOM = 8;
+    /**
+     * Finest clustered zoom level.
+     */
+    public static final int MAX_ZOOM = 13;
+    /**
+     * Approximate size of a cluster cell on the screen, in pixels.
+     */
+    public static final int CELL_PIXELS = 128;
+
+    /**
+     * Clusters of every zoom level, from {@link #MIN_ZOOM}.
+     */
+    private final Level[] levels = new Level[MAX_ZOOM - MIN_ZOOM + 1];
+    /**
+     * Time spent building the index, in nanoseconds.
+     */
+    private final long buildTimeNanos;
+
+    /**
+     * @class Level
+     * @brief Clusters of one zoom level, in parallel arrays ordered by cell.
+     */
+    public static final class Level {
+        /**
+         * Zoom level of the clusters.
+         */
+        private final int zoom;
+        /**
+         * Number of clusters.
+         */
+        private final int size;
+        /**
+         * Cell of every cluster, as column * cells per axis + row.
+         */
+        private final int[] cells;
+        /**
+         * Number of vehicles in every cluster.
+         */
+        private final int[] counts;
+        /**
+         * Sum of the latitudes of every cluster, in microdegrees.
+         */
+        private final long[] latSums;
+        /**
+         * Sum of the longitudes of every cluster, in microdegrees.
+         */
+        private final long[] lonSums;
+        /**
+         * Index of one vehicle of every cluster.
+         */
+        private final int[] vehicles;
+
+        /**
+         * Constructs a new Level.
+         *
+         * @param zoom Zoom level of the clusters.
+         * @param size Number of clusters.
+         */
+        private Level(int zoom, int size) {
+            this.zoom = zoom;
+            this.size = size;
+            this.cells = new int[size];
+            this.counts = new int[size];
+            this.latSums = new long[size];
+            this.lonSums = new long[size];
+            this.vehicles = new int[size];
+        }
+
+        /**
+         * Returns the zoom level of the clusters.
+         *
+         * @return The zoom level.
+         */
+        public int getZoom() { return zoom; }
+        /**
+         * Returns the number of clusters.
+         *
+         * @return The cluster count.
+         */
+        public int size() { return size; }
+        /**
+         * Returns the cell of a cluster, unique within the level.
+         *
+         * @param cluster Index of the cluster.
+         * @return The cell.
+         */
+        public int getCell(int cluster) { return cells[cluster]; }
+        /**
+         * Returns the number of vehicles in a cluster.
+         *
+         * @param cluster Index of the cluster.
+         * @return The vehicle count.
+         */
+        public int getCount(int cluster) { return counts[cluster]; }
+        /**
+         * Returns the latitude of the centroid of a cluster.
+         *
+         * @param cluster Index of the cluster.
+         * @return The latitude in microdegrees.
+         */
+        public int getLatE6(int cluster) { return (int) (latSums[cluster] / counts[cluster]); }
+        /**
+         * Returns the longitude of the centroid of a cluster.
+         *
+         * @param cluster Index of the cluster.
+         * @return The longitude in microdegrees.
+         */
+        public int getLonE6(int cluster) { return (int) (lonSums[cluster] / counts[cluster]); }
+        /**
+         * Returns the snapshot index of one vehicle of a cluster.
+         *
+         * @param cluster Index of the cluster.
+         * @return The vehicle index.
+         */
+        public int getVehicle(int cluster) { return vehicles[cluster]; }
+
+        /**
+         * Finds the clusters whose centroid lies inside a bounding box, edges included.
+         *
+         * @param minLatE6 Southern edge of the box, in microdegrees.
+         * @param minLonE6 Western edge of the box, in microdegrees.
+         * @param maxLatE6 Northern edge of the box, in microdegrees.
+         * @param maxLonE6 Eastern edge of the box, in microdegrees.
+         * @param out Array receiving the cluster indices; must hold at least {@link #size()} entries.
+         * @return The number of indices written to {@code out}.
+         */
+        public int query(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6, int[] out) {
+            int count = 0;
+            for (int cluster = 0; cluster < size; cluster++) {
+                int lat = getLatE6(cluster);
+                int lon = getLonE6(cluster);
+                if (lat >= minLatE6 && lat <= maxLatE6 && lon >= minLonE6 && lon <= maxLonE6) {
+                    out[count++] = cluster;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Builds the clusters of a snapshot.
+     *
+     * Vehicles without a position (0, 0) are left out.
+     *
+     * @param snapshot The snapshot to cluster.
+     */
+    public ClusterIndex(FleetSnapshot snapshot) {
+        long start = System.nanoTime();
+        int cellsPerAxis = cellsPerAxis(MAX_ZOOM);
+
+        long[] order = new long[snapshot.size()];
+        int positioned = 0;
+        for (int i = 0; i < snapshot.size(); i++) {
+            int lat = snapshot.getLatE6(i);
+            int lon = snapshot.getLonE6(i);
+            if (lat == 0 || lon == 0) {
+                continue;
+            }
+            int column = clamp((int) (WebMercator.x(lon) * cellsPerAxis), cellsPerAxis);
+            int row = clamp((int) (WebMercator.y(lat) * cellsPerAxis), cellsPerAxis);
+            order[positioned++] = (long) (column * cellsPerAxis + row) << 32 | i;
+        }
+        Arrays.sort(order, 0, positioned);
+
+        Level finest = new Level(MAX_ZOOM, countGroups(order, positioned));
+        int cluster = -1;
+        for (int k = 0; k < positioned; k++) {
+            int cell = (int) (order[k] >>> 32);
+            int vehicle = (int) order[k];
+            if (cluster < 0 || finest.cells[cluster] != cell) {
+                cluster++;
+                finest.cells[cluster] = cell;
+                finest.vehicles[cluster] = vehicle;
+            }
+            finest.counts[cluster]++;
+            finest.latSums[cluster] += snapshot.getLatE6(vehicle);
+            finest.lonSums[cluster] += snapshot.getLonE6(vehicle);
+        }
+        levels[MAX_ZOOM - MIN_ZOOM] = finest;
+
+        for (int zoom = MAX_ZOOM - 1; zoom >= MIN_ZOOM; zoom--) {
+            levels[zoom - MIN_ZOOM] = merge(levels[zoom + 1 - MIN_ZOOM], zoom);
+        }
+        buildTimeNanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Returns the clusters to display at a camera zoom.
+     *
+     * @param zoom The camera zoom.
+     * @return The level of the nearest clustered zoom at or below {@code zoom}.
+     */
+    public Level getLevel(float zoom) {
+        int level = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, (int) Math.floor(zoom)));
+        return levels[level - MIN_ZOOM];
+    }
+
+    /**
+     * Returns the time spent building the index.
+     *
+     * @return The build time, in nanoseconds.
+     */
+    public long getBuildTimeNanos() {
+        return buildTimeNanos;
+    }
+
+    /**
+     * Merges 2x2 cells of a level into the cells of the next coarser level.
+     *
+     * @param child The finer level.
+     * @param zoom Zoom level of the result.
+     * @return The coarser level.
+     */
+    private static Level merge(Level child, int zoom) {
+        int childCells = cellsPerAxis(zoom + 1);
+        int cellsPerAxis = childCells / 2;
+        long[] order = new long[child.size];
+        for (int k = 0; k < child.size; k++) {
+            int column = child.cells[k] / childCells;
+            int row = child.cells[k] % childCells;
+            order[k] = (long) ((column / 2) * cellsPerAxis + row / 2) << 32 | k;
+        }
+        Arrays.sort(order);
+
+        Level level = new Level(zoom, countGroups(order, order.length));
+        int cluster = -1;
+        for (long entry : order) {
+            int cell = (int) (entry >>> 32);
+            int source = (int) entry;
+            if (cluster < 0 || level.cells[cluster] != cell) {
+                cluster++;
+                level.cells[cluster] = cell;
+                level.vehicles[cluster] = child.vehicles[source];
+            }
+            level.counts[cluster] += child.counts[source];
+            level.latSums[cluster] += child.latSums[source];
+            level.lonSums[cluster] += child.lonSums[source];
+        }
+        return level;
+    }
+
+    /**
+     * Counts the distinct cells in sorted (cell, index) pairs.
+     *
+     * @param order Pairs with the cell in the upper 32 bits, sorted.
+     * @param size Number of valid pairs.
+     * @return The number of distinct cells.
+     */
+    private static int countGroups(long[] order, int size) {
+        int groups = 0;
+        for (int k = 0; k < size; k++) {
+            if (k == 0 || order[k] >>> 32 != order[k - 1] >>> 32) {
+                groups++;
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Returns the number of cells along each axis of the world at a zoom level.
+     *
+     * @param zoom The zoom level.
+     * @return The cell count; the world is 256 * 2^zoom pixels wide.
+     */
+    static int cellsPerAxis(int zoom) {
+        return (int) (WebMercator.worldPixels(zoom) / CELL_PIXELS);
+    }
+
+    /**
+     * Clamps a cell coordinate into the grid.
+     *
+     * @param value The cell coordinate.
+     * @param cellsPerAxis Number of cells along the axis.
+     * @return The clamped coordinate.
+     */
+    private static int clamp(int value, int cellsPerAxis) {
+        return Math.max(0, Math.min(cellsPerAxis - 1, value));
+    }
+}
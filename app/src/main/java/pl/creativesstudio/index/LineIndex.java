@@ -0,0 +1,232 @@
+package pl.creativesstudio.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+import pl.creativesstudio.models.LineKey;
+
+/**
+ * @file LineIndex.java
+ * @brief Per-snapshot index of vehicles by line.
+ *
+ * Built once per snapshot, it holds the sorted list of distinct lines, the vehicles of
+ * every line in a compact (CSR) layout and the bounding box of every line. Opening the
+ * line list is then proportional to the number of lines and selecting a line to the
+ * number of its vehicles, instead of scanning the whole fleet.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class LineIndex {
+    /**
+     * Value returned for lines that are not in the snapshot.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Distinct line names in display order.
+     */
+    private final List<String> sortedLines;
+    /**
+     * Slot of every line id, or {@link #NOT_FOUND}; indexed by dictionary id.
+     */
+    private final int[] slotOfLineId;
+    /**
+     * Offset of the first vehicle of each slot; entry {@code lines} marks the end.
+     */
+    private final int[] slotStart;
+    /**
+     * Vehicle indices ordered by slot.
+     */
+    private final int[] vehicles;
+    /**
+     * Southern edge of every line's bounding box, in microdegrees.
+     */
+    private final int[] minLatE6;
+    /**
+     * Western edge of every line's bounding box, in microdegrees.
+     */
+    private final int[] minLonE6;
+    /**
+     * Northern edge of every line's bounding box, in microdegrees.
+     */
+    private final int[] maxLatE6;
+    /**
+     * Eastern edge of every line's bounding box, in microdegrees.
+     */
+    private final int[] maxLonE6;
+
+    /**
+     * Builds the line index of a snapshot.
+     *
+     * Vehicles without a position (0, 0) are listed under their line but left out of
+     * its bounding box.
+     *
+     * @param snapshot The snapshot to index.
+     */
+    public LineIndex(FleetSnapshot snapshot) {
+        int size = snapshot.size();
+
+        int maxLineId = FleetDictionary.NO_ID;
+        for (int i = 0; i < size; i++) {
+            maxLineId = Math.max(maxLineId, snapshot.getLineId(i));
+        }
+        int[] counts = new int[maxLineId + 1];
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            int lineId = snapshot.getLineId(i);
+            if (lineId != FleetDictionary.NO_ID && counts[lineId]++ == 0) {
+                distinct++;
+            }
+        }
+
+        LineKey[] keys = new LineKey[distinct];
+        int next = 0;
+        for (int lineId = 0; lineId <= maxLineId; lineId++) {
+            if (counts[lineId] > 0) {
+                keys[next++] = LineKey.of(snapshot.getString(lineId));
+            }
+        }
+        Arrays.sort(keys);
+
+        slotOfLineId = new int[maxLineId + 1];
+        Arrays.fill(slotOfLineId, NOT_FOUND);
+        slotStart = new int[distinct + 1];
+        List<String> lines = new ArrayList<>(distinct);
+        FleetDictionary dictionary = snapshot.getDictionary();
+        for (int slot = 0; slot < distinct; slot++) {
+            String line = keys[slot].getLine();
+            int lineId = dictionary.find(line);
+            slotOfLineId[lineId] = slot;
+            slotStart[slot + 1] = slotStart[slot] + counts[lineId];
+            lines.add(line);
+        }
+        sortedLines = Collections.unmodifiableList(lines);
+
+        minLatE6 = new int[distinct];
+        minLonE6 = new int[distinct];
+        maxLatE6 = new int[distinct];
+        maxLonE6 = new int[distinct];
+        Arrays.fill(minLatE6, Integer.MAX_VALUE);
+        Arrays.fill(minLonE6, Integer.MAX_VALUE);
+        Arrays.fill(maxLatE6, Integer.MIN_VALUE);
+        Arrays.fill(maxLonE6, Integer.MIN_VALUE);
+
+        int[] fill = Arrays.copyOf(slotStart, distinct);
+        vehicles = new int[slotStart[distinct]];
+        for (int i = 0; i < size; i++) {
+            int lineId = snapshot.getLineId(i);
+            if (lineId == FleetDictionary.NO_ID) {
+                continue;
+            }
+            int slot = slotOfLineId[lineId];
+            vehicles[fill[slot]++] = i;
+
+            int lat = snapshot.getLatE6(i);
+            int lon = snapshot.getLonE6(i);
+            if (lat != 0 && lon != 0) {
+                minLatE6[slot] = Math.min(minLatE6[slot], lat);
+                minLonE6[slot] = Math.min(minLonE6[slot], lon);
+                maxLatE6[slot] = Math.max(maxLatE6[slot], lat);
+                maxLonE6[slot] = Math.max(maxLonE6[slot], lon);
+            }
+        }
+    }
+
+    /**
+     * Returns the distinct lines of the snapshot in display order.
+     *
+     * @return An unmodifiable list of line names.
+     */
+    public List<String> getSortedLines() {
+        return sortedLines;
+    }
+
+    /**
+     * Returns the number of distinct lines.
+     *
+     * @return The line count.
+     */
+    public int getLineCount() {
+        return sortedLines.size();
+    }
+
+    /**
+     * Returns the slot of a line.
+     *
+     * @param lineId Dictionary id of the line.
+     * @return The slot, or {@link #NOT_FOUND} if the snapshot has no vehicle of that line.
+     */
+    public int findSlot(int lineId) {
+        if (lineId < 0 || lineId >= slotOfLineId.length) {
+            return NOT_FOUND;
+        }
+        return slotOfLineId[lineId];
+    }
+
+    /**
+     * Returns the number of vehicles of a line.
+     *
+     * @param slot Slot of the line.
+     * @return The vehicle count.
+     */
+    public int getVehicleCount(int slot) {
+        return slotStart[slot + 1] - slotStart[slot];
+    }
+
+    /**
+     * Copies the vehicle indices of a line.
+     *
+     * @param slot Slot of the line.
+     * @param out Array receiving the vehicle indices; must hold {@link #getVehicleCount} entries.
+     * @return The number of indices written to {@code out}.
+     */
+    public int copyVehicles(int slot, int[] out) {
+        int count = getVehicleCount(slot);
+        System.arraycopy(vehicles, slotStart[slot], out, 0, count);
+        return count;
+    }
+
+    /**
+     * Checks whether any vehicle of a line has a known position.
+     *
+     * @param slot Slot of the line.
+     * @return True if the bounding box of the line is defined.
+     */
+    public boolean hasBounds(int slot) {
+        return minLatE6[slot] <= maxLatE6[slot];
+    }
+
+    /**
+     * Returns the southern edge of a line's bounding box.
+     *
+     * @param slot Slot of the line.
+     * @return The latitude in microdegrees.
+     */
+    public int getMinLatE6(int slot) { return minLatE6[slot]; }
+    /**
+     * Returns the western edge of a line's bounding box.
+     *
+     * @param slot Slot of the line.
+     * @return The longitude in microdegrees.
+     */
+    public int getMinLonE6(int slot) { return minLonE6[slot]; }
+    /**
+     * Returns the northern edge of a line's bounding box.
+     *
+     * @param slot Slot of the line.
+     * @return The latitude in microdegrees.
+     */
+    public int getMaxLatE6(int slot) { return maxLatE6[slot]; }
+    /**
+     * Returns the eastern edge of a line's bounding box.
+     *
+     * @param slot Slot of the line.
+     * @return The longitude in microdegrees.
+     */
+    public int getMaxLonE6(int slot) { return maxLonE6[slot]; }
+}
@@ -0,0 +1,293 @@
+package pl.creativesstudio.index;
+
+/**
+ * @file SpatialGrid.java
+ * @brief Uniform-grid spatial index over vehicle positions in Warsaw.
+ *
+ * Vehicles are bucketed into a fixed grid of cells covering the Warsaw public transport
+ * area. Cells are stored in a compact (CSR) layout: one array of vehicle indices ordered
+ * by cell, plus the start offset of every cell. A bounding-box query visits only the
+ * cells overlapping the box, accepts cells fully inside it without further checks and
+ * checks the exact position only in the partially covered border cells. Queries write
+ * into a caller-supplied array and do not allocate.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class SpatialGrid {
+    /**
+     * Southern edge of the indexed area, in microdegrees.
+     */
+    public static final int WARSAW_MIN_LAT_E6 = 51_950_000;
+    /**
+     * Northern edge of the indexed area, in microdegrees.
+     */
+    public static final int WARSAW_MAX_LAT_E6 = 52_550_000;
+    /**
+     * Western edge of the indexed area, in microdegrees.
+     */
+    public static final int WARSAW_MIN_LON_E6 = 20_600_000;
+    /**
+     * Eastern edge of the indexed area, in microdegrees.
+     */
+    public static final int WARSAW_MAX_LON_E6 = 21_500_000;
+    /**
+     * Default number of cells along each axis.
+     */
+    public static final int DEFAULT_CELLS_PER_AXIS = 128;
+
+    /**
+     * Number of cells along each axis.
+     */
+    private final int cellsPerAxis;
+    /**
+     * Height of a cell, in microdegrees.
+     */
+    private final int cellHeightE6;
+    /**
+     * Width of a cell, in microdegrees.
+     */
+    private final int cellWidthE6;
+    /**
+     * Offset of the first entry of each cell; entry {@code cells} marks the end.
+     */
+    private final int[] cellStart;
+    /**
+     * Vehicle indices ordered by cell.
+     */
+    private final int[] entries;
+    /**
+     * Latitudes of the entries, in the same order as {@link #entries}.
+     */
+    private final int[] entryLatE6;
+    /**
+     * Longitudes of the entries, in the same order as {@link #entries}.
+     */
+    private final int[] entryLonE6;
+    /**
+     * Time spent building the index, in nanoseconds.
+     */
+    private final long buildTimeNanos;
+
+    /**
+     * Constructs a new SpatialGrid.
+     *
+     * @param cellsPerAxis Number of cells along each axis.
+     * @param cellStart Offset of the first entry of each cell.
+     * @param entries Vehicle indices ordered by cell.
+     * @param entryLatE6 Latitudes of the entries.
+     * @param entryLonE6 Longitudes of the entries.
+     * @param buildTimeNanos Time spent building the index.
+     */
+    private SpatialGrid(int cellsPerAxis, int[] cellStart, int[] entries,
+                        int[] entryLatE6, int[] entryLonE6, long buildTimeNanos) {
+        this.cellsPerAxis = cellsPerAxis;
+        this.cellHeightE6 = cellHeight(cellsPerAxis);
+        this.cellWidthE6 = cellWidth(cellsPerAxis);
+        this.cellStart = cellStart;
+        this.entries = entries;
+        this.entryLatE6 = entryLatE6;
+        this.entryLonE6 = entryLonE6;
+        this.buildTimeNanos = buildTimeNanos;
+    }
+
+    /**
+     * Builds a grid with the default resolution.
+     *
+     * @param latE6 Latitudes of the vehicles, in microdegrees.
+     * @param lonE6 Longitudes of the vehicles, in microdegrees.
+     * @param size Number of vehicles.
+     * @return The spatial index.
+     */
+    public static SpatialGrid build(int[] latE6, int[] lonE6, int size) {
+        return build(latE6, lonE6, size, DEFAULT_CELLS_PER_AXIS);
+    }
+
+    /**
+     * Builds a grid over the given positions with a counting sort by cell.
+     *
+     * Positions outside the indexed area are clamped into the border cells, which are
+     * always checked exactly, so they are still found by queries that contain them.
+     *
+     * @param latE6 Latitudes of the vehicles, in microdegrees.
+     * @param lonE6 Longitudes of the vehicles, in microdegrees.
+     * @param size Number of vehicles.
+     * @param cellsPerAxis Number of cells along each axis.
+     * @return The spatial index.
+     */
+    public static SpatialGrid build(int[] latE6, int[] lonE6, int size, int cellsPerAxis) {
+        long start = System.nanoTime();
+        int cellHeight = cellHeight(cellsPerAxis);
+        int cellWidth = cellWidth(cellsPerAxis);
+        int cellCount = cellsPerAxis * cellsPerAxis;
+
+        int[] cellOf = new int[size];
+        int[] cellStart = new int[cellCount + 1];
+        for (int i = 0; i < size; i++) {
+            int row = clamp((latE6[i] - WARSAW_MIN_LAT_E6) / cellHeight, cellsPerAxis);
+            int column = clamp((lonE6[i] - WARSAW_MIN_LON_E6) / cellWidth, cellsPerAxis);
+            int cell = row * cellsPerAxis + column;
+            cellOf[i] = cell;
+            cellStart[cell + 1]++;
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+
+        int[] next = new int[cellCount];
+        System.arraycopy(cellStart, 0, next, 0, cellCount);
+        int[] entries = new int[size];
+        int[] entryLat = new int[size];
+        int[] entryLon = new int[size];
+        for (int i = 0; i < size; i++) {
+            int position = next[cellOf[i]]++;
+            entries[position] = i;
+            entryLat[position] = latE6[i];
+            entryLon[position] = lonE6[i];
+        }
+
+        return new SpatialGrid(cellsPerAxis, cellStart, entries, entryLat, entryLon,
+                System.nanoTime() - start);
+    }
+
+    /**
+     * Finds the vehicles inside a bounding box, edges included.
+     *
+     * A box whose western edge lies east of its eastern edge is treated as crossing the
+     * antimeridian, the same way {@code LatLngBounds} does.
+     *
+     * @param minLatE6 Southern edge of the box, in microdegrees.
+     * @param minLonE6 Western edge of the box, in microdegrees.
+     * @param maxLatE6 Northern edge of the box, in microdegrees.
+     * @param maxLonE6 Eastern edge of the box, in microdegrees.
+     * @param out Array receiving the vehicle indices; must hold at least {@link #size()} entries.
+     * @return The number of indices written to {@code out}.
+     */
+    public int query(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6, int[] out) {
+        if (out.length < entries.length) {
+            throw new IllegalArgumentException("Output array too small: " + out.length + " < " + entries.length);
+        }
+        if (minLatE6 > maxLatE6) {
+            return 0;
+        }
+        if (minLonE6 > maxLonE6) {
+            int count = queryRange(minLatE6, minLonE6, maxLatE6, Integer.MAX_VALUE, out, 0);
+            return queryRange(minLatE6, Integer.MIN_VALUE, maxLatE6, maxLonE6, out, count);
+        }
+        return queryRange(minLatE6, minLonE6, maxLatE6, maxLonE6, out, 0);
+    }
+
+    /**
+     * Finds the vehicles inside a box that does not cross the antimeridian.
+     *
+     * @param minLat Southern edge of the box, in microdegrees.
+     * @param minLon Western edge of the box, in microdegrees.
+     * @param maxLat Northern edge of the box, in microdegrees.
+     * @param maxLon Eastern edge of the box, in microdegrees.
+     * @param out Array receiving the vehicle indices.
+     * @param count Number of indices already in {@code out}.
+     * @return The total number of indices in {@code out}.
+     */
+    private int queryRange(int minLat, int minLon, int maxLat, int maxLon, int[] out, int count) {
+        int firstRow = cellIndex(minLat, WARSAW_MIN_LAT_E6, cellHeightE6);
+        int lastRow = cellIndex(maxLat, WARSAW_MIN_LAT_E6, cellHeightE6);
+        int firstColumn = cellIndex(minLon, WARSAW_MIN_LON_E6, cellWidthE6);
+        int lastColumn = cellIndex(maxLon, WARSAW_MIN_LON_E6, cellWidthE6);
+        int last = cellsPerAxis - 1;
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            int cellMinLat = WARSAW_MIN_LAT_E6 + row * cellHeightE6;
+            boolean rowInside = row != 0 && row != last
+                    && cellMinLat >= minLat && cellMinLat + cellHeightE6 - 1 <= maxLat;
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = row * cellsPerAxis + column;
+                int from = cellStart[cell];
+                int to = cellStart[cell + 1];
+                if (from == to) {
+                    continue;
+                }
+                int cellMinLon = WARSAW_MIN_LON_E6 + column * cellWidthE6;
+                boolean inside = rowInside && column != 0 && column != last
+                        && cellMinLon >= minLon && cellMinLon + cellWidthE6 - 1 <= maxLon;
+                if (inside) {
+                    System.arraycopy(entries, from, out, count, to - from);
+                    count += to - from;
+                    continue;
+                }
+                for (int k = from; k < to; k++) {
+                    int lat = entryLatE6[k];
+                    int lon = entryLonE6[k];
+                    if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+                        out[count++] = entries[k];
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of indexed vehicles.
+     *
+     * @return The vehicle count.
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the time spent building the index.
+     *
+     * @return The build time in nanoseconds.
+     */
+    public long getBuildTimeNanos() {
+        return buildTimeNanos;
+    }
+
+    /**
+     * Returns the cell containing a coordinate, clamped to the grid.
+     *
+     * @param valueE6 The coordinate, in microdegrees.
+     * @param originE6 The grid origin on the same axis, in microdegrees.
+     * @param cellSizeE6 The cell size on the same axis, in microdegrees.
+     * @return The row or column of the cell.
+     */
+    private int cellIndex(int valueE6, int originE6, int cellSizeE6) {
+        long offset = (long) valueE6 - originE6;
+        if (offset < 0) {
+            return 0;
+        }
+        return clamp((int) Math.min(offset / cellSizeE6, cellsPerAxis), cellsPerAxis);
+    }
+
+    /**
+     * Clamps a row or column to the grid.
+     *
+     * @param value The row or column.
+     * @param cellsPerAxis Number of cells along the axis.
+     * @return The clamped value.
+     */
+    private static int clamp(int value, int cellsPerAxis) {
+        return value < 0 ? 0 : Math.min(value, cellsPerAxis - 1);
+    }
+
+    /**
+     * Returns the cell height for the given resolution.
+     *
+     * @param cellsPerAxis Number of cells along each axis.
+     * @return The cell height, in microdegrees.
+     */
+    private static int cellHeight(int cellsPerAxis) {
+        return (WARSAW_MAX_LAT_E6 - WARSAW_MIN_LAT_E6 + cellsPerAxis - 1) / cellsPerAxis;
+    }
+
+    /**
+     * Returns the cell width for the given resolution.
+     *
+     * @param cellsPerAxis Number of cells along each axis.
+     * @return The cell width, in microdegrees.
+     */
+    private static int cellWidth(int cellsPerAxis) {
+        return (WARSAW_MAX_LON_E6 - WARSAW_MIN_LON_E6 + cellsPerAxis - 1) / cellsPerAxis;
+    }
+}
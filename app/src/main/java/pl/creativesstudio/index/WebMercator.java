@@ -0,0 +1,78 @@
+package pl.creativesstudio.index;
+
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file WebMercator.java
+ * @brief Conversions between coordinates and the Web Mercator projection used by the map.
+ *
+ * Projected coordinates are normalized to the whole world: x runs from 0 (west) to 1
+ * (east) and y from 0 (north) to 1 (south). At zoom level z the world is 256 * 2^z
+ * pixels wide.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class WebMercator {
+    /**
+     * Size of a map tile, in pixels.
+     */
+    public static final int TILE_PIXELS = 256;
+
+    /**
+     * Not instantiable.
+     */
+    private WebMercator() {
+    }
+
+    /**
+     * Projects a longitude.
+     *
+     * @param lonE6 The longitude, in microdegrees.
+     * @return The x coordinate, from 0 (west) to 1 (east).
+     */
+    public static double x(int lonE6) {
+        return (lonE6 / FleetSnapshot.MICRODEGREES + 180) / 360;
+    }
+
+    /**
+     * Projects a latitude.
+     *
+     * @param latE6 The latitude, in microdegrees.
+     * @return The y coordinate, from 0 (north) to 1 (south).
+     */
+    public static double y(int latE6) {
+        double sin = Math.sin(Math.toRadians(latE6 / FleetSnapshot.MICRODEGREES));
+        return 0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI);
+    }
+
+    /**
+     * Converts an x coordinate back to a longitude.
+     *
+     * @param x The x coordinate.
+     * @return The longitude, in microdegrees.
+     */
+    public static int lonE6(double x) {
+        return FleetSnapshot.toE6(x * 360 - 180);
+    }
+
+    /**
+     * Converts a y coordinate back to a latitude.
+     *
+     * @param y The y coordinate.
+     * @return The latitude, in microdegrees.
+     */
+    public static int latE6(double y) {
+        return FleetSnapshot.toE6(Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y)))));
+    }
+
+    /**
+     * Returns the width of the world at a zoom level.
+     *
+     * @param zoom The zoom level.
+     * @return The width, in pixels.
+     */
+    public static long worldPixels(int zoom) {
+        return (long) TILE_PIXELS << zoom;
+    }
+}
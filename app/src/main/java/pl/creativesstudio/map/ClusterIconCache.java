@@ -0,0 +1,128 @@
+package pl.creativesstudio.map;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.LruCache;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+/**
+ * @file ClusterIconCache.java
+ * @brief Bounded cache of rendered cluster count bubbles.
+ *
+ * Counts above {@link #MAX_EXACT_COUNT} share one label, so the number of distinct
+ * bubbles stays small and nearly every cluster reuses an already rendered icon.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class ClusterIconCache {
+    /**
+     * Largest count shown exactly; larger counts are shown as "999+".
+     */
+    static final int MAX_EXACT_COUNT = 999;
+    /**
+     * Maximum number of cached bubbles.
+     */
+    private static final int MAX_ENTRIES = 128;
+    /**
+     * Text size of the count, in density-independent pixels.
+     */
+    private static final float TEXT_SIZE_DP = 14;
+    /**
+     * Padding around the count, in density-independent pixels.
+     */
+    private static final float PADDING_DP = 10;
+
+    /**
+     * Cached bubbles keyed by label.
+     */
+    private final LruCache<String, BitmapDescriptor> cache = new LruCache<>(MAX_ENTRIES);
+    /**
+     * Screen density scale.
+     */
+    private final float density;
+    /**
+     * Reusable paint for the count.
+     */
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * Reusable paint for the bubble.
+     */
+    private final Paint bubblePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * Reusable paint for the bubble outline.
+     */
+    private final Paint outlinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    /**
+     * Reusable rectangle for measuring the count.
+     */
+    private final Rect textBounds = new Rect();
+
+    /**
+     * Constructs a new ClusterIconCache.
+     *
+     * @param context Context used to read the screen density.
+     */
+    public ClusterIconCache(Context context) {
+        this.density = context.getResources().getDisplayMetrics().density;
+
+        textPaint.setTextSize(TEXT_SIZE_DP * density);
+        textPaint.setColor(Color.WHITE);
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setFakeBoldText(true);
+        bubblePaint.setColor(Color.rgb(211, 47, 47));
+        outlinePaint.setColor(Color.WHITE);
+    }
+
+    /**
+     * Returns the bubble for a cluster, rendering it on a cache miss.
+     *
+     * @param count Number of vehicles in the cluster.
+     * @return A BitmapDescriptor representing the cluster icon.
+     */
+    public BitmapDescriptor get(int count) {
+        String label = label(count);
+        BitmapDescriptor descriptor = cache.get(label);
+        if (descriptor == null) {
+            descriptor = render(label);
+            cache.put(label, descriptor);
+        }
+        return descriptor;
+    }
+
+    /**
+     * Returns the label shown for a count.
+     *
+     * @param count Number of vehicles in the cluster.
+     * @return The label.
+     */
+    static String label(int count) {
+        return count > MAX_EXACT_COUNT ? MAX_EXACT_COUNT + "+" : String.valueOf(count);
+    }
+
+    /**
+     * Renders the bubble for a label.
+     *
+     * @param label The label to display.
+     * @return The rendered icon.
+     */
+    private BitmapDescriptor render(String label) {
+        textPaint.getTextBounds(label, 0, label.length(), textBounds);
+        int diameter = (int) (Math.max(textBounds.width(), textBounds.height()) + 2 * PADDING_DP * density);
+        float radius = diameter / 2f;
+
+        Bitmap bitmap = Bitmap.createBitmap(diameter, diameter, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawCircle(radius, radius, radius, outlinePaint);
+        canvas.drawCircle(radius, radius, radius - 2 * density, bubblePaint);
+        canvas.drawText(label, radius, radius + textBounds.height() / 2f, textPaint);
+
+        return BitmapDescriptorFactory.fromBitmap(bitmap);
+    }
+}
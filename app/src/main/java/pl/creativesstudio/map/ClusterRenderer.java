@@ -0,0 +1,213 @@
+package pl.creativesstudio.map;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import pl.creativesstudio.index.ClusterIndex;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file ClusterRenderer.java
+ * @brief Keeps the cluster bubbles on the map in sync with a precomputed cluster level.
+ *
+ * Works like {@link MarkerReconciler}: bubbles are keyed by zoom level and cell, and only
+ * the bubbles that appeared, changed or disappeared are touched, so panning and new data
+ * at the same zoom update a handful of markers.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class ClusterRenderer {
+    /**
+     * @interface IconFactory
+     * @brief Supplies cluster icons for a given vehicle count.
+     */
+    public interface IconFactory {
+        /**
+         * Creates (or returns a cached) icon for the given vehicle count.
+         *
+         * @param count Number of vehicles in the cluster.
+         * @return The icon to use for the cluster.
+         */
+        BitmapDescriptor create(int count);
+    }
+
+    /**
+     * Map the bubbles are placed on.
+     */
+    private final GoogleMap map;
+    /**
+     * Source of bubble icons.
+     */
+    private final IconFactory iconFactory;
+    /**
+     * Bubbles currently on the map, keyed by zoom level and cell.
+     */
+    private final Map<Long, BubbleState> bubbles = new HashMap<>();
+    /**
+     * Keys seen during the current pass, reused between calls.
+     */
+    private final Set<Long> seen = new HashSet<>();
+    /**
+     * Indices of the visible clusters, reused between calls.
+     */
+    private int[] visible = new int[0];
+
+    /**
+     * @class BubbleState
+     * @brief A bubble together with the values it currently displays.
+     */
+    private static final class BubbleState {
+        /**
+         * The marker on the map.
+         */
+        final Marker marker;
+        /**
+         * Label shown by the bubble.
+         */
+        String label;
+        /**
+         * Latitude of the bubble in microdegrees.
+         */
+        int latE6;
+        /**
+         * Longitude of the bubble in microdegrees.
+         */
+        int lonE6;
+
+        /**
+         * Constructs a new BubbleState.
+         *
+         * @param marker The marker on the map.
+         * @param label Label shown by the bubble.
+         * @param latE6 Latitude of the bubble in microdegrees.
+         * @param lonE6 Longitude of the bubble in microdegrees.
+         */
+        BubbleState(Marker marker, String label, int latE6, int lonE6) {
+            this.marker = marker;
+            this.label = label;
+            this.latE6 = latE6;
+            this.lonE6 = lonE6;
+        }
+    }
+
+    /**
+     * Constructs a new ClusterRenderer.
+     *
+     * @param map The map on which bubbles are managed.
+     * @param iconFactory Source of bubble icons.
+     */
+    public ClusterRenderer(GoogleMap map, IconFactory iconFactory) {
+        this.map = map;
+        this.iconFactory = iconFactory;
+    }
+
+    /**
+     * Brings the bubbles on the map in line with the clusters of a level inside a box.
+     *
+     * @param level The clusters to display.
+     * @param minLatE6 Southern edge of the visible area, in microdegrees.
+     * @param minLonE6 Western edge of the visible area, in microdegrees.
+     * @param maxLatE6 Northern edge of the visible area, in microdegrees.
+     * @param maxLonE6 Eastern edge of the visible area, in microdegrees.
+     */
+    public void render(ClusterIndex.Level level, int minLatE6, int minLonE6, int maxLatE6, int maxLonE6) {
+        if (visible.length < level.size()) {
+            visible = new int[level.size()];
+        }
+        int count = level.query(minLatE6, minLonE6, maxLatE6, maxLonE6, visible);
+        seen.clear();
+
+        for (int k = 0; k < count; k++) {
+            int cluster = visible[k];
+            Long key = (long) level.getZoom() << 32 | level.getCell(cluster);
+            seen.add(key);
+            int latE6 = level.getLatE6(cluster);
+            int lonE6 = level.getLonE6(cluster);
+            int vehicles = level.getCount(cluster);
+            String label = ClusterIconCache.label(vehicles);
+
+            BubbleState state = bubbles.get(key);
+            if (state != null) {
+                if (state.latE6 != latE6 || state.lonE6 != lonE6) {
+                    state.marker.setPosition(position(latE6, lonE6));
+                    state.latE6 = latE6;
+                    state.lonE6 = lonE6;
+                }
+                if (!label.equals(state.label)) {
+                    state.marker.setIcon(iconFactory.create(vehicles));
+                    state.marker.setTitle(formatTitle(label));
+                    state.label = label;
+                }
+                continue;
+            }
+
+            Marker marker = map.addMarker(new MarkerOptions()
+                    .position(position(latE6, lonE6))
+                    .title(formatTitle(label))
+                    .icon(iconFactory.create(vehicles))
+                    .anchor(0.5f, 0.5f));
+            if (marker != null) {
+                bubbles.put(key, new BubbleState(marker, label, latE6, lonE6));
+            }
+        }
+
+        Iterator<Map.Entry<Long, BubbleState>> iterator = bubbles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, BubbleState> entry = iterator.next();
+            if (!seen.contains(entry.getKey())) {
+                entry.getValue().marker.remove();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all bubbles managed by this renderer from the map.
+     */
+    public void clear() {
+        for (BubbleState state : bubbles.values()) {
+            state.marker.remove();
+        }
+        bubbles.clear();
+    }
+
+    /**
+     * Returns the number of bubbles currently on the map.
+     *
+     * @return The bubble count.
+     */
+    public int size() {
+        return bubbles.size();
+    }
+
+    /**
+     * Converts a position in microdegrees to a LatLng.
+     *
+     * @param latE6 Latitude in microdegrees.
+     * @param lonE6 Longitude in microdegrees.
+     * @return The position.
+     */
+    private static LatLng position(int latE6, int lonE6) {
+        return new LatLng(latE6 / FleetSnapshot.MICRODEGREES, lonE6 / FleetSnapshot.MICRODEGREES);
+    }
+
+    /**
+     * Formats the info window title of a bubble.
+     *
+     * @param label The count label.
+     * @return The bubble title.
+     */
+    static String formatTitle(String label) {
+        return "Pojazdy: " + label;
+    }
+}
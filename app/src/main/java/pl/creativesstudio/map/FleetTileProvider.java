@@ -0,0 +1,448 @@
+package pl.creativesstudio.map;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import pl.creativesstudio.index.WebMercator;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file FleetTileProvider.java
+ * @brief Tile provider drawing every vehicle of a snapshot as a dot coloured by line.
+ *
+ * Tiles are rasterized into a pixel buffer straight from the snapshot columns, using the
+ * spatial index to find the vehicles of a tile, and encoded by a {@link TileEncoder}.
+ * Encoded tiles are cached within a byte budget. When a new snapshot is set, only the
+ * cached tiles touched by a vehicle that moved, appeared, disappeared or changed line are
+ * dropped; the others stay valid, so redrawing the overlay costs little more than copying
+ * cached bytes, however many vehicles it shows. Tiles being rendered while a snapshot is
+ * set are handed to the map with the old vehicles, so they are reported as changed too.
+ *
+ * {@link #getTile} is called by the map on background threads.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FleetTileProvider implements TileProvider {
+    /**
+     * @interface TileEncoder
+     * @brief Encodes a rasterized tile into the bytes handed to the map.
+     */
+    public interface TileEncoder {
+        /**
+         * Encodes a square ARGB pixel buffer.
+         *
+         * @param pixels Pixels in rows from the top-left corner.
+         * @param size Width and height of the tile, in pixels.
+         * @return The encoded image.
+         */
+        byte[] encode(int[] pixels, int size);
+    }
+
+    /**
+     * Radius of a vehicle dot, in pixels.
+     */
+    static final int DOT_RADIUS = 4;
+    /**
+     * Colour of the outline around every dot.
+     */
+    static final int OUTLINE_COLOR = 0xFFFFFFFF;
+    /**
+     * Colours of the lines; a line always gets the same colour.
+     */
+    private static final int[] PALETTE = {
+            0xFFD32F2F, 0xFF1976D2, 0xFF388E3C, 0xFFF57C00, 0xFF7B1FA2, 0xFF0097A7,
+            0xFFC2185B, 0xFF5D4037, 0xFF455A64, 0xFFAFB42B, 0xFF512DA8, 0xFF00796B};
+    /**
+     * Cached entry of a tile without vehicles.
+     */
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * Encoder of the rasterized tiles.
+     */
+    private final TileEncoder encoder;
+    /**
+     * Maximum total size of the cached tiles, in bytes.
+     */
+    private final long maxCacheBytes;
+    /**
+     * Encoded tiles keyed by zoom and position, in access order.
+     */
+    private final LinkedHashMap<Long, byte[]> cache = new LinkedHashMap<>(64, 0.75f, true);
+    /**
+     * Total size of the cached tiles, in bytes.
+     */
+    private long cacheBytes;
+    /**
+     * Snapshot drawn on the tiles.
+     */
+    private FleetSnapshot snapshot = FleetSnapshot.EMPTY;
+    /**
+     * Number of snapshots set so far; tiles rendered for an older one are not cached.
+     */
+    private long version;
+    /**
+     * Number of tiles being rendered outside the lock.
+     */
+    private int rendersInFlight;
+    /**
+     * Whether a tile rendered for an older snapshot was handed to the map since the last
+     * snapshot was set.
+     */
+    private boolean staleTileServed;
+    /**
+     * Number of tiles served from the cache.
+     */
+    private long hits;
+    /**
+     * Number of tiles rasterized.
+     */
+    private long renders;
+    /**
+     * Number of cached tiles dropped because their vehicles changed.
+     */
+    private long invalidations;
+
+    /**
+     * Constructs a new FleetTileProvider.
+     *
+     * @param encoder Encoder of the rasterized tiles.
+     * @param maxCacheBytes Maximum total size of the cached tiles, in bytes.
+     */
+    public FleetTileProvider(TileEncoder encoder, long maxCacheBytes) {
+        this.encoder = encoder;
+        this.maxCacheBytes = maxCacheBytes;
+    }
+
+    /**
+     * Sets the snapshot to draw and drops the cached tiles it changes.
+     *
+     * The result also counts the tiles being rendered for the previous snapshot, and one tile
+     * if a tile rendered for an even older snapshot reached the map after the last call, as
+     * the map holds or will receive them with the old vehicles.
+     *
+     * @param next The new snapshot.
+     * @return The number of dropped and stale tiles; if positive, the map's tile cache should
+     *         be cleared.
+     */
+    public synchronized int setSnapshot(FleetSnapshot next) {
+        FleetSnapshot previous = snapshot;
+        if (next == previous) {
+            return 0;
+        }
+        snapshot = next;
+        version++;
+
+        int dropped;
+        if (previous.getDictionary() != next.getDictionary() && !previous.isEmpty() && !next.isEmpty()) {
+            dropped = cache.size();
+            cache.clear();
+            cacheBytes = 0;
+        } else {
+            dropped = dropDirtyTiles(previous, next);
+        }
+        invalidations += dropped;
+        int stale = rendersInFlight + (staleTileServed ? 1 : 0);
+        staleTileServed = false;
+        return dropped + stale;
+    }
+
+    /**
+     * Returns the tile at the given position, from the cache or newly rasterized.
+     *
+     * @param x Column of the tile.
+     * @param y Row of the tile.
+     * @param zoom Zoom level of the tile.
+     * @return The tile, or {@link TileProvider#NO_TILE} if it holds no vehicles.
+     */
+    @Override
+    public Tile getTile(int x, int y, int zoom) {
+        Long key = key(x, y, zoom);
+        FleetSnapshot drawn;
+        long renderedVersion;
+        synchronized (this) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                hits++;
+                return toTile(cached);
+            }
+            drawn = snapshot;
+            renderedVersion = version;
+            rendersInFlight++;
+        }
+
+        byte[] data;
+        try {
+            data = render(drawn, x, y, zoom);
+        } catch (RuntimeException | Error e) {
+            synchronized (this) {
+                rendersInFlight--;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            rendersInFlight--;
+            renders++;
+            if (renderedVersion == version) {
+                cache.put(key, data);
+                cacheBytes += data.length;
+                trimCache();
+            } else {
+                // Kafelek ze starymi pojazdami trafi do mapy, więc kolejna migawka musi wyczyścić jej pamięć
+                staleTileServed = true;
+            }
+        }
+        return toTile(data);
+    }
+
+    /**
+     * Returns the number of tiles served from the cache.
+     *
+     * @return The hit count.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of rasterized tiles.
+     *
+     * @return The render count.
+     */
+    public synchronized long getRenderCount() {
+        return renders;
+    }
+
+    /**
+     * Returns the number of cached tiles dropped because their vehicles changed.
+     *
+     * @return The invalidation count.
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * Rasterizes the vehicles of a tile.
+     *
+     * @param drawn The snapshot to draw.
+     * @param x Column of the tile.
+     * @param y Row of the tile.
+     * @param zoom Zoom level of the tile.
+     * @return The encoded tile, or {@link #EMPTY} if it holds no vehicles.
+     */
+    private byte[] render(FleetSnapshot drawn, int x, int y, int zoom) {
+        if (drawn.isEmpty()) {
+            return EMPTY;
+        }
+        int size = WebMercator.TILE_PIXELS;
+        double world = WebMercator.worldPixels(zoom);
+        int margin = DOT_RADIUS + 1;
+
+        // Kafelek poszerzony o promień kropki, aby pojazdy przy krawędzi nie były ucięte
+        int minLat = WebMercator.latE6((y * (double) size + size + margin) / world);
+        int maxLat = WebMercator.latE6((y * (double) size - margin) / world);
+        int minLon = WebMercator.lonE6((x * (double) size - margin) / world);
+        int maxLon = WebMercator.lonE6((x * (double) size + size + margin) / world);
+        int[] found = new int[drawn.size()];
+        int count = drawn.getSpatialIndex().query(minLat, minLon, maxLat, maxLon, found);
+
+        int[] pixels = null;
+        for (int k = 0; k < count; k++) {
+            int vehicle = found[k];
+            int latE6 = drawn.getLatE6(vehicle);
+            int lonE6 = drawn.getLonE6(vehicle);
+            if (latE6 == 0 || lonE6 == 0) {
+                continue;
+            }
+            if (pixels == null) {
+                pixels = new int[size * size];
+            }
+            int px = (int) Math.round(WebMercator.x(lonE6) * world - x * (double) size);
+            int py = (int) Math.round(WebMercator.y(latE6) * world - y * (double) size);
+            drawDot(pixels, size, px, py, colorOf(drawn.getLine(vehicle)));
+        }
+        return pixels == null ? EMPTY : encoder.encode(pixels, size);
+    }
+
+    /**
+     * Draws an outlined dot.
+     *
+     * @param pixels The pixel buffer.
+     * @param size Width and height of the buffer.
+     * @param cx Column of the dot centre; may lie outside the buffer.
+     * @param cy Row of the dot centre; may lie outside the buffer.
+     * @param color Fill colour of the dot.
+     */
+    static void drawDot(int[] pixels, int size, int cx, int cy, int color) {
+        int outer = DOT_RADIUS + 1;
+        for (int dy = -outer; dy <= outer; dy++) {
+            int row = cy + dy;
+            if (row < 0 || row >= size) {
+                continue;
+            }
+            for (int dx = -outer; dx <= outer; dx++) {
+                int column = cx + dx;
+                if (column < 0 || column >= size) {
+                    continue;
+                }
+                int distance = dx * dx + dy * dy;
+                if (distance <= DOT_RADIUS * DOT_RADIUS) {
+                    pixels[row * size + column] = color;
+                } else if (distance <= outer * outer) {
+                    pixels[row * size + column] = OUTLINE_COLOR;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the dot colour of a line.
+     *
+     * @param line The line, or null.
+     * @return The ARGB colour.
+     */
+    static int colorOf(String line) {
+        return line == null ? PALETTE[0] : PALETTE[(line.hashCode() & 0x7fffffff) % PALETTE.length];
+    }
+
+    /**
+     * Drops the cached tiles touched by vehicles that differ between two snapshots.
+     *
+     * Must be called with the lock held.
+     *
+     * @param previous The snapshot drawn so far.
+     * @param next The new snapshot, using the same dictionary.
+     * @return The number of dropped tiles.
+     */
+    private int dropDirtyTiles(FleetSnapshot previous, FleetSnapshot next) {
+        if (cache.isEmpty()) {
+            return 0;
+        }
+        Set<Integer> zooms = new HashSet<>();
+        for (Long key : cache.keySet()) {
+            zooms.add((int) (key >>> 50));
+        }
+
+        int maxKey = FleetDictionary.NO_ID;
+        for (int i = 0; i < previous.size(); i++) {
+            maxKey = Math.max(maxKey, previous.getVehicleKey(i));
+        }
+        int[] previousIndex = new int[maxKey + 1];
+        Arrays.fill(previousIndex, -1);
+        for (int i = 0; i < previous.size(); i++) {
+            if (previous.getVehicleKey(i) != FleetDictionary.NO_ID) {
+                previousIndex[previous.getVehicleKey(i)] = i;
+            }
+        }
+
+        Set<Long> dirty = new HashSet<>();
+        boolean[] matched = new boolean[previous.size()];
+        for (int i = 0; i < next.size(); i++) {
+            int key = next.getVehicleKey(i);
+            int j = key >= 0 && key <= maxKey ? previousIndex[key] : -1;
+            if (j >= 0) {
+                matched[j] = true;
+                if (previous.getLatE6(j) == next.getLatE6(i) && previous.getLonE6(j) == next.getLonE6(i)
+                        && previous.getLineId(j) == next.getLineId(i)) {
+                    continue;
+                }
+                markDirty(dirty, zooms, previous.getLatE6(j), previous.getLonE6(j));
+            }
+            markDirty(dirty, zooms, next.getLatE6(i), next.getLonE6(i));
+        }
+        for (int j = 0; j < previous.size(); j++) {
+            if (!matched[j]) {
+                markDirty(dirty, zooms, previous.getLatE6(j), previous.getLonE6(j));
+            }
+        }
+
+        int dropped = 0;
+        Iterator<Map.Entry<Long, byte[]>> iterator = cache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, byte[]> entry = iterator.next();
+            if (dirty.contains(entry.getKey())) {
+                cacheBytes -= entry.getValue().length;
+                iterator.remove();
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Adds the keys of the tiles a dot at a position is drawn on, at every given zoom.
+     *
+     * @param dirty Keys of the dirty tiles.
+     * @param zooms Zoom levels with cached tiles.
+     * @param latE6 Latitude of the dot, in microdegrees.
+     * @param lonE6 Longitude of the dot, in microdegrees.
+     */
+    private static void markDirty(Set<Long> dirty, Set<Integer> zooms, int latE6, int lonE6) {
+        if (latE6 == 0 || lonE6 == 0) {
+            return;
+        }
+        int margin = DOT_RADIUS + 1;
+        for (int zoom : zooms) {
+            double world = WebMercator.worldPixels(zoom);
+            double px = WebMercator.x(lonE6) * world;
+            double py = WebMercator.y(latE6) * world;
+            int firstX = (int) Math.floor((px - margin) / WebMercator.TILE_PIXELS);
+            int lastX = (int) Math.floor((px + margin) / WebMercator.TILE_PIXELS);
+            int firstY = (int) Math.floor((py - margin) / WebMercator.TILE_PIXELS);
+            int lastY = (int) Math.floor((py + margin) / WebMercator.TILE_PIXELS);
+            for (int tx = firstX; tx <= lastX; tx++) {
+                for (int ty = firstY; ty <= lastY; ty++) {
+                    dirty.add(key(tx, ty, zoom));
+                }
+            }
+        }
+    }
+
+    /**
+     * Evicts the least recently used tiles beyond the byte budget.
+     *
+     * Must be called with the lock held.
+     */
+    private void trimCache() {
+        Iterator<byte[]> iterator = cache.values().iterator();
+        while (cacheBytes > maxCacheBytes && iterator.hasNext()) {
+            cacheBytes -= iterator.next().length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Wraps encoded bytes in a tile.
+     *
+     * @param data The encoded tile, or {@link #EMPTY}.
+     * @return The tile, or {@link TileProvider#NO_TILE}.
+     */
+    private static Tile toTile(byte[] data) {
+        if (data.length == 0) {
+            return NO_TILE;
+        }
+        return new Tile(WebMercator.TILE_PIXELS, WebMercator.TILE_PIXELS, data);
+    }
+
+    /**
+     * Packs the position of a tile into a cache key.
+     *
+     * @param x Column of the tile.
+     * @param y Row of the tile.
+     * @param zoom Zoom level of the tile.
+     * @return The key.
+     */
+    static long key(int x, int y, int zoom) {
+        return (long) zoom << 50 | (long) x << 25 | y;
+    }
+}
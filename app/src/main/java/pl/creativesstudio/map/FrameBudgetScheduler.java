@@ -0,0 +1,204 @@
+package pl.creativesstudio.map;
+
+import android.view.Choreographer;
+
+/**
+ * @file FrameBudgetScheduler.java
+ * @brief Runs main-thread work in steps that fit a per-frame time budget.
+ *
+ * Every frame the current task runs step after step until it is done or the frame budget
+ * is spent; the rest continues in the next frame. Scheduling a new task replaces the
+ * current one, so work superseded by newer data is dropped instead of being finished.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FrameBudgetScheduler implements Choreographer.FrameCallback {
+    /**
+     * @interface Task
+     * @brief Work split in short steps.
+     */
+    public interface Task {
+        /**
+         * Runs the next step of the task.
+         *
+         * @return True if steps remain.
+         */
+        boolean runStep();
+
+        /**
+         * Called after the last step.
+         *
+         * @param frames Number of frames the task ran in.
+         * @param nanos Total time spent in the steps, in nanoseconds.
+         */
+        void onFinished(int frames, long nanos);
+    }
+
+    /**
+     * @interface Clock
+     * @brief Source of the current time.
+     */
+    interface Clock {
+        /**
+         * Returns the current time.
+         *
+         * @return The time, in nanoseconds.
+         */
+        long nanoTime();
+    }
+
+    /**
+     * Default time the steps may take per frame: a quarter of a 60 Hz frame.
+     */
+    public static final long DEFAULT_BUDGET_NANOS = 4_000_000L;
+
+    /**
+     * Schedules the frame callbacks.
+     */
+    private final FramePoster poster;
+    /**
+     * Source of the current time.
+     */
+    private final Clock clock;
+    /**
+     * Time the steps may take per frame, in nanoseconds.
+     */
+    private final long budgetNanos;
+    /**
+     * Task being run, or null.
+     */
+    private Task task;
+    /**
+     * Number of frames the current task ran in.
+     */
+    private int frames;
+    /**
+     * Time spent in the steps of the current task, in nanoseconds.
+     */
+    private long spentNanos;
+    /**
+     * Whether a frame callback is posted.
+     */
+    private boolean framePosted;
+    /**
+     * Number of tasks replaced before they finished.
+     */
+    private long supersededTasks;
+    /**
+     * Longest time spent in one frame, in nanoseconds.
+     */
+    private long longestFrameNanos;
+
+    /**
+     * Constructs a new FrameBudgetScheduler driven by the Choreographer of the calling thread.
+     *
+     * @param budgetNanos Time the steps may take per frame, in nanoseconds.
+     */
+    public FrameBudgetScheduler(long budgetNanos) {
+        this(FramePoster.CHOREOGRAPHER, System::nanoTime, budgetNanos);
+    }
+
+    /**
+     * Constructs a new FrameBudgetScheduler.
+     *
+     * @param poster Schedules the frame callbacks.
+     * @param clock Source of the current time.
+     * @param budgetNanos Time the steps may take per frame, in nanoseconds.
+     */
+    FrameBudgetScheduler(FramePoster poster, Clock clock, long budgetNanos) {
+        this.poster = poster;
+        this.clock = clock;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Starts running a task from the next frame, dropping the unfinished rest of the current one.
+     *
+     * @param next The task to run.
+     */
+    public void schedule(Task next) {
+        if (task != null) {
+            supersededTasks++;
+        }
+        task = next;
+        frames = 0;
+        spentNanos = 0;
+        if (!framePosted) {
+            framePosted = true;
+            poster.post(this);
+        }
+    }
+
+    /**
+     * Drops the current task.
+     */
+    public void cancel() {
+        task = null;
+    }
+
+    /**
+     * Checks whether a task is being run.
+     *
+     * @return True if a task has steps left.
+     */
+    public boolean isBusy() {
+        return task != null;
+    }
+
+    /**
+     * Returns the number of tasks replaced before they finished.
+     *
+     * @return The superseded task count.
+     */
+    public long getSupersededTasks() {
+        return supersededTasks;
+    }
+
+    /**
+     * Returns the longest time spent in one frame.
+     *
+     * @return The time, in nanoseconds.
+     */
+    public long getLongestFrameNanos() {
+        return longestFrameNanos;
+    }
+
+    /**
+     * Runs steps of the current task until the frame budget is spent.
+     *
+     * At least one step runs per frame, so a task always makes progress.
+     *
+     * @param frameTimeNanos Time the frame started rendering, in nanoseconds.
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        framePosted = false;
+        Task current = task;
+        if (current == null) {
+            return;
+        }
+        long start = clock.nanoTime();
+        boolean more;
+        long elapsed;
+        do {
+            more = current.runStep();
+            elapsed = clock.nanoTime() - start;
+        } while (more && elapsed < budgetNanos && task == current);
+
+        longestFrameNanos = Math.max(longestFrameNanos, elapsed);
+        if (task != current) {
+            // Zadanie zostało zastąpione w trakcie kroku; nowe rusza w następnej klatce
+            return;
+        }
+        frames++;
+        spentNanos += elapsed;
+        if (more) {
+            framePosted = true;
+            poster.post(this);
+        } else {
+            task = null;
+            current.onFinished(frames, spentNanos);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package pl.creativesstudio.map;
+
+import android.view.Choreographer;
+
+/**
+ * @file FramePoster.java
+ * @brief Schedules a callback for the next display frame.
+ *
+ * Implemented with the Choreographer on the device and replaced by a manual queue in tests.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+interface FramePoster {
+    /**
+     * Poster using the Choreographer of the calling thread.
+     */
+    FramePoster CHOREOGRAPHER = callback -> Choreographer.getInstance().postFrameCallback(callback);
+
+    /**
+     * Schedules a callback for the next frame.
+     *
+     * @param callback The callback to run.
+     */
+    void post(Choreographer.FrameCallback callback);
+}
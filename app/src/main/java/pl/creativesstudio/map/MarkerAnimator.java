@@ -0,0 +1,406 @@
+package pl.creativesstudio.map;
+
+import android.view.Choreographer;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file MarkerAnimator.java
+ * @brief Moves bus markers smoothly between two polls.
+ *
+ * A marker whose vehicle reported a new position glides from where it is drawn to the
+ * new position over the time that passed since its previous report, so it reaches the
+ * report when the next one is due. It then keeps going at the same speed for a short
+ * while (dead reckoning), capped in time and skipped for implausible speeds, and finally
+ * glides back to the reported position: the reconciler skips unchanged reports, so a
+ * marker left past its report would stay there while the vehicle stands still.
+ *
+ * All markers are moved from one Choreographer frame callback, which is posted only while
+ * some marker is moving. Markers outside the viewport and long jumps are not animated;
+ * a marker leaving the viewport is put at its reported position at once.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class MarkerAnimator implements Choreographer.FrameCallback {
+    /**
+     * Duration of the first animation of a marker, when no previous report is known.
+     */
+    static final long DEFAULT_DURATION_MILLIS = 10000;
+    /**
+     * Shortest animation duration.
+     */
+    static final long MIN_DURATION_MILLIS = 1000;
+    /**
+     * Longest animation duration.
+     */
+    static final long MAX_DURATION_MILLIS = 20000;
+    /**
+     * Longest extrapolation past the reported position.
+     */
+    static final long MAX_EXTRAPOLATION_MILLIS = 3000;
+    /**
+     * Fastest movement that is extrapolated, in meters per second (about 90 km/h).
+     */
+    static final double MAX_EXTRAPOLATION_SPEED = 25;
+    /**
+     * Duration of the return from the extrapolated to the reported position.
+     */
+    static final long SETTLE_MILLIS = 1000;
+    /**
+     * Longest move that is animated; longer moves jump, in meters.
+     */
+    static final double MAX_ANIMATED_METERS = 1500;
+    /**
+     * Approximate length of one degree of latitude, in meters.
+     */
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * Schedules the frame callbacks.
+     */
+    private final FramePoster poster;
+    /**
+     * Animations of the markers, keyed by vehicle tag.
+     */
+    private final Map<String, Track> tracks = new HashMap<>();
+    /**
+     * Whether a frame callback is posted.
+     */
+    private boolean framePosted;
+    /**
+     * Southern edge of the viewport, in microdegrees.
+     */
+    private int minLatE6 = Integer.MIN_VALUE;
+    /**
+     * Western edge of the viewport, in microdegrees.
+     */
+    private int minLonE6 = Integer.MIN_VALUE;
+    /**
+     * Northern edge of the viewport, in microdegrees.
+     */
+    private int maxLatE6 = Integer.MAX_VALUE;
+    /**
+     * Eastern edge of the viewport, in microdegrees.
+     */
+    private int maxLonE6 = Integer.MAX_VALUE;
+
+    /**
+     * @class Track
+     * @brief Movement of one marker from a start position towards a reported position.
+     */
+    private static final class Track {
+        /**
+         * The animated marker.
+         */
+        Marker marker;
+        /**
+         * Latitude the animation starts from.
+         */
+        double fromLat;
+        /**
+         * Longitude the animation starts from.
+         */
+        double fromLon;
+        /**
+         * Reported latitude.
+         */
+        double toLat;
+        /**
+         * Reported longitude.
+         */
+        double toLon;
+        /**
+         * Start time of the animation, in nanoseconds.
+         */
+        long startNanos;
+        /**
+         * Time the reported position was received, in nanoseconds.
+         */
+        long reportedNanos;
+        /**
+         * Time to reach the reported position, in nanoseconds.
+         */
+        long durationNanos;
+        /**
+         * Time the marker keeps moving past the reported position, in nanoseconds.
+         */
+        long extrapolationNanos;
+        /**
+         * Latitude the marker was last drawn at.
+         */
+        double drawnLat;
+        /**
+         * Longitude the marker was last drawn at.
+         */
+        double drawnLon;
+        /**
+         * Whether the marker is still moving.
+         */
+        boolean active;
+    }
+
+    /**
+     * Constructs a new MarkerAnimator driven by the Choreographer of the calling thread.
+     */
+    public MarkerAnimator() {
+        this(FramePoster.CHOREOGRAPHER);
+    }
+
+    /**
+     * Constructs a new MarkerAnimator.
+     *
+     * @param poster Schedules the frame callbacks.
+     */
+    MarkerAnimator(FramePoster poster) {
+        this.poster = poster;
+    }
+
+    /**
+     * Sets the area in which markers are animated.
+     *
+     * @param minLatE6 Southern edge, in microdegrees.
+     * @param minLonE6 Western edge, in microdegrees.
+     * @param maxLatE6 Northern edge, in microdegrees.
+     * @param maxLonE6 Eastern edge, in microdegrees.
+     */
+    public void setViewport(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6) {
+        this.minLatE6 = minLatE6;
+        this.minLonE6 = minLonE6;
+        this.maxLatE6 = maxLatE6;
+        this.maxLonE6 = maxLonE6;
+    }
+
+    /**
+     * Starts moving a marker towards a newly reported position.
+     *
+     * @param busId Vehicle tag of the marker.
+     * @param marker The marker to move.
+     * @param fromLat Latitude the marker is drawn at, used if it is not animated yet.
+     * @param fromLon Longitude the marker is drawn at, used if it is not animated yet.
+     * @param toLat Reported latitude.
+     * @param toLon Reported longitude.
+     */
+    public void moveTo(String busId, Marker marker, double fromLat, double fromLon, double toLat, double toLon) {
+        moveTo(busId, marker, fromLat, fromLon, toLat, toLon, System.nanoTime());
+    }
+
+    /**
+     * Starts moving a marker towards a newly reported position.
+     *
+     * @param busId Vehicle tag of the marker.
+     * @param marker The marker to move.
+     * @param fromLat Latitude the marker is drawn at, used if it is not animated yet.
+     * @param fromLon Longitude the marker is drawn at, used if it is not animated yet.
+     * @param toLat Reported latitude.
+     * @param toLon Reported longitude.
+     * @param nowNanos Current time, in nanoseconds.
+     */
+    void moveTo(String busId, Marker marker, double fromLat, double fromLon, double toLat, double toLon, long nowNanos) {
+        Track track = tracks.get(busId);
+        long durationMillis = DEFAULT_DURATION_MILLIS;
+        if (track == null) {
+            track = new Track();
+            tracks.put(busId, track);
+        } else {
+            // Ruch zaczyna się od rysowanej pozycji, aby marker nie cofał się skokiem
+            if (track.active) {
+                double[] position = position(track, nowNanos);
+                fromLat = position[0];
+                fromLon = position[1];
+            } else {
+                fromLat = track.drawnLat;
+                fromLon = track.drawnLon;
+            }
+            durationMillis = (nowNanos - track.reportedNanos) / 1000000;
+        }
+        durationMillis = Math.max(MIN_DURATION_MILLIS, Math.min(MAX_DURATION_MILLIS, durationMillis));
+
+        track.marker = marker;
+        track.fromLat = fromLat;
+        track.fromLon = fromLon;
+        track.toLat = toLat;
+        track.toLon = toLon;
+        track.startNanos = nowNanos;
+        track.reportedNanos = nowNanos;
+        track.durationNanos = durationMillis * 1000000;
+        track.drawnLat = fromLat;
+        track.drawnLon = fromLon;
+
+        double meters = distanceMeters(fromLat, fromLon, toLat, toLon);
+        if (meters > MAX_ANIMATED_METERS || !inViewport(fromLat, fromLon) && !inViewport(toLat, toLon)) {
+            track.active = false;
+            setPosition(track, toLat, toLon);
+            return;
+        }
+
+        double speed = meters * 1000 / durationMillis;
+        track.extrapolationNanos = speed <= MAX_EXTRAPOLATION_SPEED
+                ? Math.min(MAX_EXTRAPOLATION_MILLIS, durationMillis / 2) * 1000000 : 0;
+        track.active = true;
+        if (!framePosted) {
+            framePosted = true;
+            poster.post(this);
+        }
+    }
+
+    /**
+     * Stops animating a marker, e.g. because it was removed from the map.
+     *
+     * @param busId Vehicle tag of the marker.
+     */
+    public void remove(String busId) {
+        tracks.remove(busId);
+    }
+
+    /**
+     * Moves every animated marker to its reported position and stops all animations.
+     */
+    public void finishAll() {
+        for (Track track : tracks.values()) {
+            if (track.active) {
+                setPosition(track, track.toLat, track.toLon);
+                track.active = false;
+            }
+        }
+    }
+
+    /**
+     * Forgets all markers without moving them.
+     */
+    public void clear() {
+        tracks.clear();
+    }
+
+    /**
+     * Returns the number of markers that are still moving.
+     *
+     * @return The moving marker count.
+     */
+    public int getActiveCount() {
+        int count = 0;
+        for (Track track : tracks.values()) {
+            if (track.active) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Moves every animated marker to its position at the frame time.
+     *
+     * @param frameTimeNanos Time the frame started rendering, in nanoseconds.
+     */
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        framePosted = false;
+        boolean moving = false;
+        Iterator<Track> iterator = tracks.values().iterator();
+        while (iterator.hasNext()) {
+            Track track = iterator.next();
+            if (!track.active) {
+                continue;
+            }
+            double[] position = position(track, frameTimeNanos);
+            if (!inViewport(position[0], position[1])) {
+                // Poza widokiem marker nie może zostać w pozycji pośredniej, której pojazd nie zgłosił
+                setPosition(track, track.toLat, track.toLon);
+                track.active = false;
+                continue;
+            }
+            setPosition(track, position[0], position[1]);
+
+            if (frameTimeNanos - track.startNanos < track.durationNanos + track.extrapolationNanos) {
+                moving = true;
+            } else if (track.extrapolationNanos > 0) {
+                settle(track, frameTimeNanos);
+                moving = true;
+            } else {
+                setPosition(track, track.toLat, track.toLon);
+                track.active = false;
+            }
+        }
+        if (moving) {
+            framePosted = true;
+            poster.post(this);
+        }
+    }
+
+    /**
+     * Starts the return of an extrapolated marker to its reported position.
+     *
+     * @param track The animation, drawn at the end of its extrapolation.
+     * @param nowNanos The time, in nanoseconds.
+     */
+    private static void settle(Track track, long nowNanos) {
+        track.fromLat = track.drawnLat;
+        track.fromLon = track.drawnLon;
+        track.startNanos = nowNanos;
+        track.durationNanos = SETTLE_MILLIS * 1000000;
+        track.extrapolationNanos = 0;
+    }
+
+    /**
+     * Computes the position of an animated marker.
+     *
+     * @param track The animation.
+     * @param nowNanos The time, in nanoseconds.
+     * @return The latitude and the longitude.
+     */
+    private static double[] position(Track track, long nowNanos) {
+        long elapsed = Math.max(0, Math.min(nowNanos - track.startNanos, track.durationNanos + track.extrapolationNanos));
+        double progress = (double) elapsed / track.durationNanos;
+        return new double[] {
+                track.fromLat + (track.toLat - track.fromLat) * progress,
+                track.fromLon + (track.toLon - track.fromLon) * progress};
+    }
+
+    /**
+     * Draws an animated marker at a position.
+     *
+     * @param track The animation of the marker.
+     * @param lat The latitude.
+     * @param lon The longitude.
+     */
+    private static void setPosition(Track track, double lat, double lon) {
+        track.marker.setPosition(new LatLng(lat, lon));
+        track.drawnLat = lat;
+        track.drawnLon = lon;
+    }
+
+    /**
+     * Checks whether a position is within the viewport.
+     *
+     * @param lat The latitude.
+     * @param lon The longitude.
+     * @return True if the position is within the viewport.
+     */
+    private boolean inViewport(double lat, double lon) {
+        int latE6 = FleetSnapshot.toE6(lat);
+        int lonE6 = FleetSnapshot.toE6(lon);
+        return latE6 >= minLatE6 && latE6 <= maxLatE6 && lonE6 >= minLonE6 && lonE6 <= maxLonE6;
+    }
+
+    /**
+     * Approximates the distance between two nearby positions.
+     *
+     * @param fromLat Latitude of the first position.
+     * @param fromLon Longitude of the first position.
+     * @param toLat Latitude of the second position.
+     * @param toLon Longitude of the second position.
+     * @return The distance, in meters.
+     */
+    static double distanceMeters(double fromLat, double fromLon, double toLat, double toLon) {
+        double dLat = (toLat - fromLat) * METERS_PER_DEGREE;
+        double dLon = (toLon - fromLon) * METERS_PER_DEGREE * Math.cos(Math.toRadians((fromLat + toLat) / 2));
+        return Math.sqrt(dLat * dLat + dLon * dLon);
+    }
+}
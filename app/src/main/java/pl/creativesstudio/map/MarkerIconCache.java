@@ -0,0 +1,413 @@
+package pl.creativesstudio.map;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.util.DisplayMetrics;
+import android.util.LruCache;
+
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import pl.creativesstudio.R;
+
+/**
+ * @file MarkerIconCache.java
+ * @brief Bounded cache of rendered bus marker icons.
+ *
+ * Rendering a marker icon allocates a large ARGB_8888 bitmap, so icons are rendered once
+ * per line label and screen density and then reused for every bus of that line. The icons
+ * are scaled by the density, which can change while the application runs (for example
+ * when the display size setting changes), so the density is part of the key. The cache is
+ * evicted by the byte size of the rendered bitmaps.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class MarkerIconCache {
+    /**
+     * Screen density the sizes below are given for.
+     */
+    private static final int REFERENCE_DENSITY_DPI = DisplayMetrics.DENSITY_XXHIGH;
+    /**
+     * Width of the pin drawn below the line label, in pixels at the reference density.
+     */
+    private static final int PIN_WIDTH = 124;
+    /**
+     * Height of the pin drawn below the line label, in pixels at the reference density.
+     */
+    private static final int PIN_HEIGHT = 212;
+    /**
+     * Text size of the line label, in pixels at the reference density.
+     */
+    private static final int TEXT_SIZE = 50;
+    /**
+     * Padding added around the line label, in pixels at the reference density.
+     */
+    private static final int TEXT_PADDING = 20;
+
+    /**
+     * @interface Renderer
+     * @brief Renders the icons and hands them over to the map.
+     */
+    interface Renderer {
+        /**
+         * Returns the current screen density.
+         *
+         * @return The density, in dots per inch.
+         */
+        int densityDpi();
+
+        /**
+         * Renders the icon for a bus line.
+         *
+         * @param line The bus line to display on the marker.
+         * @param densityDpi The screen density to render for, in dots per inch.
+         * @return The rendered icon.
+         */
+        Bitmap render(String line, int densityDpi);
+
+        /**
+         * Wraps a rendered icon for the map; needs an initialized map.
+         *
+         * @param bitmap The rendered icon.
+         * @return The icon handed to the map.
+         */
+        BitmapDescriptor describe(Bitmap bitmap);
+    }
+
+    /**
+     * Cached icons keyed by line label and screen density; guarded by itself, so that an icon
+     * is rendered only once even if it is requested from several threads.
+     */
+    private final LruCache<Key, Entry> cache;
+    /**
+     * Renderer of the icons.
+     */
+    private final Renderer renderer;
+    /**
+     * Number of {@link #get} calls served from the cache; prefetches are not counted.
+     */
+    private final AtomicInteger hitCount = new AtomicInteger();
+    /**
+     * Number of {@link #get} calls that rendered a new bitmap; prefetches are not counted.
+     */
+    private final AtomicInteger missCount = new AtomicInteger();
+
+    /**
+     * @class Key
+     * @brief Line label and screen density of a cached icon.
+     */
+    private static final class Key {
+        /**
+         * The bus line displayed on the marker.
+         */
+        final String line;
+        /**
+         * Screen density the icon was rendered for, in dots per inch.
+         */
+        final int densityDpi;
+
+        /**
+         * Constructs a new Key.
+         *
+         * @param line The bus line displayed on the marker.
+         * @param densityDpi Screen density the icon is rendered for, in dots per inch.
+         */
+        Key(String line, int densityDpi) {
+            this.line = line;
+            this.densityDpi = densityDpi;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return densityDpi == other.densityDpi && line.equals(other.line);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * line.hashCode() + densityDpi;
+        }
+    }
+
+    /**
+     * @class Entry
+     * @brief A rendered icon together with the size of its bitmap.
+     */
+    private static final class Entry {
+        /**
+         * The rendered icon.
+         */
+        final Bitmap bitmap;
+        /**
+         * Size of the rendered bitmap, in bytes.
+         */
+        final int byteCount;
+        /**
+         * Icon handed to the map, created on first use; needs an initialized map.
+         */
+        volatile BitmapDescriptor descriptor;
+
+        /**
+         * Constructs a new Entry.
+         *
+         * @param bitmap The rendered icon.
+         */
+        Entry(Bitmap bitmap) {
+            this.bitmap = bitmap;
+            this.byteCount = bitmap.getByteCount();
+        }
+    }
+
+    /**
+     * Constructs a new MarkerIconCache.
+     *
+     * @param context Context used to load the pin drawable and read the screen density.
+     * @param maxBytes Maximum total size of the cached bitmaps, in bytes.
+     */
+    public MarkerIconCache(Context context, int maxBytes) {
+        this(maxBytes, new PinRenderer(context.getApplicationContext(),
+                ContextCompat.getDrawable(context.getApplicationContext(), R.drawable.ic_marker_icon)));
+    }
+
+    /**
+     * Constructs a new MarkerIconCache with the given renderer.
+     *
+     * @param maxBytes Maximum total size of the cached bitmaps, in bytes.
+     * @param renderer Renderer of the icons.
+     */
+    MarkerIconCache(int maxBytes, Renderer renderer) {
+        this.renderer = renderer;
+        cache = new LruCache<Key, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Entry value) {
+                return value.byteCount;
+            }
+        };
+    }
+
+    /**
+     * Returns the default cache size: one sixteenth of the maximum heap size.
+     *
+     * @return The default maximum size of the cache, in bytes.
+     */
+    public static int defaultMaxBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, Runtime.getRuntime().maxMemory() / 16);
+    }
+
+    /**
+     * Returns the icon for the given bus line, rendering it on a cache miss.
+     *
+     * Needs an initialized map, as the icon is handed over as a BitmapDescriptor.
+     *
+     * @param line The bus line to display on the marker.
+     * @return A BitmapDescriptor representing the marker icon.
+     */
+    public BitmapDescriptor get(String line) {
+        Entry entry = entry(line, true);
+        BitmapDescriptor descriptor = entry.descriptor;
+        if (descriptor == null) {
+            descriptor = renderer.describe(entry.bitmap);
+            entry.descriptor = descriptor;
+        }
+        return descriptor;
+    }
+
+    /**
+     * Renders the icon for the given bus line ahead of its first use.
+     *
+     * Unlike {@link #get(String)}, this does not need an initialized map, so icons can be
+     * rendered on a background thread while the map is still loading. Prefetches do not
+     * count as hits or misses, so the counters reflect only the icons the map asked for.
+     *
+     * @param line The bus line to display on the marker.
+     */
+    public void prefetch(String line) {
+        entry(line, false);
+    }
+
+    /**
+     * Returns the cached icon for the given bus line, rendering it on a cache miss.
+     *
+     * The lookup and the rendering are done under the lock of the cache, so concurrent
+     * requests for a missing icon wait for a single rendering instead of each drawing
+     * their own bitmap.
+     *
+     * @param line The bus line to display on the marker.
+     * @param counted True to count the request as a hit or a miss.
+     * @return The cache entry.
+     */
+    private Entry entry(String line, boolean counted) {
+        Key key = new Key(line, renderer.densityDpi());
+        synchronized (cache) {
+            Entry entry = cache.get(key);
+            if (entry == null) {
+                entry = new Entry(renderer.render(line, key.densityDpi));
+                cache.put(key, entry);
+                if (counted) {
+                    missCount.incrementAndGet();
+                }
+            } else if (counted) {
+                hitCount.incrementAndGet();
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Returns the number of icon requests served from the cache.
+     *
+     * @return The hit count.
+     */
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of icon requests that required rendering a new bitmap.
+     *
+     * @return The miss count.
+     */
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of icons evicted to stay within the byte budget.
+     *
+     * @return The eviction count.
+     */
+    public int getEvictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * Returns the total size of the cached bitmaps.
+     *
+     * @return The cache size, in bytes.
+     */
+    public int getSizeBytes() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all icons from the cache.
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    /**
+     * @class PinRenderer
+     * @brief Draws the line label above the pin drawable.
+     */
+    private static final class PinRenderer implements Renderer {
+        /**
+         * Context whose display metrics give the current screen density.
+         */
+        private final Context context;
+        /**
+         * Pin drawable, loaded once and redrawn into every icon.
+         */
+        private final Drawable pinDrawable;
+        /**
+         * Reusable paint for the line label.
+         */
+        private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        /**
+         * Reusable paint for the label background.
+         */
+        private final Paint backgroundPaint = new Paint();
+        /**
+         * Reusable rectangle for measuring the line label.
+         */
+        private final Rect textBounds = new Rect();
+
+        /**
+         * Constructs a new PinRenderer.
+         *
+         * @param context Context whose display metrics give the current screen density.
+         * @param pinDrawable The pin drawable, or null to draw the label only.
+         */
+        PinRenderer(Context context, Drawable pinDrawable) {
+            this.context = context;
+            this.pinDrawable = pinDrawable;
+            textPaint.setColor(Color.BLACK);
+            textPaint.setTextAlign(Paint.Align.CENTER);
+            backgroundPaint.setColor(Color.WHITE);
+        }
+
+        /**
+         * Returns the current screen density.
+         *
+         * @return The density, in dots per inch.
+         */
+        @Override
+        public int densityDpi() {
+            return context.getResources().getDisplayMetrics().densityDpi;
+        }
+
+        /**
+         * Renders the icon for a bus line; synchronized, as the paints are shared.
+         *
+         * @param line The bus line to display on the marker.
+         * @param densityDpi The screen density to render for, in dots per inch.
+         * @return The rendered icon.
+         */
+        @Override
+        public synchronized Bitmap render(String line, int densityDpi) {
+            float scale = densityDpi / (float) REFERENCE_DENSITY_DPI;
+            int pinWidth = Math.round(PIN_WIDTH * scale);
+            int pinHeight = Math.round(PIN_HEIGHT * scale);
+            int padding = Math.round(TEXT_PADDING * scale);
+
+            textPaint.setTextSize(TEXT_SIZE * scale);
+            textPaint.getTextBounds(line, 0, line.length(), textBounds);
+
+            int textWidth = textBounds.width() + padding;
+            int textHeight = textBounds.height() + padding;
+
+            int width = Math.max(textWidth, pinWidth);
+            int height = textHeight + pinHeight;
+
+            Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(bitmap);
+
+            canvas.drawRect(0, 0, width, textHeight, backgroundPaint);
+            canvas.drawText(line, width / 2, textHeight - padding / 2, textPaint);
+
+            if (pinDrawable != null) {
+                pinDrawable.setBounds((width - pinWidth) / 2, textHeight, (width + pinWidth) / 2, height);
+                pinDrawable.draw(canvas);
+            }
+
+            return bitmap;
+        }
+
+        /**
+         * Wraps a rendered icon for the map; needs an initialized map.
+         *
+         * @param bitmap The rendered icon.
+         * @return The icon handed to the map.
+         */
+        @Override
+        public BitmapDescriptor describe(Bitmap bitmap) {
+            return BitmapDescriptorFactory.fromBitmap(bitmap);
+        }
+    }
+}
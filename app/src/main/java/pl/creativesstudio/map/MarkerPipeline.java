@@ -0,0 +1,222 @@
+package pl.creativesstudio.map;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file MarkerPipeline.java
+ * @brief Prepares marker passes on a worker thread and applies them to the map within a frame budget.
+ *
+ * The worker builds titles, icons and positions ({@link MarkerReconciler#prepare}) and
+ * orders the markers: the selected bus first, then by distance from the viewport centre.
+ * The main thread only adds, moves and removes markers, one operation per step of a
+ * {@link FrameBudgetScheduler}, so a large pass is spread over several frames and the
+ * nearest buses appear first. A newer pass, or {@link #clear}, drops the pending
+ * operations of an older one.
+ *
+ * The main-thread time of every pass is measured and reported to the listener.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class MarkerPipeline {
+    /**
+     * @interface Listener
+     * @brief Receives the cost of every fully applied pass.
+     */
+    public interface Listener {
+        /**
+         * Called on the main thread after a pass was applied in full.
+         *
+         * @param markers Number of markers in the pass.
+         * @param frames Number of frames the pass was applied in.
+         * @param prepareNanos Time spent preparing the pass on the worker, in nanoseconds.
+         * @param mainThreadNanos Time spent applying the pass on the main thread, in nanoseconds.
+         */
+        void onCommitted(int markers, int frames, long prepareNanos, long mainThreadNanos);
+    }
+
+    /**
+     * Reconciler preparing and applying the passes.
+     */
+    private final MarkerReconciler reconciler;
+    /**
+     * Executor preparing the passes.
+     */
+    private final Executor worker;
+    /**
+     * Executor handing prepared passes to the main thread.
+     */
+    private final Executor mainThread;
+    /**
+     * Scheduler spreading the marker operations over frames.
+     */
+    private final FrameBudgetScheduler scheduler;
+    /**
+     * Receives the cost of every applied pass, or null.
+     */
+    private final Listener listener;
+    /**
+     * Number of the latest submitted pass; accessed on the main thread only.
+     */
+    private int latest;
+    /**
+     * Main-thread time of the last applied pass, in nanoseconds.
+     */
+    private long lastMainThreadNanos;
+    /**
+     * Number of frames of the last applied pass.
+     */
+    private int lastFrames;
+
+    /**
+     * @class PassTask
+     * @brief Applies one prepared pass: adds and moves in priority order, then removals.
+     */
+    private final class PassTask implements FrameBudgetScheduler.Task {
+        /**
+         * The prepared pass.
+         */
+        private final MarkerReconciler.Prepared pass;
+        /**
+         * Vehicle tag of the selected bus, or null.
+         */
+        private final String selectedBusId;
+        /**
+         * Position of the next marker to apply.
+         */
+        private int next;
+        /**
+         * Vehicles whose markers are removed, known once all markers are applied.
+         */
+        private List<String> removals;
+        /**
+         * Position of the next removal.
+         */
+        private int nextRemoval;
+
+        /**
+         * Constructs a new PassTask.
+         *
+         * @param pass The prepared pass.
+         * @param selectedBusId Vehicle tag of the selected bus, or null.
+         */
+        PassTask(MarkerReconciler.Prepared pass, String selectedBusId) {
+            this.pass = pass;
+            this.selectedBusId = selectedBusId;
+        }
+
+        /**
+         * Applies one marker or removes one marker.
+         *
+         * @return True if operations remain.
+         */
+        @Override
+        public boolean runStep() {
+            if (next < pass.size()) {
+                reconciler.apply(pass, next, next + 1, selectedBusId);
+                next++;
+                return true;
+            }
+            if (removals == null) {
+                removals = reconciler.collectRemovals(pass);
+            }
+            if (nextRemoval < removals.size()) {
+                reconciler.remove(removals.get(nextRemoval++));
+            }
+            return nextRemoval < removals.size();
+        }
+
+        /**
+         * Records and reports the cost of the pass.
+         *
+         * @param frames Number of frames the pass ran in.
+         * @param nanos Total main-thread time of the pass, in nanoseconds.
+         */
+        @Override
+        public void onFinished(int frames, long nanos) {
+            lastMainThreadNanos = nanos;
+            lastFrames = frames;
+            if (listener != null) {
+                listener.onCommitted(pass.size(), frames, pass.getPrepareNanos(), nanos);
+            }
+        }
+    }
+
+    /**
+     * Constructs a new MarkerPipeline.
+     *
+     * @param reconciler Reconciler preparing and applying the passes.
+     * @param worker Executor preparing the passes.
+     * @param mainThread Executor handing prepared passes to the main thread.
+     * @param scheduler Scheduler spreading the marker operations over frames.
+     * @param listener Receives the cost of every applied pass, or null.
+     */
+    public MarkerPipeline(MarkerReconciler reconciler, Executor worker, Executor mainThread,
+                          FrameBudgetScheduler scheduler, Listener listener) {
+        this.reconciler = reconciler;
+        this.worker = worker;
+        this.mainThread = mainThread;
+        this.scheduler = scheduler;
+        this.listener = listener;
+    }
+
+    /**
+     * Displays the given vehicles of a snapshot, replacing any pass still in progress.
+     *
+     * Must be called on the main thread.
+     *
+     * @param snapshot The snapshot holding the vehicles.
+     * @param indices Indices of the vehicles to display; copied, so the array may be reused.
+     * @param count Number of valid entries in {@code indices}.
+     * @param selectedBusId Vehicle tag of the selected bus, or null.
+     * @param centerLatE6 Latitude of the viewport centre, in microdegrees.
+     * @param centerLonE6 Longitude of the viewport centre, in microdegrees.
+     */
+    public void submit(FleetSnapshot snapshot, int[] indices, int count, String selectedBusId,
+                       int centerLatE6, int centerLonE6) {
+        int ticket = ++latest;
+        int[] copy = Arrays.copyOf(indices, count);
+        worker.execute(() -> {
+            MarkerReconciler.Prepared pass = reconciler.prepare(snapshot, copy, count);
+            pass.prioritize(centerLatE6, centerLonE6, selectedBusId);
+            mainThread.execute(() -> {
+                if (ticket == latest) {
+                    scheduler.schedule(new PassTask(pass, selectedBusId));
+                }
+            });
+        });
+    }
+
+    /**
+     * Drops the pending operations and removes all markers.
+     *
+     * Must be called on the main thread.
+     */
+    public void clear() {
+        latest++;
+        scheduler.cancel();
+        reconciler.clear();
+    }
+
+    /**
+     * Returns the main-thread time of the last applied pass.
+     *
+     * @return The time, in nanoseconds.
+     */
+    public long getLastMainThreadNanos() {
+        return lastMainThreadNanos;
+    }
+
+    /**
+     * Returns the number of frames of the last applied pass.
+     *
+     * @return The frame count.
+     */
+    public int getLastFrames() {
+        return lastFrames;
+    }
+}
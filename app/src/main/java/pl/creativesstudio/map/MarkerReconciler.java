@@ -0,0 +1,518 @@
+package pl.creativesstudio.map;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.BitmapDescriptor;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file MarkerReconciler.java
+ * @brief Keeps the bus markers on the map in sync with the latest fleet snapshot.
+ *
+ * Instead of clearing the whole map on every refresh, the reconciler compares the
+ * incoming buses with the markers already on the map (keyed by vehicle type and number),
+ * moves the ones that are still present, adds the new ones and removes only those
+ * that disappeared.
+ *
+ * The work is split in two phases: {@link #prepare} builds titles, icons and positions and
+ * may run on a worker thread, {@link #apply} and {@link #finish} only touch the markers and
+ * run on the main thread, possibly in several batches.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class MarkerReconciler {
+    /**
+     * @interface IconFactory
+     * @brief Supplies marker icons for a given bus line.
+     */
+    public interface IconFactory {
+        /**
+         * Creates (or returns a cached) icon for the given bus line.
+         *
+         * @param line The bus line to display on the marker.
+         * @return The icon to use for the marker.
+         */
+        BitmapDescriptor create(String line);
+    }
+
+    /**
+     * Map the markers are placed on.
+     */
+    private final GoogleMap map;
+    /**
+     * Source of marker icons.
+     */
+    private final IconFactory iconFactory;
+    /**
+     * Markers currently on the map, keyed by vehicle tag ({@link FleetSnapshot#getVehicleTag}).
+     */
+    private final Map<String, MarkerState> markers = new HashMap<>();
+    /**
+     * Number of low bits holding the slot in the priority keys.
+     */
+    private static final int SLOT_BITS = 24;
+    /**
+     * Largest distance rank, in microdegrees; farther markers share it.
+     */
+    private static final double MAX_RANK = (double) (1L << 38);
+    /**
+     * Opacity of markers showing stale data.
+     */
+    static final float STALE_ALPHA = 0.5f;
+    /**
+     * Opacity applied to all markers.
+     */
+    private float alpha = 1f;
+    /**
+     * Animator moving the markers between positions, or null to move them at once.
+     */
+    private MarkerAnimator animator;
+    /**
+     * Number of map operations (adds, moves, restyles and removals) made so far.
+     */
+    private long operationCount;
+
+    /**
+     * @class MarkerState
+     * @brief A marker together with the values it currently displays.
+     *
+     * Kept on our side so that unchanged markers can be skipped without querying the map.
+     */
+    private static final class MarkerState {
+        /**
+         * The marker on the map.
+         */
+        final Marker marker;
+        /**
+         * Line shown by the marker icon.
+         */
+        String line;
+        /**
+         * Latitude of the marker in microdegrees.
+         */
+        int latE6;
+        /**
+         * Longitude of the marker in microdegrees.
+         */
+        int lonE6;
+        /**
+         * Prepared pass that last displayed the marker.
+         */
+        Prepared pass;
+
+        /**
+         * Constructs a new MarkerState.
+         *
+         * @param marker The marker on the map.
+         * @param line Line shown by the marker icon.
+         * @param latE6 Latitude of the marker in microdegrees.
+         * @param lonE6 Longitude of the marker in microdegrees.
+         */
+        MarkerState(Marker marker, String line, int latE6, int lonE6) {
+            this.marker = marker;
+            this.line = line;
+            this.latE6 = latE6;
+            this.lonE6 = lonE6;
+        }
+    }
+
+    /**
+     * @class Prepared
+     * @brief Markers of one pass with their titles, icons and positions already built.
+     *
+     * Produced by {@link #prepare} on any thread and consumed by {@link #apply} on the main thread.
+     */
+    public static final class Prepared {
+        /**
+         * Number of prepared markers.
+         */
+        private int size;
+        /**
+         * Vehicle tag of every marker.
+         */
+        private final String[] busIds;
+        /**
+         * Vehicle number of every marker, shown as the snippet.
+         */
+        private final String[] numbers;
+        /**
+         * Line of every marker.
+         */
+        private final String[] lines;
+        /**
+         * Info window title of every marker.
+         */
+        private final String[] titles;
+        /**
+         * Icon of every marker.
+         */
+        private final BitmapDescriptor[] icons;
+        /**
+         * Position of every marker.
+         */
+        private final LatLng[] positions;
+        /**
+         * Latitude of every marker in microdegrees.
+         */
+        private final int[] latE6;
+        /**
+         * Longitude of every marker in microdegrees.
+         */
+        private final int[] lonE6;
+        /**
+         * Slots in the order they should be applied.
+         */
+        private int[] order;
+        /**
+         * Time spent preparing the pass, in nanoseconds.
+         */
+        private long prepareNanos;
+
+        /**
+         * Constructs a new Prepared.
+         *
+         * @param capacity Maximum number of markers.
+         */
+        private Prepared(int capacity) {
+            busIds = new String[capacity];
+            numbers = new String[capacity];
+            lines = new String[capacity];
+            titles = new String[capacity];
+            icons = new BitmapDescriptor[capacity];
+            positions = new LatLng[capacity];
+            latE6 = new int[capacity];
+            lonE6 = new int[capacity];
+            order = new int[capacity];
+        }
+
+        /**
+         * Orders the markers so that the selected bus comes first, then the buses nearest to a point.
+         *
+         * May run on any thread, before the pass is applied.
+         *
+         * @param centerLatE6 Latitude of the point, in microdegrees; usually the viewport centre.
+         * @param centerLonE6 Longitude of the point, in microdegrees.
+         * @param selectedBusId Vehicle tag of the selected bus, or null.
+         */
+        public void prioritize(int centerLatE6, int centerLonE6, String selectedBusId) {
+            double lonScale = Math.cos(Math.toRadians(centerLatE6 / FleetSnapshot.MICRODEGREES));
+            long[] keys = new long[size];
+            for (int slot = 0; slot < size; slot++) {
+                long rank;
+                if (busIds[slot].equals(selectedBusId)) {
+                    rank = 0;
+                } else {
+                    double dLat = latE6[slot] - centerLatE6;
+                    double dLon = (lonE6[slot] - centerLonE6) * lonScale;
+                    rank = 1 + (long) Math.min(Math.sqrt(dLat * dLat + dLon * dLon), MAX_RANK);
+                }
+                keys[slot] = rank << SLOT_BITS | slot;
+            }
+            Arrays.sort(keys);
+            for (int k = 0; k < size; k++) {
+                order[k] = (int) (keys[k] & ((1L << SLOT_BITS) - 1));
+            }
+        }
+
+        /**
+         * Returns the number of prepared markers.
+         *
+         * @return The marker count.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the time spent preparing the pass.
+         *
+         * @return The preparation time, in nanoseconds.
+         */
+        public long getPrepareNanos() {
+            return prepareNanos;
+        }
+    }
+
+    /**
+     * Constructs a new MarkerReconciler.
+     *
+     * @param map The map on which markers are managed.
+     * @param iconFactory Source of marker icons.
+     */
+    public MarkerReconciler(GoogleMap map, IconFactory iconFactory) {
+        this.map = map;
+        this.iconFactory = iconFactory;
+    }
+
+    /**
+     * Brings the markers on the map in line with the given vehicles of a snapshot.
+     *
+     * Existing markers are moved with {@link Marker#setPosition}, markers are added only
+     * for new vehicles and removed only for vehicles that are no longer displayed.
+     * The info window of the selected bus is opened only when its marker is first added,
+     * so an already open window stays open while the marker moves.
+     *
+     * @param snapshot The snapshot holding the vehicles.
+     * @param indices Indices of the vehicles that should be visible on the map.
+     * @param count Number of valid entries in {@code indices}.
+     * @param selectedBusId Vehicle tag of the selected bus, or null.
+     */
+    public void reconcile(FleetSnapshot snapshot, int[] indices, int count, String selectedBusId) {
+        Prepared pass = prepare(snapshot, indices, count);
+        apply(pass, 0, pass.size(), selectedBusId);
+        finish(pass);
+    }
+
+    /**
+     * Builds the titles, icons and positions of the markers of a pass.
+     *
+     * Does not touch the map or the markers, so it may run on any thread; the icon factory
+     * must be thread-safe. Vehicles without a position or a number are skipped, and only the
+     * first entry of every vehicle is kept. Vehicles are told apart by type and number,
+     * since a bus and a tram may share a vehicle number.
+     *
+     * @param snapshot The snapshot holding the vehicles.
+     * @param indices Indices of the vehicles that should be visible on the map.
+     * @param count Number of valid entries in {@code indices}.
+     * @return The prepared pass.
+     */
+    public Prepared prepare(FleetSnapshot snapshot, int[] indices, int count) {
+        long start = System.nanoTime();
+        Prepared pass = new Prepared(count);
+        Set<String> seen = new HashSet<>();
+
+        for (int k = 0; k < count; k++) {
+            int index = indices[k];
+            int latE6 = snapshot.getLatE6(index);
+            int lonE6 = snapshot.getLonE6(index);
+            String busId = snapshot.getVehicleTag(index);
+            if (latE6 == 0 || lonE6 == 0 || busId == null || !seen.add(busId)) {
+                continue;
+            }
+            String line = snapshot.getLine(index);
+            String number = snapshot.getVehicleNumber(index);
+
+            int slot = pass.size++;
+            pass.order[slot] = slot;
+            pass.busIds[slot] = busId;
+            pass.numbers[slot] = number;
+            pass.lines[slot] = line;
+            pass.titles[slot] = formatTitle(line, number);
+            pass.icons[slot] = iconFactory.create(line);
+            pass.positions[slot] = new LatLng(snapshot.getLat(index), snapshot.getLon(index));
+            pass.latE6[slot] = latE6;
+            pass.lonE6[slot] = lonE6;
+        }
+        pass.prepareNanos = System.nanoTime() - start;
+        return pass;
+    }
+
+    /**
+     * Adds or moves the markers of a range of a prepared pass, in the order of the pass.
+     *
+     * Must run on the main thread. Passes may be applied in several batches; markers
+     * missing from the pass are removed by {@link #finish} once all batches are applied.
+     *
+     * @param pass The prepared pass.
+     * @param from Position in the order of the first marker to apply.
+     * @param to Position in the order after the last marker to apply.
+     * @param selectedBusId Vehicle tag of the selected bus, or null.
+     */
+    public void apply(Prepared pass, int from, int to, String selectedBusId) {
+        for (int k = from; k < to; k++) {
+            int slot = pass.order[k];
+            String busId = pass.busIds[slot];
+            String line = pass.lines[slot];
+            int latE6 = pass.latE6[slot];
+            int lonE6 = pass.lonE6[slot];
+
+            MarkerState state = markers.get(busId);
+            if (state != null) {
+                state.pass = pass;
+                if (state.latE6 != latE6 || state.lonE6 != lonE6) {
+                    operationCount++;
+                    if (animator != null) {
+                        animator.moveTo(busId, state.marker, state.latE6 / FleetSnapshot.MICRODEGREES,
+                                state.lonE6 / FleetSnapshot.MICRODEGREES,
+                                pass.positions[slot].latitude, pass.positions[slot].longitude);
+                    } else {
+                        state.marker.setPosition(pass.positions[slot]);
+                    }
+                    state.latE6 = latE6;
+                    state.lonE6 = lonE6;
+                }
+                if (line != null && !line.equals(state.line)) {
+                    operationCount++;
+                    state.marker.setIcon(pass.icons[slot]);
+                    state.marker.setTitle(pass.titles[slot]);
+                    state.line = line;
+                }
+                continue;
+            }
+
+            MarkerOptions markerOptions = new MarkerOptions()
+                    .position(pass.positions[slot])
+                    .title(pass.titles[slot])
+                    .snippet(pass.numbers[slot])
+                    .icon(pass.icons[slot])
+                    .anchor(0.5f, 1f) // Ustawienie kotwicy, aby marker był poprawnie wyświetlany
+                    .alpha(alpha);
+
+            Marker marker = map.addMarker(markerOptions);
+            operationCount++;
+            if (marker != null) {
+                marker.setTag(busId);
+                MarkerState added = new MarkerState(marker, line, latE6, lonE6);
+                added.pass = pass;
+                markers.put(busId, added);
+                if (busId.equals(selectedBusId)) {
+                    marker.showInfoWindow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the markers of vehicles that are not part of a fully applied pass.
+     *
+     * Must run on the main thread.
+     *
+     * @param pass The prepared pass, applied in full.
+     */
+    public void finish(Prepared pass) {
+        for (String busId : collectRemovals(pass)) {
+            remove(busId);
+        }
+    }
+
+    /**
+     * Lists the vehicles whose markers are not part of a fully applied pass.
+     *
+     * Must run on the main thread.
+     *
+     * @param pass The prepared pass, applied in full.
+     * @return Vehicle tags of the markers to remove.
+     */
+    public List<String> collectRemovals(Prepared pass) {
+        List<String> removals = new ArrayList<>();
+        for (Map.Entry<String, MarkerState> entry : markers.entrySet()) {
+            if (entry.getValue().pass != pass) {
+                removals.add(entry.getKey());
+            }
+        }
+        return removals;
+    }
+
+    /**
+     * Removes the marker of a vehicle, if it is on the map.
+     *
+     * Must run on the main thread.
+     *
+     * @param busId The vehicle tag.
+     */
+    public void remove(String busId) {
+        MarkerState state = markers.remove(busId);
+        if (state != null) {
+            operationCount++;
+            if (animator != null) {
+                animator.remove(busId);
+            }
+            state.marker.remove();
+        }
+    }
+
+    /**
+     * Sets the animator moving markers between positions.
+     *
+     * @param animator The animator, or null to move markers at once.
+     */
+    public void setAnimator(MarkerAnimator animator) {
+        this.animator = animator;
+    }
+
+    /**
+     * Marks the displayed data as stale or current.
+     *
+     * Markers of stale data, such as a snapshot restored at startup, are drawn translucent.
+     *
+     * @param stale True if the displayed data is stale.
+     */
+    public void setStale(boolean stale) {
+        float next = stale ? STALE_ALPHA : 1f;
+        if (next == alpha) {
+            return;
+        }
+        alpha = next;
+        for (MarkerState state : markers.values()) {
+            state.marker.setAlpha(alpha);
+        }
+    }
+
+    /**
+     * Removes all markers managed by this reconciler from the map.
+     */
+    public void clear() {
+        if (animator != null) {
+            animator.clear();
+        }
+        for (MarkerState state : markers.values()) {
+            state.marker.remove();
+        }
+        operationCount += markers.size();
+        markers.clear();
+    }
+
+    /**
+     * Returns the marker of the given vehicle, if it is on the map.
+     *
+     * @param busId The vehicle tag.
+     * @return The marker, or null if the vehicle is not displayed.
+     */
+    public Marker getMarker(String busId) {
+        MarkerState state = markers.get(busId);
+        return state != null ? state.marker : null;
+    }
+
+    /**
+     * Returns the number of map operations made so far.
+     *
+     * Adding, moving, restyling and removing a marker each count as one operation.
+     *
+     * @return The operation count.
+     */
+    public long getOperationCount() {
+        return operationCount;
+    }
+
+    /**
+     * Returns the number of markers currently on the map.
+     *
+     * @return The marker count.
+     */
+    public int size() {
+        return markers.size();
+    }
+
+    /**
+     * Formats the info window title of a bus marker.
+     *
+     * @param line The bus line.
+     * @param busId The vehicle number.
+     * @return The marker title.
+     */
+    static String formatTitle(String line, String busId) {
+        return "Linia: " + line + " | Nr pojazdu: " + busId;
+    }
+}
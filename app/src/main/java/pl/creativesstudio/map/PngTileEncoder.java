@@ -0,0 +1,30 @@
+package pl.creativesstudio.map;
+
+import android.graphics.Bitmap;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * @file PngTileEncoder.java
+ * @brief Encodes rasterized fleet tiles as PNG images.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class PngTileEncoder implements FleetTileProvider.TileEncoder {
+    /**
+     * Encodes a square ARGB pixel buffer as a PNG image.
+     *
+     * @param pixels Pixels in rows from the top-left corner.
+     * @param size Width and height of the tile, in pixels.
+     * @return The PNG bytes.
+     */
+    @Override
+    public byte[] encode(int[] pixels, int size) {
+        Bitmap bitmap = Bitmap.createBitmap(pixels, size, size, Bitmap.Config.ARGB_8888);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, out);
+        bitmap.recycle();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,48 @@
+package pl.creativesstudio.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @file Counter.java
+ * @brief Monotonic count of events, safe to update from any thread.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class Counter {
+    /**
+     * The count.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Constructs a new Counter; counters are created by {@link MetricsRegistry}.
+     */
+    Counter() {
+    }
+
+    /**
+     * Adds one event.
+     */
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    /**
+     * Adds events.
+     *
+     * @param events Number of events to add.
+     */
+    public void add(long events) {
+        count.addAndGet(events);
+    }
+
+    /**
+     * Returns the count.
+     *
+     * @return The number of events so far.
+     */
+    public long get() {
+        return count.get();
+    }
+}
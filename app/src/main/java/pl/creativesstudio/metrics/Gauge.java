@@ -0,0 +1,39 @@
+package pl.creativesstudio.metrics;
+
+/**
+ * @file Gauge.java
+ * @brief Latest value of a quantity, safe to update from any thread.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class Gauge {
+    /**
+     * The latest value.
+     */
+    private volatile double value;
+
+    /**
+     * Constructs a new Gauge; gauges are created by {@link MetricsRegistry}.
+     */
+    Gauge() {
+    }
+
+    /**
+     * Sets the value.
+     *
+     * @param value The new value.
+     */
+    public void set(double value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the value.
+     *
+     * @return The latest value, 0 until one is set.
+     */
+    public double get() {
+        return value;
+    }
+}
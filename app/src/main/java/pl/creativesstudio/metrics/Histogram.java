@@ -0,0 +1,219 @@
+package pl.creativesstudio.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @file Histogram.java
+ * @brief Distribution of recorded values in fixed log-linear buckets.
+ *
+ * Every power of two is split into eight buckets, so a percentile is reported with at most
+ * 12.5% error, and values below 16 are exact. The buckets are allocated once; recording a
+ * value only increments counters and never allocates, so it can run on hot paths and from
+ * any thread.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class Histogram {
+    /**
+     * @enum Unit
+     * @brief Unit of the recorded values, used when formatting them.
+     */
+    public enum Unit {
+        /** Durations in nanoseconds, shown in milliseconds. */
+        NANOSECONDS,
+        /** Sizes in bytes, shown in kibibytes. */
+        BYTES,
+        /** Plain counts. */
+        COUNT
+    }
+
+    /**
+     * Number of bits of a value kept below its highest bit.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    /**
+     * Number of buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Total number of buckets, covering all non-negative long values.
+     */
+    static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * Unit of the recorded values.
+     */
+    private final Unit unit;
+    /**
+     * Number of values in every bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    /**
+     * Number of recorded values.
+     */
+    private final AtomicLong count = new AtomicLong();
+    /**
+     * Sum of the recorded values.
+     */
+    private final AtomicLong sum = new AtomicLong();
+    /**
+     * Largest recorded value.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Constructs a new Histogram; histograms are created by {@link MetricsRegistry}.
+     *
+     * @param unit Unit of the recorded values.
+     */
+    Histogram(Unit unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value The value; negative values are recorded as 0.
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        buckets.incrementAndGet(bucketOf(clamped));
+        count.incrementAndGet();
+        sum.addAndGet(clamped);
+        long current = max.get();
+        while (clamped > current && !max.compareAndSet(current, clamped)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * Returns the unit of the recorded values.
+     *
+     * @return The unit.
+     */
+    public Unit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return The count.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     *
+     * @return The sum.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return The maximum, 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     *
+     * @return The mean, 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Estimates a percentile of the recorded values.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound of the bucket holding the percentile, never above the maximum;
+     *         0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= rank) {
+                return Math.min(upperBound(bucket), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Returns the number of values in a bucket.
+     *
+     * @param bucket The bucket.
+     * @return The count.
+     */
+    long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value A non-negative value.
+     * @return The bucket.
+     */
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * Returns the largest value of a bucket.
+     *
+     * @param bucket The bucket.
+     * @return The upper bound, inclusive.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int mantissa = bucket % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+        long lower = (long) (SUB_BUCKETS + mantissa) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    /**
+     * Formats a value in the unit of the histogram.
+     *
+     * @param value The value.
+     * @return The formatted value with its unit.
+     */
+    String format(double value) {
+        switch (unit) {
+            case NANOSECONDS:
+                return String.format(Locale.ROOT, "%.2f ms", value / 1_000_000d);
+            case BYTES:
+                return String.format(Locale.ROOT, "%.1f KiB", value / 1024d);
+            default:
+                return String.format(Locale.ROOT, "%.0f", value);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package pl.creativesstudio.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @file MetricsRegistry.java
+ * @brief Named counters, gauges and histograms of the app's hot paths.
+ *
+ * Metrics are looked up by name once, when their owner is set up, and updated through the
+ * returned objects, so recording costs a few atomic operations and no map lookup. The
+ * registry formats a short summary for the on-map debug overlay and a full dump, with the
+ * histogram buckets, for profiling field devices offline.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class MetricsRegistry {
+    /**
+     * Percentiles shown for every histogram.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    /**
+     * Metrics by name.
+     */
+    private final ConcurrentHashMap<String, Object> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the counter of a name, creating it on first use.
+     *
+     * @param name Name of the counter.
+     * @return The counter.
+     * @throws IllegalArgumentException If the name is used by a metric of another kind.
+     */
+    public Counter counter(String name) {
+        return get(name, Counter.class, new Counter());
+    }
+
+    /**
+     * Returns the gauge of a name, creating it on first use.
+     *
+     * @param name Name of the gauge.
+     * @return The gauge.
+     * @throws IllegalArgumentException If the name is used by a metric of another kind.
+     */
+    public Gauge gauge(String name) {
+        return get(name, Gauge.class, new Gauge());
+    }
+
+    /**
+     * Returns the histogram of a name, creating it on first use.
+     *
+     * @param name Name of the histogram.
+     * @param unit Unit of the recorded values; ignored if the histogram exists.
+     * @return The histogram.
+     * @throws IllegalArgumentException If the name is used by a metric of another kind.
+     */
+    public Histogram histogram(String name, Histogram.Unit unit) {
+        return get(name, Histogram.class, new Histogram(unit));
+    }
+
+    /**
+     * Formats one line per metric with its most useful values.
+     *
+     * @return The summary, sorted by name.
+     */
+    public String summary() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Object> entry : sorted().entrySet()) {
+            Object metric = entry.getValue();
+            text.append(entry.getKey()).append(": ");
+            if (metric instanceof Counter) {
+                text.append(((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                text.append(String.format(Locale.ROOT, "%.3f", ((Gauge) metric).get()));
+            } else {
+                Histogram histogram = (Histogram) metric;
+                text.append("n=").append(histogram.getCount())
+                        .append(" p50=").append(histogram.format(histogram.getPercentile(50)))
+                        .append(" p99=").append(histogram.format(histogram.getPercentile(99)));
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Writes every metric, including the non-empty histogram buckets.
+     *
+     * One metric per line: name, kind and {@code key=value} pairs; histogram values are in
+     * the recording unit, buckets are listed as {@code upperBound:count}.
+     *
+     * @param out The writer.
+     * @throws IOException If writing fails.
+     */
+    public void dump(Writer out) throws IOException {
+        for (Map.Entry<String, Object> entry : sorted().entrySet()) {
+            Object metric = entry.getValue();
+            StringBuilder line = new StringBuilder(entry.getKey());
+            if (metric instanceof Counter) {
+                line.append(" counter value=").append(((Counter) metric).get());
+            } else if (metric instanceof Gauge) {
+                line.append(" gauge value=").append(((Gauge) metric).get());
+            } else {
+                Histogram histogram = (Histogram) metric;
+                line.append(" histogram unit=").append(histogram.getUnit().name().toLowerCase(Locale.ROOT))
+                        .append(" count=").append(histogram.getCount())
+                        .append(" sum=").append(histogram.getSum())
+                        .append(" max=").append(histogram.getMax());
+                for (double percentile : PERCENTILES) {
+                    line.append(" p").append((int) percentile).append('=').append(histogram.getPercentile(percentile));
+                }
+                line.append(" buckets=");
+                boolean first = true;
+                for (int bucket = 0; bucket < Histogram.BUCKET_COUNT; bucket++) {
+                    long count = histogram.getBucketCount(bucket);
+                    if (count > 0) {
+                        line.append(first ? "" : ",").append(Histogram.upperBound(bucket)).append(':').append(count);
+                        first = false;
+                    }
+                }
+            }
+            out.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * Returns the metrics sorted by name.
+     *
+     * @return A sorted copy of the metrics.
+     */
+    private Map<String, Object> sorted() {
+        return new TreeMap<>(metrics);
+    }
+
+    /**
+     * Returns the metric of a name, registering a new one if there is none.
+     *
+     * @param name Name of the metric.
+     * @param kind Expected class of the metric.
+     * @param created Metric registered if there is none.
+     * @param <T> Class of the metric.
+     * @return The registered metric.
+     * @throws IllegalArgumentException If the name is used by a metric of another kind.
+     */
+    private <T> T get(String name, Class<T> kind, T created) {
+        Object existing = metrics.putIfAbsent(name, created);
+        Object metric = existing != null ? existing : created;
+        if (!kind.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + metric.getClass().getSimpleName());
+        }
+        return kind.cast(metric);
+    }
+}
@@ -19,17 +19,57 @@ public class ApiResponse {
      */
     @SerializedName("result")
     private List<Bus> result;
+    /**
+     * Columnar snapshot decoded from the response, if the streaming decoder was used.
+     */
+    private transient FleetSnapshot snapshot;
+    /**
+     * Time spent decoding the response body, in nanoseconds.
+     */
+    private transient long parseTimeNanos;
 
     /**
      * Retrieves the result from the API response.
      *
+     * When the response was decoded into a {@link FleetSnapshot} and no list was set,
+     * a Bus view of the snapshot is returned.
+     *
      * @return The list of Bus objects representing the API response.
      */
-    public List<Bus> getResult() { return result; }
+    public List<Bus> getResult() {
+        if (result == null && snapshot != null) {
+            return snapshot.asBusList();
+        }
+        return result;
+    }
     /**
      * Sets the result in the API response.
      *
      * @param result The list of Bus objects to set as the API response.
      */
     public void setResult(List<Bus> result) { this.result = result; }
+    /**
+     * Retrieves the columnar snapshot decoded from the response.
+     *
+     * @return The snapshot, or null if the response was not decoded into one.
+     */
+    public FleetSnapshot getSnapshot() { return snapshot; }
+    /**
+     * Sets the columnar snapshot decoded from the response.
+     *
+     * @param snapshot The snapshot to set.
+     */
+    public void setSnapshot(FleetSnapshot snapshot) { this.snapshot = snapshot; }
+    /**
+     * Retrieves the time spent decoding the response body.
+     *
+     * @return The parse time in nanoseconds, or 0 if it was not recorded.
+     */
+    public long getParseTimeNanos() { return parseTimeNanos; }
+    /**
+     * Sets the time spent decoding the response body.
+     *
+     * @param parseTimeNanos The parse time in nanoseconds.
+     */
+    public void setParseTimeNanos(long parseTimeNanos) { this.parseTimeNanos = parseTimeNanos; }
 }
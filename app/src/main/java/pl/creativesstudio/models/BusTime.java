@@ -0,0 +1,112 @@
+package pl.creativesstudio.models;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * @file BusTime.java
+ * @brief Conversion between API timestamps and epoch milliseconds.
+ *
+ * The API reports times as "yyyy-MM-dd HH:mm:ss" in Warsaw local time. Parsing is done
+ * by hand because it runs for every record of every response.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class BusTime {
+    /**
+     * Time zone of the timestamps reported by the API.
+     */
+    static final TimeZone WARSAW = TimeZone.getTimeZone("Europe/Warsaw");
+    /**
+     * Value used for missing or malformed timestamps.
+     */
+    public static final long UNKNOWN = 0L;
+
+    /**
+     * Prevents instantiation.
+     */
+    private BusTime() {
+    }
+
+    /**
+     * Parses an API timestamp.
+     *
+     * @param value Timestamp in the "yyyy-MM-dd HH:mm:ss" format; may be null.
+     * @return Epoch milliseconds, or {@link #UNKNOWN} if the value cannot be parsed.
+     */
+    public static long parse(String value) {
+        if (value == null || value.length() < 19) {
+            return UNKNOWN;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31
+                || hour < 0 || minute < 0 || second < 0) {
+            return UNKNOWN;
+        }
+
+        long localMillis = (daysFromCivil(year, month, day) * 86400L
+                + hour * 3600L + minute * 60L + second) * 1000L;
+        long utcGuess = localMillis - WARSAW.getRawOffset();
+        return localMillis - WARSAW.getOffset(utcGuess);
+    }
+
+    /**
+     * Formats epoch milliseconds in the API timestamp format.
+     *
+     * @param millis Epoch milliseconds.
+     * @return The formatted timestamp, or null for {@link #UNKNOWN}.
+     */
+    public static String format(long millis) {
+        if (millis == UNKNOWN) {
+            return null;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        format.setTimeZone(WARSAW);
+        return format.format(new Date(millis));
+    }
+
+    /**
+     * Parses a fixed-width run of decimal digits.
+     *
+     * @param value The string.
+     * @param start Index of the first digit.
+     * @param count Number of digits.
+     * @return The parsed number, or -1 if a character is not a digit.
+     */
+    private static int digits(String value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of days between 1970-01-01 and the given date.
+     *
+     * @param year The year.
+     * @param month The month, 1-12.
+     * @param day The day of the month.
+     * @return Days since the epoch.
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
@@ -0,0 +1,103 @@
+package pl.creativesstudio.models;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @file FleetDictionary.java
+ * @brief Maps the repeated strings of the fleet data to small integer ids.
+ *
+ * Line numbers, brigades and vehicle numbers repeat in every API response, so snapshots
+ * store them as ids into this dictionary instead of separate strings. The dictionary is
+ * append-only: an id, once assigned, always refers to the same string, which keeps ids
+ * comparable between snapshots.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class FleetDictionary {
+    /**
+     * Id used for missing values.
+     */
+    public static final int NO_ID = -1;
+
+    /**
+     * Ids of the known strings.
+     */
+    private final Map<String, Integer> ids = new HashMap<>();
+    /**
+     * Strings indexed by id. Replaced, never modified in place, when it has to grow.
+     */
+    private volatile String[] strings = new String[256];
+    /**
+     * Number of assigned ids.
+     */
+    private int size;
+
+    /**
+     * Returns the id of the given string, assigning a new one if necessary.
+     *
+     * @param value The string; may be null.
+     * @return The id, or {@link #NO_ID} if the value is null.
+     */
+    public synchronized int idOf(String value) {
+        if (value == null) {
+            return NO_ID;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        String[] current = strings;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, size * 2);
+        }
+        current[size] = value;
+        strings = current;
+        ids.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Returns the id of the given string without assigning a new one.
+     *
+     * @param value The string.
+     * @return The id, or {@link #NO_ID} if the string is not known.
+     */
+    public synchronized int find(String value) {
+        Integer id = value != null ? ids.get(value) : null;
+        return id != null ? id : NO_ID;
+    }
+
+    /**
+     * Returns the string with the given id.
+     *
+     * @param id The id.
+     * @return The string, or null for {@link #NO_ID}.
+     */
+    public String get(int id) {
+        return id == NO_ID ? null : strings[id];
+    }
+
+    /**
+     * Returns the current id-to-string table.
+     *
+     * The returned array is never modified for ids that are already assigned, so it can
+     * be kept by snapshots built from those ids.
+     *
+     * @return The strings indexed by id.
+     */
+    String[] table() {
+        return strings;
+    }
+
+    /**
+     * Returns the number of assigned ids.
+     *
+     * @return The dictionary size.
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,737 @@
+package pl.creativesstudio.models;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import pl.creativesstudio.index.ClusterIndex;
+import pl.creativesstudio.index.LineIndex;
+import pl.creativesstudio.index.SpatialGrid;
+
+/**
+ * @file FleetSnapshot.java
+ * @brief Immutable, columnar snapshot of all vehicle positions from one API response.
+ *
+ * Instead of one {@link Bus} object per vehicle, the snapshot keeps every field in its own
+ * primitive array: coordinates as integer microdegrees, line, brigade and vehicle number
+ * as ids into a shared {@link FleetDictionary}, and the report time as epoch milliseconds.
+ * A {@link Bus}-compatible view is available for code that works with bus lists.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class FleetSnapshot {
+    /**
+     * Number of microdegrees in a degree.
+     */
+    public static final double MICRODEGREES = 1_000_000d;
+    /**
+     * Vehicle type of buses; the value of the {@code type} parameter of the API.
+     */
+    public static final byte TYPE_BUS = 1;
+    /**
+     * Vehicle type of trams; the value of the {@code type} parameter of the API.
+     */
+    public static final byte TYPE_TRAM = 2;
+    /**
+     * Number of vehicle types.
+     */
+    public static final int TYPE_COUNT = 2;
+    /**
+     * Snapshot without any vehicles.
+     */
+    public static final FleetSnapshot EMPTY = new Builder(new FleetDictionary()).build();
+
+    /**
+     * Dictionary the ids of this snapshot refer to.
+     */
+    private final FleetDictionary dictionary;
+    /**
+     * Id-to-string table captured when the snapshot was built.
+     */
+    private final String[] strings;
+    /**
+     * Number of vehicles in the snapshot.
+     */
+    private final int size;
+    /**
+     * Latitudes in microdegrees.
+     */
+    private final int[] latE6;
+    /**
+     * Longitudes in microdegrees.
+     */
+    private final int[] lonE6;
+    /**
+     * Dictionary ids of the lines.
+     */
+    private final int[] lineIds;
+    /**
+     * Dictionary ids of the vehicle numbers.
+     */
+    private final int[] vehicleIds;
+    /**
+     * Dictionary ids of the brigades.
+     */
+    private final int[] brigadeIds;
+    /**
+     * Report times in epoch milliseconds.
+     */
+    private final long[] timeMillis;
+    /**
+     * Vehicle types, {@link #TYPE_BUS} or {@link #TYPE_TRAM}.
+     */
+    private final byte[] vehicleTypes;
+    /**
+     * Bus-compatible view of the snapshot.
+     */
+    private final List<Bus> busView = new BusView();
+    /**
+     * Spatial index over the vehicle positions, built on first use.
+     */
+    private volatile SpatialGrid spatialIndex;
+    /**
+     * Index of vehicles by line, built on first use.
+     */
+    private volatile LineIndex lineIndex;
+    /**
+     * Clusters of the vehicles for low zoom levels, built on first use.
+     */
+    private volatile ClusterIndex clusterIndex;
+
+    /**
+     * Constructs a new FleetSnapshot from trimmed columns.
+     *
+     * @param builder The builder holding the columns.
+     */
+    private FleetSnapshot(Builder builder) {
+        this.dictionary = builder.dictionary;
+        this.strings = builder.dictionary.table();
+        this.size = builder.size;
+        this.latE6 = Arrays.copyOf(builder.latE6, size);
+        this.lonE6 = Arrays.copyOf(builder.lonE6, size);
+        this.lineIds = Arrays.copyOf(builder.lineIds, size);
+        this.vehicleIds = Arrays.copyOf(builder.vehicleIds, size);
+        this.brigadeIds = Arrays.copyOf(builder.brigadeIds, size);
+        this.timeMillis = Arrays.copyOf(builder.timeMillis, size);
+        this.vehicleTypes = Arrays.copyOf(builder.vehicleTypes, size);
+    }
+
+    /**
+     * Constructs a new FleetSnapshot sharing the columns of another one but with different vehicle types.
+     *
+     * @param source The snapshot whose columns are shared.
+     * @param vehicleTypes The vehicle types.
+     */
+    private FleetSnapshot(FleetSnapshot source, byte[] vehicleTypes) {
+        this.dictionary = source.dictionary;
+        this.strings = source.strings;
+        this.size = source.size;
+        this.latE6 = source.latE6;
+        this.lonE6 = source.lonE6;
+        this.lineIds = source.lineIds;
+        this.vehicleIds = source.vehicleIds;
+        this.brigadeIds = source.brigadeIds;
+        this.timeMillis = source.timeMillis;
+        this.vehicleTypes = vehicleTypes;
+        this.spatialIndex = source.spatialIndex;
+        this.lineIndex = source.lineIndex;
+        this.clusterIndex = source.clusterIndex;
+    }
+
+    /**
+     * Builds a snapshot from a list of buses.
+     *
+     * @param buses The buses to copy.
+     * @param dictionary Dictionary to assign string ids from.
+     * @return The snapshot.
+     */
+    public static FleetSnapshot fromBuses(List<Bus> buses, FleetDictionary dictionary) {
+        Builder builder = new Builder(dictionary, buses.size());
+        for (Bus bus : buses) {
+            builder.add(bus.getLines(), bus.getLat(), bus.getLon(), BusTime.parse(bus.getTime()),
+                    bus.getVehicleNumber(), bus.getBrigade());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the number of vehicles in the snapshot.
+     *
+     * @return The vehicle count.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the snapshot contains no vehicles.
+     *
+     * @return True if the snapshot is empty.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the dictionary the ids of this snapshot refer to.
+     *
+     * @return The dictionary.
+     */
+    public FleetDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the string with the given dictionary id.
+     *
+     * @param id The dictionary id.
+     * @return The string, or null for {@link FleetDictionary#NO_ID}.
+     */
+    public String getString(int id) {
+        return id == FleetDictionary.NO_ID ? null : strings[id];
+    }
+
+    /**
+     * Returns the latitude of a vehicle in microdegrees.
+     *
+     * @param index Index of the vehicle.
+     * @return The latitude in microdegrees.
+     */
+    public int getLatE6(int index) { return latE6[index]; }
+    /**
+     * Returns the longitude of a vehicle in microdegrees.
+     *
+     * @param index Index of the vehicle.
+     * @return The longitude in microdegrees.
+     */
+    public int getLonE6(int index) { return lonE6[index]; }
+    /**
+     * Returns the latitude of a vehicle.
+     *
+     * @param index Index of the vehicle.
+     * @return The latitude in degrees.
+     */
+    public double getLat(int index) { return latE6[index] / MICRODEGREES; }
+    /**
+     * Returns the longitude of a vehicle.
+     *
+     * @param index Index of the vehicle.
+     * @return The longitude in degrees.
+     */
+    public double getLon(int index) { return lonE6[index] / MICRODEGREES; }
+    /**
+     * Returns the dictionary id of a vehicle's line.
+     *
+     * @param index Index of the vehicle.
+     * @return The line id.
+     */
+    public int getLineId(int index) { return lineIds[index]; }
+    /**
+     * Returns the dictionary id of a vehicle's number.
+     *
+     * @param index Index of the vehicle.
+     * @return The vehicle number id.
+     */
+    public int getVehicleId(int index) { return vehicleIds[index]; }
+    /**
+     * Returns the dictionary id of a vehicle's brigade.
+     *
+     * @param index Index of the vehicle.
+     * @return The brigade id.
+     */
+    public int getBrigadeId(int index) { return brigadeIds[index]; }
+    /**
+     * Returns the report time of a vehicle.
+     *
+     * @param index Index of the vehicle.
+     * @return Epoch milliseconds, or {@link BusTime#UNKNOWN}.
+     */
+    public long getTimeMillis(int index) { return timeMillis[index]; }
+    /**
+     * Returns the vehicle type.
+     *
+     * @param index Index of the vehicle.
+     * @return {@link #TYPE_BUS} or {@link #TYPE_TRAM}.
+     */
+    public byte getVehicleType(int index) { return vehicleTypes[index]; }
+    /**
+     * Returns the key of a vehicle: its number id combined with its type.
+     *
+     * A bus and a tram may share a vehicle number, so the number alone does not identify
+     * a vehicle. The key is a small non-negative int, usable as an array index.
+     *
+     * @param index Index of the vehicle.
+     * @return The vehicle key, or {@link FleetDictionary#NO_ID} if the vehicle has no number.
+     */
+    public int getVehicleKey(int index) {
+        int vehicleId = vehicleIds[index];
+        if (vehicleId == FleetDictionary.NO_ID) {
+            return FleetDictionary.NO_ID;
+        }
+        return vehicleId * TYPE_COUNT + (vehicleTypes[index] - TYPE_BUS);
+    }
+    /**
+     * Returns the key of a vehicle as text, in the form {@code <type>:<number>}.
+     *
+     * @param index Index of the vehicle.
+     * @return The vehicle tag, or null if the vehicle has no number.
+     */
+    public String getVehicleTag(int index) {
+        String number = getVehicleNumber(index);
+        return number != null ? vehicleTypes[index] + ":" + number : null;
+    }
+    /**
+     * Returns the line of a vehicle.
+     *
+     * @param index Index of the vehicle.
+     * @return The line.
+     */
+    public String getLine(int index) { return getString(lineIds[index]); }
+    /**
+     * Returns the number of a vehicle.
+     *
+     * @param index Index of the vehicle.
+     * @return The vehicle number.
+     */
+    public String getVehicleNumber(int index) { return getString(vehicleIds[index]); }
+    /**
+     * Returns the brigade of a vehicle.
+     *
+     * @param index Index of the vehicle.
+     * @return The brigade.
+     */
+    public String getBrigade(int index) { return getString(brigadeIds[index]); }
+
+    /**
+     * Returns the spatial index over the vehicle positions.
+     *
+     * The index is built once per snapshot, on first use; the fetch thread builds it
+     * right after decoding so that the UI thread finds it ready.
+     *
+     * @return The spatial index.
+     */
+    public SpatialGrid getSpatialIndex() {
+        SpatialGrid index = spatialIndex;
+        if (index == null) {
+            index = SpatialGrid.build(latE6, lonE6, size);
+            spatialIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the clusters of the vehicles for the zoom levels below the marker zoom.
+     *
+     * Like the spatial index, it is built once per snapshot on first use.
+     *
+     * @return The cluster index.
+     */
+    public ClusterIndex getClusterIndex() {
+        ClusterIndex index = clusterIndex;
+        if (index == null) {
+            index = new ClusterIndex(this);
+            clusterIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of vehicles by line.
+     *
+     * Like the spatial index, it is built once per snapshot on first use.
+     *
+     * @return The line index.
+     */
+    public LineIndex getLineIndex() {
+        LineIndex index = lineIndex;
+        if (index == null) {
+            index = new LineIndex(this);
+            lineIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * Checks whether another snapshot holds exactly the same vehicle reports.
+     *
+     * Both snapshots must share the dictionary, which is the case for all snapshots
+     * decoded by one decoder.
+     *
+     * @param other The snapshot to compare with.
+     * @return True if every vehicle has the same line, brigade, position and report time.
+     */
+    public boolean hasSameReports(FleetSnapshot other) {
+        if (other == this) {
+            return true;
+        }
+        if (other.size != size || other.dictionary != dictionary) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (timeMillis[i] != other.timeMillis[i]
+                    || vehicleIds[i] != other.vehicleIds[i]
+                    || latE6[i] != other.latE6[i]
+                    || lonE6[i] != other.lonE6[i]
+                    || lineIds[i] != other.lineIds[i]
+                    || brigadeIds[i] != other.brigadeIds[i]
+                    || vehicleTypes[i] != other.vehicleTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates a snapshot in which the vehicles of some lines are replaced by newer data.
+     *
+     * Vehicles of the given lines, and vehicles present in {@code update}, are taken only
+     * from {@code update}; all other vehicles from this snapshot. A line missing from
+     * {@code update} ends up without vehicles.
+     *
+     * @param update Snapshot holding the current vehicles of the replaced lines.
+     * @param lines Names of the replaced lines.
+     * @return The merged snapshot.
+     * @throws IllegalArgumentException If both snapshots hold vehicles but use different dictionaries.
+     */
+    public FleetSnapshot withLinesReplaced(FleetSnapshot update, Collection<String> lines) {
+        if (isEmpty()) {
+            return update;
+        }
+        if (!update.isEmpty() && update.dictionary != dictionary) {
+            throw new IllegalArgumentException("Snapshots use different dictionaries");
+        }
+
+        boolean[] replaced = new boolean[dictionary.size()];
+        for (String line : lines) {
+            int lineId = dictionary.find(line);
+            if (lineId != FleetDictionary.NO_ID && lineId < replaced.length) {
+                replaced[lineId] = true;
+            }
+        }
+        boolean[] updatedVehicle = new boolean[replaced.length];
+        for (int i = 0; i < update.size; i++) {
+            int vehicleId = update.vehicleIds[i];
+            if (vehicleId >= 0 && vehicleId < updatedVehicle.length) {
+                updatedVehicle[vehicleId] = true;
+            }
+        }
+
+        Builder builder = new Builder(dictionary, size + update.size);
+        for (int i = 0; i < size; i++) {
+            int lineId = lineIds[i];
+            int vehicleId = vehicleIds[i];
+            boolean lineReplaced = lineId >= 0 && lineId < replaced.length && replaced[lineId];
+            boolean vehicleUpdated = vehicleId >= 0 && vehicleId < updatedVehicle.length && updatedVehicle[vehicleId];
+            if (!lineReplaced && !vehicleUpdated) {
+                builder.add(lineId, latE6[i], lonE6[i], timeMillis[i], vehicleIds[i], brigadeIds[i],
+                        vehicleTypes[i]);
+            }
+        }
+        builder.addAll(update);
+        return builder.build();
+    }
+
+    /**
+     * Creates a snapshot with the same vehicles, all of the given type.
+     *
+     * The columns and indexes of this snapshot are shared, not copied.
+     *
+     * @param type {@link #TYPE_BUS} or {@link #TYPE_TRAM}.
+     * @return The snapshot.
+     */
+    public FleetSnapshot withVehicleType(byte type) {
+        byte[] types = new byte[size];
+        Arrays.fill(types, type);
+        return new FleetSnapshot(this, types);
+    }
+
+    /**
+     * Concatenates snapshots, for example the bus and the tram feed.
+     *
+     * @param parts The snapshots to concatenate; all non-empty ones must share one dictionary.
+     * @return The concatenated snapshot.
+     * @throws IllegalArgumentException If non-empty parts use different dictionaries.
+     */
+    public static FleetSnapshot concat(FleetSnapshot... parts) {
+        FleetDictionary dictionary = null;
+        int total = 0;
+        for (FleetSnapshot part : parts) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            if (dictionary != null && part.dictionary != dictionary) {
+                throw new IllegalArgumentException("Snapshots use different dictionaries");
+            }
+            dictionary = part.dictionary;
+            total += part.size;
+        }
+        if (dictionary == null) {
+            return EMPTY;
+        }
+
+        Builder builder = new Builder(dictionary, total);
+        for (FleetSnapshot part : parts) {
+            builder.addAll(part);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a {@link Bus} holding the data of one vehicle.
+     *
+     * @param index Index of the vehicle.
+     * @return A new Bus object.
+     */
+    public Bus getBus(int index) {
+        Bus bus = new Bus();
+        bus.setLines(getLine(index));
+        bus.setLat(getLat(index));
+        bus.setLon(getLon(index));
+        bus.setTime(BusTime.format(timeMillis[index]));
+        bus.setVehicleNumber(getVehicleNumber(index));
+        bus.setBrigade(getBrigade(index));
+        return bus;
+    }
+
+    /**
+     * Returns a read-only {@link Bus} view of the snapshot.
+     *
+     * Bus objects are created on access, so callers iterating the view repeatedly should
+     * prefer the indexed accessors.
+     *
+     * @return The bus view.
+     */
+    public List<Bus> asBusList() {
+        return busView;
+    }
+
+    /**
+     * @class BusView
+     * @brief Read-only list view creating Bus objects on access.
+     */
+    private final class BusView extends AbstractList<Bus> implements RandomAccess {
+        @Override
+        public Bus get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return getBus(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Converts degrees to microdegrees.
+     *
+     * @param degrees The value in degrees.
+     * @return The value in microdegrees.
+     */
+    public static int toE6(double degrees) {
+        return (int) Math.round(degrees * MICRODEGREES);
+    }
+
+    /**
+     * @class Builder
+     * @brief Accumulates vehicles into growable columns and builds a snapshot.
+     */
+    public static final class Builder {
+        /**
+         * Dictionary used to assign string ids.
+         */
+        private final FleetDictionary dictionary;
+        /**
+         * Number of vehicles added so far.
+         */
+        private int size;
+        /**
+         * Latitudes in microdegrees.
+         */
+        private int[] latE6;
+        /**
+         * Longitudes in microdegrees.
+         */
+        private int[] lonE6;
+        /**
+         * Dictionary ids of the lines.
+         */
+        private int[] lineIds;
+        /**
+         * Dictionary ids of the vehicle numbers.
+         */
+        private int[] vehicleIds;
+        /**
+         * Dictionary ids of the brigades.
+         */
+        private int[] brigadeIds;
+        /**
+         * Report times in epoch milliseconds.
+         */
+        private long[] timeMillis;
+        /**
+         * Vehicle types.
+         */
+        private byte[] vehicleTypes;
+        /**
+         * Type of vehicles added without an explicit type.
+         */
+        private byte vehicleType = TYPE_BUS;
+
+        /**
+         * Constructs a new Builder with a default initial capacity.
+         *
+         * @param dictionary Dictionary used to assign string ids.
+         */
+        public Builder(FleetDictionary dictionary) {
+            this(dictionary, 64);
+        }
+
+        /**
+         * Constructs a new Builder.
+         *
+         * @param dictionary Dictionary used to assign string ids.
+         * @param capacity Expected number of vehicles.
+         */
+        public Builder(FleetDictionary dictionary, int capacity) {
+            this.dictionary = dictionary;
+            int initial = Math.max(capacity, 1);
+            latE6 = new int[initial];
+            lonE6 = new int[initial];
+            lineIds = new int[initial];
+            vehicleIds = new int[initial];
+            brigadeIds = new int[initial];
+            timeMillis = new long[initial];
+            vehicleTypes = new byte[initial];
+        }
+
+        /**
+         * Sets the type of vehicles added afterwards without an explicit type.
+         *
+         * @param type {@link #TYPE_BUS} (the default) or {@link #TYPE_TRAM}.
+         * @return This builder.
+         */
+        public Builder setVehicleType(byte type) {
+            this.vehicleType = type;
+            return this;
+        }
+
+        /**
+         * Returns the dictionary used to assign string ids.
+         *
+         * @return The dictionary.
+         */
+        public FleetDictionary getDictionary() {
+            return dictionary;
+        }
+
+        /**
+         * Adds a vehicle given by its string values.
+         *
+         * @param line The line.
+         * @param lat The latitude in degrees.
+         * @param lon The longitude in degrees.
+         * @param time The report time in epoch milliseconds.
+         * @param vehicleNumber The vehicle number.
+         * @param brigade The brigade.
+         * @return This builder.
+         */
+        public Builder add(String line, double lat, double lon, long time, String vehicleNumber, String brigade) {
+            return add(dictionary.idOf(line), toE6(lat), toE6(lon), time,
+                    dictionary.idOf(vehicleNumber), dictionary.idOf(brigade));
+        }
+
+        /**
+         * Adds a vehicle given by its dictionary ids.
+         *
+         * @param lineId The line id.
+         * @param latE6 The latitude in microdegrees.
+         * @param lonE6 The longitude in microdegrees.
+         * @param time The report time in epoch milliseconds.
+         * @param vehicleId The vehicle number id.
+         * @param brigadeId The brigade id.
+         * @return This builder.
+         */
+        public Builder add(int lineId, int latE6, int lonE6, long time, int vehicleId, int brigadeId) {
+            return add(lineId, latE6, lonE6, time, vehicleId, brigadeId, vehicleType);
+        }
+
+        /**
+         * Adds a vehicle given by its dictionary ids and type.
+         *
+         * @param lineId The line id.
+         * @param latE6 The latitude in microdegrees.
+         * @param lonE6 The longitude in microdegrees.
+         * @param time The report time in epoch milliseconds.
+         * @param vehicleId The vehicle number id.
+         * @param brigadeId The brigade id.
+         * @param type {@link #TYPE_BUS} or {@link #TYPE_TRAM}.
+         * @return This builder.
+         */
+        public Builder add(int lineId, int latE6, int lonE6, long time, int vehicleId, int brigadeId, byte type) {
+            if (size == this.latE6.length) {
+                grow();
+            }
+            this.lineIds[size] = lineId;
+            this.latE6[size] = latE6;
+            this.lonE6[size] = lonE6;
+            this.timeMillis[size] = time;
+            this.vehicleIds[size] = vehicleId;
+            this.brigadeIds[size] = brigadeId;
+            this.vehicleTypes[size] = type;
+            size++;
+            return this;
+        }
+
+        /**
+         * Adds all vehicles of a snapshot using the same dictionary.
+         *
+         * @param snapshot The snapshot to copy.
+         * @return This builder.
+         */
+        public Builder addAll(FleetSnapshot snapshot) {
+            for (int i = 0; i < snapshot.size; i++) {
+                add(snapshot.lineIds[i], snapshot.latE6[i], snapshot.lonE6[i], snapshot.timeMillis[i],
+                        snapshot.vehicleIds[i], snapshot.brigadeIds[i], snapshot.vehicleTypes[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Returns the number of vehicles added so far.
+         *
+         * @return The vehicle count.
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Doubles the capacity of all columns.
+         */
+        private void grow() {
+            int capacity = latE6.length * 2;
+            latE6 = Arrays.copyOf(latE6, capacity);
+            lonE6 = Arrays.copyOf(lonE6, capacity);
+            lineIds = Arrays.copyOf(lineIds, capacity);
+            vehicleIds = Arrays.copyOf(vehicleIds, capacity);
+            brigadeIds = Arrays.copyOf(brigadeIds, capacity);
+            timeMillis = Arrays.copyOf(timeMillis, capacity);
+            vehicleTypes = Arrays.copyOf(vehicleTypes, capacity);
+        }
+
+        /**
+         * Builds an immutable snapshot of the vehicles added so far.
+         *
+         * @return The snapshot.
+         */
+        public FleetSnapshot build() {
+            return new FleetSnapshot(this);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package pl.creativesstudio.models;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @file LineKey.java
+ * @brief Pre-parsed sort key of a bus or tram line.
+ *
+ * A line such as "N01", "L-1" or "523" is split once into its letter prefix, numeric
+ * part and suffix. Keys are cached across snapshots, so sorting the line list compares
+ * only primitives and interned strings instead of running regular expressions on every
+ * comparison.
+ *
+ * The order is: letters (prefix followed by suffix) first, then the numeric value when
+ * both lines have one, and finally the raw line text. Lines that differ only in leading
+ * zeros, such as "N01" and "N1", compare as equal, so a stable sort keeps their input
+ * order.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class LineKey implements Comparable<LineKey> {
+    /**
+     * Value of {@link #getNumber()} for lines without digits.
+     */
+    public static final long NO_NUMBER = -1L;
+    /**
+     * Maximum number of cached keys before the cache is reset.
+     */
+    private static final int MAX_CACHED_KEYS = 4096;
+    /**
+     * Keys cached by line text.
+     */
+    private static final ConcurrentHashMap<String, LineKey> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * The raw line text.
+     */
+    private final String line;
+    /**
+     * Characters before the first digit.
+     */
+    private final String prefix;
+    /**
+     * Value of all digits of the line, or {@link #NO_NUMBER}.
+     */
+    private final long number;
+    /**
+     * Non-digit characters after the first digit.
+     */
+    private final String suffix;
+    /**
+     * All non-digit characters (prefix followed by suffix), interned.
+     */
+    private final String letters;
+
+    /**
+     * Parses a line.
+     *
+     * @param line The line text.
+     */
+    private LineKey(String line) {
+        this.line = line;
+
+        int firstDigit = 0;
+        while (firstDigit < line.length() && !isDigit(line.charAt(firstDigit))) {
+            firstDigit++;
+        }
+        long value = NO_NUMBER;
+        StringBuilder rest = new StringBuilder();
+        for (int i = firstDigit; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (isDigit(c)) {
+                value = (value == NO_NUMBER ? 0 : value * 10) + (c - '0');
+            } else {
+                rest.append(c);
+            }
+        }
+
+        this.prefix = line.substring(0, firstDigit).intern();
+        this.number = value;
+        this.suffix = rest.toString().intern();
+        this.letters = (prefix + suffix).intern();
+    }
+
+    /**
+     * Returns the cached key of a line, parsing it on first use.
+     *
+     * @param line The line text.
+     * @return The key.
+     */
+    public static LineKey of(String line) {
+        LineKey key = CACHE.get(line);
+        if (key == null) {
+            if (CACHE.size() >= MAX_CACHED_KEYS) {
+                CACHE.clear();
+            }
+            key = new LineKey(line);
+            LineKey existing = CACHE.putIfAbsent(line, key);
+            if (existing != null) {
+                key = existing;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Sorts lines in display order.
+     *
+     * Every line is parsed (or looked up) once, the keys are sorted and the list is
+     * rewritten in place.
+     *
+     * @param lines The lines to sort.
+     * @return The same list, sorted.
+     */
+    public static List<String> sort(List<String> lines) {
+        LineKey[] keys = new LineKey[lines.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = of(lines.get(i));
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            lines.set(i, keys[i].line);
+        }
+        return lines;
+    }
+
+    /**
+     * Compares two keys in display order.
+     *
+     * @param other The key to compare with.
+     * @return A negative number, zero or a positive number as this key sorts before, with
+     *         or after the other one.
+     */
+    @Override
+    public int compareTo(LineKey other) {
+        if (letters != other.letters) {
+            int letterComparison = letters.compareTo(other.letters);
+            if (letterComparison != 0) {
+                return letterComparison;
+            }
+        }
+        if (number != NO_NUMBER && other.number != NO_NUMBER) {
+            return Long.compare(number, other.number);
+        }
+        return line.compareTo(other.line);
+    }
+
+    /**
+     * Checks whether a character is an ASCII digit.
+     *
+     * @param c The character.
+     * @return True for '0'-'9'.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns the raw line text.
+     *
+     * @return The line.
+     */
+    public String getLine() { return line; }
+    /**
+     * Returns the characters before the first digit.
+     *
+     * @return The prefix, possibly empty.
+     */
+    public String getPrefix() { return prefix; }
+    /**
+     * Returns the value of the digits of the line.
+     *
+     * @return The number, or {@link #NO_NUMBER} if the line has no digits.
+     */
+    public long getNumber() { return number; }
+    /**
+     * Returns the non-digit characters after the first digit.
+     *
+     * @return The suffix, possibly empty.
+     */
+    public String getSuffix() { return suffix; }
+
+    @Override
+    public String toString() {
+        return line;
+    }
+}
@@ -0,0 +1,186 @@
+package pl.creativesstudio.startup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * @file InitGraph.java
+ * @brief Startup initialization as a graph of named tasks with explicit dependencies.
+ *
+ * Every task runs on the executor it is added with, as soon as the tasks it depends on have
+ * completed, so independent tasks run in parallel with each other and with the main thread.
+ * The result of a task is its future: consumers wait for exactly the initialization they
+ * need, and a task that has completed is never paid for again. A failed task fails all
+ * tasks that depend on it.
+ *
+ * Tasks are added from a single thread, usually the main thread.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class InitGraph {
+    /**
+     * @interface Listener
+     * @brief Receives the outcome of every task.
+     */
+    public interface Listener {
+        /**
+         * Called on the thread of the task when it finishes.
+         *
+         * @param name Name of the task.
+         * @param durationNanos Time the task ran, in nanoseconds; 0 if it did not run because a dependency failed.
+         * @param error The failure, or null if the task succeeded.
+         */
+        void onTaskFinished(String name, long durationNanos, Throwable error);
+    }
+
+    /**
+     * Receiver of the outcome of every task.
+     */
+    private final Listener listener;
+    /**
+     * Names of the added tasks.
+     */
+    private final Set<String> names = new HashSet<>();
+    /**
+     * Futures of the added tasks.
+     */
+    private final List<CompletableFuture<?>> tasks = new ArrayList<>();
+
+    /**
+     * Constructs a new InitGraph.
+     *
+     * @param listener Receiver of the outcome of every task.
+     */
+    public InitGraph(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a task without dependencies; it starts at once.
+     *
+     * @param name Unique name of the task.
+     * @param executor Executor running the task.
+     * @param task The task.
+     * @param <T> Type of the result.
+     * @return Future of the result.
+     * @throws IllegalArgumentException If the name is already used.
+     */
+    public <T> CompletableFuture<T> add(String name, Executor executor, Supplier<T> task) {
+        AtomicBoolean started = register(name);
+        return track(name, started, CompletableFuture.supplyAsync(() -> timed(name, started, task), executor));
+    }
+
+    /**
+     * Adds a task depending on the result of another task.
+     *
+     * @param name Unique name of the task.
+     * @param dependency Future of the task this one depends on.
+     * @param executor Executor running the task.
+     * @param task The task, receiving the result of the dependency.
+     * @param <A> Type of the result of the dependency.
+     * @param <T> Type of the result.
+     * @return Future of the result.
+     * @throws IllegalArgumentException If the name is already used.
+     */
+    public <A, T> CompletableFuture<T> add(String name, CompletableFuture<A> dependency, Executor executor,
+                                           Function<? super A, ? extends T> task) {
+        AtomicBoolean started = register(name);
+        return track(name, started,
+                dependency.thenApplyAsync(a -> timed(name, started, () -> task.apply(a)), executor));
+    }
+
+    /**
+     * Adds a task depending on the results of two other tasks.
+     *
+     * @param name Unique name of the task.
+     * @param first Future of the first task this one depends on.
+     * @param second Future of the second task this one depends on.
+     * @param executor Executor running the task.
+     * @param task The task, receiving the results of both dependencies.
+     * @param <A> Type of the result of the first dependency.
+     * @param <B> Type of the result of the second dependency.
+     * @param <T> Type of the result.
+     * @return Future of the result.
+     * @throws IllegalArgumentException If the name is already used.
+     */
+    public <A, B, T> CompletableFuture<T> add(String name, CompletableFuture<A> first, CompletableFuture<B> second,
+                                              Executor executor, BiFunction<? super A, ? super B, ? extends T> task) {
+        AtomicBoolean started = register(name);
+        return track(name, started,
+                first.thenCombineAsync(second, (a, b) -> timed(name, started, () -> task.apply(a, b)), executor));
+    }
+
+    /**
+     * Returns a future completing when every task added so far has finished.
+     *
+     * @return The future; completes exceptionally if any task failed.
+     */
+    public CompletableFuture<Void> all() {
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Reserves the name of a new task.
+     *
+     * @param name Name of the task.
+     * @return Flag set when the task starts running.
+     * @throws IllegalArgumentException If the name is already used.
+     */
+    private AtomicBoolean register(String name) {
+        if (!names.add(name)) {
+            throw new IllegalArgumentException("Duplicate task: " + name);
+        }
+        return new AtomicBoolean();
+    }
+
+    /**
+     * Keeps the future of a task and reports the task if it is skipped because a dependency failed.
+     *
+     * @param name Name of the task.
+     * @param started Flag set when the task starts running.
+     * @param future Future of the task.
+     * @param <T> Type of the result.
+     * @return Future completing once the task has also been reported.
+     */
+    private <T> CompletableFuture<T> track(String name, AtomicBoolean started, CompletableFuture<T> future) {
+        CompletableFuture<T> tracked = future.whenComplete((result, error) -> {
+            if (error != null && !started.get()) {
+                listener.onTaskFinished(name, 0, error);
+            }
+        });
+        tasks.add(tracked);
+        return tracked;
+    }
+
+    /**
+     * Runs a task and reports its duration and outcome.
+     *
+     * @param name Name of the task.
+     * @param started Flag set when the task starts running.
+     * @param task The task.
+     * @param <T> Type of the result.
+     * @return The result of the task.
+     */
+    private <T> T timed(String name, AtomicBoolean started, Supplier<T> task) {
+        started.set(true);
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = task.get();
+        } catch (RuntimeException | Error e) {
+            listener.onTaskFinished(name, System.nanoTime() - start, e);
+            throw e;
+        }
+        listener.onTaskFinished(name, System.nanoTime() - start, null);
+        return result;
+    }
+}
@@ -0,0 +1,148 @@
+package pl.creativesstudio.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.GzipSink;
+import okio.Okio;
+import okio.BufferedSink;
+import pl.creativesstudio.models.ApiResponse;
+import pl.creativesstudio.models.FleetDictionary;
+import retrofit2.Response;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file ApiClientTest.java
+ * @brief Unit tests for the ApiClient class.
+ *
+ * Runs the shared client against a local server to verify gzip negotiation, byte
+ * counting and call timing.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class ApiClientTest {
+    /**
+     * Sample response with two buses.
+     */
+    private static final String RESPONSE = "{\"result\":["
+            + "{\"Lines\":\"523\",\"Lon\":21.0122,\"VehicleNumber\":\"1000\",\"Time\":\"2024-12-16 10:00:00\",\"Lat\":52.2297,\"Brigade\":\"5\"},"
+            + "{\"Lines\":\"523\",\"Lon\":21.0222,\"VehicleNumber\":\"1001\",\"Time\":\"2024-12-16 10:00:05\",\"Lat\":52.2397,\"Brigade\":\"5\"}"
+            + "]}";
+
+    /**
+     * Folder holding the HTTP cache.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /**
+     * Local server answering the API calls.
+     */
+    private MockWebServer server;
+    /**
+     * Instance of ApiClient being tested.
+     */
+    private ApiClient client;
+
+    /**
+     * Starts the local server and creates a client pointing to it.
+     *
+     * @throws IOException If the server cannot be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new ApiClient(folder.newFolder("http"), server.url("/").toString(), new FleetDictionary());
+    }
+
+    /**
+     * Stops the local server.
+     *
+     * @throws IOException If the server cannot be stopped.
+     */
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Tests that gzip is requested, the body is decompressed and bytes are counted.
+     *
+     * @throws Exception If the call fails.
+     */
+    @Test
+    public void testGzipResponseIsDecoded() throws Exception {
+        Buffer compressed = gzip(RESPONSE);
+        long compressedSize = compressed.size();
+        server.enqueue(new MockResponse().setHeader("Content-Encoding", "gzip").setBody(compressed));
+
+        Response<ApiResponse> response = client.getService().getBuses("id", "key", 1, null, null).execute();
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("gzip", request.getHeader("Accept-Encoding"));
+        assertTrue(response.isSuccessful());
+        assertEquals(2, response.body().getSnapshot().size());
+
+        GzipInterceptor gzip = client.getGzipInterceptor();
+        assertEquals(1, gzip.getGzipResponses());
+        assertEquals(compressedSize, gzip.getCompressedBytes());
+        assertEquals(RESPONSE.length(), gzip.getDecompressedBytes());
+    }
+
+    /**
+     * Tests that busestrams_get calls are timed.
+     *
+     * @throws Exception If the call fails.
+     */
+    @Test
+    public void testCallIsTimed() throws Exception {
+        server.enqueue(new MockResponse().setBody(RESPONSE));
+
+        client.getService().getBuses("id", "key", 1, null, null).execute();
+
+        CallTimingListener.Timings timings = client.getTimingFactory().getLast();
+        assertNotNull(timings);
+        assertFalse(timings.isFailed());
+        assertTrue(timings.getTotalNanos() > 0);
+        assertTrue(timings.getTimeToFirstByteNanos() > 0);
+        assertEquals(RESPONSE.length(), timings.getBodyBytes());
+        assertEquals(1, client.getGzipInterceptor().getIdentityResponses());
+    }
+
+    /**
+     * Tests that the call timeout follows the polling interval within its bounds.
+     */
+    @Test
+    public void testCallTimeoutFollowsInterval() {
+        assertEquals(ApiClient.CALL_TIMEOUT_MILLIS, ApiClient.callTimeoutMillis(0));
+        assertEquals(ApiClient.CALL_TIMEOUT_MILLIS, ApiClient.callTimeoutMillis(3000));
+        assertEquals(18000, ApiClient.callTimeoutMillis(20000));
+        assertEquals(ApiClient.MAX_CALL_TIMEOUT_MILLIS, ApiClient.callTimeoutMillis(120000));
+    }
+
+    /**
+     * Compresses a string with gzip.
+     *
+     * @param text The text to compress.
+     * @return The compressed bytes.
+     * @throws IOException If compression fails.
+     */
+    private static Buffer gzip(String text) throws IOException {
+        Buffer buffer = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(buffer))) {
+            sink.writeUtf8(text);
+        }
+        return buffer;
+    }
+}
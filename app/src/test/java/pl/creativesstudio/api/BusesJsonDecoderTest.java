@@ -0,0 +1,81 @@
+package pl.creativesstudio.api;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import pl.creativesstudio.models.ApiResponse;
+import pl.creativesstudio.models.Bus;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file BusesJsonDecoderTest.java
+ * @brief Unit tests for the BusesJsonDecoder class.
+ *
+ * Verifies decoding of busestrams_get responses, including unknown fields, error
+ * responses and deduplication of repeated strings.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class BusesJsonDecoderTest {
+    /**
+     * Sample response with two buses of the same line and an unknown field.
+     */
+    private static final String RESPONSE = "{\"result\":["
+            + "{\"Lines\":\"523\",\"Lon\":21.0122,\"VehicleNumber\":\"1000\",\"Time\":\"2024-12-16 10:00:00\",\"Lat\":52.2297,\"Brigade\":\"5\",\"Extra\":{\"a\":[1,2]}},"
+            + "{\"Lines\":\"523\",\"Lon\":21.0222,\"VehicleNumber\":\"1001\",\"Time\":\"2024-12-16 10:00:05\",\"Lat\":52.2397,\"Brigade\":\"5\"}"
+            + "]}";
+
+    /**
+     * Tests that all known fields are decoded and unknown fields are skipped.
+     *
+     * @throws IOException If decoding fails.
+     */
+    @Test
+    public void testDecodeBuses() throws IOException {
+        ApiResponse response = new BusesJsonDecoder().decode(new StringReader(RESPONSE));
+        List<Bus> buses = response.getResult();
+
+        assertEquals(2, buses.size());
+        Bus bus = buses.get(0);
+        assertEquals("523", bus.getLines());
+        assertEquals("1000", bus.getVehicleNumber());
+        assertEquals("5", bus.getBrigade());
+        assertEquals("2024-12-16 10:00:00", bus.getTime());
+        assertEquals(52.2297, bus.getLat(), 1e-9);
+        assertEquals(21.0122, bus.getLon(), 1e-9);
+        assertTrue(response.getParseTimeNanos() > 0);
+        assertEquals(2, response.getSnapshot().size());
+        assertEquals(52229700, response.getSnapshot().getLatE6(0));
+    }
+
+    /**
+     * Tests that repeated line and brigade values share one instance.
+     *
+     * @throws IOException If decoding fails.
+     */
+    @Test
+    public void testRepeatedStringsAreShared() throws IOException {
+        List<Bus> buses = new BusesJsonDecoder().decode(new StringReader(RESPONSE)).getResult();
+
+        assertSame(buses.get(0).getLines(), buses.get(1).getLines());
+        assertSame(buses.get(0).getBrigade(), buses.get(1).getBrigade());
+    }
+
+    /**
+     * Tests that an error message in place of the result array yields a null result.
+     *
+     * @throws IOException If decoding fails.
+     */
+    @Test
+    public void testErrorResponse() throws IOException {
+        ApiResponse response = new BusesJsonDecoder().decode(
+                new StringReader("{\"result\":\"Błędna metoda lub parametry wywołania\"}"));
+
+        assertNull(response.getResult());
+    }
+}
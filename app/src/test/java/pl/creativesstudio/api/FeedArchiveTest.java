@@ -0,0 +1,189 @@
+package pl.creativesstudio.api;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FeedArchiveTest.java
+ * @brief Unit tests for the FeedArchive class.
+ *
+ * Verifies that recorded responses are read back unchanged, compressed, and that a cut
+ * record does not hide the records before it or after it.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FeedArchiveTest {
+    /**
+     * Folder holding the archive.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /**
+     * The archive file.
+     */
+    private File file;
+    /**
+     * Instance of FeedArchive being tested.
+     */
+    private FeedArchive archive;
+
+    /**
+     * Prepares an archive in a new file.
+     *
+     * @throws IOException If the folder cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = new File(folder.newFolder(), "feed.tmbf");
+        archive = new FeedArchive(file);
+    }
+
+    /**
+     * Tests that appended responses are read back in order with their keys and times.
+     *
+     * @throws IOException If the archive cannot be used.
+     */
+    @Test
+    public void testRecordsAreReadBack() throws IOException {
+        archive.append(1000L, FeedArchive.key("1", null), body(1));
+        archive.append(11000L, FeedArchive.key("2", "17"), body(2));
+
+        List<FeedArchive.Record> records = new FeedArchive(file).readAll();
+
+        assertEquals(2, records.size());
+        assertEquals(1000L, records.get(0).getReceivedAtMillis());
+        assertEquals("type=1", records.get(0).getKey());
+        assertArrayEquals(body(1), records.get(0).getBody());
+        assertEquals(11000L, records.get(1).getReceivedAtMillis());
+        assertEquals("type=2&line=17", records.get(1).getKey());
+        assertArrayEquals(body(2), records.get(1).getBody());
+    }
+
+    /**
+     * Tests that the repetitive feed bodies are stored compressed.
+     *
+     * @throws IOException If the archive cannot be used.
+     */
+    @Test
+    public void testBodiesAreCompressed() throws IOException {
+        byte[] body = body(1);
+        archive.append(1000L, FeedArchive.key("1", null), body);
+
+        FeedArchive.Record record = archive.readAll().get(0);
+
+        assertEquals(body.length, record.getBodyLength());
+        assertTrue(record.getCompressedLength() * 4 < body.length);
+    }
+
+    /**
+     * Tests that a record cut short ends the archive without losing the earlier records.
+     *
+     * @throws IOException If the archive cannot be used.
+     */
+    @Test
+    public void testTruncatedRecordIsIgnored() throws IOException {
+        archive.append(1000L, FeedArchive.key("1", null), body(1));
+        archive.append(11000L, FeedArchive.key("1", null), body(2));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        List<FeedArchive.Record> records = archive.readAll();
+
+        assertEquals(1, records.size());
+        assertArrayEquals(body(1), records.get(0).getBody());
+    }
+
+    /**
+     * Tests that a new session appending after a cut record replaces it, so that its records
+     * can be read.
+     *
+     * @throws IOException If the archive cannot be used.
+     */
+    @Test
+    public void testAppendAfterTruncatedRecordIsReadable() throws IOException {
+        archive.append(1000L, FeedArchive.key("1", null), body(1));
+        archive.append(11000L, FeedArchive.key("1", null), body(2));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        FeedArchive resumed = new FeedArchive(file);
+        resumed.append(21000L, FeedArchive.key("2", "17"), body(3));
+        resumed.append(31000L, FeedArchive.key("1", null), body(4));
+        List<FeedArchive.Record> records = resumed.readAll();
+
+        assertEquals(3, records.size());
+        assertEquals(1000L, records.get(0).getReceivedAtMillis());
+        assertEquals(21000L, records.get(1).getReceivedAtMillis());
+        assertArrayEquals(body(3), records.get(1).getBody());
+        assertEquals(31000L, records.get(2).getReceivedAtMillis());
+        assertArrayEquals(body(4), records.get(2).getBody());
+    }
+
+    /**
+     * Tests that a new session appending after a cut header starts the archive again.
+     *
+     * @throws IOException If the archive cannot be used.
+     */
+    @Test
+    public void testAppendAfterTruncatedHeaderIsReadable() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(FeedArchive.MAGIC);
+            raf.writeShort(0);
+        }
+
+        archive.append(1000L, FeedArchive.key("1", null), body(1));
+        List<FeedArchive.Record> records = archive.readAll();
+
+        assertEquals(1, records.size());
+        assertArrayEquals(body(1), records.get(0).getBody());
+    }
+
+    /**
+     * Tests that a file of another format is rejected.
+     *
+     * @throws IOException If the file cannot be written.
+     */
+    @Test(expected = IOException.class)
+    public void testForeignFileIsRejected() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.write("{\"result\":[]}".getBytes(StandardCharsets.UTF_8));
+        }
+
+        archive.readAll();
+    }
+
+    /**
+     * Builds a response body with a hundred buses.
+     *
+     * @param poll Number of the poll, changing the report times.
+     * @return The body.
+     */
+    private static byte[] body(int poll) {
+        StringBuilder json = new StringBuilder("{\"result\":[");
+        for (int i = 0; i < 100; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"Lines\":\"").append(100 + i % 20)
+                    .append("\",\"Lon\":21.0").append(i)
+                    .append(",\"VehicleNumber\":\"").append(1000 + i)
+                    .append("\",\"Time\":\"2024-12-16 10:00:").append(10 + poll)
+                    .append("\",\"Lat\":52.2").append(i)
+                    .append(",\"Brigade\":\"").append(i % 7).append("\"}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
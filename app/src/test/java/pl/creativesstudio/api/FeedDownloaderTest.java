@@ -0,0 +1,183 @@
+package pl.creativesstudio.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import pl.creativesstudio.data.FleetFeeds;
+import pl.creativesstudio.metrics.Histogram;
+import pl.creativesstudio.metrics.MetricsRegistry;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FeedDownloaderTest.java
+ * @brief Unit tests for the FeedDownloader class.
+ *
+ * Runs the downloader against a local server answering per feed, and hands its results to
+ * {@link FleetFeeds} the way the activity does.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FeedDownloaderTest {
+    /**
+     * Response of the bus feed.
+     */
+    private static final String BUSES = "{\"result\":["
+            + "{\"Lines\":\"523\",\"Lon\":21.0122,\"VehicleNumber\":\"1000\",\"Time\":\"2024-12-16 10:00:00\",\"Lat\":52.2297,\"Brigade\":\"5\"}"
+            + "]}";
+    /**
+     * Response of the tram feed.
+     */
+    private static final String TRAMS = "{\"result\":["
+            + "{\"Lines\":\"17\",\"Lon\":21.0022,\"VehicleNumber\":\"3100\",\"Time\":\"2024-12-16 10:00:00\",\"Lat\":52.2497,\"Brigade\":\"2\"},"
+            + "{\"Lines\":\"17\",\"Lon\":21.0032,\"VehicleNumber\":\"3101\",\"Time\":\"2024-12-16 10:00:00\",\"Lat\":52.2597,\"Brigade\":\"3\"}"
+            + "]}";
+    /**
+     * Error response of the API, sent with HTTP 200.
+     */
+    private static final String ERROR = "{\"result\":\"Błędna metoda lub parametry wywołania\"}";
+    /**
+     * Call timeout used by the tests, in milliseconds.
+     */
+    private static final long TIMEOUT_MILLIS = ApiClient.callTimeoutMillis(5000);
+
+    /**
+     * Folder holding the HTTP cache.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /**
+     * Local server answering the API calls.
+     */
+    private MockWebServer server;
+    /**
+     * Body of the next tram response.
+     */
+    private volatile String tramResponse = TRAMS;
+    /**
+     * Delay of the next tram response, in milliseconds.
+     */
+    private volatile long tramDelayMillis;
+    /**
+     * Instance of FeedDownloader being tested.
+     */
+    private FeedDownloader downloader;
+
+    /**
+     * Starts the local server and creates a downloader pointing to it.
+     *
+     * @throws IOException If the server cannot be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String type = request.getRequestUrl().queryParameter("type");
+                if (String.valueOf(FleetSnapshot.TYPE_TRAM).equals(type)) {
+                    return new MockResponse().setBody(tramResponse)
+                            .setHeadersDelay(tramDelayMillis, TimeUnit.MILLISECONDS);
+                }
+                return new MockResponse().setBody(BUSES);
+            }
+        });
+        server.start();
+        ApiClient client = new ApiClient(folder.newFolder("http"), server.url("/").toString(), new FleetDictionary());
+        Histogram parseTime = new MetricsRegistry().histogram("decode.parse", Histogram.Unit.NANOSECONDS);
+        downloader = new FeedDownloader(client.getService(), "resource", "key", parseTime);
+    }
+
+    /**
+     * Stops the local server.
+     *
+     * @throws IOException If the server cannot be stopped.
+     */
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Tests that an error message in place of the result array is a failure, not an empty feed.
+     */
+    @Test
+    public void testErrorMessageIsFailure() throws IOException {
+        tramResponse = ERROR;
+
+        assertNull(downloader.download(FleetSnapshot.TYPE_TRAM, null, TIMEOUT_MILLIS));
+        assertEquals(1, downloader.download(FleetSnapshot.TYPE_BUS, null, TIMEOUT_MILLIS).size());
+    }
+
+    /**
+     * Tests that the timeout passed for a call applies instead of the default of the client.
+     */
+    @Test
+    public void testCallTimeoutIsApplied() throws IOException {
+        tramDelayMillis = 1000;
+
+        try {
+            downloader.download(FleetSnapshot.TYPE_TRAM, null, 200);
+            fail("Expected the call to time out");
+        } catch (InterruptedIOException e) {
+            // Oczekiwane przekroczenie czasu
+        }
+        assertEquals(2, downloader.download(FleetSnapshot.TYPE_TRAM, null, TIMEOUT_MILLIS).size());
+    }
+
+    /**
+     * Tests that the tram vehicles survive a poll in which the tram feed returns an error.
+     */
+    @Test
+    public void testTramVehiclesSurviveTramError() throws IOException {
+        FleetFeeds feeds = new FleetFeeds();
+        poll(feeds);
+        assertEquals(3, feeds.merge().size());
+
+        tramResponse = ERROR;
+        poll(feeds);
+
+        FleetSnapshot merged = feeds.merge();
+        Set<String> vehicles = new HashSet<>();
+        for (int i = 0; i < merged.size(); i++) {
+            vehicles.add(merged.getVehicleNumber(i));
+        }
+        assertTrue(vehicles.contains("3100"));
+        assertTrue(vehicles.contains("3101"));
+        assertTrue(vehicles.contains("1000"));
+        assertEquals(1, feeds.getConsecutiveFailures(FleetSnapshot.TYPE_TRAM));
+    }
+
+    /**
+     * Downloads both feeds and records the outcome like the activity does.
+     *
+     * @param feeds The feeds to update.
+     * @throws IOException If a request fails.
+     */
+    private void poll(FleetFeeds feeds) throws IOException {
+        for (byte type : FleetFeeds.types()) {
+            FleetSnapshot update = downloader.download(type, null, TIMEOUT_MILLIS);
+            if (update == null) {
+                feeds.onFailed(type);
+            } else {
+                feeds.onDownloaded(type, update);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package pl.creativesstudio.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import pl.creativesstudio.models.ApiResponse;
+import pl.creativesstudio.models.FleetDictionary;
+import retrofit2.Response;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FeedRecorderTest.java
+ * @brief Unit tests for the FeedRecorder class.
+ *
+ * Runs the shared client against a local server and checks what ends up in the archive.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FeedRecorderTest {
+    /**
+     * Sample response with one bus.
+     */
+    private static final String RESPONSE = "{\"result\":["
+            + "{\"Lines\":\"523\",\"Lon\":21.0122,\"VehicleNumber\":\"1000\",\"Time\":\"2024-12-16 10:00:00\",\"Lat\":52.2297,\"Brigade\":\"5\"}"
+            + "]}";
+
+    /**
+     * Folder holding the HTTP cache and the archive.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /**
+     * Local server answering the API calls.
+     */
+    private MockWebServer server;
+    /**
+     * Client whose responses are recorded.
+     */
+    private ApiClient client;
+    /**
+     * The archive receiving the responses.
+     */
+    private FeedArchive archive;
+
+    /**
+     * Starts the local server and creates a client pointing to it.
+     *
+     * @throws IOException If the server cannot be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        client = new ApiClient(folder.newFolder("http"), server.url("/").toString(), new FleetDictionary());
+        archive = new FeedArchive(new File(folder.getRoot(), "feed.tmbf"));
+    }
+
+    /**
+     * Stops the local server.
+     *
+     * @throws IOException If the server cannot be stopped.
+     */
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Tests that the decompressed body is recorded under a key without the API key, and still decoded.
+     *
+     * @throws Exception If the call fails.
+     */
+    @Test
+    public void testResponseIsRecorded() throws Exception {
+        server.enqueue(new MockResponse().setHeader("Content-Encoding", "gzip").setBody(gzip(RESPONSE)));
+        client.getFeedRecorder().start(archive);
+
+        Response<ApiResponse> response = client.getService().getBuses("id", "secret", 2, "17", null).execute();
+
+        assertEquals(1, response.body().getSnapshot().size());
+        List<FeedArchive.Record> records = archive.readAll();
+        assertEquals(1, records.size());
+        assertEquals("type=2&line=17", records.get(0).getKey());
+        assertFalse(records.get(0).getKey().contains("secret"));
+        assertEquals(RESPONSE, new String(records.get(0).getBody(), StandardCharsets.UTF_8));
+        assertEquals(1, client.getFeedRecorder().getRecordedCount());
+    }
+
+    /**
+     * Tests that nothing is recorded while recording is off or after a failed call.
+     *
+     * @throws Exception If the call fails.
+     */
+    @Test
+    public void testNothingIsRecordedWhenOffOrFailed() throws Exception {
+        server.enqueue(new MockResponse().setBody(RESPONSE));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        client.getService().getBuses("id", "key", 1, null, null).execute();
+        client.getFeedRecorder().start(archive);
+        client.getService().getBuses("id", "key", 1, null, null).execute();
+
+        assertFalse(archive.getFile().exists());
+        assertEquals(0, client.getFeedRecorder().getRecordedCount());
+    }
+
+    /**
+     * Compresses a string with gzip.
+     *
+     * @param text The text to compress.
+     * @return The compressed bytes.
+     * @throws IOException If compression fails.
+     */
+    private static Buffer gzip(String text) throws IOException {
+        Buffer buffer = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(buffer))) {
+            sink.writeUtf8(text);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,118 @@
+package pl.creativesstudio.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file AdaptiveRefreshSchedulerTest.java
+ * @brief Unit tests for the AdaptiveRefreshScheduler class.
+ *
+ * Verifies how zoom, camera motion, unchanged responses, errors and the lifecycle
+ * change the polling interval.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class AdaptiveRefreshSchedulerTest {
+    /**
+     * Instance of AdaptiveRefreshScheduler being tested.
+     */
+    private AdaptiveRefreshScheduler scheduler;
+
+    /**
+     * Creates a scheduler with a 5 s base interval and a 60 s cap before each test.
+     */
+    @Before
+    public void setUp() {
+        scheduler = new AdaptiveRefreshScheduler(5000, 15000, 60000, 1000, 14f);
+        scheduler.onCameraIdle(15f);
+    }
+
+    /**
+     * Tests the regular interval at marker zoom levels.
+     */
+    @Test
+    public void testNormalInterval() {
+        assertTrue(scheduler.shouldFetch());
+        assertEquals(5000, scheduler.nextDelayMillis());
+        assertEquals(AdaptiveRefreshScheduler.Reason.NORMAL, scheduler.getLastReason());
+    }
+
+    /**
+     * Tests that clusters and tiles below the marker zoom level are still refreshed, less often.
+     */
+    @Test
+    public void testLowZoom() {
+        scheduler.onCameraIdle(12f);
+
+        assertTrue(scheduler.shouldFetch());
+        assertEquals(15000, scheduler.nextDelayMillis());
+        assertEquals(AdaptiveRefreshScheduler.Reason.LOW_ZOOM, scheduler.getLastReason());
+    }
+
+    /**
+     * Tests that ticks while the camera moves only re-check shortly.
+     */
+    @Test
+    public void testMovingCamera() {
+        scheduler.onCameraMoveStarted();
+
+        assertFalse(scheduler.shouldFetch());
+        assertEquals(1000, scheduler.nextDelayMillis());
+
+        scheduler.onCameraIdle(15f);
+        assertTrue(scheduler.shouldFetch());
+    }
+
+    /**
+     * Tests that unchanged responses stretch the interval and a change resets it.
+     */
+    @Test
+    public void testUnchangedResponsesBackOff() {
+        scheduler.onFetchSucceeded(false);
+        assertEquals(10000, scheduler.nextDelayMillis());
+        scheduler.onFetchSucceeded(false);
+        assertEquals(20000, scheduler.nextDelayMillis());
+        scheduler.onFetchSucceeded(false);
+        assertEquals(20000, scheduler.nextDelayMillis());
+        assertEquals(AdaptiveRefreshScheduler.Reason.UNCHANGED, scheduler.getLastReason());
+
+        scheduler.onFetchSucceeded(true);
+        assertEquals(5000, scheduler.nextDelayMillis());
+    }
+
+    /**
+     * Tests that errors stretch the interval in proportion to the error rate, up to the cap.
+     */
+    @Test
+    public void testErrorsBackOff() {
+        scheduler.onFetchSucceeded(true);
+        scheduler.onFetchFailed();
+        assertEquals(0.5, scheduler.getErrorRate(), 1e-9);
+        assertEquals(12500, scheduler.nextDelayMillis());
+        assertEquals(AdaptiveRefreshScheduler.Reason.ERRORS, scheduler.getLastReason());
+
+        for (int i = 0; i < AdaptiveRefreshScheduler.ERROR_WINDOW; i++) {
+            scheduler.onFetchSucceeded(true);
+        }
+        assertEquals(0, scheduler.getErrorRate(), 1e-9);
+        assertEquals(5000, scheduler.nextDelayMillis());
+    }
+
+    /**
+     * Tests that refreshing is paused in the background and resumed in the foreground.
+     */
+    @Test
+    public void testBackgroundPauses() {
+        scheduler.onForegroundChanged(false);
+        assertFalse(scheduler.shouldFetch());
+        assertEquals(RefreshScheduler.PAUSED, scheduler.nextDelayMillis());
+
+        scheduler.onForegroundChanged(true);
+        assertEquals(5000, scheduler.nextDelayMillis());
+        assertEquals(1, scheduler.getDecisionCount(AdaptiveRefreshScheduler.Reason.BACKGROUND));
+        assertEquals(1, scheduler.getDecisionCount(AdaptiveRefreshScheduler.Reason.NORMAL));
+    }
+}
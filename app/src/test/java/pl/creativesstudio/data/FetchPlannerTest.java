@@ -0,0 +1,57 @@
+package pl.creativesstudio.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FetchPlannerTest.java
+ * @brief Unit tests for the FetchPlanner class.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FetchPlannerTest {
+
+    /**
+     * Tests that the whole fleet is fetched when no line is selected.
+     */
+    @Test
+    public void testFullByDefault() {
+        FetchPlanner planner = new FetchPlanner();
+
+        assertEquals(FetchPlanner.Mode.FULL, planner.plan().getMode());
+        assertTrue(planner.plan().getLines().isEmpty());
+    }
+
+    /**
+     * Tests that a few selected lines are fetched with filtered requests.
+     */
+    @Test
+    public void testFewLinesAreFiltered() {
+        FetchPlanner planner = new FetchPlanner();
+        planner.selectLines(Arrays.asList("523", "180", "523"));
+
+        assertEquals(FetchPlanner.Mode.FILTERED, planner.plan().getMode());
+        assertEquals(Arrays.asList("523", "180"), planner.plan().getLines());
+
+        planner.selectAll();
+        assertEquals(FetchPlanner.Mode.FULL, planner.plan().getMode());
+    }
+
+    /**
+     * Tests that too many selected lines fall back to the full fleet.
+     */
+    @Test
+    public void testManyLinesFallBackToFull() {
+        FetchPlanner planner = new FetchPlanner();
+        planner.selectLines(Arrays.asList("1", "2", "3", "4"));
+        assertEquals(FetchPlanner.Mode.FULL, planner.plan().getMode());
+
+        planner.selectLines(Collections.<String>emptyList());
+        assertEquals(FetchPlanner.Mode.FULL, planner.plan().getMode());
+    }
+}
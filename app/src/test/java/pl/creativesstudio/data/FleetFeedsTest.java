@@ -0,0 +1,145 @@
+package pl.creativesstudio.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FleetFeedsTest.java
+ * @brief Unit tests for the FleetFeeds class.
+ *
+ * Verifies that the bus and tram feeds are merged with their vehicle types and that a
+ * failing feed keeps its last data.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FleetFeedsTest {
+    /**
+     * Instance of FleetFeeds being tested.
+     */
+    private FleetFeeds feeds;
+    /**
+     * Dictionary shared by the test snapshots.
+     */
+    private FleetDictionary dictionary;
+
+    /**
+     * Creates empty feeds before each test.
+     */
+    @Before
+    public void setUp() {
+        feeds = new FleetFeeds();
+        dictionary = new FleetDictionary();
+    }
+
+    /**
+     * Tests that both feeds are merged and tagged with their vehicle types.
+     */
+    @Test
+    public void testFeedsAreMergedWithTypes() {
+        feeds.onDownloaded(FleetSnapshot.TYPE_BUS, snapshot("523", "1000"));
+        feeds.onDownloaded(FleetSnapshot.TYPE_TRAM, snapshot("17", "3000"));
+
+        FleetSnapshot merged = feeds.merge();
+
+        assertEquals(2, merged.size());
+        assertEquals("1000", merged.getVehicleNumber(0));
+        assertEquals(FleetSnapshot.TYPE_BUS, merged.getVehicleType(0));
+        assertEquals("3000", merged.getVehicleNumber(1));
+        assertEquals(FleetSnapshot.TYPE_TRAM, merged.getVehicleType(1));
+        assertEquals(FleetSnapshot.TYPE_TRAM, feeds.typeOfLine("17"));
+        assertEquals(FleetSnapshot.TYPE_BUS, feeds.typeOfLine("523"));
+    }
+
+    /**
+     * Tests that a failing tram feed keeps its last data while buses are updated.
+     */
+    @Test
+    public void testFailingFeedKeepsLastData() {
+        feeds.onDownloaded(FleetSnapshot.TYPE_BUS, snapshot("523", "1000"));
+        feeds.onDownloaded(FleetSnapshot.TYPE_TRAM, snapshot("17", "3000"));
+
+        feeds.onDownloaded(FleetSnapshot.TYPE_BUS, snapshot("180", "2000"));
+        feeds.onFailed(FleetSnapshot.TYPE_TRAM);
+
+        FleetSnapshot merged = feeds.merge();
+        assertEquals(2, merged.size());
+        assertEquals("2000", merged.getVehicleNumber(0));
+        assertEquals("3000", merged.getVehicleNumber(1));
+        assertEquals(1, feeds.getConsecutiveFailures(FleetSnapshot.TYPE_TRAM));
+        assertEquals(0, feeds.getConsecutiveFailures(FleetSnapshot.TYPE_BUS));
+    }
+
+    /**
+     * Tests that a filtered download replaces only its line within its feed.
+     */
+    @Test
+    public void testLineDownloadReplacesLine() {
+        feeds.onDownloaded(FleetSnapshot.TYPE_TRAM, new FleetSnapshot.Builder(dictionary)
+                .add("17", 52.2, 21.0, BusTime.UNKNOWN, "3000", "1")
+                .add("33", 52.3, 21.0, BusTime.UNKNOWN, "3001", "1")
+                .build());
+
+        feeds.onLineDownloaded(FleetSnapshot.TYPE_TRAM, "17", snapshot("17", "3002"));
+
+        FleetSnapshot merged = feeds.merge();
+        assertEquals(2, merged.size());
+        assertEquals("3001", merged.getVehicleNumber(0));
+        assertEquals("3002", merged.getVehicleNumber(1));
+        assertEquals(FleetSnapshot.TYPE_TRAM, merged.getVehicleType(1));
+    }
+
+    /**
+     * Tests that a restored snapshot is split between the feeds and kept by a failing feed.
+     */
+    @Test
+    public void testSeedSplitsRestoredSnapshotByType() {
+        feeds.seed(FleetSnapshot.concat(
+                snapshot("523", "1000").withVehicleType(FleetSnapshot.TYPE_BUS),
+                snapshot("17", "3000").withVehicleType(FleetSnapshot.TYPE_TRAM)));
+
+        feeds.onDownloaded(FleetSnapshot.TYPE_BUS, snapshot("523", "1001"));
+        feeds.onFailed(FleetSnapshot.TYPE_TRAM);
+
+        FleetSnapshot merged = feeds.merge();
+        assertEquals(2, merged.size());
+        assertEquals("1001", merged.getVehicleNumber(0));
+        assertEquals(FleetSnapshot.TYPE_BUS, merged.getVehicleType(0));
+        assertEquals("3000", merged.getVehicleNumber(1));
+        assertEquals(FleetSnapshot.TYPE_TRAM, merged.getVehicleType(1));
+        assertEquals(FleetSnapshot.TYPE_TRAM, feeds.typeOfLine("17"));
+    }
+
+    /**
+     * Tests that seeding does not overwrite a feed that has already been downloaded.
+     */
+    @Test
+    public void testSeedKeepsDownloadedFeed() {
+        feeds.onDownloaded(FleetSnapshot.TYPE_BUS, snapshot("523", "1001"));
+
+        feeds.seed(snapshot("523", "1000").withVehicleType(FleetSnapshot.TYPE_BUS));
+
+        FleetSnapshot merged = feeds.merge();
+        assertEquals(1, merged.size());
+        assertEquals("1001", merged.getVehicleNumber(0));
+    }
+
+    /**
+     * Builds a snapshot holding a single vehicle.
+     *
+     * @param line Line of the vehicle.
+     * @param vehicleNumber Vehicle number of the vehicle.
+     * @return The snapshot.
+     */
+    private FleetSnapshot snapshot(String line, String vehicleNumber) {
+        return new FleetSnapshot.Builder(dictionary)
+                .add(line, 52.23, 21.01, BusTime.UNKNOWN, vehicleNumber, "1")
+                .build();
+    }
+}
@@ -0,0 +1,161 @@
+package pl.creativesstudio.data;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file PositionHistoryTest.java
+ * @brief Unit tests for the PositionHistory class.
+ *
+ * Verifies that compressed samples decode to the appended values and that the history
+ * stays within its memory budget and time window.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class PositionHistoryTest {
+    /**
+     * Report time of the first test sample, in epoch milliseconds.
+     */
+    private static final long START = 1734350400000L;
+
+    /**
+     * Tests that irregular samples spanning several blocks decode exactly.
+     */
+    @Test
+    public void testRoundTrip() {
+        PositionHistory history = new PositionHistory(1 << 16, 10 * 24 * 3600 * 1000L);
+        Random random = new Random(42);
+        int count = 500;
+        long[] times = new long[count];
+        int[] lats = new int[count];
+        int[] lons = new int[count];
+        long time = START;
+        int lat = 52229700;
+        int lon = 21012200;
+        for (int i = 0; i < count; i++) {
+            time += 1000L * (i % 50 == 49 ? 1 + random.nextInt(5000) : 9 + random.nextInt(3));
+            lat += i % 7 == 0 ? 0 : random.nextInt(2001) - 1000;
+            lon += i % 97 == 0 ? -3000000 : random.nextInt(2001) - 1000;
+            times[i] = time;
+            lats[i] = lat;
+            lons[i] = lon;
+            assertTrue(history.append(3, time, lat, lon));
+        }
+
+        assertEquals(count, history.getSampleCount(3));
+        long[] readTimes = new long[count];
+        int[] readLats = new int[count];
+        int[] readLons = new int[count];
+        assertEquals(count, history.read(3, readTimes, readLats, readLons));
+        assertArrayEquals(times, readTimes);
+        assertArrayEquals(lats, readLats);
+        assertArrayEquals(lons, readLons);
+    }
+
+    /**
+     * Tests that reports not newer than the last sample are skipped.
+     */
+    @Test
+    public void testRepeatedReportIsSkipped() {
+        PositionHistory history = new PositionHistory(1 << 12, PositionHistory.DEFAULT_WINDOW_MILLIS);
+
+        assertTrue(history.append(0, START, 52229700, 21012200));
+        assertFalse(history.append(0, START, 52229800, 21012300));
+        assertFalse(history.append(0, START - 10000, 52229800, 21012300));
+
+        assertEquals(1, history.getSampleCount(0));
+    }
+
+    /**
+     * Tests that a full pool evicts the oldest blocks and keeps the newest samples.
+     */
+    @Test
+    public void testBudgetEvictsOldestBlocks() {
+        int budget = 4 * PositionHistory.BLOCK_WORDS * 8;
+        PositionHistory history = new PositionHistory(budget, PositionHistory.DEFAULT_WINDOW_MILLIS);
+        for (int i = 0; i < 400; i++) {
+            history.append(i % 2, START + 10000L * i, 52229700 + 731 * i, 21012200 - 977 * i);
+        }
+
+        assertTrue(history.getBudgetEvictions() > 0);
+        assertEquals(budget, history.getUsedBytes());
+        int count = history.getSampleCount(1);
+        assertTrue(count > 0 && count < 200);
+        long[] times = new long[count];
+        assertEquals(count, history.read(1, times, new int[count], new int[count]));
+        assertEquals(START + 10000L * 399, times[count - 1]);
+        for (int i = 1; i < count; i++) {
+            assertEquals(20000L, times[i] - times[i - 1]);
+        }
+    }
+
+    /**
+     * Tests that blocks whose samples left the window are evicted.
+     */
+    @Test
+    public void testWindowEvictsOldSamples() {
+        PositionHistory history = new PositionHistory(1 << 16, 60000L);
+        for (int i = 0; i < 100; i++) {
+            history.append(0, START + 1000L * i, 52229700 + i, 21012200);
+        }
+        history.append(1, START + 1000L * 1000, 52229700, 21012200);
+
+        assertTrue(history.getWindowEvictions() > 0);
+        assertEquals(0, history.getSampleCount(0));
+        assertEquals(1, history.getTotalSamples());
+    }
+
+    /**
+     * Tests that realistic ten-second reports of a whole city take a few bytes per sample.
+     */
+    @Test
+    public void testCityHourFitsDefaultBudget() {
+        PositionHistory history = new PositionHistory(PositionHistory.DEFAULT_BUDGET_BYTES,
+                PositionHistory.DEFAULT_WINDOW_MILLIS);
+        Random random = new Random(7);
+        int vehicles = 2500;
+        int[] lats = new int[vehicles];
+        int[] lons = new int[vehicles];
+        for (int v = 0; v < vehicles; v++) {
+            lats[v] = 52100000 + random.nextInt(300000);
+            lons[v] = 20850000 + random.nextInt(400000);
+        }
+        for (int poll = 0; poll < 360; poll++) {
+            for (int v = 0; v < vehicles; v++) {
+                lats[v] += random.nextInt(1201) - 600;
+                lons[v] += random.nextInt(1801) - 900;
+                history.append(v, START + 10000L * poll + 1000L * (v % 3), lats[v], lons[v]);
+            }
+        }
+
+        assertEquals(0, history.getBudgetEvictions());
+        assertEquals(vehicles * 360L, history.getTotalSamples());
+        assertTrue(history.getUsedBytes() / history.getTotalSamples() < 9);
+    }
+
+    /**
+     * Tests that recording a snapshot skips vehicles without a report time or a position.
+     */
+    @Test
+    public void testRecordSnapshot() {
+        FleetDictionary dictionary = new FleetDictionary();
+        FleetSnapshot snapshot = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2297, 21.0122, START, "1000", "1")
+                .add("523", 52.2297, 21.0122, BusTime.UNKNOWN, "1001", "2")
+                .add("523", 0, 0, START, "1002", "3")
+                .build();
+        PositionHistory history = new PositionHistory(1 << 12, PositionHistory.DEFAULT_WINDOW_MILLIS);
+
+        assertEquals(1, history.record(snapshot));
+        assertEquals(0, history.record(snapshot));
+        assertEquals(1, history.getSampleCount(snapshot.getVehicleKey(0)));
+    }
+}
@@ -0,0 +1,197 @@
+package pl.creativesstudio.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file SingleFlightTest.java
+ * @brief Unit tests for the SingleFlight class.
+ *
+ * Uses a manual executor so that the tests decide when the queued task runs.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class SingleFlightTest {
+    /**
+     * Tasks handed to the executor and not run yet.
+     */
+    private Queue<Runnable> queued;
+    /**
+     * Number of times the shared task ran.
+     */
+    private int runs;
+    /**
+     * Results received by the callbacks.
+     */
+    private List<Integer> results;
+    /**
+     * Instance of SingleFlight being tested.
+     */
+    private SingleFlight<Integer> flight;
+
+    /**
+     * Creates a single flight whose task returns the number of its run.
+     */
+    @Before
+    public void setUp() {
+        queued = new ArrayDeque<>();
+        runs = 0;
+        results = new ArrayList<>();
+        flight = new SingleFlight<>(queued::add, () -> ++runs);
+    }
+
+    /**
+     * Tests that requests made while the task is in flight share its result.
+     */
+    @Test
+    public void testConcurrentRequestsAreCoalesced() {
+        assertEquals(SingleFlight.Outcome.STARTED, flight.request(100, callback()));
+        assertEquals(SingleFlight.Outcome.COALESCED, flight.request(200, callback()));
+        assertEquals(SingleFlight.Outcome.COALESCED, flight.request(300, null));
+
+        assertEquals(1, queued.size());
+        queued.poll().run();
+
+        assertEquals(1, runs);
+        assertEquals(2, results.size());
+        assertEquals(Integer.valueOf(1), results.get(0));
+        assertEquals(Integer.valueOf(1), results.get(1));
+        assertEquals(1, flight.getStartedCount());
+        assertEquals(2, flight.getCoalescedCount());
+        assertFalse(flight.isInFlight());
+    }
+
+    /**
+     * Tests that a request older than a completed run is dropped.
+     */
+    @Test
+    public void testStaleRequestIsDropped() {
+        flight.request(100, null);
+        queued.poll().run();
+
+        assertEquals(SingleFlight.Outcome.DROPPED, flight.request(50, callback()));
+        assertTrue(queued.isEmpty());
+        assertTrue(results.isEmpty());
+        assertEquals(1, flight.getDroppedCount());
+
+        assertEquals(SingleFlight.Outcome.STARTED, flight.request(150, callback()));
+        queued.poll().run();
+        assertEquals(Integer.valueOf(2), results.get(0));
+    }
+
+    /**
+     * Tests that a failure is handed to every attached callback and does not block later runs.
+     */
+    @Test
+    public void testFailureIsShared() {
+        List<Exception> errors = new ArrayList<>();
+        SingleFlight<Integer> failing = new SingleFlight<>(queued::add, () -> {
+            throw new IllegalStateException("fail");
+        });
+        SingleFlight.Callback<Integer> callback = new SingleFlight.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer result) {
+                fail("Unexpected result");
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                errors.add(error);
+            }
+        };
+
+        failing.request(100, callback);
+        failing.request(200, callback);
+        queued.poll().run();
+
+        assertEquals(2, errors.size());
+        assertEquals(SingleFlight.Outcome.STARTED, failing.request(300, null));
+    }
+
+    /**
+     * Tests that an Error thrown by the task ends the flight, reaches the callbacks and is rethrown.
+     */
+    @Test
+    public void testErrorEndsFlight() {
+        List<Exception> errors = new ArrayList<>();
+        SingleFlight<Integer> failing = new SingleFlight<>(queued::add, () -> {
+            throw new OutOfMemoryError("fail");
+        });
+        SingleFlight.Callback<Integer> callback = new SingleFlight.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer result) {
+                fail("Unexpected result");
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                errors.add(error);
+            }
+        };
+
+        failing.request(100, callback);
+        try {
+            queued.poll().run();
+            fail("Expected the error to be rethrown");
+        } catch (OutOfMemoryError e) {
+            assertEquals("fail", e.getMessage());
+        }
+
+        assertFalse(failing.isInFlight());
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getCause() instanceof OutOfMemoryError);
+        assertEquals(SingleFlight.Outcome.STARTED, failing.request(200, null));
+    }
+
+    /**
+     * Tests that a run rejected by the executor is reported and does not leave a flight behind.
+     */
+    @Test
+    public void testRejectedRunEndsFlight() {
+        boolean[] shutDown = {true};
+        SingleFlight<Integer> rejecting = new SingleFlight<>(command -> {
+            if (shutDown[0]) {
+                throw new RejectedExecutionException("shut down");
+            }
+            queued.add(command);
+        }, () -> ++runs);
+
+        assertEquals(SingleFlight.Outcome.REJECTED, rejecting.request(100, callback()));
+        assertFalse(rejecting.isInFlight());
+        assertEquals(0, rejecting.getStartedCount());
+
+        shutDown[0] = false;
+        assertEquals(SingleFlight.Outcome.STARTED, rejecting.request(200, callback()));
+        queued.poll().run();
+        assertEquals(1, results.size());
+        assertEquals(Integer.valueOf(1), results.get(0));
+    }
+
+    /**
+     * Creates a callback recording results.
+     *
+     * @return The callback.
+     */
+    private SingleFlight.Callback<Integer> callback() {
+        return new SingleFlight.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer result) {
+                results.add(result);
+            }
+
+            @Override
+            public void onFailure(Exception error) {
+                fail("Unexpected failure: " + error);
+            }
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package pl.creativesstudio.data;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file SnapshotHolderTest.java
+ * @brief Unit tests for the SnapshotHolder class.
+ *
+ * Verifies that a late response of an older request never replaces the snapshot
+ * published for a newer request.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class SnapshotHolderTest {
+    /**
+     * Instance of SnapshotHolder being tested.
+     */
+    private SnapshotHolder holder;
+    /**
+     * Dictionary shared by the test snapshots.
+     */
+    private FleetDictionary dictionary;
+
+    /**
+     * Creates an empty holder before each test.
+     */
+    @Before
+    public void setUp() {
+        holder = new SnapshotHolder();
+        dictionary = new FleetDictionary();
+    }
+
+    /**
+     * Tests that the holder starts with the empty snapshot.
+     */
+    @Test
+    public void testInitiallyEmpty() {
+        assertSame(FleetSnapshot.EMPTY, holder.getSnapshot());
+        assertEquals(0, holder.current().getSequence());
+        assertEquals(0, holder.current().getFetchedAtMillis());
+    }
+
+    /**
+     * Tests that a response arriving after the response of a newer request is dropped.
+     */
+    @Test
+    public void testOutOfOrderResponseIsDropped() {
+        long older = holder.nextSequence();
+        long newer = holder.nextSequence();
+        FleetSnapshot newerSnapshot = snapshot("1000");
+
+        assertTrue(holder.publish(newerSnapshot, newer, 2000));
+        assertFalse(holder.publish(snapshot("2000"), older, 1000));
+
+        assertSame(newerSnapshot, holder.getSnapshot());
+        assertEquals(newer, holder.current().getSequence());
+        assertEquals(2000, holder.current().getFetchedAtMillis());
+    }
+
+    /**
+     * Tests that concurrent publishers always leave the result of the newest request.
+     *
+     * @throws InterruptedException If the test thread is interrupted.
+     */
+    @Test
+    public void testConcurrentPublishKeepsNewest() throws InterruptedException {
+        int requests = 200;
+        long[] sequences = new long[requests];
+        FleetSnapshot[] snapshots = new FleetSnapshot[requests];
+        for (int i = 0; i < requests; i++) {
+            sequences[i] = holder.nextSequence();
+            snapshots[i] = snapshot(String.valueOf(i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = requests - 1; i >= 0; i--) {
+            int request = i;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                holder.publish(snapshots[request], sequences[request], request);
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertSame(snapshots[requests - 1], holder.getSnapshot());
+        assertEquals(sequences[requests - 1], holder.current().getSequence());
+    }
+
+    /**
+     * Builds a snapshot holding a single vehicle.
+     *
+     * @param vehicleNumber Vehicle number of the vehicle.
+     * @return The snapshot.
+     */
+    private FleetSnapshot snapshot(String vehicleNumber) {
+        return new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.23, 21.01, BusTime.UNKNOWN, vehicleNumber, "1")
+                .build();
+    }
+}
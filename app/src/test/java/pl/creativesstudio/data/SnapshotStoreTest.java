@@ -0,0 +1,159 @@
+package pl.creativesstudio.data;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file SnapshotStoreTest.java
+ * @brief Unit tests for the SnapshotStore class.
+ *
+ * Verifies that a stored snapshot is restored unchanged and that files of another
+ * version, with a damaged body or older than the maximum age are never used.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class SnapshotStoreTest {
+    /**
+     * Temporary directory for the stored files.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Dictionary of the written snapshot.
+     */
+    private FleetDictionary dictionary;
+    /**
+     * Snapshot written by the tests.
+     */
+    private FleetSnapshot snapshot;
+
+    /**
+     * Builds a snapshot with a bus, a tram and a vehicle without a brigade.
+     */
+    @Before
+    public void setUp() {
+        dictionary = new FleetDictionary();
+        snapshot = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2297, 21.0122, 1734350400000L, "1000", "1")
+                .add("N37", 52.25, 21.03, BusTime.UNKNOWN, "2000", null)
+                .setVehicleType(FleetSnapshot.TYPE_TRAM)
+                .add("17", 52.21, 20.98, 1734350460000L, "3000", "4")
+                .build();
+    }
+
+    /**
+     * Tests that a written snapshot is read back with the same reports and fetch time.
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        FleetDictionary restoredDictionary = new FleetDictionary();
+        restoredDictionary.idOf("17");
+
+        SnapshotStore.Stored stored = SnapshotStore.read(
+                new ByteArrayInputStream(write(snapshot)), restoredDictionary);
+
+        assertNotNull(stored);
+        assertEquals(1234L, stored.getFetchedAtMillis());
+        FleetSnapshot restored = stored.getSnapshot();
+        assertSame(restoredDictionary, restored.getDictionary());
+        assertEquals(3, restored.size());
+        for (int i = 0; i < snapshot.size(); i++) {
+            assertEquals(snapshot.getLine(i), restored.getLine(i));
+            assertEquals(snapshot.getVehicleNumber(i), restored.getVehicleNumber(i));
+            assertEquals(snapshot.getLatE6(i), restored.getLatE6(i));
+            assertEquals(snapshot.getLonE6(i), restored.getLonE6(i));
+        }
+        assertEquals(FleetSnapshot.TYPE_TRAM, restored.getVehicleType(2));
+        assertEquals("17", restored.getLine(2));
+        assertEquals(0, restored.getLineId(2));
+        assertNull(restored.getBrigade(1));
+        assertEquals(BusTime.UNKNOWN, restored.getTimeMillis(1));
+    }
+
+    /**
+     * Tests that a file of another format version is ignored.
+     */
+    @Test
+    public void testOtherVersionIsIgnored() throws IOException {
+        byte[] bytes = write(snapshot);
+        bytes[7] = (byte) (SnapshotStore.FORMAT_VERSION + 1);
+
+        assertNull(SnapshotStore.read(new ByteArrayInputStream(bytes), new FleetDictionary()));
+    }
+
+    /**
+     * Tests that a damaged body is detected by the checksum.
+     */
+    @Test(expected = IOException.class)
+    public void testCorruptedBodyIsRejected() throws IOException {
+        byte[] bytes = write(snapshot);
+        bytes[bytes.length - 12] ^= 0x01;
+
+        SnapshotStore.read(new ByteArrayInputStream(bytes), new FleetDictionary());
+    }
+
+    /**
+     * Tests saving and loading through a file, and that a corrupted file is deleted.
+     */
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        File file = new File(folder.getRoot(), "snapshot.bin");
+        SnapshotStore store = new SnapshotStore(file);
+        assertNull(store.load(dictionary, 1234L));
+
+        store.save(snapshot, 1234L);
+        SnapshotStore.Stored stored = store.load(dictionary, 1234L);
+        assertNotNull(stored);
+        assertTrue(stored.getSnapshot().hasSameReports(snapshot));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        java.nio.file.Files.write(file.toPath(), new byte[] { 1, 2, 3 });
+        assertNull(store.load(dictionary, 1234L));
+        assertFalse(file.exists());
+    }
+
+    /**
+     * Tests that a snapshot older than the maximum age is not restored and is deleted.
+     */
+    @Test
+    public void testStaleSnapshotIsDeleted() throws IOException {
+        File file = new File(folder.getRoot(), "snapshot.bin");
+        SnapshotStore store = new SnapshotStore(file);
+        long fetchedAt = 1734350400000L;
+        store.save(snapshot, fetchedAt);
+
+        assertNotNull(store.load(dictionary, fetchedAt + SnapshotStore.MAX_AGE_MILLIS));
+        assertTrue(file.exists());
+
+        assertNull(store.load(dictionary, fetchedAt + SnapshotStore.MAX_AGE_MILLIS + 1));
+        assertFalse(file.exists());
+    }
+
+    /**
+     * Writes a snapshot fetched at time 1234 to a byte array.
+     *
+     * @param snapshot The snapshot to write.
+     * @return The written bytes.
+     * @throws IOException If writing fails.
+     */
+    private static byte[] write(FleetSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SnapshotStore.write(snapshot, 1234L, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,111 @@
+package pl.creativesstudio.index;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file ClusterIndexTest.java
+ * @brief Unit tests for the ClusterIndex class.
+ *
+ * Verifies that every level accounts for all positioned vehicles, that coarser levels
+ * merge the cells of finer ones and bounds the build time for a city-sized fleet.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class ClusterIndexTest {
+    /**
+     * Tests that every level holds every positioned vehicle exactly once.
+     */
+    @Test
+    public void testLevelsCountAllVehicles() {
+        FleetSnapshot snapshot = randomFleet(3000, new Random(42));
+        ClusterIndex index = new ClusterIndex(snapshot);
+
+        int previousSize = Integer.MAX_VALUE;
+        for (int zoom = ClusterIndex.MAX_ZOOM; zoom >= ClusterIndex.MIN_ZOOM; zoom--) {
+            ClusterIndex.Level level = index.getLevel(zoom);
+            assertEquals(zoom, level.getZoom());
+            int total = 0;
+            for (int cluster = 0; cluster < level.size(); cluster++) {
+                total += level.getCount(cluster);
+            }
+            assertEquals(snapshot.size() - 1, total);
+            assertTrue(level.size() <= previousSize);
+            previousSize = level.size();
+        }
+        assertTrue(index.getLevel(ClusterIndex.MIN_ZOOM).size() < 10);
+    }
+
+    /**
+     * Tests that nearby vehicles share a cluster placed at their centroid.
+     */
+    @Test
+    public void testCentroidOfNearbyVehicles() {
+        FleetSnapshot snapshot = new FleetSnapshot.Builder(new FleetDictionary())
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .add("523", 52.2302, 21.0104, BusTime.UNKNOWN, "1001", "2")
+                .add("17", 52.4000, 20.8000, BusTime.UNKNOWN, "2000", "1")
+                .build();
+        ClusterIndex.Level level = new ClusterIndex(snapshot).getLevel(12.5f);
+
+        assertEquals(12, level.getZoom());
+        assertEquals(2, level.size());
+        int[] out = new int[level.size()];
+        assertEquals(1, level.query(52_220_000, 21_000_000, 52_240_000, 21_020_000, out));
+        assertEquals(2, level.getCount(out[0]));
+        assertEquals(52_230_100, level.getLatE6(out[0]));
+        assertEquals(21_010_200, level.getLonE6(out[0]));
+    }
+
+    /**
+     * Tests that zoom levels outside the clustered range use the nearest level.
+     */
+    @Test
+    public void testZoomIsClamped() {
+        ClusterIndex index = new ClusterIndex(randomFleet(10, new Random(1)));
+
+        assertEquals(ClusterIndex.MIN_ZOOM, index.getLevel(3f).getZoom());
+        assertEquals(ClusterIndex.MAX_ZOOM, index.getLevel(13.9f).getZoom());
+    }
+
+    /**
+     * Tests that all levels of a city-sized fleet are built within a second and can be queried.
+     */
+    @Test
+    public void testBuildTime() {
+        FleetSnapshot snapshot = randomFleet(20000, new Random(7));
+        new ClusterIndex(snapshot);
+        ClusterIndex index = new ClusterIndex(snapshot);
+
+        int[] out = new int[snapshot.size()];
+        for (int zoom = ClusterIndex.MAX_ZOOM; zoom >= ClusterIndex.MIN_ZOOM; zoom--) {
+            assertTrue(index.getLevel(zoom).query(51_950_000, 20_600_000, 52_550_000, 21_500_000, out) > 0);
+        }
+        assertTrue(index.getBuildTimeNanos() < 1_000_000_000L);
+    }
+
+    /**
+     * Builds a snapshot of random positions in Warsaw plus one vehicle without a position.
+     *
+     * @param size Number of vehicles.
+     * @param random Source of positions.
+     * @return The snapshot.
+     */
+    private static FleetSnapshot randomFleet(int size, Random random) {
+        FleetSnapshot.Builder builder = new FleetSnapshot.Builder(new FleetDictionary());
+        for (int i = 0; i < size - 1; i++) {
+            builder.add("L" + (i % 200), 52.1 + random.nextDouble() * 0.3, 20.85 + random.nextDouble() * 0.4,
+                    BusTime.UNKNOWN, "V" + i, "1");
+        }
+        builder.add("L0", 0, 0, BusTime.UNKNOWN, "V" + size, "1");
+        return builder.build();
+    }
+}
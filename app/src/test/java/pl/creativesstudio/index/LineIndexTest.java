@@ -0,0 +1,82 @@
+package pl.creativesstudio.index;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file LineIndexTest.java
+ * @brief Unit tests for the LineIndex class.
+ *
+ * Verifies the sorted line list, the vehicles listed per line and the per-line bounding boxes.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class LineIndexTest {
+
+    /**
+     * Builds a snapshot with three lines, one of them without a known position.
+     *
+     * @return The test snapshot.
+     */
+    private static FleetSnapshot snapshot() {
+        return new FleetSnapshot.Builder(new FleetDictionary())
+                .add("200", 52.20, 21.00, BusTime.UNKNOWN, "1", "1")
+                .add("N61", 52.30, 21.10, BusTime.UNKNOWN, "2", "1")
+                .add("20", 52.22, 21.05, BusTime.UNKNOWN, "3", "1")
+                .add("200", 52.25, 20.95, BusTime.UNKNOWN, "4", "2")
+                .add("200", 0, 0, BusTime.UNKNOWN, "5", "3")
+                .build();
+    }
+
+    /**
+     * Tests that distinct lines are listed once, in display order.
+     */
+    @Test
+    public void testSortedLines() {
+        LineIndex index = new LineIndex(snapshot());
+
+        assertEquals(Arrays.asList("20", "200", "N61"), index.getSortedLines());
+    }
+
+    /**
+     * Tests that every vehicle of a line is listed under it.
+     */
+    @Test
+    public void testVehiclesOfLine() {
+        FleetSnapshot snapshot = snapshot();
+        LineIndex index = new LineIndex(snapshot);
+        int slot = index.findSlot(snapshot.getDictionary().find("200"));
+
+        int[] vehicles = new int[index.getVehicleCount(slot)];
+        int count = index.copyVehicles(slot, vehicles);
+
+        assertEquals(3, count);
+        assertArrayEquals(new int[]{0, 3, 4}, vehicles);
+        assertEquals(LineIndex.NOT_FOUND, index.findSlot(snapshot.getDictionary().find("1")));
+        assertEquals(LineIndex.NOT_FOUND, index.findSlot(FleetDictionary.NO_ID));
+    }
+
+    /**
+     * Tests that the bounding box of a line skips vehicles without a position.
+     */
+    @Test
+    public void testBoundsOfLine() {
+        FleetSnapshot snapshot = snapshot();
+        LineIndex index = new LineIndex(snapshot);
+        int slot = index.findSlot(snapshot.getDictionary().find("200"));
+
+        assertTrue(index.hasBounds(slot));
+        assertEquals(52_200_000, index.getMinLatE6(slot));
+        assertEquals(52_250_000, index.getMaxLatE6(slot));
+        assertEquals(20_950_000, index.getMinLonE6(slot));
+        assertEquals(21_000_000, index.getMaxLonE6(slot));
+    }
+}
@@ -0,0 +1,247 @@
+package pl.creativesstudio.index;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file SpatialGridTest.java
+ * @brief Unit tests for the SpatialGrid class.
+ *
+ * Compares grid queries with a linear scan over random fleets, including boxes crossing
+ * cell edges and vehicles outside the indexed area, for fleets of 2k, 10k and 50k vehicles.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class SpatialGridTest {
+    /**
+     * Number of compared queries per fleet size.
+     */
+    private static final int QUERIES = 2000;
+
+    /**
+     * Tests that grid queries return the same vehicles as a linear scan.
+     */
+    @Test
+    public void testMatchesLinearScan() {
+        Random random = new Random(42);
+        Fleet fleet = Fleet.random(5000, random);
+        SpatialGrid grid = SpatialGrid.build(fleet.lat, fleet.lon, fleet.size);
+        int[] gridOut = new int[fleet.size];
+        int[] scanOut = new int[fleet.size];
+
+        for (int q = 0; q < 500; q++) {
+            int[] box = randomBox(random);
+            int gridCount = grid.query(box[0], box[1], box[2], box[3], gridOut);
+            int scanCount = fleet.scan(box[0], box[1], box[2], box[3], scanOut);
+            assertSameIndices(scanOut, scanCount, gridOut, gridCount);
+        }
+    }
+
+    /**
+     * Tests boxes aligned with and just across cell edges.
+     */
+    @Test
+    public void testBoxesOnCellEdges() {
+        int cellHeight = (SpatialGrid.WARSAW_MAX_LAT_E6 - SpatialGrid.WARSAW_MIN_LAT_E6 + 3) / 4;
+        int edgeLat = SpatialGrid.WARSAW_MIN_LAT_E6 + 2 * cellHeight;
+        int[] lat = {edgeLat - 1, edgeLat, edgeLat + 1};
+        int[] lon = {21_000_000, 21_000_000, 21_000_000};
+        SpatialGrid grid = SpatialGrid.build(lat, lon, 3, 4);
+        int[] out = new int[3];
+
+        assertEquals(1, grid.query(edgeLat, 20_900_000, edgeLat, 21_100_000, out));
+        assertEquals(1, out[0]);
+        assertEquals(2, grid.query(edgeLat - 1, 20_900_000, edgeLat, 21_100_000, out));
+        assertEquals(3, grid.query(edgeLat - 1, 20_900_000, edgeLat + 1, 21_100_000, out));
+    }
+
+    /**
+     * Tests that vehicles outside the indexed area are still found and not over-reported.
+     */
+    @Test
+    public void testVehiclesOutsideArea() {
+        int[] lat = {0, 53_000_000, 52_200_000};
+        int[] lon = {0, 21_000_000, 21_000_000};
+        SpatialGrid grid = SpatialGrid.build(lat, lon, 3);
+        int[] out = new int[3];
+
+        assertEquals(1, grid.query(52_000_000, 20_700_000, 52_500_000, 21_400_000, out));
+        assertEquals(2, out[0]);
+        assertEquals(3, grid.query(-1_000_000, -1_000_000, 54_000_000, 22_000_000, out));
+    }
+
+    /**
+     * Compares the grid with a linear scan at 2k, 10k and 50k vehicles.
+     *
+     * Every query must find the same vehicles in the grid as in the scan.
+     */
+    @Test
+    public void testCompareWithLinearScan() {
+        for (int size : new int[]{2_000, 10_000, 50_000}) {
+            Random random = new Random(size);
+            Fleet fleet = Fleet.random(size, random);
+            int[][] boxes = new int[QUERIES][];
+            for (int q = 0; q < QUERIES; q++) {
+                boxes[q] = viewportBox(random);
+            }
+            int[] out = new int[size];
+
+            SpatialGrid grid = SpatialGrid.build(fleet.lat, fleet.lon, size);
+
+            assertEquals(runScan(fleet, boxes, out), runGrid(grid, boxes, out));
+        }
+    }
+
+    /**
+     * Runs all queries against the grid.
+     *
+     * @param grid The grid.
+     * @param boxes The query boxes.
+     * @param out Output buffer.
+     * @return Total number of vehicles found.
+     */
+    private static long runGrid(SpatialGrid grid, int[][] boxes, int[] out) {
+        long total = 0;
+        for (int[] box : boxes) {
+            total += grid.query(box[0], box[1], box[2], box[3], out);
+        }
+        return total;
+    }
+
+    /**
+     * Runs all queries as linear scans.
+     *
+     * @param fleet The fleet.
+     * @param boxes The query boxes.
+     * @param out Output buffer.
+     * @return Total number of vehicles found.
+     */
+    private static long runScan(Fleet fleet, int[][] boxes, int[] out) {
+        long total = 0;
+        for (int[] box : boxes) {
+            total += fleet.scan(box[0], box[1], box[2], box[3], out);
+        }
+        return total;
+    }
+
+    /**
+     * Creates a random box of any size within and around Warsaw.
+     *
+     * @param random Source of randomness.
+     * @return The box as {minLat, minLon, maxLat, maxLon}.
+     */
+    private static int[] randomBox(Random random) {
+        int lat1 = 51_900_000 + random.nextInt(700_000);
+        int lat2 = 51_900_000 + random.nextInt(700_000);
+        int lon1 = 20_550_000 + random.nextInt(1_000_000);
+        int lon2 = 20_550_000 + random.nextInt(1_000_000);
+        return new int[]{Math.min(lat1, lat2), Math.min(lon1, lon2), Math.max(lat1, lat2), Math.max(lon1, lon2)};
+    }
+
+    /**
+     * Creates a box the size of a phone viewport at zoom level 15.
+     *
+     * @param random Source of randomness.
+     * @return The box as {minLat, minLon, maxLat, maxLon}.
+     */
+    private static int[] viewportBox(Random random) {
+        int lat = 52_050_000 + random.nextInt(380_000);
+        int lon = 20_800_000 + random.nextInt(500_000);
+        return new int[]{lat, lon, lat + 20_000, lon + 12_000};
+    }
+
+    /**
+     * Asserts that two index lists contain the same indices, in any order.
+     *
+     * @param expected Expected indices.
+     * @param expectedCount Number of expected indices.
+     * @param actual Actual indices.
+     * @param actualCount Number of actual indices.
+     */
+    private static void assertSameIndices(int[] expected, int expectedCount, int[] actual, int actualCount) {
+        assertEquals(expectedCount, actualCount);
+        int[] sortedExpected = Arrays.copyOf(expected, expectedCount);
+        int[] sortedActual = Arrays.copyOf(actual, actualCount);
+        Arrays.sort(sortedExpected);
+        Arrays.sort(sortedActual);
+        assertArrayEquals(sortedExpected, sortedActual);
+    }
+
+    /**
+     * @class Fleet
+     * @brief Random vehicle positions with a reference linear scan.
+     */
+    private static final class Fleet {
+        /**
+         * Latitudes in microdegrees.
+         */
+        final int[] lat;
+        /**
+         * Longitudes in microdegrees.
+         */
+        final int[] lon;
+        /**
+         * Number of vehicles.
+         */
+        final int size;
+
+        /**
+         * Constructs a new Fleet.
+         *
+         * @param lat Latitudes in microdegrees.
+         * @param lon Longitudes in microdegrees.
+         */
+        Fleet(int[] lat, int[] lon) {
+            this.lat = lat;
+            this.lon = lon;
+            this.size = lat.length;
+        }
+
+        /**
+         * Creates a fleet spread over Warsaw, with a few vehicles outside the indexed area.
+         *
+         * @param size Number of vehicles.
+         * @param random Source of randomness.
+         * @return The fleet.
+         */
+        static Fleet random(int size, Random random) {
+            int[] lat = new int[size];
+            int[] lon = new int[size];
+            for (int i = 0; i < size; i++) {
+                if (i % 500 == 0) {
+                    lat[i] = 51_000_000 + random.nextInt(2_000_000);
+                    lon[i] = 20_000_000 + random.nextInt(2_000_000);
+                } else {
+                    lat[i] = 52_050_000 + random.nextInt(400_000);
+                    lon[i] = 20_800_000 + random.nextInt(520_000);
+                }
+            }
+            return new Fleet(lat, lon);
+        }
+
+        /**
+         * Finds the vehicles inside a box by checking every vehicle.
+         *
+         * @param minLat Southern edge of the box.
+         * @param minLon Western edge of the box.
+         * @param maxLat Northern edge of the box.
+         * @param maxLon Eastern edge of the box.
+         * @param out Array receiving the vehicle indices.
+         * @return The number of indices written.
+         */
+        int scan(int minLat, int minLon, int maxLat, int maxLon, int[] out) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (lat[i] >= minLat && lat[i] <= maxLat && lon[i] >= minLon && lon[i] <= maxLon) {
+                    out[count++] = i;
+                }
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package pl.creativesstudio.map;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pl.creativesstudio.index.ClusterIndex;
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @file ClusterRendererTest.java
+ * @brief Unit tests for the ClusterRenderer class.
+ *
+ * Verifies that bubbles are kept, relabelled and removed individually.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class ClusterRendererTest {
+    /**
+     * Mocked map on which bubbles are added.
+     */
+    private GoogleMap map;
+    /**
+     * Bubbles returned by the mocked map, in creation order.
+     */
+    private List<Marker> createdMarkers;
+    /**
+     * Instance of ClusterRenderer being tested.
+     */
+    private ClusterRenderer renderer;
+    /**
+     * Dictionary shared by the test snapshots.
+     */
+    private FleetDictionary dictionary;
+
+    /**
+     * Prepares a mocked map that hands out a new mocked marker for every addMarker call.
+     */
+    @Before
+    public void setUp() {
+        map = mock(GoogleMap.class);
+        createdMarkers = new ArrayList<>();
+        when(map.addMarker(any(MarkerOptions.class))).thenAnswer(invocation -> {
+            Marker marker = mock(Marker.class);
+            createdMarkers.add(marker);
+            return marker;
+        });
+        renderer = new ClusterRenderer(map, count -> null);
+        dictionary = new FleetDictionary();
+    }
+
+    /**
+     * Tests that an unchanged cluster keeps its bubble and a changed count only relabels it.
+     */
+    @Test
+    public void testBubbleIsReused() {
+        render(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1"));
+        Marker bubble = createdMarkers.get(0);
+
+        render(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1001", "2"));
+
+        assertEquals(1, createdMarkers.size());
+        verify(bubble).setTitle(ClusterRenderer.formatTitle("2"));
+        verify(bubble, never()).remove();
+    }
+
+    /**
+     * Tests that bubbles of clusters that disappeared are removed.
+     */
+    @Test
+    public void testEmptiedClusterIsRemoved() {
+        render(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .add("17", 52.4000, 20.8000, BusTime.UNKNOWN, "2000", "1"));
+        assertEquals(2, renderer.size());
+
+        render(new FleetSnapshot.Builder(dictionary)
+                .add("17", 52.4000, 20.8000, BusTime.UNKNOWN, "2000", "1"));
+
+        // Klastry są dodawane w kolejności komórek, z zachodu na wschód
+        assertEquals(1, renderer.size());
+        verify(createdMarkers.get(0), never()).remove();
+        verify(createdMarkers.get(1)).remove();
+    }
+
+    /**
+     * Tests that counts above the exact limit share one label.
+     */
+    @Test
+    public void testLargeCountsShareLabel() {
+        assertEquals("999", ClusterIconCache.label(999));
+        assertEquals("999+", ClusterIconCache.label(1000));
+        assertEquals("999+", ClusterIconCache.label(5000));
+    }
+
+    /**
+     * Renders the zoom 12 clusters of the built snapshot for the Warsaw area.
+     *
+     * @param builder Builder holding the vehicles.
+     */
+    private void render(FleetSnapshot.Builder builder) {
+        ClusterIndex.Level level = new ClusterIndex(builder.build()).getLevel(12);
+        renderer.render(level, 51_950_000, 20_600_000, 52_550_000, 21_500_000);
+    }
+}
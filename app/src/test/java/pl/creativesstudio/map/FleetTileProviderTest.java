@@ -0,0 +1,238 @@
+package pl.creativesstudio.map;
+
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import pl.creativesstudio.index.WebMercator;
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FleetTileProviderTest.java
+ * @brief Unit tests for the FleetTileProvider class.
+ *
+ * Verifies the rasterized dots, the tile cache and the dropping of tiles changed by a new snapshot,
+ * also while a tile is being rendered.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FleetTileProviderTest {
+    /**
+     * Zoom level of the tested tiles.
+     */
+    private static final int ZOOM = 14;
+
+    /**
+     * Pixels passed to the encoder most recently.
+     */
+    private int[] lastPixels;
+    /**
+     * Instance of FleetTileProvider being tested.
+     */
+    private FleetTileProvider provider;
+    /**
+     * Dictionary shared by the test snapshots.
+     */
+    private FleetDictionary dictionary;
+
+    /**
+     * Prepares a provider whose encoder keeps the pixels it receives.
+     */
+    @Before
+    public void setUp() {
+        provider = new FleetTileProvider((pixels, size) -> {
+            lastPixels = pixels.clone();
+            return new byte[] {1};
+        }, 1 << 20);
+        dictionary = new FleetDictionary();
+    }
+
+    /**
+     * Tests that a vehicle is drawn at its position in the colour of its line.
+     */
+    @Test
+    public void testDotIsDrawnAtVehiclePosition() {
+        provider.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .build());
+
+        double world = WebMercator.worldPixels(ZOOM);
+        double px = WebMercator.x(21_010_000) * world;
+        double py = WebMercator.y(52_230_000) * world;
+        int tileX = (int) Math.floor(px / WebMercator.TILE_PIXELS);
+        int tileY = (int) Math.floor(py / WebMercator.TILE_PIXELS);
+
+        Tile tile = provider.getTile(tileX, tileY, ZOOM);
+
+        assertNotSame(TileProvider.NO_TILE, tile);
+        int column = (int) Math.round(px - tileX * (double) WebMercator.TILE_PIXELS);
+        int row = (int) Math.round(py - tileY * (double) WebMercator.TILE_PIXELS);
+        assertEquals(FleetTileProvider.colorOf("523"), lastPixels[row * WebMercator.TILE_PIXELS + column]);
+    }
+
+    /**
+     * Tests that a tile without vehicles is reported as missing.
+     */
+    @Test
+    public void testEmptyTileHasNoImage() {
+        provider.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .build());
+
+        assertSame(TileProvider.NO_TILE, provider.getTile(0, 0, ZOOM));
+        assertNull(lastPixels);
+    }
+
+    /**
+     * Tests that a requested tile is served from the cache the second time.
+     */
+    @Test
+    public void testTileIsCached() {
+        provider.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .build());
+
+        provider.getTile(tileX(21.0100), tileY(52.2300), ZOOM);
+        provider.getTile(tileX(21.0100), tileY(52.2300), ZOOM);
+
+        assertEquals(1, provider.getRenderCount());
+        assertEquals(1, provider.getHitCount());
+    }
+
+    /**
+     * Tests that a new snapshot drops only the tile of the vehicle that moved.
+     */
+    @Test
+    public void testOnlyTileOfMovedVehicleIsDropped() {
+        provider.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .add("17", 52.4000, 20.8000, BusTime.UNKNOWN, "2000", "1")
+                .build());
+        provider.getTile(tileX(21.0100), tileY(52.2300), ZOOM);
+        provider.getTile(tileX(20.8000), tileY(52.4000), ZOOM);
+
+        int dropped = provider.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2301, 21.0101, BusTime.UNKNOWN, "1000", "1")
+                .add("17", 52.4000, 20.8000, BusTime.UNKNOWN, "2000", "1")
+                .build());
+
+        assertEquals(1, dropped);
+        provider.getTile(tileX(20.8000), tileY(52.4000), ZOOM);
+        assertEquals(1, provider.getHitCount());
+        provider.getTile(tileX(21.0100), tileY(52.2300), ZOOM);
+        assertEquals(3, provider.getRenderCount());
+    }
+
+    /**
+     * Tests that an unchanged snapshot keeps every cached tile.
+     */
+    @Test
+    public void testUnchangedSnapshotKeepsTiles() {
+        provider.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .build());
+        provider.getTile(tileX(21.0100), tileY(52.2300), ZOOM);
+
+        int dropped = provider.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .build());
+
+        assertEquals(0, dropped);
+    }
+
+    /**
+     * Tests that a snapshot with another dictionary drops every cached tile.
+     */
+    @Test
+    public void testNewDictionaryDropsAllTiles() {
+        provider.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .add("17", 52.4000, 20.8000, BusTime.UNKNOWN, "2000", "1")
+                .build());
+        provider.getTile(tileX(21.0100), tileY(52.2300), ZOOM);
+        provider.getTile(tileX(20.8000), tileY(52.4000), ZOOM);
+
+        int dropped = provider.setSnapshot(new FleetSnapshot.Builder(new FleetDictionary())
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .build());
+
+        assertEquals(2, dropped);
+    }
+
+    /**
+     * Tests that a tile rendered while a new snapshot is set is not cached and is reported as stale.
+     *
+     * @throws Exception If the waiting is interrupted.
+     */
+    @Test
+    public void testTileRenderedDuringSnapshotChangeIsStale() throws Exception {
+        CountDownLatch encoding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FleetTileProvider blocking = new FleetTileProvider((pixels, size) -> {
+            encoding.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new byte[] {1};
+        }, 1 << 20);
+        blocking.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2300, 21.0100, BusTime.UNKNOWN, "1000", "1")
+                .build());
+        Thread renderer = new Thread(() -> blocking.getTile(tileX(21.0100), tileY(52.2300), ZOOM));
+        renderer.start();
+        assertTrue(encoding.await(5, TimeUnit.SECONDS));
+
+        int stale = blocking.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2301, 21.0101, BusTime.UNKNOWN, "1000", "1")
+                .build());
+        release.countDown();
+        renderer.join(5000);
+
+        assertEquals(1, stale);
+        blocking.getTile(tileX(21.0100), tileY(52.2300), ZOOM);
+        assertEquals(0, blocking.getHitCount());
+        assertEquals(2, blocking.getRenderCount());
+
+        // Stary kafelek mógł trafić do mapy już po wyczyszczeniu jej pamięci
+        assertEquals(1, blocking.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2301, 21.0101, BusTime.UNKNOWN, "1000", "1")
+                .build()));
+        assertEquals(0, blocking.setSnapshot(new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2301, 21.0101, BusTime.UNKNOWN, "1000", "1")
+                .build()));
+    }
+
+    /**
+     * Returns the column of the tile holding a longitude.
+     *
+     * @param longitude The longitude, in degrees.
+     * @return The tile column at {@link #ZOOM}.
+     */
+    private static int tileX(double longitude) {
+        double world = WebMercator.worldPixels(ZOOM);
+        return (int) Math.floor(WebMercator.x(FleetSnapshot.toE6(longitude)) * world / WebMercator.TILE_PIXELS);
+    }
+
+    /**
+     * Returns the row of the tile holding a latitude.
+     *
+     * @param latitude The latitude, in degrees.
+     * @return The tile row at {@link #ZOOM}.
+     */
+    private static int tileY(double latitude) {
+        double world = WebMercator.worldPixels(ZOOM);
+        return (int) Math.floor(WebMercator.y(FleetSnapshot.toE6(latitude)) * world / WebMercator.TILE_PIXELS);
+    }
+}
@@ -0,0 +1,162 @@
+package pl.creativesstudio.map;
+
+import android.view.Choreographer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FrameBudgetSchedulerTest.java
+ * @brief Unit tests for the FrameBudgetScheduler class.
+ *
+ * Verifies that steps stop at the frame budget, that every frame makes progress and
+ * that a new task replaces the unfinished one.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FrameBudgetSchedulerTest {
+    /**
+     * Frame callbacks posted by the scheduler.
+     */
+    private Queue<Choreographer.FrameCallback> frames;
+    /**
+     * Simulated clock, advanced by {@link #stepNanos} by every step.
+     */
+    private long now;
+    /**
+     * Simulated duration of one step, in nanoseconds.
+     */
+    private long stepNanos;
+    /**
+     * Instance of FrameBudgetScheduler being tested.
+     */
+    private FrameBudgetScheduler scheduler;
+
+    /**
+     * Creates a scheduler with a 1 ms budget and a manual frame queue.
+     */
+    @Before
+    public void setUp() {
+        frames = new ArrayDeque<>();
+        scheduler = new FrameBudgetScheduler(frames::add, () -> now, 1_000_000L);
+    }
+
+    /**
+     * Tests that a frame runs steps until the budget is spent.
+     */
+    @Test
+    public void testStepsStopAtBudget() {
+        stepNanos = 250_000L;
+        CountingTask task = new CountingTask(10);
+        scheduler.schedule(task);
+
+        frames.poll().doFrame(0);
+        assertEquals(4, task.steps);
+        assertEquals(1, frames.size());
+
+        runFrames();
+        assertEquals(10, task.steps);
+        assertEquals(3, task.frames);
+        assertFalse(scheduler.isBusy());
+    }
+
+    /**
+     * Tests that a step longer than the budget still runs once per frame.
+     */
+    @Test
+    public void testSlowStepsStillProgress() {
+        stepNanos = 5_000_000L;
+        CountingTask task = new CountingTask(3);
+        scheduler.schedule(task);
+
+        runFrames();
+        assertEquals(3, task.frames);
+        assertEquals(5_000_000L, scheduler.getLongestFrameNanos());
+    }
+
+    /**
+     * Tests that a new task replaces the unfinished one.
+     */
+    @Test
+    public void testNewTaskSupersedesOld() {
+        stepNanos = 250_000L;
+        CountingTask old = new CountingTask(10);
+        scheduler.schedule(old);
+        frames.poll().doFrame(0);
+
+        CountingTask next = new CountingTask(2);
+        scheduler.schedule(next);
+        runFrames();
+
+        assertEquals(4, old.steps);
+        assertEquals(-1, old.frames);
+        assertEquals(2, next.steps);
+        assertEquals(1, scheduler.getSupersededTasks());
+    }
+
+    /**
+     * Runs posted frame callbacks until none is left.
+     */
+    private void runFrames() {
+        while (!frames.isEmpty()) {
+            frames.poll().doFrame(now);
+        }
+    }
+
+    /**
+     * @class CountingTask
+     * @brief Task of a fixed number of steps, each advancing the simulated clock.
+     */
+    private final class CountingTask implements FrameBudgetScheduler.Task {
+        /**
+         * Number of steps of the task.
+         */
+        private final int total;
+        /**
+         * Number of steps run.
+         */
+        int steps;
+        /**
+         * Number of frames reported at the end, or -1 while unfinished.
+         */
+        int frames = -1;
+
+        /**
+         * Constructs a new CountingTask.
+         *
+         * @param total Number of steps of the task.
+         */
+        CountingTask(int total) {
+            this.total = total;
+        }
+
+        /**
+         * Runs one step.
+         *
+         * @return True if steps remain.
+         */
+        @Override
+        public boolean runStep() {
+            steps++;
+            now += stepNanos;
+            return steps < total;
+        }
+
+        /**
+         * Records the number of frames.
+         *
+         * @param frames Number of frames the task ran in.
+         * @param nanos Total time spent in the steps.
+         */
+        @Override
+        public void onFinished(int frames, long nanos) {
+            this.frames = frames;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package pl.creativesstudio.map;
+
+import android.view.Choreographer;
+
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @file MarkerAnimatorTest.java
+ * @brief Unit tests for the MarkerAnimator class.
+ *
+ * Verifies that markers are interpolated between reports from one frame callback, that
+ * extrapolation is capped and that long jumps are not animated.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class MarkerAnimatorTest {
+    /**
+     * Nanoseconds in a millisecond.
+     */
+    private static final long MS = 1000000L;
+
+    /**
+     * Frame callbacks posted by the animator and not run yet.
+     */
+    private List<Choreographer.FrameCallback> posted;
+    /**
+     * Instance of MarkerAnimator being tested.
+     */
+    private MarkerAnimator animator;
+
+    /**
+     * Creates an animator whose frame callbacks are collected instead of scheduled.
+     */
+    @Before
+    public void setUp() {
+        posted = new ArrayList<>();
+        animator = new MarkerAnimator(posted::add);
+    }
+
+    /**
+     * Tests that a marker is halfway after half of the animation and one callback serves all markers.
+     */
+    @Test
+    public void testInterpolatesFromOneCallback() {
+        Marker first = mock(Marker.class);
+        Marker second = mock(Marker.class);
+        animator.moveTo("1000", first, 52.0, 21.0, 52.001, 21.0, 0);
+        animator.moveTo("2000", second, 52.0, 21.0, 52.0, 21.001, 0);
+
+        assertEquals(1, posted.size());
+        runFrame(MarkerAnimator.DEFAULT_DURATION_MILLIS / 2 * MS);
+
+        assertEquals(52.0005, lastPosition(first).latitude, 1e-9);
+        assertEquals(21.0005, lastPosition(second).longitude, 1e-9);
+        assertEquals(1, posted.size());
+        assertEquals(2, animator.getActiveCount());
+    }
+
+    /**
+     * Tests that the marker moves on past the report for a capped time and then returns to the report.
+     */
+    @Test
+    public void testExtrapolationIsCappedAndSettles() {
+        Marker marker = mock(Marker.class);
+        animator.moveTo("1000", marker, 52.0, 21.0, 52.001, 21.0, 0);
+
+        runFrame(60000 * MS);
+
+        double extrapolated = 0.001 * MarkerAnimator.MAX_EXTRAPOLATION_MILLIS / MarkerAnimator.DEFAULT_DURATION_MILLIS;
+        assertEquals(52.001 + extrapolated, lastPosition(marker).latitude, 1e-9);
+        assertEquals(1, animator.getActiveCount());
+
+        runFrame((60000 + MarkerAnimator.SETTLE_MILLIS / 2) * MS);
+        assertEquals(52.001 + extrapolated / 2, lastPosition(marker).latitude, 1e-9);
+
+        runFrame((60000 + MarkerAnimator.SETTLE_MILLIS) * MS);
+        assertEquals(52.001, lastPosition(marker).latitude, 0);
+        assertEquals(21.0, lastPosition(marker).longitude, 0);
+        assertEquals(0, animator.getActiveCount());
+        assertTrue(posted.isEmpty());
+    }
+
+    /**
+     * Tests that a marker leaving the viewport mid-animation is put at its reported position.
+     */
+    @Test
+    public void testLeavingViewportSnapsToReport() {
+        animator.setViewport(51_990_000, 20_990_000, 52_000_500, 21_010_000);
+        Marker marker = mock(Marker.class);
+        animator.moveTo("1000", marker, 52.0, 21.0, 52.001, 21.0, 0);
+
+        runFrame(MarkerAnimator.DEFAULT_DURATION_MILLIS / 4 * MS);
+        assertEquals(52.00025, lastPosition(marker).latitude, 1e-9);
+
+        runFrame(MarkerAnimator.DEFAULT_DURATION_MILLIS * 3 / 4 * MS);
+        assertEquals(52.001, lastPosition(marker).latitude, 0);
+        assertEquals(0, animator.getActiveCount());
+        assertTrue(posted.isEmpty());
+    }
+
+    /**
+     * Tests that the next report starts from the drawn position and lasts the time between reports.
+     */
+    @Test
+    public void testNextReportStartsFromDrawnPosition() {
+        Marker marker = mock(Marker.class);
+        animator.moveTo("1000", marker, 52.0, 21.0, 52.001, 21.0, 0);
+        runFrame(5000 * MS);
+
+        animator.moveTo("1000", marker, 52.001, 21.0, 52.002, 21.0, 5000 * MS);
+        runFrame(7500 * MS);
+
+        assertEquals(52.00125, lastPosition(marker).latitude, 1e-9);
+    }
+
+    /**
+     * Tests that long jumps and moves outside the viewport are applied at once.
+     */
+    @Test
+    public void testJumpsAreNotAnimated() {
+        Marker far = mock(Marker.class);
+        animator.moveTo("1000", far, 52.0, 21.0, 52.1, 21.0, 0);
+        animator.setViewport(53000000, 22000000, 53100000, 22100000);
+        Marker outside = mock(Marker.class);
+        animator.moveTo("2000", outside, 52.0, 21.0, 52.001, 21.0, 0);
+
+        assertEquals(52.1, lastPosition(far).latitude, 1e-9);
+        assertEquals(52.001, lastPosition(outside).latitude, 1e-9);
+        assertEquals(0, animator.getActiveCount());
+        assertTrue(posted.isEmpty());
+    }
+
+    /**
+     * Runs the posted frame callbacks.
+     *
+     * @param frameTimeNanos Frame time passed to the callbacks.
+     */
+    private void runFrame(long frameTimeNanos) {
+        List<Choreographer.FrameCallback> callbacks = new ArrayList<>(posted);
+        posted.clear();
+        for (Choreographer.FrameCallback callback : callbacks) {
+            callback.doFrame(frameTimeNanos);
+        }
+    }
+
+    /**
+     * Returns the last position set on a mocked marker.
+     *
+     * @param marker The mocked marker.
+     * @return The last position.
+     */
+    private static LatLng lastPosition(Marker marker) {
+        ArgumentCaptor<LatLng> captor = ArgumentCaptor.forClass(LatLng.class);
+        verify(marker, atLeastOnce()).setPosition(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,218 @@
+package pl.creativesstudio.map;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.DisplayMetrics;
+
+import com.google.android.gms.maps.model.BitmapDescriptor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @file MarkerIconCacheTest.java
+ * @brief Unit tests for the MarkerIconCache class.
+ *
+ * Verifies that icons are rendered once per line and screen density, also under concurrent
+ * requests, that prefetches are not counted and that the cache is evicted by the byte size
+ * of the icons. Runs with Robolectric for the
+ * LruCache of the framework; the icons themselves are mocked.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = Build.VERSION_CODES.O_MR1)
+public class MarkerIconCacheTest {
+    /**
+     * Size of every rendered test icon, in bytes.
+     */
+    private static final int ICON_BYTES = 1000;
+
+    /**
+     * Lines rendered by the test renderer, in render order.
+     */
+    private List<String> rendered;
+    /**
+     * Screen density reported by the test renderer, in dots per inch.
+     */
+    private volatile int densityDpi;
+    /**
+     * Latch the test renderer waits on before rendering, or null to render at once.
+     */
+    private volatile CountDownLatch renderGate;
+    /**
+     * Renderer handing out mocked bitmaps and a new descriptor for every call.
+     */
+    private MarkerIconCache.Renderer renderer;
+
+    /**
+     * Prepares a renderer that records the rendered lines.
+     */
+    @Before
+    public void setUp() {
+        rendered = Collections.synchronizedList(new ArrayList<>());
+        densityDpi = DisplayMetrics.DENSITY_XXHIGH;
+        renderer = new MarkerIconCache.Renderer() {
+            @Override
+            public int densityDpi() {
+                return densityDpi;
+            }
+
+            @Override
+            public Bitmap render(String line, int densityDpi) {
+                CountDownLatch gate = renderGate;
+                if (gate != null) {
+                    try {
+                        gate.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                rendered.add(line + "@" + densityDpi);
+                Bitmap bitmap = mock(Bitmap.class);
+                when(bitmap.getByteCount()).thenReturn(ICON_BYTES);
+                return bitmap;
+            }
+
+            @Override
+            public BitmapDescriptor describe(Bitmap bitmap) {
+                return mock(BitmapDescriptor.class);
+            }
+        };
+    }
+
+    /**
+     * Tests that repeated requests for the same lines return the same descriptors without new misses.
+     */
+    @Test
+    public void testRepeatedGetReturnsSameDescriptor() {
+        MarkerIconCache cache = new MarkerIconCache(10 * ICON_BYTES, renderer);
+        String[] lines = {"523", "180", "17"};
+        BitmapDescriptor[] first = new BitmapDescriptor[lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            first[i] = cache.get(lines[i]);
+        }
+        assertEquals(3, cache.getMissCount());
+
+        for (int pass = 0; pass < 5; pass++) {
+            for (int i = 0; i < lines.length; i++) {
+                assertSame(first[i], cache.get(lines[i]));
+            }
+        }
+
+        assertEquals(3, cache.getMissCount());
+        assertEquals(15, cache.getHitCount());
+        assertEquals(3, rendered.size());
+    }
+
+    /**
+     * Tests that a prefetched icon is not rendered again and the prefetch is not counted.
+     */
+    @Test
+    public void testPrefetchIsNotCounted() {
+        MarkerIconCache cache = new MarkerIconCache(10 * ICON_BYTES, renderer);
+
+        cache.prefetch("523");
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+
+        cache.get("523");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(1, rendered.size());
+    }
+
+    /**
+     * Tests that the least recently used icons are evicted once the byte budget is exceeded.
+     */
+    @Test
+    public void testEvictsBySize() {
+        MarkerIconCache cache = new MarkerIconCache(2 * ICON_BYTES, renderer);
+
+        cache.get("523");
+        cache.get("180");
+        cache.get("523");
+        cache.get("17");
+
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2 * ICON_BYTES, cache.getSizeBytes());
+
+        cache.get("523");
+        assertEquals(3, rendered.size());
+        cache.get("180");
+        assertEquals(4, rendered.size());
+    }
+
+    /**
+     * Tests that an icon is rendered again for a new screen density and kept for the old one.
+     */
+    @Test
+    public void testDensityIsPartOfKey() {
+        MarkerIconCache cache = new MarkerIconCache(10 * ICON_BYTES, renderer);
+        BitmapDescriptor xxhdpi = cache.get("523");
+
+        densityDpi = DisplayMetrics.DENSITY_XHIGH;
+        BitmapDescriptor xhdpi = cache.get("523");
+        assertNotSame(xxhdpi, xhdpi);
+        assertEquals("523@" + DisplayMetrics.DENSITY_XHIGH, rendered.get(1));
+
+        densityDpi = DisplayMetrics.DENSITY_XXHIGH;
+        assertSame(xxhdpi, cache.get("523"));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, rendered.size());
+    }
+
+    /**
+     * Tests that concurrent requests for a missing icon share a single rendering.
+     *
+     * @throws Exception If the waiting is interrupted.
+     */
+    @Test
+    public void testConcurrentMissRendersOnce() throws Exception {
+        MarkerIconCache cache = new MarkerIconCache(10 * ICON_BYTES, renderer);
+        renderGate = new CountDownLatch(1);
+        BitmapDescriptor[] descriptors = new BitmapDescriptor[2];
+        Thread first = new Thread(() -> descriptors[0] = cache.get("523"));
+        Thread second = new Thread(() -> descriptors[1] = cache.get("523"));
+
+        first.start();
+        second.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!(isWaiting(first) && isWaiting(second)) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        renderGate.countDown();
+        first.join(5000);
+        second.join(5000);
+
+        assertEquals(1, rendered.size());
+        assertSame(descriptors[0], descriptors[1]);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    /**
+     * Checks whether a thread is blocked on a lock or waiting on the render gate.
+     *
+     * @param thread The thread.
+     * @return True if the thread is not running.
+     */
+    private static boolean isWaiting(Thread thread) {
+        Thread.State state = thread.getState();
+        return state == Thread.State.BLOCKED || state == Thread.State.WAITING
+                || state == Thread.State.TIMED_WAITING;
+    }
+}
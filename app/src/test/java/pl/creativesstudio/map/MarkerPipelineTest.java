@@ -0,0 +1,229 @@
+package pl.creativesstudio.map;
+
+import android.view.Choreographer;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @file MarkerPipelineTest.java
+ * @brief Unit tests for the MarkerPipeline class.
+ *
+ * Verifies that passes are prepared on the worker, applied over several frames within
+ * the frame budget with the nearest buses first, and dropped when a newer pass or a
+ * clear comes in.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class MarkerPipelineTest {
+    /**
+     * Simulated time of one marker operation, in nanoseconds.
+     */
+    private static final long STEP_NANOS = 100_000L;
+    /**
+     * Frame budget of the test scheduler: ten operations.
+     */
+    private static final long BUDGET_NANOS = 10 * STEP_NANOS;
+
+    /**
+     * Tasks queued on the worker.
+     */
+    private Queue<Runnable> worker;
+    /**
+     * Tasks queued on the main thread.
+     */
+    private Queue<Runnable> mainThread;
+    /**
+     * Frame callbacks posted by the scheduler.
+     */
+    private Queue<Choreographer.FrameCallback> frames;
+    /**
+     * Simulated clock, advanced by every reading.
+     */
+    private long now;
+    /**
+     * Markers returned by the mocked map, in creation order.
+     */
+    private List<Marker> createdMarkers;
+    /**
+     * Options of the added markers, in creation order.
+     */
+    private List<MarkerOptions> addedOptions;
+    /**
+     * Marker counts reported to the listener.
+     */
+    private List<Integer> committed;
+    /**
+     * Instance of MarkerPipeline being tested.
+     */
+    private MarkerPipeline pipeline;
+    /**
+     * Reconciler used by the pipeline.
+     */
+    private MarkerReconciler reconciler;
+
+    /**
+     * Creates a pipeline whose worker, main thread and frames are manual queues.
+     */
+    @Before
+    public void setUp() {
+        GoogleMap map = mock(GoogleMap.class);
+        createdMarkers = new ArrayList<>();
+        addedOptions = new ArrayList<>();
+        when(map.addMarker(any(MarkerOptions.class))).thenAnswer(invocation -> {
+            Marker marker = mock(Marker.class);
+            createdMarkers.add(marker);
+            addedOptions.add(invocation.getArgument(0));
+            return marker;
+        });
+        worker = new ArrayDeque<>();
+        mainThread = new ArrayDeque<>();
+        frames = new ArrayDeque<>();
+        committed = new ArrayList<>();
+        reconciler = new MarkerReconciler(map, line -> null);
+        FrameBudgetScheduler scheduler = new FrameBudgetScheduler(frames::add, () -> now += STEP_NANOS, BUDGET_NANOS);
+        pipeline = new MarkerPipeline(reconciler, worker::add, mainThread::add, scheduler,
+                (markers, frameCount, prepareNanos, mainThreadNanos) -> committed.add(markers));
+    }
+
+    /**
+     * Tests that a large pass is spread over frames within the budget.
+     */
+    @Test
+    public void testLargePassIsSpreadOverFrames() {
+        submit(fleet(35), null);
+
+        runAll(worker);
+        runAll(mainThread);
+        assertTrue(createdMarkers.isEmpty());
+
+        frames.poll().doFrame(0);
+        assertEquals(10, createdMarkers.size());
+        assertTrue(committed.isEmpty());
+
+        runFrames(frames);
+        assertEquals(35, reconciler.size());
+        assertEquals(4, pipeline.getLastFrames());
+        assertEquals(Integer.valueOf(35), committed.get(0));
+    }
+
+    /**
+     * Tests that the selected bus comes first, followed by the buses nearest to the centre.
+     */
+    @Test
+    public void testNearestAndSelectedFirst() {
+        submit(fleet(30), "1:V29");
+        runAll(worker);
+        runAll(mainThread);
+        runFrames(frames);
+
+        assertEquals("V29", addedOptions.get(0).getSnippet());
+        assertEquals("V0", addedOptions.get(1).getSnippet());
+        assertEquals("V1", addedOptions.get(2).getSnippet());
+    }
+
+    /**
+     * Tests that the pending operations of a pass are dropped once a newer pass is submitted.
+     */
+    @Test
+    public void testNewerPassSupersedesOlder() {
+        submit(fleet(40), null);
+        runAll(worker);
+        runAll(mainThread);
+        frames.poll().doFrame(0);
+
+        submit(fleet(5), null);
+        runAll(worker);
+        runAll(mainThread);
+        runFrames(frames);
+
+        assertEquals(5, reconciler.size());
+        assertEquals(10, createdMarkers.size());
+        assertEquals(1, committed.size());
+        assertEquals(Integer.valueOf(5), committed.get(0));
+    }
+
+    /**
+     * Tests that a clear drops a pass that is still being prepared.
+     */
+    @Test
+    public void testClearDropsPendingPass() {
+        submit(fleet(10), null);
+
+        pipeline.clear();
+        runAll(worker);
+        runAll(mainThread);
+        runFrames(frames);
+
+        assertEquals(0, reconciler.size());
+        assertTrue(createdMarkers.isEmpty());
+    }
+
+    /**
+     * Submits every vehicle of a snapshot with the viewport centred on the first vehicle.
+     *
+     * @param snapshot The snapshot to display.
+     * @param selectedBusId Vehicle number of the selected bus, or null.
+     */
+    private void submit(FleetSnapshot snapshot, String selectedBusId) {
+        int[] indices = new int[snapshot.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[indices.length - 1 - i] = i;
+        }
+        pipeline.submit(snapshot, indices, indices.length, selectedBusId, 52_200_000, 21_000_000);
+    }
+
+    /**
+     * Runs queued runnables, including the ones they queue, until the queue is empty.
+     *
+     * @param queue The queue to drain.
+     */
+    private static void runAll(Queue<Runnable> queue) {
+        while (!queue.isEmpty()) {
+            queue.poll().run();
+        }
+    }
+
+    /**
+     * Runs posted frame callbacks, including the ones they post, until none is left.
+     *
+     * @param queue The posted frame callbacks.
+     */
+    private void runFrames(Queue<Choreographer.FrameCallback> queue) {
+        while (!queue.isEmpty()) {
+            queue.poll().doFrame(now);
+        }
+    }
+
+    /**
+     * Builds a snapshot of vehicles going north from the viewport centre, one every 11 m.
+     *
+     * @param size Number of vehicles.
+     * @return The snapshot.
+     */
+    private static FleetSnapshot fleet(int size) {
+        FleetSnapshot.Builder builder = new FleetSnapshot.Builder(new FleetDictionary());
+        for (int i = 0; i < size; i++) {
+            builder.add("L" + (i % 20), 52.2 + i * 1e-4, 21.0, BusTime.UNKNOWN, "V" + i, "1");
+        }
+        return builder.build();
+    }
+}
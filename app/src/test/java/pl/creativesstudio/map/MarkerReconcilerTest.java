@@ -0,0 +1,204 @@
+package pl.creativesstudio.map;
+
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * @file MarkerReconcilerTest.java
+ * @brief Unit tests for the MarkerReconciler class.
+ *
+ * Verifies that markers are moved, added and removed individually instead of
+ * recreating every marker on each refresh.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class MarkerReconcilerTest {
+    /**
+     * Mocked map on which markers are added.
+     */
+    private GoogleMap map;
+    /**
+     * Markers returned by the mocked map, in creation order.
+     */
+    private List<Marker> createdMarkers;
+    /**
+     * Instance of MarkerReconciler being tested.
+     */
+    private MarkerReconciler reconciler;
+    /**
+     * Dictionary shared by the test snapshots.
+     */
+    private FleetDictionary dictionary;
+
+    /**
+     * Prepares a mocked map that hands out a new mocked marker for every addMarker call.
+     */
+    @Before
+    public void setUp() {
+        map = mock(GoogleMap.class);
+        createdMarkers = new ArrayList<>();
+        when(map.addMarker(any(MarkerOptions.class))).thenAnswer(invocation -> {
+            Marker marker = mock(Marker.class);
+            createdMarkers.add(marker);
+            return marker;
+        });
+        reconciler = new MarkerReconciler(map, line -> null);
+        dictionary = new FleetDictionary();
+    }
+
+    /**
+     * Tests that an unchanged vehicle keeps its marker and is only moved.
+     */
+    @Test
+    public void testExistingMarkerIsMoved() {
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.23, 21.01, BusTime.UNKNOWN, "1000", "1"));
+        Marker marker = createdMarkers.get(0);
+
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.24, 21.02, BusTime.UNKNOWN, "1000", "1"));
+
+        assertEquals(1, createdMarkers.size());
+        verify(marker).setPosition(any(LatLng.class));
+        verify(marker, never()).remove();
+        verify(map, never()).clear();
+    }
+
+    /**
+     * Tests that only new vehicles are added and only departed vehicles are removed.
+     */
+    @Test
+    public void testOnlyChangedVehiclesAreAddedOrRemoved() {
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.23, 21.01, BusTime.UNKNOWN, "1000", "1")
+                .add("456", 52.25, 21.03, BusTime.UNKNOWN, "2000", "2"));
+        Marker first = createdMarkers.get(0);
+        Marker second = createdMarkers.get(1);
+
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.23, 21.01, BusTime.UNKNOWN, "1000", "1")
+                .add("789", 52.26, 21.04, BusTime.UNKNOWN, "3000", "3"));
+
+        assertEquals(3, createdMarkers.size());
+        verify(first, never()).remove();
+        verify(first, never()).setPosition(any(LatLng.class));
+        verify(second).remove();
+        assertNull(reconciler.getMarker("1:2000"));
+        assertEquals(2, reconciler.size());
+    }
+
+    /**
+     * Tests that the info window of the selected bus is opened only once.
+     */
+    @Test
+    public void testSelectedInfoWindowIsNotReopened() {
+        display("1:1000", new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.23, 21.01, BusTime.UNKNOWN, "1000", "1"));
+        Marker marker = createdMarkers.get(0);
+
+        display("1:1000", new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.24, 21.02, BusTime.UNKNOWN, "1000", "1"));
+
+        verify(marker, times(1)).showInfoWindow();
+    }
+
+    /**
+     * Tests that a bus and a tram sharing a vehicle number get separate markers.
+     */
+    @Test
+    public void testBusAndTramWithSameNumberAreKeptApart() {
+        int line = dictionary.idOf("17");
+        int vehicle = dictionary.idOf("1000");
+        int brigade = dictionary.idOf("1");
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add(line, 52_230_000, 21_010_000, BusTime.UNKNOWN, vehicle, brigade, FleetSnapshot.TYPE_BUS)
+                .add(line, 52_250_000, 21_030_000, BusTime.UNKNOWN, vehicle, brigade, FleetSnapshot.TYPE_TRAM));
+
+        assertEquals(2, createdMarkers.size());
+        assertEquals(2, reconciler.size());
+        Marker bus = reconciler.getMarker(FleetSnapshot.TYPE_BUS + ":1000");
+        Marker tram = reconciler.getMarker(FleetSnapshot.TYPE_TRAM + ":1000");
+        assertNotNull(bus);
+        assertNotNull(tram);
+        assertNotSame(bus, tram);
+
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add(line, 52_230_000, 21_010_000, BusTime.UNKNOWN, vehicle, brigade, FleetSnapshot.TYPE_BUS)
+                .add(line, 52_260_000, 21_030_000, BusTime.UNKNOWN, vehicle, brigade, FleetSnapshot.TYPE_TRAM));
+
+        assertEquals(2, createdMarkers.size());
+        verify(bus, never()).setPosition(any(LatLng.class));
+        verify(tram).setPosition(any(LatLng.class));
+        verify(bus, never()).remove();
+        verify(tram, never()).remove();
+    }
+
+    /**
+     * Tests that marking the data stale dims existing markers and restores them afterwards.
+     */
+    @Test
+    public void testStaleMarkersAreDimmed() {
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.23, 21.01, BusTime.UNKNOWN, "1000", "1"));
+        Marker marker = createdMarkers.get(0);
+
+        reconciler.setStale(true);
+        reconciler.setStale(false);
+
+        verify(marker).setAlpha(MarkerReconciler.STALE_ALPHA);
+        verify(marker).setAlpha(1f);
+    }
+
+    /**
+     * Tests that adds, moves and removals are counted, and unchanged markers are not.
+     */
+    @Test
+    public void testOperationsAreCounted() {
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.23, 21.01, BusTime.UNKNOWN, "1000", "1")
+                .add("456", 52.25, 21.03, BusTime.UNKNOWN, "2000", "2"));
+        assertEquals(2, reconciler.getOperationCount());
+
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.24, 21.01, BusTime.UNKNOWN, "1000", "1")
+                .add("789", 52.26, 21.04, BusTime.UNKNOWN, "3000", "3"));
+        assertEquals(5, reconciler.getOperationCount());
+
+        display(null, new FleetSnapshot.Builder(dictionary)
+                .add("123", 52.24, 21.01, BusTime.UNKNOWN, "1000", "1")
+                .add("789", 52.26, 21.04, BusTime.UNKNOWN, "3000", "3"));
+        assertEquals(5, reconciler.getOperationCount());
+    }
+
+    /**
+     * Displays every vehicle of the built snapshot through the reconciler.
+     *
+     * @param selectedBusId Vehicle tag of the selected bus, or null.
+     * @param builder Builder holding the vehicles to display.
+     */
+    private void display(String selectedBusId, FleetSnapshot.Builder builder) {
+        FleetSnapshot snapshot = builder.build();
+        int[] indices = new int[snapshot.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = i;
+        }
+        reconciler.reconcile(snapshot, indices, indices.length, selectedBusId);
+    }
+}
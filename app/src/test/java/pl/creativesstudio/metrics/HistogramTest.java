@@ -0,0 +1,85 @@
+package pl.creativesstudio.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file HistogramTest.java
+ * @brief Unit tests for the Histogram class.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class HistogramTest {
+    /**
+     * Instance of Histogram being tested.
+     */
+    private Histogram histogram;
+
+    /**
+     * Creates an empty histogram of durations.
+     */
+    @Before
+    public void setUp() {
+        histogram = new Histogram(Histogram.Unit.NANOSECONDS);
+    }
+
+    /**
+     * Tests that every value falls into a bucket whose bounds enclose it.
+     */
+    @Test
+    public void testBucketsEncloseTheirValues() {
+        long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 123_456_789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(bucket < Histogram.BUCKET_COUNT);
+            assertTrue(value <= Histogram.upperBound(bucket));
+            if (bucket > 0) {
+                assertTrue(value > Histogram.upperBound(bucket - 1));
+            }
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.BUCKET_COUNT - 1));
+    }
+
+    /**
+     * Tests that percentiles are within the relative error of a bucket.
+     */
+    @Test
+    public void testPercentilesAreWithinBucketError() {
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertEquals(5_000_000, histogram.getPercentile(50), 5_000_000 / 8.0);
+        assertEquals(9_900_000, histogram.getPercentile(99), 9_900_000 / 8.0);
+        assertEquals(10_000_000, histogram.getPercentile(100));
+        assertEquals(1000, histogram.getPercentile(0), 1000 / 8.0);
+    }
+
+    /**
+     * Tests the count, sum, mean and maximum of the recorded values.
+     */
+    @Test
+    public void testSummaryValues() {
+        histogram.record(10);
+        histogram.record(30);
+        histogram.record(-5);
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(40, histogram.getSum());
+        assertEquals(40 / 3.0, histogram.getMean(), 1e-9);
+        assertEquals(30, histogram.getMax());
+    }
+
+    /**
+     * Tests that an empty histogram reports zeros.
+     */
+    @Test
+    public void testEmptyHistogram() {
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99));
+        assertEquals(0, histogram.getMean(), 0);
+    }
+}
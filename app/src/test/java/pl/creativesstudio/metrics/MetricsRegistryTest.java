@@ -0,0 +1,84 @@
+package pl.creativesstudio.metrics;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file MetricsRegistryTest.java
+ * @brief Unit tests for the MetricsRegistry class.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class MetricsRegistryTest {
+    /**
+     * Instance of MetricsRegistry being tested.
+     */
+    private MetricsRegistry registry;
+
+    /**
+     * Creates an empty registry.
+     */
+    @Before
+    public void setUp() {
+        registry = new MetricsRegistry();
+    }
+
+    /**
+     * Tests that a name always returns the same metric.
+     */
+    @Test
+    public void testMetricsAreCreatedOnce() {
+        Counter counter = registry.counter("fetch.failures");
+        counter.increment();
+
+        assertSame(counter, registry.counter("fetch.failures"));
+        assertSame(registry.histogram("fetch.latency", Histogram.Unit.NANOSECONDS),
+                registry.histogram("fetch.latency", Histogram.Unit.NANOSECONDS));
+        assertEquals(1, registry.counter("fetch.failures").get());
+    }
+
+    /**
+     * Tests that a name cannot be reused for a metric of another kind.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testKindMismatchIsRejected() {
+        registry.counter("icons.hit_rate");
+        registry.gauge("icons.hit_rate");
+    }
+
+    /**
+     * Tests that the dump lists every metric, sorted by name, with the histogram buckets.
+     */
+    @Test
+    public void testDumpListsAllMetrics() throws IOException {
+        registry.histogram("render.frames", Histogram.Unit.COUNT).record(3);
+        registry.counter("fetch.failures").add(2);
+        registry.gauge("icons.hit_rate").set(0.5);
+
+        StringWriter out = new StringWriter();
+        registry.dump(out);
+        String[] lines = out.toString().split("\n");
+
+        assertEquals(3, lines.length);
+        assertEquals("fetch.failures counter value=2", lines[0]);
+        assertEquals("icons.hit_rate gauge value=0.5", lines[1]);
+        assertTrue(lines[2].startsWith("render.frames histogram unit=count count=1 sum=3 max=3"));
+        assertTrue(lines[2].endsWith(" buckets=3:1"));
+    }
+
+    /**
+     * Tests that the summary shows histograms in their unit.
+     */
+    @Test
+    public void testSummaryFormatsUnits() {
+        registry.histogram("fetch.latency", Histogram.Unit.NANOSECONDS).record(2_000_000);
+
+        assertEquals("fetch.latency: n=1 p50=2.00 ms p99=2.00 ms\n", registry.summary());
+    }
+}
@@ -0,0 +1,169 @@
+package pl.creativesstudio.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FleetSnapshotTest.java
+ * @brief Unit tests for the FleetSnapshot class.
+ *
+ * Verifies the columnar storage, the shared dictionary ids and the Bus-compatible view.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FleetSnapshotTest {
+
+    /**
+     * Tests that values stored in the columns are returned unchanged.
+     */
+    @Test
+    public void testColumnsRoundTrip() {
+        FleetDictionary dictionary = new FleetDictionary();
+        long time = BusTime.parse("2024-12-16 10:00:00");
+        FleetSnapshot snapshot = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2297, 21.0122, time, "1000", "5")
+                .build();
+
+        assertEquals(1, snapshot.size());
+        assertEquals(52229700, snapshot.getLatE6(0));
+        assertEquals(21012200, snapshot.getLonE6(0));
+        assertEquals(52.2297, snapshot.getLat(0), 0);
+        assertEquals(21.0122, snapshot.getLon(0), 0);
+        assertEquals("523", snapshot.getLine(0));
+        assertEquals("1000", snapshot.getVehicleNumber(0));
+        assertEquals("5", snapshot.getBrigade(0));
+        assertEquals(time, snapshot.getTimeMillis(0));
+    }
+
+    /**
+     * Tests that the same string gets the same id in different snapshots.
+     */
+    @Test
+    public void testIdsAreStableAcrossSnapshots() {
+        FleetDictionary dictionary = new FleetDictionary();
+        FleetSnapshot first = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2, 21.0, BusTime.UNKNOWN, "1000", "5")
+                .build();
+        FleetSnapshot second = new FleetSnapshot.Builder(dictionary)
+                .add("180", 52.3, 21.1, BusTime.UNKNOWN, "2000", "1")
+                .add("523", 52.2, 21.0, BusTime.UNKNOWN, "1000", "5")
+                .build();
+
+        assertEquals(first.getLineId(0), second.getLineId(1));
+        assertEquals(first.getVehicleId(0), second.getVehicleId(1));
+        assertEquals("523", first.getLine(0));
+    }
+
+    /**
+     * Tests that a bus and a tram with the same vehicle number get different keys.
+     */
+    @Test
+    public void testVehicleKeyIncludesType() {
+        FleetDictionary dictionary = new FleetDictionary();
+        FleetSnapshot snapshot = FleetSnapshot.concat(
+                new FleetSnapshot.Builder(dictionary)
+                        .add("523", 52.2, 21.0, BusTime.UNKNOWN, "1000", "5")
+                        .build(),
+                new FleetSnapshot.Builder(dictionary)
+                        .setVehicleType(FleetSnapshot.TYPE_TRAM)
+                        .add("17", 52.3, 21.1, BusTime.UNKNOWN, "1000", "1")
+                        .build());
+
+        assertEquals(snapshot.getVehicleId(0), snapshot.getVehicleId(1));
+        assertNotEquals(snapshot.getVehicleKey(0), snapshot.getVehicleKey(1));
+        assertEquals("1:1000", snapshot.getVehicleTag(0));
+        assertEquals("2:1000", snapshot.getVehicleTag(1));
+    }
+
+    /**
+     * Tests that the Bus view exposes the same data as the original bus list.
+     */
+    @Test
+    public void testBusView() {
+        List<Bus> buses = new ArrayList<>();
+        Bus bus = new Bus();
+        bus.setLines("N01");
+        bus.setLat(52.2397);
+        bus.setLon(21.0222);
+        bus.setVehicleNumber("A3");
+        bus.setBrigade("B3");
+        bus.setTime("2024-07-01 12:30:15");
+        buses.add(bus);
+
+        List<Bus> view = FleetSnapshot.fromBuses(buses, new FleetDictionary()).asBusList();
+
+        assertEquals(1, view.size());
+        Bus copy = view.get(0);
+        assertEquals("N01", copy.getLines());
+        assertEquals(52.2397, copy.getLat(), 0);
+        assertEquals(21.0222, copy.getLon(), 0);
+        assertEquals("A3", copy.getVehicleNumber());
+        assertEquals("B3", copy.getBrigade());
+        assertEquals("2024-07-01 12:30:15", copy.getTime());
+    }
+
+    /**
+     * Tests that malformed timestamps are reported as unknown.
+     */
+    @Test
+    public void testMalformedTime() {
+        assertEquals(BusTime.UNKNOWN, BusTime.parse(null));
+        assertEquals(BusTime.UNKNOWN, BusTime.parse("wczoraj"));
+        assertEquals(BusTime.UNKNOWN, BusTime.parse("2024-13-01 10:00:00"));
+    }
+
+    /**
+     * Tests that snapshots are compared by their vehicle reports.
+     */
+    @Test
+    public void testHasSameReports() {
+        FleetDictionary dictionary = new FleetDictionary();
+        FleetSnapshot first = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2, 21.0, 1000, "1000", "5")
+                .build();
+        FleetSnapshot same = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2, 21.0, 1000, "1000", "5")
+                .build();
+        FleetSnapshot moved = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2, 21.1, 2000, "1000", "5")
+                .build();
+
+        assertTrue(first.hasSameReports(same));
+        assertFalse(first.hasSameReports(moved));
+        assertFalse(first.hasSameReports(FleetSnapshot.EMPTY));
+    }
+
+    /**
+     * Tests that replacing lines keeps other lines and takes the replaced lines from the update.
+     */
+    @Test
+    public void testWithLinesReplaced() {
+        FleetDictionary dictionary = new FleetDictionary();
+        FleetSnapshot base = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.2, 21.0, 1000, "1000", "5")
+                .add("523", 52.3, 21.0, 1000, "1001", "6")
+                .add("180", 52.4, 21.1, 1000, "2000", "1")
+                .add("180", 52.4, 21.2, 1000, "2001", "2")
+                .build();
+        FleetSnapshot update = new FleetSnapshot.Builder(dictionary)
+                .add("523", 52.25, 21.05, 2000, "1000", "5")
+                .add("523", 52.5, 21.1, 2000, "2001", "7")
+                .build();
+
+        FleetSnapshot merged = base.withLinesReplaced(update, Collections.singletonList("523"));
+
+        List<String> vehicles = new ArrayList<>();
+        for (int i = 0; i < merged.size(); i++) {
+            vehicles.add(merged.getVehicleNumber(i) + "/" + merged.getLine(i) + "/" + merged.getTimeMillis(i));
+        }
+        Collections.sort(vehicles);
+        assertEquals(Arrays.asList("1000/523/2000", "2000/180/1000", "2001/523/2000"), vehicles);
+    }
+}
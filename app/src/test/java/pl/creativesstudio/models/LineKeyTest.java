@@ -0,0 +1,114 @@
+package pl.creativesstudio.models;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file LineKeyTest.java
+ * @brief Unit tests for the LineKey class.
+ *
+ * Verifies that sorting by pre-parsed keys returns the same order as the original
+ * regular-expression comparator for Warsaw day, night, zone and tram lines.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class LineKeyTest {
+
+    /**
+     * The comparator used before line keys were introduced, kept as the reference order.
+     *
+     * @param line1 The first line.
+     * @param line2 The second line.
+     * @return The comparison result.
+     */
+    private static int legacyCompare(String line1, String line2) {
+        String numberPart1 = line1.replaceAll("[^0-9]", "");
+        String numberPart2 = line2.replaceAll("[^0-9]", "");
+
+        String letterPart1 = line1.replaceAll("[0-9]", "");
+        String letterPart2 = line2.replaceAll("[0-9]", "");
+
+        int letterComparison = letterPart1.compareTo(letterPart2);
+        if (letterComparison != 0) {
+            return letterComparison;
+        }
+
+        if (!numberPart1.isEmpty() && !numberPart2.isEmpty()) {
+            return Integer.compare(Integer.parseInt(numberPart1), Integer.parseInt(numberPart2));
+        }
+
+        return line1.compareTo(line2);
+    }
+
+    /**
+     * Returns a sample of real Warsaw line names.
+     *
+     * @return Tram, day, express, zone, night and special lines.
+     */
+    private static List<String> warsawLines() {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 79; i += 3) lines.add(String.valueOf(i));
+        for (int i = 102; i <= 527; i += 17) lines.add(String.valueOf(i));
+        for (int i = 700; i <= 743; i += 4) lines.add(String.valueOf(i));
+        for (int i = 1; i <= 9; i++) lines.add("E-" + i);
+        for (int i = 1; i <= 53; i += 4) lines.add("L-" + i);
+        for (int i = 1; i <= 95; i += 6) lines.add(String.format("N%02d", i));
+        lines.addAll(Arrays.asList("N1", "Z-1", "Z-12", "Z", "ZS1", "C40", "W", "M1", "T", "2A", "20B"));
+        return lines;
+    }
+
+    /**
+     * Tests that line keys sort shuffled lines in the same order as the legacy comparator.
+     */
+    @Test
+    public void testSameOrderAsLegacyComparator() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            List<String> lines = warsawLines();
+            Collections.shuffle(lines, random);
+
+            List<String> expected = new ArrayList<>(lines);
+            expected.sort(LineKeyTest::legacyCompare);
+
+            assertEquals(expected, LineKey.sort(new ArrayList<>(lines)));
+        }
+    }
+
+    /**
+     * Tests the parsed parts of typical lines.
+     */
+    @Test
+    public void testParsedParts() {
+        LineKey night = LineKey.of("N01");
+        assertEquals("N", night.getPrefix());
+        assertEquals(1, night.getNumber());
+        assertEquals("", night.getSuffix());
+
+        LineKey zone = LineKey.of("L-1");
+        assertEquals("L-", zone.getPrefix());
+        assertEquals(1, zone.getNumber());
+
+        LineKey suffixed = LineKey.of("20B");
+        assertEquals("", suffixed.getPrefix());
+        assertEquals(20, suffixed.getNumber());
+        assertEquals("B", suffixed.getSuffix());
+
+        assertEquals(LineKey.NO_NUMBER, LineKey.of("Z").getNumber());
+    }
+
+    /**
+     * Tests that keys are cached across calls.
+     */
+    @Test
+    public void testKeysAreCached() {
+        assertSame(LineKey.of("523"), LineKey.of(new String("523")));
+    }
+}
@@ -0,0 +1,177 @@
+package pl.creativesstudio.startup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file InitGraphTest.java
+ * @brief Unit tests for the InitGraph class.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class InitGraphTest {
+    /**
+     * Executor running the tasks.
+     */
+    private ExecutorService executor;
+    /**
+     * Names of the finished tasks with their outcome, in finish order.
+     */
+    private List<String> finished;
+    /**
+     * Instance of InitGraph being tested.
+     */
+    private InitGraph graph;
+
+    /**
+     * Creates a graph running its tasks on a pool of two threads.
+     */
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+        finished = Collections.synchronizedList(new ArrayList<>());
+        graph = new InitGraph((name, durationNanos, error) -> {
+            assertTrue(durationNanos >= 0);
+            finished.add(name + (error == null ? "" : ":failed"));
+        });
+    }
+
+    /**
+     * Stops the executor.
+     */
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that a task runs after its dependencies and receives their results.
+     */
+    @Test
+    public void testDependenciesRunFirst() {
+        CompletableFuture<String> client = graph.add("client", executor, () -> "client");
+        CompletableFuture<Integer> restore = graph.add("restore", client, executor, String::length);
+        CompletableFuture<String> warmUp = graph.add("warmUp", client, restore, executor, (c, n) -> c + n);
+
+        assertEquals("client6", warmUp.join());
+        graph.all().join();
+        assertEquals(3, finished.size());
+        assertTrue(finished.indexOf("client") < finished.indexOf("restore"));
+        assertTrue(finished.indexOf("restore") < finished.indexOf("warmUp"));
+    }
+
+    /**
+     * Tests that independent tasks run in parallel.
+     */
+    @Test
+    public void testIndependentTasksRunInParallel() throws InterruptedException {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Runnable meet = () -> {
+            bothStarted.countDown();
+            try {
+                assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        graph.add("first", executor, () -> {
+            meet.run();
+            return 1;
+        });
+        graph.add("second", executor, () -> {
+            meet.run();
+            return 2;
+        });
+
+        graph.all().join();
+        assertEquals(2, finished.size());
+    }
+
+    /**
+     * Tests that a failed task fails its dependents without running them, and that both are reported.
+     */
+    @Test
+    public void testFailurePropagatesToDependents() {
+        CompletableFuture<String> client = graph.add("client", executor, () -> {
+            throw new IllegalStateException("no network stack");
+        });
+        boolean[] ran = {false};
+        CompletableFuture<Integer> restore = graph.add("restore", client, executor, c -> {
+            ran[0] = true;
+            return c.length();
+        });
+
+        try {
+            restore.join();
+            fail("Expected the dependent task to fail");
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(ran[0]);
+        assertTrue(finished.contains("client:failed"));
+        assertTrue(finished.contains("restore:failed"));
+    }
+
+    /**
+     * Tests the startup layout of the activity: the restore and the icon warm-up finish while
+     * the API client is still blocked, even with a fetch waiting for the client on the restore thread.
+     */
+    @Test
+    public void testRestoreDoesNotWaitForNetwork() throws Exception {
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        ExecutorService markers = Executors.newSingleThreadExecutor();
+        CountDownLatch network = new CountDownLatch(1);
+        try {
+            CompletableFuture<Integer> restore = graph.add("snapshotRestore", writer, () -> 3);
+            CompletableFuture<String> client = graph.add("apiClient", executor, () -> {
+                try {
+                    assertTrue(network.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return "client";
+            });
+            Future<String> fetch = writer.submit(client::join);
+            CompletableFuture<String> icons = graph.add("iconCache", markers, () -> "icons");
+            CompletableFuture<String> warmUp = graph.add("iconWarmUp", icons, restore, markers, (i, n) -> i + n);
+
+            assertEquals("icons3", warmUp.get(5, TimeUnit.SECONDS));
+            assertFalse(client.isDone());
+            assertFalse(fetch.isDone());
+
+            network.countDown();
+            assertEquals("client", fetch.get(5, TimeUnit.SECONDS));
+            graph.all().join();
+            assertEquals(4, finished.size());
+            assertTrue(finished.indexOf("iconWarmUp") < finished.indexOf("apiClient"));
+        } finally {
+            network.countDown();
+            writer.shutdownNow();
+            markers.shutdownNow();
+        }
+    }
+
+    /**
+     * Tests that a task name can be used only once.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateNamesAreRejected() {
+        graph.add("client", executor, () -> 1);
+        graph.add("client", executor, () -> 2);
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.Properties
+
+// Pure-JVM JMH benchmarks of the fleet data path. The platform-independent sources of the app
+// are compiled here directly, so the benchmarks measure exactly the code that ships.
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include(
+                "pl/creativesstudio/models/**",
+                "pl/creativesstudio/index/**",
+                "pl/creativesstudio/data/**",
+                "pl/creativesstudio/api/BusesJsonDecoder.java",
+                "pl/creativesstudio/map/MarkerReconciler.java",
+                "pl/creativesstudio/map/MarkerAnimator.java",
+                "pl/creativesstudio/map/FramePoster.java"
+            )
+            exclude("pl/creativesstudio/models/ApiResponseTest.java")
+        }
+    }
+}
+
+// MarkerReconciler uses the Maps model classes, which ship only as AARs; their classes.jar
+// is unpacked so that a plain JVM can load them. android.jar supplies the interfaces they implement.
+val androidAars: Configuration by configurations.creating {
+    isTransitive = false
+}
+
+val sdkDir: String? = rootProject.file("local.properties")
+    .takeIf { it.exists() }
+    ?.let { file -> Properties().apply { file.inputStream().use { load(it) } }.getProperty("sdk.dir") }
+    ?: System.getenv("ANDROID_HOME")
+
+val extractAndroidClasses by tasks.registering(Copy::class) {
+    into(layout.buildDirectory.dir("android-classes"))
+    androidAars.forEach { aar ->
+        from(zipTree(aar)) {
+            include("classes.jar")
+            rename { "${aar.nameWithoutExtension}.jar" }
+        }
+    }
+}
+
+dependencies {
+    androidAars(variantOf(libs.play.services.maps) { artifactType("aar") })
+    androidAars(variantOf(libs.play.services.basement) { artifactType("aar") })
+
+    implementation(libs.gson)
+    implementation(files("$sdkDir/platforms/android-34/android.jar"))
+    implementation(files(extractAndroidClasses.map { fileTree(it.destinationDir) }).builtBy(extractAndroidClasses))
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
@@ -0,0 +1,177 @@
+package pl.creativesstudio.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import pl.creativesstudio.index.SpatialGrid;
+import pl.creativesstudio.models.BusTime;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file FleetFixtures.java
+ * @brief Synthetic fleets shaped like the busestrams_get feed.
+ *
+ * Vehicles are spread over the Warsaw area, about one line per fifteen vehicles, with line
+ * names in all the forms the feed uses (trams, day and night buses, express and local lines).
+ * The generator is seeded, so every run of a benchmark sees the same fleet.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+final class FleetFixtures {
+    /**
+     * Seed of the generated fleets.
+     */
+    static final long SEED = 20241216L;
+    /**
+     * Southern edge of the generated positions, in degrees.
+     */
+    private static final double MIN_LAT = 52.10;
+    /**
+     * Northern edge of the generated positions, in degrees.
+     */
+    private static final double MAX_LAT = 52.37;
+    /**
+     * Western edge of the generated positions, in degrees.
+     */
+    private static final double MIN_LON = 20.85;
+    /**
+     * Eastern edge of the generated positions, in degrees.
+     */
+    private static final double MAX_LON = 21.27;
+    /**
+     * Report time of the first vehicle, in milliseconds since the epoch.
+     */
+    private static final long BASE_TIME = 1_734_339_600_000L;
+
+    /**
+     * Prevents instantiation.
+     */
+    private FleetFixtures() {
+    }
+
+    /**
+     * Returns the lines of a fleet of the given size.
+     *
+     * @param vehicles Number of vehicles of the fleet.
+     * @return Distinct line names, in generation order.
+     */
+    static List<String> lines(int vehicles) {
+        int count = Math.max(50, vehicles / 15);
+        Set<String> lines = new LinkedHashSet<>(count * 2);
+        for (int i = 0; lines.size() < count; i++) {
+            switch (i % 5) {
+                case 0:
+                    lines.add(Integer.toString(1 + i / 5));
+                    break;
+                case 1:
+                case 2:
+                    lines.add(Integer.toString(100 + i));
+                    break;
+                case 3:
+                    lines.add(String.format(Locale.ROOT, "N%02d", 1 + i / 5));
+                    break;
+                default:
+                    lines.add((i / 5 % 2 == 0 ? "E-" : "L-") + (1 + i / 10));
+                    break;
+            }
+        }
+        return new ArrayList<>(lines);
+    }
+
+    /**
+     * Builds a fleet snapshot.
+     *
+     * @param vehicles Number of vehicles.
+     * @param dictionary Dictionary of the snapshot.
+     * @return The snapshot.
+     */
+    static FleetSnapshot snapshot(int vehicles, FleetDictionary dictionary) {
+        List<String> lines = lines(vehicles);
+        Random random = new Random(SEED);
+        FleetSnapshot.Builder builder = new FleetSnapshot.Builder(dictionary, vehicles);
+        for (int i = 0; i < vehicles; i++) {
+            builder.add(lines.get(random.nextInt(lines.size())),
+                    MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT),
+                    MIN_LON + random.nextDouble() * (MAX_LON - MIN_LON),
+                    BASE_TIME + random.nextInt(60_000),
+                    Integer.toString(1000 + i),
+                    Integer.toString(1 + random.nextInt(30)));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds the next poll of a fleet, in which a part of the vehicles moved.
+     *
+     * @param previous The previous poll.
+     * @param movedShare Share of the vehicles that moved, from 0 to 1.
+     * @return A snapshot sharing the dictionary of {@code previous}.
+     */
+    static FleetSnapshot moved(FleetSnapshot previous, double movedShare) {
+        Random random = new Random(SEED + 1);
+        FleetSnapshot.Builder builder = new FleetSnapshot.Builder(previous.getDictionary(), previous.size());
+        for (int i = 0; i < previous.size(); i++) {
+            int latE6 = previous.getLatE6(i);
+            int lonE6 = previous.getLonE6(i);
+            long time = previous.getTimeMillis(i);
+            if (random.nextDouble() < movedShare) {
+                // Przesunięcie o kilkadziesiąt metrów, jak między dwoma odczytami
+                latE6 += random.nextInt(600) - 300;
+                lonE6 += random.nextInt(900) - 450;
+                time += 10_000;
+            }
+            builder.add(previous.getLineId(i), latE6, lonE6, time,
+                    previous.getVehicleId(i), previous.getBrigadeId(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Serializes a snapshot as a busestrams_get response.
+     *
+     * @param snapshot The snapshot.
+     * @return The response body.
+     */
+    static String json(FleetSnapshot snapshot) {
+        StringBuilder json = new StringBuilder(snapshot.size() * 130);
+        json.append("{\"result\":[");
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"Lines\":\"").append(snapshot.getLine(i))
+                    .append("\",\"Lon\":").append(snapshot.getLon(i))
+                    .append(",\"VehicleNumber\":\"").append(snapshot.getVehicleNumber(i))
+                    .append("\",\"Time\":\"").append(BusTime.format(snapshot.getTimeMillis(i)))
+                    .append("\",\"Lat\":").append(snapshot.getLat(i))
+                    .append(",\"Brigade\":\"").append(snapshot.getBrigade(i))
+                    .append("\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Returns a viewport around the centre of Warsaw, as seen at the given zoom on a phone.
+     *
+     * @param zoom Zoom level of the map.
+     * @return South, west, north and east edges, in microdegrees.
+     */
+    static int[] viewport(float zoom) {
+        double scale = Math.pow(2, 14 - zoom);
+        int halfLat = (int) (15_000 * scale);
+        int halfLon = (int) (12_000 * scale);
+        int centerLat = 52_231_000;
+        int centerLon = 21_010_000;
+        return new int[] {
+                Math.max(SpatialGrid.WARSAW_MIN_LAT_E6, centerLat - halfLat),
+                Math.max(SpatialGrid.WARSAW_MIN_LON_E6, centerLon - halfLon),
+                Math.min(SpatialGrid.WARSAW_MAX_LAT_E6, centerLat + halfLat),
+                Math.min(SpatialGrid.WARSAW_MAX_LON_E6, centerLon + halfLon)};
+    }
+}
@@ -0,0 +1,82 @@
+package pl.creativesstudio.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import pl.creativesstudio.api.BusesJsonDecoder;
+import pl.creativesstudio.models.ApiResponse;
+import pl.creativesstudio.models.FleetDictionary;
+
+/**
+ * @file JsonDecodingBenchmark.java
+ * @brief Measures decoding of busestrams_get responses into snapshots.
+ *
+ * The warm case reuses one decoder, as the app does between polls, so its dictionary already
+ * holds every line and vehicle number; the cold case starts from an empty dictionary.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonDecodingBenchmark {
+    /**
+     * Number of vehicles in the response.
+     */
+    @Param({"1000", "5000", "20000"})
+    public int vehicles;
+
+    /**
+     * The response body.
+     */
+    private String body;
+    /**
+     * Decoder reused between invocations.
+     */
+    private BusesJsonDecoder warmDecoder;
+
+    /**
+     * Generates the response and warms the reused decoder.
+     *
+     * @throws IOException If the generated body cannot be decoded.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        body = FleetFixtures.json(FleetFixtures.snapshot(vehicles, new FleetDictionary()));
+        warmDecoder = new BusesJsonDecoder();
+        warmDecoder.decode(new StringReader(body));
+    }
+
+    /**
+     * Decodes with a decoder that has seen the fleet before.
+     *
+     * @return The decoded response.
+     * @throws IOException Never, the body is in memory.
+     */
+    @Benchmark
+    public ApiResponse decodeWarm() throws IOException {
+        return warmDecoder.decode(new StringReader(body));
+    }
+
+    /**
+     * Decodes with a new decoder.
+     *
+     * @return The decoded response.
+     * @throws IOException Never, the body is in memory.
+     */
+    @Benchmark
+    public ApiResponse decodeCold() throws IOException {
+        return new BusesJsonDecoder().decode(new StringReader(body));
+    }
+}
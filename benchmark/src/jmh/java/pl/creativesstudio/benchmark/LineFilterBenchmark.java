@@ -0,0 +1,83 @@
+package pl.creativesstudio.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import pl.creativesstudio.index.LineIndex;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file LineFilterBenchmark.java
+ * @brief Measures finding the vehicles of one line.
+ *
+ * Covers building the line index, done once per poll, and the lookup behind
+ * {@code MainActivity.filterAndZoomToLine}.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LineFilterBenchmark {
+    /**
+     * Number of vehicles of the fleet.
+     */
+    @Param({"1000", "5000", "20000"})
+    public int vehicles;
+
+    /**
+     * The fleet.
+     */
+    private FleetSnapshot snapshot;
+    /**
+     * The line looked up.
+     */
+    private String line;
+    /**
+     * Array receiving the found vehicle indices.
+     */
+    private int[] out;
+
+    /**
+     * Generates the fleet and builds its index.
+     */
+    @Setup
+    public void setUp() {
+        snapshot = FleetFixtures.snapshot(vehicles, new FleetDictionary());
+        snapshot.getLineIndex();
+        line = snapshot.getLine(0);
+        out = new int[vehicles];
+    }
+
+    /**
+     * Builds the line index of the fleet.
+     *
+     * @return The index.
+     */
+    @Benchmark
+    public LineIndex buildIndex() {
+        return new LineIndex(snapshot);
+    }
+
+    /**
+     * Finds the vehicles of a line.
+     *
+     * @return The number of vehicles found.
+     */
+    @Benchmark
+    public int filterLine() {
+        LineIndex lineIndex = snapshot.getLineIndex();
+        int slot = lineIndex.findSlot(snapshot.getDictionary().find(line));
+        return slot == LineIndex.NOT_FOUND ? 0 : lineIndex.copyVehicles(slot, out);
+    }
+}
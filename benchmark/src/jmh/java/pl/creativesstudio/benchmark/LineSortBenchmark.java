@@ -0,0 +1,63 @@
+package pl.creativesstudio.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import pl.creativesstudio.models.LineKey;
+
+/**
+ * @file LineSortBenchmark.java
+ * @brief Measures sorting of the line list shown in the line picker.
+ *
+ * Runs {@link LineKey#sort}, which {@code MainActivity.sortBusLines} delegates to, on the
+ * shuffled lines of a fleet.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LineSortBenchmark {
+    /**
+     * Number of vehicles of the fleet the lines come from.
+     */
+    @Param({"1000", "5000", "20000"})
+    public int vehicles;
+
+    /**
+     * The lines, in random order.
+     */
+    private List<String> lines;
+
+    /**
+     * Generates and shuffles the lines.
+     */
+    @Setup
+    public void setUp() {
+        lines = new ArrayList<>(FleetFixtures.lines(vehicles));
+        Collections.shuffle(lines, new Random(FleetFixtures.SEED));
+    }
+
+    /**
+     * Sorts the lines.
+     *
+     * @return The sorted lines.
+     */
+    @Benchmark
+    public List<String> sortBusLines() {
+        return LineKey.sort(lines);
+    }
+}
@@ -0,0 +1,91 @@
+package pl.creativesstudio.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import pl.creativesstudio.map.MarkerReconciler;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file MarkerDiffBenchmark.java
+ * @brief Measures the work that decides which markers change between two polls.
+ *
+ * Covers the comparison of consecutive snapshots, which decides whether the markers are
+ * updated at all, and the marker pass prepared off the main thread: titles, positions and
+ * the priority order. The map calls themselves need a device and are not measured here.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MarkerDiffBenchmark {
+    /**
+     * Number of vehicles of the fleet.
+     */
+    @Param({"1000", "5000", "20000"})
+    public int vehicles;
+
+    /**
+     * The previous poll.
+     */
+    private FleetSnapshot previous;
+    /**
+     * The next poll, in which a tenth of the vehicles moved.
+     */
+    private FleetSnapshot next;
+    /**
+     * Indices of all vehicles.
+     */
+    private int[] indices;
+    /**
+     * Reconciler preparing the passes; it never touches the map here.
+     */
+    private MarkerReconciler reconciler;
+
+    /**
+     * Generates both polls.
+     */
+    @Setup
+    public void setUp() {
+        previous = FleetFixtures.snapshot(vehicles, new FleetDictionary());
+        next = FleetFixtures.moved(previous, 0.1);
+        indices = new int[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            indices[i] = i;
+        }
+        reconciler = new MarkerReconciler(null, line -> null);
+    }
+
+    /**
+     * Compares two consecutive polls.
+     *
+     * @return True if nothing changed.
+     */
+    @Benchmark
+    public boolean compareSnapshots() {
+        return next.hasSameReports(previous);
+    }
+
+    /**
+     * Prepares and orders the marker pass of a poll.
+     *
+     * @return The prepared pass.
+     */
+    @Benchmark
+    public MarkerReconciler.Prepared preparePass() {
+        MarkerReconciler.Prepared pass = reconciler.prepare(next, indices, vehicles);
+        pass.prioritize(52_231_000, 21_010_000, null);
+        return pass;
+    }
+}
@@ -0,0 +1,150 @@
+package pl.creativesstudio.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import pl.creativesstudio.index.SpatialGrid;
+import pl.creativesstudio.models.FleetDictionary;
+import pl.creativesstudio.models.FleetSnapshot;
+
+/**
+ * @file ViewportFilterBenchmark.java
+ * @brief Measures finding the vehicles within the visible map bounds.
+ *
+ * Covers building the spatial index, done once per poll on the fetch thread, and the query
+ * run on every camera move, for the marker zoom and for a city-wide view. The same viewports
+ * are also filtered by a linear scan over the whole fleet, the way the map did before the
+ * index, as the baseline the index is compared with.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ViewportFilterBenchmark {
+    /**
+     * Number of vehicles of the fleet.
+     */
+    @Param({"2000", "10000", "50000"})
+    public int vehicles;
+
+    /**
+     * The fleet.
+     */
+    private FleetSnapshot snapshot;
+    /**
+     * Vehicle positions, for building the index.
+     */
+    private int[] latE6;
+    /**
+     * Vehicle positions, for building the index.
+     */
+    private int[] lonE6;
+    /**
+     * Viewport at the marker zoom.
+     */
+    private int[] street;
+    /**
+     * Viewport covering the whole city.
+     */
+    private int[] city;
+    /**
+     * Array receiving the found vehicle indices.
+     */
+    private int[] out;
+
+    /**
+     * Generates the fleet and builds its index.
+     */
+    @Setup
+    public void setUp() {
+        snapshot = FleetFixtures.snapshot(vehicles, new FleetDictionary());
+        snapshot.getSpatialIndex();
+        latE6 = new int[vehicles];
+        lonE6 = new int[vehicles];
+        for (int i = 0; i < vehicles; i++) {
+            latE6[i] = snapshot.getLatE6(i);
+            lonE6[i] = snapshot.getLonE6(i);
+        }
+        street = FleetFixtures.viewport(14f);
+        city = FleetFixtures.viewport(11f);
+        out = new int[vehicles];
+    }
+
+    /**
+     * Builds the spatial index of the fleet.
+     *
+     * @return The index.
+     */
+    @Benchmark
+    public SpatialGrid buildIndex() {
+        return SpatialGrid.build(latE6, lonE6, vehicles);
+    }
+
+    /**
+     * Finds the vehicles in a viewport at the marker zoom.
+     *
+     * @return The number of vehicles found.
+     */
+    @Benchmark
+    public int filterStreet() {
+        return snapshot.getSpatialIndex().query(street[0], street[1], street[2], street[3], out);
+    }
+
+    /**
+     * Finds the vehicles in a city-wide viewport.
+     *
+     * @return The number of vehicles found.
+     */
+    @Benchmark
+    public int filterCity() {
+        return snapshot.getSpatialIndex().query(city[0], city[1], city[2], city[3], out);
+    }
+
+    /**
+     * Finds the vehicles in a viewport at the marker zoom by checking every vehicle.
+     *
+     * @return The number of vehicles found.
+     */
+    @Benchmark
+    public int scanStreet() {
+        return scan(street);
+    }
+
+    /**
+     * Finds the vehicles in a city-wide viewport by checking every vehicle.
+     *
+     * @return The number of vehicles found.
+     */
+    @Benchmark
+    public int scanCity() {
+        return scan(city);
+    }
+
+    /**
+     * Checks the position of every vehicle against a viewport.
+     *
+     * @param viewport South, west, north and east edges, in microdegrees.
+     * @return The number of vehicles found.
+     */
+    private int scan(int[] viewport) {
+        int count = 0;
+        for (int i = 0; i < vehicles; i++) {
+            int lat = snapshot.getLatE6(i);
+            int lon = snapshot.getLonE6(i);
+            if (lat >= viewport[0] && lat <= viewport[2] && lon >= viewport[1] && lon <= viewport[3]) {
+                out[count++] = i;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,49 @@
+// Macrobenchmarks of the app: cold and warm startup, frame timing of the map, and the
+// baseline profile of these journeys. They run against the benchmark build type of :app,
+// fed by the replay server:
+//   ./gradlew :replay:run --args="feed.tmbf --step" &
+//   adb reverse tcp:8080 tcp:8080
+//   ./gradlew :macrobenchmark:connectedBenchmarkAndroidTest
+plugins {
+    alias(libs.plugins.android.test)
+}
+
+android {
+    namespace = "pl.creativesstudio.macrobenchmark"
+    compileSdk = 34
+
+    defaultConfig {
+        minSdk = 24
+        targetSdk = 34
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+    }
+
+    buildTypes {
+        create("benchmark") {
+            isDebuggable = true
+            signingConfig = signingConfigs.getByName("debug")
+            matchingFallbacks += listOf("release")
+        }
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_1_8
+        targetCompatibility = JavaVersion.VERSION_1_8
+    }
+
+    targetProjectPath = ":app"
+    experimentalProperties["android.experimental.self-instrumenting"] = true
+}
+
+dependencies {
+    implementation(libs.ext.junit)
+    implementation(libs.uiautomator)
+    implementation(libs.benchmark.macro.junit4)
+}
+
+androidComponents {
+    beforeVariants(selector().all()) {
+        it.enable = it.buildType == "benchmark"
+    }
+}
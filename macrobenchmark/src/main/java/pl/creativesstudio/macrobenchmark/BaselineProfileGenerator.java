@@ -0,0 +1,64 @@
+package pl.creativesstudio.macrobenchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * @file BaselineProfileGenerator.java
+ * @brief Generates the baseline profile of the app from the startup and map journeys.
+ *
+ * Requires a device with Android 13 or newer, or a rooted one. The generated profile is
+ * written to the output directory of the instrumentation
+ * ({@code macrobenchmark/build/outputs/connected_android_test_additional_output/}) and has
+ * to be copied to {@code app/src/main/baseline-prof.txt} by hand, from where it is compiled
+ * into the app and installed by profileinstaller. The tree does not contain a generated
+ * profile yet.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+    /**
+     * Rule collecting the profile.
+     */
+    @Rule
+    public BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    /**
+     * Checks that the replay server is reachable.
+     */
+    @Before
+    public void setUp() {
+        MapJourney.requireReplayServer();
+    }
+
+    /**
+     * Collects the classes and methods used by startup, the first markers and the marker path
+     * while panning and zooming.
+     */
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(
+                MapJourney.PACKAGE_NAME,
+                15,
+                3,
+                null,
+                true,
+                false,
+                rule -> true,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    MapJourney.panAndZoom(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
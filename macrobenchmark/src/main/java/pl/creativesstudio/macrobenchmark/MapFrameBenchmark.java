@@ -0,0 +1,106 @@
+package pl.creativesstudio.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.FrameTimingMetric;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * @file MapFrameBenchmark.java
+ * @brief Measures frame timing while panning and zooming the map.
+ *
+ * Besides the frame durations, the total time of the trace sections of the marker path is
+ * reported, so a regression can be attributed to filtering, icon rendering or the marker
+ * pipeline.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@RunWith(AndroidJUnit4.class)
+public class MapFrameBenchmark {
+    /**
+     * Number of measured journeys.
+     */
+    private static final int ITERATIONS = 5;
+    /**
+     * Trace sections of the marker path, as named by the app.
+     */
+    private static final String[] SECTIONS = {
+            "TrackMyBus.filterBusesWithinBounds",
+            "TrackMyBus.displayBusesOnMap",
+            "TrackMyBus.createCustomMarker",
+            "TrackMyBus.loadBusData"
+    };
+
+    /**
+     * Rule running the measured journeys.
+     */
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    /**
+     * Checks that the replay server is reachable.
+     */
+    @Before
+    public void setUp() {
+        MapJourney.requireReplayServer();
+    }
+
+    /**
+     * Measures panning and zooming the map of the app compiled without any profile.
+     */
+    @Test
+    public void panAndZoomNoCompilation() {
+        panAndZoom(new CompilationMode.None());
+    }
+
+    /**
+     * Measures panning and zooming the map of the app compiled with its baseline profile.
+     */
+    @Test
+    public void panAndZoomBaselineProfile() {
+        panAndZoom(new CompilationMode.Partial(BaselineProfileMode.Require, 0));
+    }
+
+    /**
+     * Starts the app and measures the pan and zoom journey.
+     *
+     * @param compilationMode How the app is compiled before measuring.
+     */
+    private void panAndZoom(CompilationMode compilationMode) {
+        List<Metric> metrics = new ArrayList<>();
+        metrics.add(new FrameTimingMetric());
+        for (String section : SECTIONS) {
+            metrics.add(new TraceSectionMetric(section, TraceSectionMetric.Mode.Sum.INSTANCE, section, true));
+        }
+        benchmarkRule.measureRepeated(
+                MapJourney.PACKAGE_NAME,
+                metrics,
+                compilationMode,
+                null,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    scope.startActivityAndWait();
+                    MapJourney.waitForMarkers(scope);
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    MapJourney.panAndZoom(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
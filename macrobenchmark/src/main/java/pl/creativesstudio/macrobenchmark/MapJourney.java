@@ -0,0 +1,120 @@
+package pl.creativesstudio.macrobenchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * @file MapJourney.java
+ * @brief User journeys on the map shared by the benchmarks and the baseline profile.
+ *
+ * The app under test is the benchmark build type, which downloads the fleet from the replay
+ * server on port {@link #REPLAY_PORT} of the device; {@code adb reverse} forwards it to the
+ * server running on the host, so every run sees the same recorded traffic.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+final class MapJourney {
+    /**
+     * Package name of the app under test.
+     */
+    static final String PACKAGE_NAME = "pl.creativesstudio";
+    /**
+     * Port of the replay server, as seen from the device.
+     */
+    static final int REPLAY_PORT = 8080;
+    /**
+     * Time to wait for the map to appear, in milliseconds.
+     */
+    private static final long MAP_TIMEOUT = 10_000;
+    /**
+     * Time to wait for the first markers, in milliseconds.
+     */
+    private static final long MARKERS_TIMEOUT = 15_000;
+    /**
+     * Prefix of the marker titles, exposed by the map as content descriptions.
+     */
+    private static final String MARKER_TITLE_PREFIX = "Linia: ";
+    /**
+     * Number of pan and zoom gestures of a journey.
+     */
+    private static final int GESTURES = 3;
+
+    /**
+     * Prevents instantiation.
+     */
+    private MapJourney() {
+    }
+
+    /**
+     * Checks that the replay server is reachable, so that a missing server fails the run
+     * at once instead of measuring error handling.
+     *
+     * @throws IllegalStateException If the server is not reachable.
+     */
+    static void requireReplayServer() {
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress("127.0.0.1", REPLAY_PORT), 1000);
+        } catch (IOException e) {
+            throw new IllegalStateException("Replay server not reachable on port " + REPLAY_PORT
+                    + "; run ./gradlew :replay:run --args=\"<archive> --step\" and adb reverse tcp:"
+                    + REPLAY_PORT + " tcp:" + REPLAY_PORT, e);
+        }
+    }
+
+    /**
+     * Waits until the map is shown and the first markers are on it.
+     *
+     * @param scope The benchmark scope.
+     * @return The map view.
+     * @throws IllegalStateException If the map or the markers do not appear in time.
+     */
+    static UiObject2 waitForMarkers(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 map = device.wait(Until.findObject(By.res(PACKAGE_NAME, "id_map")), MAP_TIMEOUT);
+        if (map == null) {
+            throw new IllegalStateException("Map not shown within " + MAP_TIMEOUT + " ms");
+        }
+        Boolean markers = device.wait(Until.hasObject(By.descStartsWith(MARKER_TITLE_PREFIX)), MARKERS_TIMEOUT);
+        if (markers == null || !markers) {
+            // Bez markerów pomiar obejmowałby tylko czas oczekiwania
+            throw new IllegalStateException("No markers shown within " + MARKERS_TIMEOUT + " ms");
+        }
+        return map;
+    }
+
+    /**
+     * Pans the map in every direction and zooms it in and out, waiting for the markers of
+     * every new viewport.
+     *
+     * @param scope The benchmark scope.
+     */
+    static void panAndZoom(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        UiObject2 map = waitForMarkers(scope);
+        // Margines, aby gesty nie zaczynały się na krawędzi ekranu (gesty systemowe)
+        map.setGestureMargin(device.getDisplayWidth() / 5);
+        for (int i = 0; i < GESTURES; i++) {
+            map.swipe(Direction.LEFT, 0.6f);
+            device.waitForIdle();
+            map.swipe(Direction.UP, 0.6f);
+            device.waitForIdle();
+            map.swipe(Direction.RIGHT, 0.6f);
+            device.waitForIdle();
+            map.swipe(Direction.DOWN, 0.6f);
+            device.waitForIdle();
+            map.pinchClose(0.6f);
+            device.waitForIdle();
+            map.pinchOpen(0.6f);
+            device.waitForIdle();
+        }
+    }
+}
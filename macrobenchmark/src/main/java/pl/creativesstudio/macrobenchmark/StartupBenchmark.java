@@ -0,0 +1,100 @@
+package pl.creativesstudio.macrobenchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * @file StartupBenchmark.java
+ * @brief Measures the time to the first frame and to the first markers on startup.
+ *
+ * Cold startup is measured without compilation and with the baseline profile, so the
+ * profile's gain shows up in the results; warm startup uses the default compilation.
+ * Until a profile generated by {@link BaselineProfileGenerator} is copied to
+ * {@code app/src/main/baseline-prof.txt}, the profile run compiles without it and matches
+ * the run without compilation.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    /**
+     * Number of measured launches of every benchmark.
+     */
+    private static final int ITERATIONS = 10;
+
+    /**
+     * Rule running the measured launches.
+     */
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    /**
+     * Checks that the replay server is reachable.
+     */
+    @Before
+    public void setUp() {
+        MapJourney.requireReplayServer();
+    }
+
+    /**
+     * Measures a cold startup of the app compiled without any profile.
+     */
+    @Test
+    public void startupColdNoCompilation() {
+        startup(new CompilationMode.None(), StartupMode.COLD);
+    }
+
+    /**
+     * Measures a cold startup of the app compiled with its baseline profile, if the APK has one.
+     */
+    @Test
+    public void startupColdBaselineProfile() {
+        startup(new CompilationMode.Partial(BaselineProfileMode.UseIfAvailable, 0), StartupMode.COLD);
+    }
+
+    /**
+     * Measures a warm startup, with the process alive and the activity recreated.
+     */
+    @Test
+    public void startupWarm() {
+        startup(CompilationMode.DEFAULT, StartupMode.WARM);
+    }
+
+    /**
+     * Launches the app repeatedly, each time until the first markers are on the map.
+     *
+     * @param compilationMode How the app is compiled before measuring.
+     * @param startupMode The kind of startup.
+     */
+    private void startup(CompilationMode compilationMode, StartupMode startupMode) {
+        benchmarkRule.measureRepeated(
+                MapJourney.PACKAGE_NAME,
+                Collections.singletonList(new StartupTimingMetric()),
+                compilationMode,
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    MapJourney.waitForMarkers(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,33 @@
+// Local server replaying recorded busestrams_get responses, for testing the app offline.
+plugins {
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+sourceSets {
+    main {
+        java {
+            // Format archiwum jest współdzielony z aplikacją, która je nagrywa
+            srcDir("../app/src/main/java")
+            include("pl/creativesstudio/api/FeedArchive.java", "pl/creativesstudio/replay/**")
+        }
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    implementation(libs.mockwebserver)
+    implementation(libs.gson)
+    testImplementation(libs.junit)
+}
+
+application {
+    mainClass.set("pl.creativesstudio.replay.FeedReplayServer")
+}
@@ -0,0 +1,332 @@
+package pl.creativesstudio.replay;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+import pl.creativesstudio.api.FeedArchive;
+
+/**
+ * @file FeedReplayServer.java
+ * @brief Local busestrams_get server answering with the responses of a {@link FeedArchive}.
+ *
+ * A request is answered with the record of the same feed (and line) that was current at
+ * the replay position. The position runs from the first record at real time or N times
+ * faster; in step mode every request of a feed gets the next record instead, so a replay
+ * gives the same sequence of responses on every run. Line requests that were not recorded
+ * are answered from the whole feed, filtered to the line.
+ *
+ * Run with {@code ./gradlew :replay:run --args="archive.tmbf --speed 4 --port 8080"} and
+ * start a debug build with the base URL {@code http://10.0.2.2:8080/}.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public final class FeedReplayServer {
+    /**
+     * Speed selecting step mode.
+     */
+    public static final double STEP = 0;
+    /**
+     * Port used when none is given.
+     */
+    static final int DEFAULT_PORT = 8080;
+
+    /**
+     * @interface Clock
+     * @brief Source of the current time.
+     */
+    interface Clock {
+        /**
+         * Returns the current time.
+         *
+         * @return The time, in milliseconds.
+         */
+        long millis();
+    }
+
+    /**
+     * Records of every request key, in receive order.
+     */
+    private final Map<String, List<FeedArchive.Record>> recordsByKey = new HashMap<>();
+    /**
+     * Receive time of the first record, in epoch milliseconds.
+     */
+    private final long firstMillis;
+    /**
+     * Replay speed, or {@link #STEP}.
+     */
+    private final double speed;
+    /**
+     * Source of the current time.
+     */
+    private final Clock clock;
+    /**
+     * Position of the next record of every requested key in step mode.
+     */
+    private final Map<String, Integer> nextStep = new HashMap<>();
+    /**
+     * The underlying server.
+     */
+    private final MockWebServer server = new MockWebServer();
+    /**
+     * Time the replay started, in milliseconds of the clock.
+     */
+    private long startedAtMillis;
+    /**
+     * Number of requests answered with a record.
+     */
+    private final AtomicLong served = new AtomicLong();
+
+    /**
+     * Constructs a new FeedReplayServer running on the system clock.
+     *
+     * @param records The recorded responses.
+     * @param speed Replay speed, 1 for real time, or {@link #STEP}.
+     */
+    public FeedReplayServer(List<FeedArchive.Record> records, double speed) {
+        this(records, speed, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructs a new FeedReplayServer.
+     *
+     * @param records The recorded responses.
+     * @param speed Replay speed, 1 for real time, or {@link #STEP}.
+     * @param clock Source of the current time.
+     */
+    FeedReplayServer(List<FeedArchive.Record> records, double speed, Clock clock) {
+        if (records.isEmpty()) {
+            throw new IllegalArgumentException("The archive holds no responses");
+        }
+        if (speed < 0) {
+            throw new IllegalArgumentException("Negative speed: " + speed);
+        }
+        long first = Long.MAX_VALUE;
+        for (FeedArchive.Record record : records) {
+            List<FeedArchive.Record> list = recordsByKey.get(record.getKey());
+            if (list == null) {
+                list = new ArrayList<>();
+                recordsByKey.put(record.getKey(), list);
+            }
+            list.add(record);
+            first = Math.min(first, record.getReceivedAtMillis());
+        }
+        this.firstMillis = first;
+        this.speed = speed;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts serving; the replay position starts at the first record.
+     *
+     * @param port Port to listen on, or 0 for any free port.
+     * @throws IOException If the server cannot be started.
+     */
+    public void start(int port) throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return answer(request);
+            }
+        });
+        server.start(port);
+        synchronized (this) {
+            startedAtMillis = clock.millis();
+        }
+    }
+
+    /**
+     * Returns the base URL to point the API client at.
+     *
+     * @return The base URL.
+     */
+    public HttpUrl url() {
+        return server.url("/");
+    }
+
+    /**
+     * Stops serving.
+     *
+     * @throws IOException If the server cannot be stopped.
+     */
+    public void shutdown() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Returns the number of requests answered with a record.
+     *
+     * @return The count.
+     */
+    public long getServedCount() {
+        return served.get();
+    }
+
+    /**
+     * Answers a request with the matching record.
+     *
+     * @param request The request.
+     * @return The response; 404 if no record matches the request.
+     */
+    synchronized MockResponse answer(RecordedRequest request) {
+        HttpUrl url = request.getRequestUrl();
+        String type = url != null ? url.queryParameter("type") : null;
+        if (type == null) {
+            return new MockResponse().setResponseCode(404);
+        }
+        String line = url.queryParameter("line");
+        String key = FeedArchive.key(type, line);
+
+        try {
+            byte[] body;
+            FeedArchive.Record record = pick(key, key);
+            if (record != null) {
+                body = record.getBody();
+            } else if (line != null && (record = pick(FeedArchive.key(type, null), key)) != null) {
+                body = filterLine(record.getBody(), line);
+            } else {
+                return new MockResponse().setResponseCode(404);
+            }
+            served.incrementAndGet();
+            return respond(body, request.getHeader("Accept-Encoding"));
+        } catch (IOException e) {
+            return new MockResponse().setResponseCode(500);
+        }
+    }
+
+    /**
+     * Returns the record of a key at the current replay position.
+     *
+     * @param key Key of the records to choose from.
+     * @param stepKey Key whose step counter is advanced in step mode.
+     * @return The record, or null if the key was not recorded.
+     */
+    private FeedArchive.Record pick(String key, String stepKey) {
+        List<FeedArchive.Record> records = recordsByKey.get(key);
+        if (records == null) {
+            return null;
+        }
+        if (speed == STEP) {
+            Integer step = nextStep.get(stepKey);
+            int position = step == null ? 0 : step;
+            nextStep.put(stepKey, position + 1);
+            return records.get(Math.min(position, records.size() - 1));
+        }
+
+        long position = firstMillis + (long) ((clock.millis() - startedAtMillis) * speed);
+        int low = 0;
+        int high = records.size() - 1;
+        // Ostatni rekord odebrany nie później niż bieżąca pozycja; przed pierwszym - pierwszy
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (records.get(middle).getReceivedAtMillis() <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return records.get(low);
+    }
+
+    /**
+     * Keeps only the vehicles of one line in a response body.
+     *
+     * @param body The response body of a whole feed.
+     * @param line The line to keep.
+     * @return The filtered body.
+     */
+    static byte[] filterLine(byte[] body, String line) {
+        JsonObject response = new JsonParser().parse(new String(body, StandardCharsets.UTF_8)).getAsJsonObject();
+        JsonElement result = response.get("result");
+        if (result != null && result.isJsonArray()) {
+            JsonArray kept = new JsonArray();
+            for (JsonElement vehicle : result.getAsJsonArray()) {
+                JsonElement lines = vehicle.isJsonObject() ? vehicle.getAsJsonObject().get("Lines") : null;
+                if (lines != null && line.equals(lines.getAsString())) {
+                    kept.add(vehicle);
+                }
+            }
+            response.add("result", kept);
+        }
+        return response.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds a response, gzip-compressed if the client accepts it, as the real API does.
+     *
+     * @param body The response body.
+     * @param acceptEncoding Value of the Accept-Encoding header, or null.
+     * @return The response.
+     * @throws IOException If the body cannot be compressed.
+     */
+    private static MockResponse respond(byte[] body, String acceptEncoding) throws IOException {
+        MockResponse response = new MockResponse().setHeader("Content-Type", "application/json; charset=utf-8");
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            Buffer compressed = new Buffer();
+            try (BufferedSink sink = Okio.buffer(new GzipSink(compressed))) {
+                sink.write(body);
+            }
+            return response.setHeader("Content-Encoding", "gzip").setBody(compressed);
+        }
+        return response.setBody(new Buffer().write(body));
+    }
+
+    /**
+     * Replays an archive until the process is stopped.
+     *
+     * Arguments: the archive file, then optionally {@code --speed N} (default 1),
+     * {@code --step} and {@code --port P} (default 8080).
+     *
+     * @param args The command line arguments.
+     * @throws IOException If the archive cannot be read or the server cannot be started.
+     * @throws InterruptedException If the main thread is interrupted while serving.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.err.println("Użycie: FeedReplayServer <archiwum> [--speed N | --step] [--port P]");
+            System.exit(2);
+        }
+        double speed = 1;
+        int port = DEFAULT_PORT;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--step")) {
+                speed = STEP;
+            } else if (args[i].equals("--speed") && i + 1 < args.length) {
+                speed = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("--port") && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                System.err.println("Nieznany argument: " + args[i]);
+                System.exit(2);
+            }
+        }
+
+        List<FeedArchive.Record> records = new FeedArchive(new File(args[0])).readAll();
+        FeedReplayServer replay = new FeedReplayServer(records, speed);
+        replay.start(port);
+        System.out.println("Odtwarzanie " + records.size() + " odpowiedzi "
+                + (speed == STEP ? "krokowo" : "z prędkością " + speed + "x") + " pod adresem " + replay.url());
+        // Wątki serwera nie podtrzymują procesu; wątek główny czeka do jego zatrzymania
+        Thread.currentThread().join();
+    }
+}
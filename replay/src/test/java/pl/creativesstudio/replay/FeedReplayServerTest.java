@@ -0,0 +1,196 @@
+package pl.creativesstudio.replay;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import pl.creativesstudio.api.FeedArchive;
+
+import static org.junit.Assert.*;
+
+/**
+ * @file FeedReplayServerTest.java
+ * @brief Unit tests for the FeedReplayServer class.
+ *
+ * Replays a small archive of three polls of the bus feed and checks which poll every
+ * request receives.
+ *
+ * @version 1.0
+ * @since 2024-12-16
+ */
+public class FeedReplayServerTest {
+    /**
+     * Receive time of the first poll, in epoch milliseconds.
+     */
+    private static final long FIRST = 1_734_339_600_000L;
+
+    /**
+     * Folder holding the archive.
+     */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /**
+     * Records of the archive.
+     */
+    private List<FeedArchive.Record> records;
+    /**
+     * Current time of the fake clock, in milliseconds.
+     */
+    private long now;
+    /**
+     * Server being tested, or null.
+     */
+    private FeedReplayServer replay;
+    /**
+     * Client sending the requests.
+     */
+    private final OkHttpClient client = new OkHttpClient();
+
+    /**
+     * Records three polls of the bus feed, ten seconds apart.
+     *
+     * @throws IOException If the archive cannot be written.
+     */
+    @Before
+    public void setUp() throws IOException {
+        FeedArchive archive = new FeedArchive(new File(folder.getRoot(), "feed.tmbf"));
+        for (int poll = 0; poll < 3; poll++) {
+            archive.append(FIRST + poll * 10_000L, FeedArchive.key("1", null), body(poll));
+        }
+        records = archive.readAll();
+    }
+
+    /**
+     * Stops the server.
+     *
+     * @throws IOException If the server cannot be stopped.
+     */
+    @After
+    public void tearDown() throws IOException {
+        if (replay != null) {
+            replay.shutdown();
+        }
+    }
+
+    /**
+     * Tests that the replay position runs at the given speed and stops at the last poll.
+     *
+     * @throws IOException If a request fails.
+     */
+    @Test
+    public void testPositionFollowsSpeed() throws IOException {
+        start(2);
+
+        assertTrue(get("type=1").contains("10:00:00"));
+        now += 6_000;
+        assertTrue(get("type=1").contains("10:00:10"));
+        now += 100_000;
+        assertTrue(get("type=1").contains("10:00:20"));
+    }
+
+    /**
+     * Tests that step mode serves the polls in order, whatever the time.
+     *
+     * @throws IOException If a request fails.
+     */
+    @Test
+    public void testStepModeServesPollsInOrder() throws IOException {
+        start(FeedReplayServer.STEP);
+
+        assertTrue(get("type=1").contains("10:00:00"));
+        assertTrue(get("type=1").contains("10:00:10"));
+        assertTrue(get("type=1").contains("10:00:20"));
+        assertTrue(get("type=1").contains("10:00:20"));
+        assertEquals(4, replay.getServedCount());
+    }
+
+    /**
+     * Tests that a line that was not recorded is served from the whole feed.
+     *
+     * @throws IOException If a request fails.
+     */
+    @Test
+    public void testLineIsFilteredFromFeed() throws IOException {
+        start(FeedReplayServer.STEP);
+
+        String body = get("type=1&line=523");
+
+        assertTrue(body.contains("\"1000\""));
+        assertFalse(body.contains("\"2000\""));
+    }
+
+    /**
+     * Tests that requests for a feed that was not recorded fail.
+     *
+     * @throws IOException If a request fails.
+     */
+    @Test
+    public void testUnknownFeedIsNotFound() throws IOException {
+        start(1);
+
+        try (Response response = client.newCall(request("type=2")).execute()) {
+            assertEquals(404, response.code());
+        }
+    }
+
+    /**
+     * Starts the server on the fake clock.
+     *
+     * @param speed Replay speed.
+     * @throws IOException If the server cannot be started.
+     */
+    private void start(double speed) throws IOException {
+        replay = new FeedReplayServer(records, speed, () -> now);
+        replay.start(0);
+    }
+
+    /**
+     * Requests the feed and returns the body.
+     *
+     * @param query Query selecting the feed.
+     * @return The response body.
+     * @throws IOException If the request fails.
+     */
+    private String get(String query) throws IOException {
+        try (Response response = client.newCall(request(query)).execute()) {
+            assertEquals(200, response.code());
+            return response.body().string();
+        }
+    }
+
+    /**
+     * Builds a request in the form the app sends.
+     *
+     * @param query Query selecting the feed.
+     * @return The request.
+     */
+    private Request request(String query) {
+        return new Request.Builder()
+                .url(replay.url() + "api/action/busestrams_get/?resource_id=id&apikey=key&" + query)
+                .build();
+    }
+
+    /**
+     * Builds a poll of two buses of different lines.
+     *
+     * @param poll Number of the poll, setting the report time.
+     * @return The response body.
+     */
+    private static byte[] body(int poll) {
+        String time = "2024-12-16 10:00:" + poll + "0";
+        return ("{\"result\":["
+                + "{\"Lines\":\"523\",\"Lon\":21.0122,\"VehicleNumber\":\"1000\",\"Time\":\"" + time + "\",\"Lat\":52.2297,\"Brigade\":\"5\"},"
+                + "{\"Lines\":\"17\",\"Lon\":20.9800,\"VehicleNumber\":\"2000\",\"Time\":\"" + time + "\",\"Lat\":52.2600,\"Brigade\":\"2\"}"
+                + "]}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -21,3 +21,6 @@ dependencyResolutionManagement {
 
 rootProject.name = "TrackMyBusWAW"
 include(":app")
+include(":benchmark")
+include(":replay")
+include(":macrobenchmark")